@@ -0,0 +1,103 @@
+package com.github.oczarnecki.messageevaluator.benchmark;
+
+import com.github.oczarnecki.messageevaluator.analysis.Aggregates;
+import com.github.oczarnecki.messageevaluator.analysis.Aggregation;
+import com.github.oczarnecki.messageevaluator.analysis.Downsampling;
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.analysis.Histogram;
+import com.github.oczarnecki.messageevaluator.analysis.Histograms;
+import com.github.oczarnecki.messageevaluator.analysis.SenderStatistics;
+import com.github.oczarnecki.messageevaluator.analysis.TimeIndex;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramStreamImporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of building the histograms shown by the chart, for a single large synthetic chat.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistogramBenchmark {
+    @Param("64")
+    public int sizeMb;
+
+    @Param({"HOUR", "DAY", "MONTH"})
+    public Granularity granularity;
+
+    private TelegramChat chat;
+    private TimeIndex index;
+    private Histogram histogram;
+
+    @Setup(Level.Trial)
+    public void importChat() throws IOException, ImportException {
+        File file = File.createTempFile("export", ".json");
+        try {
+            new SyntheticExportGenerator(42, 0.2).write(file, (long) sizeMb << 20, 1);
+            chat = new TelegramStreamImporter(file).importChats().iterator().next();
+        } finally {
+            file.delete();
+        }
+        index = new TimeIndex(chat);
+        histogram = index.histogram(granularity, 1);
+    }
+
+    @Benchmark
+    public TimeIndex buildIndex() {
+        return new TimeIndex(chat);
+    }
+
+    @Benchmark
+    public Histogram indexHistogram() {
+        return index.histogram(granularity, 1);
+    }
+
+    @Benchmark
+    public Histogram scanHistogram() {
+        return Histograms.of(chat.getTimestampColumn(), granularity, 1);
+    }
+
+    /**
+     * compared to {@link #scanHistogram()}, since both take a single pass over the timestamps
+     */
+    @Benchmark
+    public SenderStatistics senderStatistics() {
+        return SenderStatistics.of(chat);
+    }
+
+    @Benchmark
+    public Aggregates fusedAggregates() {
+        return Aggregates.of(chat, EnumSet.allOf(Aggregation.class));
+    }
+
+    @Benchmark
+    public Aggregates parallelAggregates() {
+        return Aggregates.ofParallel(chat, EnumSet.allOf(Aggregation.class), ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public int[] downsample() {
+        return Downsampling.minMax(histogram, 1920);
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.oczarnecki.messageevaluator.benchmark;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ParallelTelegramImporter;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramImporter;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramStreamImporter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures the throughput of the importers on a synthetic export, which may be gzip compressed. Besides imports per
+ * second, the uncompressed bytes and messages imported per second are reported as auxiliary counters. Run with {@code -prof gc} to get the bytes allocated per
+ * import, which divided by the messages of the export gives the allocation per message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ImportBenchmark {
+
+    /**
+     * The synthetic export shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Export {
+        @Param("64")
+        public int sizeMb;
+
+        @Param("50")
+        public int chatCount;
+
+        @Param("0.2")
+        public double compositeRatio;
+
+        @Param({"none", "gzip"})
+        public String compression;
+
+        File file;
+        long size;
+        long messageCount;
+
+        @Setup(Level.Trial)
+        public void generate() throws IOException {
+            file = File.createTempFile("export", ".json");
+            messageCount = new SyntheticExportGenerator(42, compositeRatio).write(file, (long) sizeMb << 20, chatCount);
+            size = file.length();
+            if (compression.equals("gzip")) {
+                File compressedFile = new File(file.getPath() + ".gz");
+                try (OutputStream output = new GZIPOutputStream(new FileOutputStream(compressedFile), 1 << 16)) {
+                    Files.copy(file.toPath(), output);
+                }
+                file.delete();
+                file = compressedFile;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            file.delete();
+        }
+    }
+
+    /**
+     * The number of threads of the parallel importer.
+     */
+    @State(Scope.Benchmark)
+    public static class Threads {
+        @Param({"1", "4"})
+        public int threadCount;
+    }
+
+    /**
+     * Counts the imported bytes and messages, which JMH reports per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Imported {
+        public long bytes;
+        public long messages;
+
+        void add(Export export) {
+            bytes += export.size;
+            messages += export.messageCount;
+        }
+    }
+
+    @Benchmark
+    public Collection<TelegramChat> treeImport(Export export, Imported imported) throws ImportException {
+        Collection<TelegramChat> chats = new TelegramImporter(export.file).importChats();
+        imported.add(export);
+        return chats;
+    }
+
+    @Benchmark
+    public Collection<TelegramChat> streamImport(Export export, Imported imported) throws ImportException {
+        Collection<TelegramChat> chats = new TelegramStreamImporter(export.file).importChats();
+        imported.add(export);
+        return chats;
+    }
+
+    @Benchmark
+    public Collection<TelegramChat> parallelImport(Export export, Threads threads, Imported imported)
+            throws ImportException {
+        Collection<TelegramChat> chats = new ParallelTelegramImporter(export.file, threads.threadCount).importChats();
+        imported.add(export);
+        return chats;
+    }
+}
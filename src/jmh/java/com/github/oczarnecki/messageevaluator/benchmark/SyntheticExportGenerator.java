@@ -0,0 +1,182 @@
+package com.github.oczarnecki.messageevaluator.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Writes synthetic Telegram Desktop exports, which resemble real {@code result.json} files in structure and in the
+ * distribution of their content. Chats have equal shares of the requested size. Messages are sent by a few senders per
+ * chat at irregular intervals, some messages are service messages without text, and a configurable share of the
+ * messages has composite text, which mixes plain strings with formatted parts like links or bold text. The output is
+ * deterministic for a seed.
+ */
+public final class SyntheticExportGenerator {
+    private static final String[] WORDS = {
+            "hello", "yes", "no", "maybe", "tomorrow", "today", "meeting", "lunch", "train", "late", "thanks", "ok",
+            "Gr\u00fc\u00dfe", "tr\u00e8s", "bien", "\ud83d\ude00", "\ud83d\udc4d", "why", "because", "photo", "link", "call", "later", "home", "work",
+            "weekend", "party", "birthday", "\"quoted\"", "back\\slash", "line\nbreak"};
+    private static final String[] ENTITY_TYPES = {"bold", "italic", "link", "mention", "code", "hashtag"};
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final Random random;
+    private final double compositeRatio;
+    private long written;
+
+    /**
+     * @param seed           seed of the random content
+     * @param compositeRatio the share of messages with composite text, from 0 to 1
+     */
+    public SyntheticExportGenerator(long seed, double compositeRatio) {
+        this.random = new Random(seed);
+        this.compositeRatio = compositeRatio;
+    }
+
+    /**
+     * Writes an export to a file.
+     *
+     * @param file      the destination, which is overwritten
+     * @param size      the approximate size of the export in bytes
+     * @param chatCount the number of chats, at least one
+     * @return the number of messages of type message written, which are imported
+     * @throws IOException if the file can not be written
+     */
+    public long write(File file, long size, int chatCount) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            return write(writer, size, chatCount);
+        }
+    }
+
+    private long write(Writer writer, long size, int chatCount) throws IOException {
+        written = 0;
+        long importedMessages = 0;
+        append(writer, "{\n \"about\": \"synthetic export\",\n \"chats\": {\n  \"about\": \"chats\",\n  \"list\": [");
+        for (int chat = 0; chat < chatCount; chat++) {
+            append(writer, chat == 0 ? "\n   {" : ",\n   {");
+            append(writer, "\n    \"name\": \"Chat " + chat + "\",\n    \"type\": \"private_group\",\n    \"id\": "
+                    + (1000 + chat) + ",\n    \"messages\": [");
+            long chatEnd = size * (chat + 1) / chatCount;
+            LocalDateTime date = LocalDateTime.of(2015, 1, 1, 0, 0).plusSeconds(random.nextInt(1 << 25));
+            int senderCount = 2 + random.nextInt(8);
+            int message = 0;
+            do {
+                date = date.plusSeconds((long) (-Math.log(1 - random.nextDouble()) * 3600));
+                append(writer, message == 0 ? "\n     {" : ",\n     {");
+                if (writeMessage(writer, chat, message++, date, senderCount)) {
+                    importedMessages++;
+                }
+                append(writer, "\n     }");
+            } while (written < chatEnd);
+            append(writer, "\n    ]\n   }");
+        }
+        append(writer, "\n  ]\n }\n}\n");
+        return importedMessages;
+    }
+
+    /**
+     * @return true, if a message of type message has been written
+     */
+    private boolean writeMessage(Writer writer, int chat, int message, LocalDateTime date, int senderCount)
+            throws IOException {
+        int sender = random.nextInt(senderCount);
+        append(writer, "\n      \"id\": " + message + ",");
+        if (random.nextInt(50) == 0) {
+            append(writer, "\n      \"type\": \"service\",\n      \"date\": \"" + DATE_FORMAT.format(date)
+                    + "\",\n      \"actor\": \"Sender " + chat + "-" + sender
+                    + "\",\n      \"action\": \"pin_message\",\n      \"text\": \"\"");
+            return false;
+        }
+        append(writer, "\n      \"type\": \"message\",\n      \"date\": \"" + DATE_FORMAT.format(date)
+                + "\",\n      \"edited\": \"1970-01-01T01:00:00\",\n      \"from\": \"Sender " + chat + "-" + sender
+                + "\",\n      \"from_id\": " + (chat * 10 + sender) + ",");
+        if (random.nextInt(20) == 0) {
+            append(writer, "\n      \"reply_to_message_id\": " + Math.max(0, message - 1 - random.nextInt(10)) + ",");
+        }
+        append(writer, "\n      \"text\": ");
+        if (random.nextDouble() < compositeRatio) {
+            writeCompositeText(writer);
+        } else {
+            appendString(writer, randomText());
+        }
+        return true;
+    }
+
+    private void writeCompositeText(Writer writer) throws IOException {
+        append(writer, "[");
+        int parts = 1 + random.nextInt(4);
+        for (int part = 0; part < parts; part++) {
+            if (part > 0) {
+                append(writer, ", ");
+            }
+            if (part % 2 == 0) {
+                appendString(writer, randomText());
+            } else {
+                append(writer, "{\"type\": \"" + ENTITY_TYPES[random.nextInt(ENTITY_TYPES.length)] + "\", \"text\": ");
+                appendString(writer, WORDS[random.nextInt(WORDS.length)]);
+                append(writer, "}");
+            }
+        }
+        append(writer, "]");
+    }
+
+    /**
+     * @return a text of mostly few and sometimes many words
+     */
+    private String randomText() {
+        int words = random.nextInt(10) == 0 ? 20 + random.nextInt(80) : 1 + random.nextInt(12);
+        StringBuilder text = new StringBuilder();
+        for (int word = 0; word < words; word++) {
+            if (word > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private void appendString(Writer writer, String value) throws IOException {
+        StringBuilder escaped = new StringBuilder(value.length() + 2).append('"');
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c == '\n') {
+                escaped.append("\\n");
+            } else {
+                escaped.append(c);
+            }
+        }
+        append(writer, escaped.append('"').toString());
+    }
+
+    private void append(Writer writer, String value) throws IOException {
+        writer.write(value);
+        written += value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Writes an export to a file.
+     *
+     * @param args the destination file, the size in megabytes, the number of chats, the share of composite texts and
+     *             optionally the seed
+     * @throws IOException if the file can not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: SyntheticExportGenerator <file> <size in MB> <chats> <composite ratio> [seed]");
+            System.exit(1);
+        }
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        long messages = new SyntheticExportGenerator(seed, Double.parseDouble(args[3]))
+                .write(new File(args[0]), Long.parseLong(args[1]) << 20, Integer.parseInt(args[2]));
+        System.out.println("wrote " + messages + " messages to " + args[0]);
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.oczarnecki.messageevaluator;
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the results of analyses of chats, like their histograms, so that showing a chat again does not scan its
+ * messages again. Results are kept by the content version of the chat, the aggregation, the granularity and width of
+ * the buckets and the time range, and the least recently used results are evicted once the capacity is exceeded.
+ * <p>
+ * Chats are immutable, so every chat of the model has a content version, which is assigned when the chat enters the
+ * model. A chat which replaces a chat of the same name with the same messages, for example when the same export is
+ * imported again, inherits its content version and thereby its results. Messages are compared by the
+ * {@link TelegramChat#getContentFingerprint() fingerprints} of the chats, so the comparison neither depends on where
+ * the contents are stored nor reads them. The results of chats which left the model are invalidated when
+ * the model notifies its listeners of the change (see {@link #stateChanged(ModelState)}). Caches are thread safe.
+ */
+public final class AnalysisCache {
+    /**
+     * the number of results which are kept by default
+     */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final int capacity;
+    /**
+     * the content versions of the chats of the model, by chat identity
+     */
+    private Map<TelegramChat, Long> contentVersions;
+    /**
+     * the content versions of the chats of the model
+     */
+    private Set<Long> liveVersions;
+    /**
+     * the results in the order of their last access
+     */
+    private final Map<Key, Object> results;
+    private long nextContentVersion;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param capacity the maximum number of results which are kept
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public AnalysisCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.contentVersions = new IdentityHashMap<>();
+        this.liveVersions = new HashSet<>();
+        this.results = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached result of an analysis of a chat, or runs the analysis and caches its result. Analyses of chats
+     * which are not part of the state the cache has been notified of, like chats of a newer state, are run without
+     * caching their results.
+     *
+     * @param chat        the analysed chat
+     * @param aggregation the name of the analysis, which determines the type of the result
+     * @param granularity the calendar unit of the buckets of the result
+     * @param width       the number of units per bucket
+     * @param from        the start of the analysed time range in seconds since the epoch, inclusive
+     * @param to          the end of the analysed time range in seconds since the epoch, exclusive
+     * @param analysis    computes the result if it is not cached, outside of the lock of the cache
+     * @return the result of the analysis
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(TelegramChat chat, String aggregation, Granularity granularity, int width, long from, long to,
+                     Supplier<T> analysis) {
+        Key key;
+        synchronized (this) {
+            Long contentVersion = contentVersions.get(chat);
+            if (contentVersion == null) {
+                missCount++;
+                key = null;
+            } else {
+                key = new Key(contentVersion, aggregation, granularity, width, from, to);
+                Object result = results.get(key);
+                if (result != null) {
+                    hitCount++;
+                    return (T) result;
+                }
+                missCount++;
+            }
+        }
+        T result = analysis.get();
+        if (key != null) {
+            synchronized (this) {
+                // the chat may have left the model while the result was computed
+                if (liveVersions.contains(key.contentVersion)) {
+                    results.put(key, result);
+                    evict();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the least recently used results until the cache is within its capacity.
+     */
+    private void evict() {
+        Iterator<Key> iterator = results.keySet().iterator();
+        while (results.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Assigns content versions to the chats of a new state of the model, and invalidates the results of the chats
+     * which are no longer part of the model. Called by the model before it notifies its listeners.
+     *
+     * @param change the new state of the model
+     */
+    synchronized void stateChanged(ModelState change) {
+        Map<TelegramChat, Long> previousVersions = contentVersions;
+        Map<String, TelegramChat> removedChats = new HashMap<>();
+        Set<TelegramChat> remainingChats = Collections.newSetFromMap(new IdentityHashMap<>());
+        remainingChats.addAll(change.getChats());
+        previousVersions.keySet().stream()
+                .filter(chat -> !remainingChats.contains(chat))
+                .forEach(chat -> removedChats.put(chat.getName(), chat));
+
+        contentVersions = new IdentityHashMap<>();
+        liveVersions = new HashSet<>();
+        for (TelegramChat chat : change.getChats()) {
+            Long version = previousVersions.get(chat);
+            if (version == null) {
+                TelegramChat replaced = removedChats.remove(chat.getName());
+                version = replaced != null && sameMessages(replaced, chat)
+                        ? previousVersions.get(replaced) : Long.valueOf(nextContentVersion++);
+            }
+            contentVersions.put(chat, version);
+            liveVersions.add(version);
+        }
+        results.keySet().removeIf(key -> !liveVersions.contains(key.contentVersion));
+    }
+
+    private static boolean sameMessages(TelegramChat first, TelegramChat second) {
+        return first.getMessageCount() == second.getMessageCount()
+                && first.getContentFingerprint() == second.getContentFingerprint();
+    }
+
+    /**
+     * @return the number of results which are currently cached
+     */
+    public synchronized int getSize() {
+        return results.size();
+    }
+
+    /**
+     * @return the number of analyses which have been answered from the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of analyses which have been run
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private static final class Key {
+        private final long contentVersion;
+        private final String aggregation;
+        private final Granularity granularity;
+        private final int width;
+        private final long from;
+        private final long to;
+
+        Key(long contentVersion, String aggregation, Granularity granularity, int width, long from, long to) {
+            this.contentVersion = contentVersion;
+            this.aggregation = aggregation;
+            this.granularity = granularity;
+            this.width = width;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return contentVersion == key.contentVersion &&
+                    width == key.width &&
+                    from == key.from &&
+                    to == key.to &&
+                    aggregation.equals(key.aggregation) &&
+                    granularity == key.granularity;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(contentVersion, aggregation, granularity, width, from, to);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.oczarnecki.messageevaluator;
+
+import com.github.oczarnecki.messageevaluator.analysis.TimeIndex;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+import com.github.oczarnecki.messageevaluator.instrumentation.Phase;
+import com.github.oczarnecki.messageevaluator.search.TextIndex;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The indexes of a set of chats, by chat identity. Indexes are immutable, so chats which did not change keep their
+ * indexes when the chats of the model are replaced. A set of indexes is not changed once it has been collected, so it
+ * may be read by several threads.
+ */
+final class ChatIndexes {
+    private final Map<TelegramChat, TimeIndex> timeIndexes = new IdentityHashMap<>();
+    private final Map<TelegramChat, TextIndex> textIndexes = new IdentityHashMap<>();
+
+    /**
+     * Collects the indexes of chats, building them if they are not contained in any of the known indexes. The time
+     * spent building indexes is recorded as {@link Phase#BUILD_MODEL}, unless all indexes are known.
+     *
+     * @param chats the chats
+     * @param known indexes of chats which were indexed before
+     * @return the indexes of the chats
+     */
+    static ChatIndexes of(Collection<TelegramChat> chats, ChatIndexes... known) {
+        ChatIndexes indexes = new ChatIndexes();
+        long buildNanos = 0;
+        boolean built = false;
+        for (TelegramChat chat : chats) {
+            TimeIndex timeIndex = null;
+            TextIndex textIndex = null;
+            for (int index = 0; index < known.length && (timeIndex == null || textIndex == null); index++) {
+                timeIndex = timeIndex == null ? known[index].timeIndexes.get(chat) : timeIndex;
+                textIndex = textIndex == null ? known[index].textIndexes.get(chat) : textIndex;
+            }
+            if (timeIndex == null || textIndex == null) {
+                long start = System.nanoTime();
+                timeIndex = timeIndex == null ? new TimeIndex(chat) : timeIndex;
+                textIndex = textIndex == null ? TextIndex.build(chat) : textIndex;
+                buildNanos += System.nanoTime() - start;
+                built = true;
+            }
+            indexes.timeIndexes.put(chat, timeIndex);
+            indexes.textIndexes.put(chat, textIndex);
+        }
+        if (built) {
+            Instrumentation.get().recordPhase(Phase.BUILD_MODEL, buildNanos);
+        }
+        return indexes;
+    }
+
+    /**
+     * Collects the indexes of chats which extend known chats by new messages. The known indexes of the extended chats
+     * are extended by the new messages, so that only these are indexed. Chats which do not extend a known chat, or
+     * whose known chat is not indexed, are indexed completely. The time spent is recorded as
+     * {@link Phase#BUILD_MODEL}, unless there are no chats.
+     *
+     * @param chats      the chats, by name
+     * @param knownChats the chats the chats of the same name start with, by name
+     * @param known      the indexes of the known chats
+     * @return the indexes of the chats
+     */
+    static ChatIndexes extending(Map<String, TelegramChat> chats, Map<String, TelegramChat> knownChats,
+                                 ChatIndexes known) {
+        ChatIndexes indexes = new ChatIndexes();
+        long start = System.nanoTime();
+        chats.forEach((name, chat) -> {
+            TelegramChat knownChat = knownChats.get(name);
+            TimeIndex knownTimeIndex = knownChat == null ? null : known.timeIndexes.get(knownChat);
+            TextIndex knownTextIndex = knownChat == null ? null : known.textIndexes.get(knownChat);
+            indexes.timeIndexes.put(chat, knownTimeIndex == null ? new TimeIndex(chat)
+                    : TimeIndex.extend(knownTimeIndex, chat));
+            indexes.textIndexes.put(chat, knownTextIndex == null ? TextIndex.build(chat)
+                    : TextIndex.extend(knownTextIndex, chat));
+        });
+        if (!chats.isEmpty()) {
+            Instrumentation.get().recordPhase(Phase.BUILD_MODEL, System.nanoTime() - start);
+        }
+        return indexes;
+    }
+
+    /**
+     * @param textIndexes text indexes which have been read from a file
+     * @return indexes containing only the text indexes
+     */
+    static ChatIndexes ofTextIndexes(Collection<TextIndex> textIndexes) {
+        ChatIndexes indexes = new ChatIndexes();
+        textIndexes.forEach(index -> indexes.textIndexes.put(index.getChat(), index));
+        return indexes;
+    }
+
+    /**
+     * @return the collected index of the chat, or a new one if the chat is not indexed by this set
+     */
+    TimeIndex getTimeIndex(TelegramChat chat) {
+        TimeIndex index = timeIndexes.get(chat);
+        return index == null ? new TimeIndex(chat) : index;
+    }
+
+    /**
+     * @return the collected index of the chat, or a new one if the chat is not indexed by this set
+     */
+    TextIndex getTextIndex(TelegramChat chat) {
+        TextIndex index = textIndexes.get(chat);
+        return index == null ? TextIndex.build(chat) : index;
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.oczarnecki.messageevaluator;
+
+import com.github.oczarnecki.messageevaluator.importer.MessageSink;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessage;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessageHandler;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TextEntity;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * The progress of a background import, which may be polled from any thread, for example once per frame by the UI.
+ * The counters are written by the importing threads, of which there may be several if several files are imported at
+ * once. An import is cancelled by {@link #cancel()}, which makes the importing threads fail at their next read from the
+ * source files.
+ * <p>
+ * The progress of writing a snapshot in the background is tracked the same way, by the bytes written instead of the
+ * bytes read.
+ *
+ * @see TelegramDataModel#writeSnapshotInBackground(java.io.File, ImportProgress)
+ * @see TelegramDataModel#importTgDataInBackground(java.io.File, ImportProgress)
+ */
+public final class ImportProgress {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private volatile long totalBytes;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong messagesParsed = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private volatile boolean cancelled;
+
+    /**
+     * @return the size of the source files in bytes, or 0 if the import has not started yet
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the number of bytes read from the source files so far
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * @return the number of bytes of a snapshot written so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return the number of messages parsed so far, including messages which are not new to the model
+     */
+    public long getMessagesParsed() {
+        return messagesParsed.get();
+    }
+
+    /**
+     * @return the nanoseconds spent reading the source files so far, summed over all reading threads
+     */
+    public long getReadNanos() {
+        return readNanos.get();
+    }
+
+    /**
+     * @return the nanoseconds spent parsing chats so far, summed over all parsing threads. Every thread contributes the
+     * CPU time it spent between the start and the end of the chats it parsed, so that time spent waiting, for example for
+     * reads, is not included.
+     */
+    public long getParseNanos() {
+        return parseNanos.get();
+    }
+
+    /**
+     * @return the fraction of the source files read, or of the snapshot written so far, from 0 to 1
+     */
+    public double getFraction() {
+        long total = totalBytes;
+        return total == 0 ? 0 : Math.min(1, (double) (bytesRead.get() + bytesWritten.get()) / total);
+    }
+
+    /**
+     * Requests the import to stop. The model stays unchanged.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true, if {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @param input      the source of the import
+     * @param totalBytes the size of the source
+     * @return a stream counting the bytes read from the source, which fails once the import is cancelled
+     */
+    InputStream track(InputStream input, long totalBytes) {
+        setTotalBytes(totalBytes);
+        return track(input);
+    }
+
+    /**
+     * @param totalBytes the size of all sources of the import
+     */
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * @param input one of the sources of the import, whose size has been included in the total by
+     *              {@link #setTotalBytes(long)}
+     * @return a stream counting the bytes read from the source, which fails once the import is cancelled
+     */
+    InputStream track(InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                checkCancelled();
+                int read = super.read();
+                if (read >= 0) {
+                    bytesRead.incrementAndGet();
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                checkCancelled();
+                long start = System.nanoTime();
+                int read = super.read(buffer, offset, length);
+                readNanos.addAndGet(System.nanoTime() - start);
+                if (read > 0) {
+                    bytesRead.addAndGet(read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long count) throws IOException {
+                checkCancelled();
+                long skipped = super.skip(count);
+                bytesRead.addAndGet(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * @param totalBytes the approximate size of the snapshot
+     * @return a consumer counting the bytes written to the snapshot, which throws a {@link CancellationException}
+     * once writing is cancelled
+     */
+    LongConsumer trackWriting(long totalBytes) {
+        setTotalBytes(totalBytes);
+        return bytes -> {
+            if (cancelled) {
+                throw new CancellationException("snapshot writing cancelled");
+            }
+            bytesWritten.addAndGet(bytes);
+        };
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("import cancelled");
+        }
+    }
+
+    /**
+     * @param handler the receiver of the imported messages, which is called by a single thread
+     * @return a handler counting the messages and the time spent parsing them before passing them on
+     */
+    TelegramMessageHandler track(TelegramMessageHandler handler) {
+        return new TelegramMessageHandler() {
+            private long chatStart;
+
+            @Override
+            public void chatStarted(String name) {
+                chatStart = threadNanos();
+                handler.chatStarted(name);
+            }
+
+            @Override
+            public void messageParsed(TelegramMessage message) {
+                messagesParsed.incrementAndGet();
+                handler.messageParsed(message);
+            }
+
+            @Override
+            public void chatFinished() {
+                handler.chatFinished();
+                parseNanos.addAndGet(threadNanos() - chatStart);
+            }
+        };
+    }
+
+    /**
+     * @param sink the receiver of the imported messages, which is called by a single thread
+     * @return a sink counting the messages and the time spent parsing them before passing them on
+     */
+    MessageSink track(MessageSink sink) {
+        return new MessageSink() {
+            private long chatStart;
+
+            @Override
+            public void chatStarted(String name) {
+                chatStart = threadNanos();
+                sink.chatStarted(name);
+            }
+
+            @Override
+            public void messageParsed(long epochSecond, String sender, CharSequence content) {
+                messagesParsed.incrementAndGet();
+                sink.messageParsed(epochSecond, sender, content);
+            }
+
+            @Override
+            public void messageParsed(long epochSecond, String sender, CharSequence content,
+                                      List<TextEntity> entities) {
+                messagesParsed.incrementAndGet();
+                sink.messageParsed(epochSecond, sender, content, entities);
+            }
+
+            @Override
+            public void chatFinished() {
+                sink.chatFinished();
+                parseNanos.addAndGet(threadNanos() - chatStart);
+            }
+        };
+    }
+
+    /**
+     * @return the CPU time of the current thread, or the wall clock time if the JVM does not measure CPU times
+     */
+    private static long threadNanos() {
+        long cpuNanos = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        return cpuNanos < 0 ? System.nanoTime() : cpuNanos;
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.oczarnecki.messageevaluator;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ContentFile;
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessage;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessageHandler;
+import com.github.oczarnecki.messageevaluator.merge.MessageFingerprints;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the messages of an export which are newer than the last message of the known chat with the same name.
+ * Telegram exports list the messages of a chat chronologically, so messages sent before the last known message are
+ * skipped without being stored, and messages sent in the same second are only collected if they are not known yet.
+ * Equal messages sent in the same second are told apart by counting their occurrences, like a
+ * {@link com.github.oczarnecki.messageevaluator.merge.ChatMerger} does, so that a message repeated after the last
+ * import is kept.
+ * The new messages are appended to a copy of the known chat, which is only made for chats which actually have new
+ * messages. Chats which are not known yet are collected completely.
+ * <p>
+ * Copying a known chat takes time proportional to its size: its columns are copied in bulk, and in lazy mode its
+ * contents are spilled to the new content file again. The known messages are neither parsed nor indexed again though,
+ * since the indexes of the known chats are extended by the new messages only.
+ */
+final class IncrementalChatCollector implements TelegramMessageHandler {
+    private final Map<String, TelegramChat> knownChats;
+    private final SenderDictionary senders;
+    private final ContentFile contentFile;
+    private final Map<String, TelegramChat> updatedChats;
+
+    private String name;
+    private TelegramChat knownChat;
+    private long lastKnownTimestamp;
+    /**
+     * the fingerprints of the occurrences of the known messages sent in the same second as the last one
+     */
+    private long[] lastKnownFingerprints;
+    private MessageFingerprints.Occurrences occurrences;
+    private TelegramChat.Builder chat;
+
+    /**
+     * @param knownChats  the chats known so far, by name
+     * @param senders     the dictionary by which sender names are interned
+     * @param contentFile the file holding the contents of the updated chats, or null to keep them on the heap
+     */
+    IncrementalChatCollector(Map<String, TelegramChat> knownChats, SenderDictionary senders,
+                             ContentFile contentFile) {
+        this.knownChats = knownChats;
+        this.senders = senders;
+        this.contentFile = contentFile;
+        this.updatedChats = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return the chats which have new messages, including the known ones, and the chats which were not known before,
+     * by name and in the order of the export
+     */
+    Map<String, TelegramChat> getUpdatedChats() {
+        return Collections.unmodifiableMap(updatedChats);
+    }
+
+    @Override
+    public void chatStarted(String name) {
+        this.name = name;
+        knownChat = updatedChats.containsKey(name) ? updatedChats.get(name) : knownChats.get(name);
+        if (knownChat == null) {
+            lastKnownTimestamp = Long.MIN_VALUE;
+            chat = new TelegramChat.Builder(name, senders, contentFile);
+        } else {
+            int knownCount = knownChat.getMessageCount();
+            lastKnownTimestamp = knownCount == 0 ? Long.MIN_VALUE : knownChat.getEpochSecond(knownCount - 1);
+            lastKnownFingerprints = lastKnownFingerprints();
+            occurrences = new MessageFingerprints.Occurrences();
+            chat = null;
+        }
+    }
+
+    /**
+     * @return the sorted fingerprints of the occurrences of the known messages sent in the last known second
+     */
+    private long[] lastKnownFingerprints() {
+        int end = knownChat.getMessageCount(), start = end;
+        while (start > 0 && knownChat.getEpochSecond(start - 1) == lastKnownTimestamp) {
+            start--;
+        }
+        MessageFingerprints.Occurrences knownOccurrences = new MessageFingerprints.Occurrences();
+        long[] fingerprints = new long[end - start];
+        for (int index = start; index < end; index++) {
+            fingerprints[index - start] = knownOccurrences.next(lastKnownTimestamp, fingerprint(lastKnownTimestamp,
+                    knownChat.getSender(knownChat.getSenderId(index)), knownChat.getContent(index)));
+        }
+        Arrays.sort(fingerprints);
+        return fingerprints;
+    }
+
+    private long fingerprint(long timestamp, String sender, String content) {
+        return MessageFingerprints.of(timestamp, senders.intern(sender),
+                MessageFingerprints.contentHash(CharBuffer.wrap(content), 0, content.length()));
+    }
+
+    @Override
+    public void messageParsed(TelegramMessage message) {
+        long timestamp = message.getEpochSecond();
+        if (timestamp < lastKnownTimestamp || (timestamp == lastKnownTimestamp && isKnown(message, timestamp))) {
+            return;
+        }
+        if (chat == null) {
+            chat = new TelegramChat.Builder(name, senders, contentFile).addAll(knownChat);
+        }
+        chat.add(message);
+    }
+
+    /**
+     * Checks whether a message is one of the known messages sent in the same second as the last known message. The
+     * n-th equal message of the export in that second is known if the known chat contains at least n equal messages
+     * in that second.
+     *
+     * @param message   the message
+     * @param timestamp the timestamp of the message
+     * @return true, if the known chat already contains the message
+     */
+    private boolean isKnown(TelegramMessage message, long timestamp) {
+        long fingerprint = occurrences.next(timestamp, fingerprint(timestamp, message.getSender(),
+                message.getContent()));
+        return Arrays.binarySearch(lastKnownFingerprints, fingerprint) >= 0;
+    }
+
+    @Override
+    public void chatFinished() {
+        if (chat != null) {
+            updatedChats.put(name, chat.build());
+        }
+        chat = null;
+        knownChat = null;
+        lastKnownFingerprints = null;
+        occurrences = null;
+    }
+}
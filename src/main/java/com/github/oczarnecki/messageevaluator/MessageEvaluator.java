@@ -1,28 +1,46 @@
 package com.github.oczarnecki.messageevaluator;
 
-import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+import com.github.oczarnecki.messageevaluator.instrumentation.StatsLog;
 import com.github.oczarnecki.messageevaluator.ui.MainWindowController;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 
 public class MessageEvaluator extends Application {
+    /**
+     * the named program argument which keeps the contents of imported messages on disk, like --lazy-content=true
+     */
+    private static final String LAZY_CONTENT_PARAMETER = "lazy-content";
+    /**
+     * the named program argument which logs the metrics of the application periodically, like --stats-log=60 for a
+     * period of 60 seconds
+     */
+    private static final String STATS_LOG_PARAMETER = "stats-log";
+    private static final Logger LOGGER = Logger.getLogger(MessageEvaluator.class.getName());
 
-    private TelegramDataModel tgModel = new TelegramDataModel();
+    private TelegramDataModel tgModel = new TelegramDataModel(Platform::runLater);
 
     @Override
     public void start(Stage stage) throws IOException {
+        Instrumentation.get().register();
         processProgramArguments(tgModel);
-        prepareUI(stage);
+        MainWindowController mainWindowController = prepareUI(stage);
+        if (!getParameters().getUnnamed().isEmpty()) {
+            // opened in the background like the files chosen from the menu, so that the window stays responsive
+            mainWindowController.open(Paths.get(getParameters().getUnnamed().get(0)).toFile());
+        }
     }
 
-    private void prepareUI(Stage stage) throws IOException {
+    private MainWindowController prepareUI(Stage stage) throws IOException {
         MainWindowController mainWindowController = new MainWindowController(stage, tgModel);
 
         FXMLLoader loader = new FXMLLoader(getClass().getResource(ResourcePaths.MAIN_WINDOW_FXML));
@@ -33,15 +51,17 @@ public class MessageEvaluator extends Application {
 
         stage.setScene(scene);
         stage.show();
+        return mainWindowController;
     }
 
     private void processProgramArguments(TelegramDataModel tgModel) {
-        if (!getParameters().getUnnamed().isEmpty()) {
+        tgModel.setLazyContent(Boolean.parseBoolean(getParameters().getNamed().get(LAZY_CONTENT_PARAMETER)));
+        String statsLogPeriod = getParameters().getNamed().get(STATS_LOG_PARAMETER);
+        if (statsLogPeriod != null) {
             try {
-                File dataFile = Paths.get(getParameters().getUnnamed().get(0)).toFile();
-                tgModel.importTgData(dataFile);
-            } catch (ImportException e) {
-                e.printStackTrace();
+                StatsLog.start(Instrumentation.get(), Long.parseLong(statsLogPeriod), TimeUnit.SECONDS);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning("the period of the stats log must be a positive number of seconds: " + statsLogPeriod);
             }
         }
     }
@@ -0,0 +1,163 @@
+package com.github.oczarnecki.messageevaluator;
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.analysis.Histogram;
+import com.github.oczarnecki.messageevaluator.analysis.TimeIndex;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.search.TextIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable state of a {@link TelegramDataModel}: its chats and their indexes at one version of the model. Every
+ * change of the model publishes a new state with the next version, so readers on any thread can work with a state while
+ * the model is being changed, and see either all or nothing of a change.
+ * <p>
+ * The states of a model share its {@link AnalysisCache}, through which the results of analyses like histograms are
+ * reused across versions for chats which did not change.
+ */
+public final class ModelState {
+    private static final String HISTOGRAM = "histogram";
+
+    private final long version;
+    private final List<TelegramChat> chats;
+    private final List<TelegramChat> changedChats;
+    private final ChatIndexes indexes;
+    private final AnalysisCache analysisCache;
+
+    /**
+     * @param version      the version of the model
+     * @param chats        the chats of the model
+     * @param changedChats the chats which have been added or replaced by the change to this version
+     * @param indexes       the indexes of all chats
+     * @param analysisCache the cache of the results of analyses of the model
+     */
+    ModelState(long version, Collection<TelegramChat> chats, Collection<TelegramChat> changedChats,
+               ChatIndexes indexes, AnalysisCache analysisCache) {
+        this.version = version;
+        this.chats = Collections.unmodifiableList(new ArrayList<>(chats));
+        this.changedChats = Collections.unmodifiableList(new ArrayList<>(changedChats));
+        this.indexes = indexes;
+        this.analysisCache = analysisCache;
+    }
+
+    /**
+     * @param analysisCache the cache of the results of analyses of the model
+     * @return the state of a new model, version 0 without chats
+     */
+    static ModelState empty(AnalysisCache analysisCache) {
+        return new ModelState(0, Collections.emptyList(), Collections.emptyList(), new ChatIndexes(), analysisCache);
+    }
+
+    /**
+     * @return the version of the model, which is increased by every change
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the unmodifiable chats of the model
+     */
+    public List<TelegramChat> getChats() {
+        return chats;
+    }
+
+    /**
+     * Listeners may use this to only update what depends on the changed chats. Chats which did not change keep their
+     * identity.
+     *
+     * @return the unmodifiable chats which have been added or replaced since the state the listeners have been notified
+     * of before
+     */
+    public List<TelegramChat> getChangedChats() {
+        return changedChats;
+    }
+
+    /**
+     * @param chat a chat of this state
+     * @return the time index of the chat
+     */
+    public TimeIndex getTimeIndex(TelegramChat chat) {
+        return indexes.getTimeIndex(chat);
+    }
+
+    /**
+     * @param chat a chat of this state
+     * @return the text index of the chat
+     */
+    public TextIndex getTextIndex(TelegramChat chat) {
+        return indexes.getTextIndex(chat);
+    }
+
+    /**
+     * Computes the histogram of all messages of a chat, or returns it from the cache if it has been computed for an
+     * equal chat before.
+     *
+     * @param chat        a chat of this state
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket, at least one
+     * @return the histogram, from the bucket of the first to the bucket of the last message
+     * @see TimeIndex#histogram(Granularity, int)
+     */
+    public Histogram histogram(TelegramChat chat, Granularity granularity, int width) {
+        return analysisCache.get(chat, HISTOGRAM, granularity, width, Long.MIN_VALUE, Long.MAX_VALUE,
+                () -> getTimeIndex(chat).histogram(granularity, width));
+    }
+
+    /**
+     * Computes the histogram of the messages of a chat sent in a time range, or returns it from the cache if it has
+     * been computed for an equal chat before.
+     *
+     * @param chat        a chat of this state
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket, at least one
+     * @param from        the start of the range in seconds since the epoch, inclusive
+     * @param to          the end of the range in seconds since the epoch, exclusive
+     * @return the histogram, from the bucket containing the start to the bucket containing the end of the range
+     * @see TimeIndex#histogram(Granularity, int, long, long)
+     */
+    public Histogram histogram(TelegramChat chat, Granularity granularity, int width, long from, long to) {
+        return analysisCache.get(chat, HISTOGRAM, granularity, width, from, to,
+                () -> getTimeIndex(chat).histogram(granularity, width, from, to));
+    }
+
+    /**
+     * @return the cache of the results of analyses, which is shared by all states of the model
+     */
+    public AnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    ChatIndexes getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Coalesces the changes of several versions, of which the listeners are notified at once.
+     *
+     * @param previous an older state of the same model
+     * @return this state, whose changed chats are all chats added or replaced since the older state
+     */
+    ModelState since(ModelState previous) {
+        if (previous.version == version - 1) {
+            return this;
+        }
+        Set<TelegramChat> previousChats = Collections.newSetFromMap(new IdentityHashMap<>());
+        previousChats.addAll(previous.chats);
+        Set<TelegramChat> ownChangedChats = Collections.newSetFromMap(new IdentityHashMap<>());
+        ownChangedChats.addAll(changedChats);
+        List<TelegramChat> coalescedChangedChats = new ArrayList<>();
+        for (TelegramChat chat : chats) {
+            if (ownChangedChats.contains(chat) || !previousChats.contains(chat)) {
+                coalescedChangedChats.add(chat);
+            }
+        }
+        return new ModelState(version, chats, coalescedChangedChats, indexes, analysisCache);
+    }
+}
@@ -1,69 +1,892 @@
 package com.github.oczarnecki.messageevaluator;
 
+import com.github.oczarnecki.messageevaluator.analysis.TimeIndex;
+import com.github.oczarnecki.messageevaluator.importer.ChatCollectingSink;
+import com.github.oczarnecki.messageevaluator.importer.CompressedSources;
+import com.github.oczarnecki.messageevaluator.importer.Importers;
+import com.github.oczarnecki.messageevaluator.importer.MessageImporter;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ContentFile;
 import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ParallelTelegramImporter;
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary;
 import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
-import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramImporter;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessageHandler;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramStreamImporter;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+import com.github.oczarnecki.messageevaluator.instrumentation.Phase;
+import com.github.oczarnecki.messageevaluator.merge.ChatMerger;
+import com.github.oczarnecki.messageevaluator.search.TextIndex;
+import com.github.oczarnecki.messageevaluator.search.TextIndexFile;
+import com.github.oczarnecki.messageevaluator.snapshot.SnapshotReader;
+import com.github.oczarnecki.messageevaluator.snapshot.SnapshotWriter;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 /**
  * The model represents a collection of {@link TelegramChat}s. Listeners can be added to it, which get notified when the
  * chats are changed.
+ * <p>
+ * The model is safe to be used by several threads. Its chats and their indexes are published as immutable, versioned
+ * {@link ModelState}s: readers get the current state without locking and may work with it as long as they like, while
+ * changes, like imports, replace it by a new state at once. Changes are serialized, but never wait for readers.
+ * <p>
+ * The listeners are notified by the listener executor given to the constructor, for example on the JavaFX application
+ * thread, rather than by the changing thread. Changes which are made before the listeners have been notified are
+ * coalesced into a single notification of the newest state.
+ * <p>
+ * With lazy content (see {@link #setLazyContent(boolean)}), imports write the contents of the messages to a temporary
+ * {@link ContentFile} instead of keeping them on the heap, so that the heap mostly holds the timestamp and sender
+ * columns of the chats. Older states stay readable as long as they are reachable: the content file of an import is
+ * closed and deleted once no chat backed by it is reachable any more (see {@link ContentFile#releaseUnreachable()}),
+ * or once the import fails or is cancelled.
  */
 public final class TelegramDataModel {
-    private Collection<TelegramChat> chats;
-    private Collection<Consumer<TelegramDataModel>> changeListeners;
+    private final SenderDictionary senders;
+    private final Executor listenerExecutor;
+    private final Collection<Consumer<ModelState>> changeListeners;
+    private final AnalysisCache analysisCache;
+    private volatile boolean lazyContent;
 
     /**
-     * Constructor
+     * serializes the changes of the model, readers of the state never take it
+     */
+    private final Object changeLock = new Object();
+    private volatile ModelState state;
+
+    /**
+     * serializes the notifications of the listeners, and guards the notified state and the notification futures
+     */
+    private final Object notificationLock = new Object();
+    /**
+     * whether a notification has been handed to the listener executor, which has not started yet
+     */
+    private final AtomicBoolean notificationPending;
+    private ModelState notifiedState;
+    /**
+     * futures which complete once the listeners have been notified of the version of their key
+     */
+    private final NavigableMap<Long, CompletableFuture<Void>> notificationFutures;
+
+    /**
+     * Creates a model which applies the results of background imports on the importing thread.
      */
     public TelegramDataModel() {
-        chats = Collections.emptySet();
-        changeListeners = new ArrayList<>();
+        this(Runnable::run);
     }
 
     /**
-     * @return an unmodifiable view on this model's collection of chats
+     * @param listenerExecutor notifies the listeners of changes of the model, for example on the JavaFX application
+     *                         thread
+     */
+    public TelegramDataModel(Executor listenerExecutor) {
+        this.listenerExecutor = Objects.requireNonNull(listenerExecutor);
+        senders = new SenderDictionary();
+        changeListeners = new CopyOnWriteArrayList<>();
+        analysisCache = new AnalysisCache(AnalysisCache.DEFAULT_CAPACITY);
+        state = ModelState.empty(analysisCache);
+        notificationPending = new AtomicBoolean();
+        notifiedState = state;
+        notificationFutures = new TreeMap<>();
+    }
+
+    /**
+     * Analyses which read the model several times should read a single state instead, so that they are not affected by
+     * concurrent changes.
+     *
+     * @return the current state of the model
+     */
+    public ModelState getState() {
+        return state;
+    }
+
+    /**
+     * @return the unmodifiable chats of the current state of the model
      */
     public Collection<TelegramChat> getChats() {
-        return Collections.unmodifiableCollection(chats);
+        return state.getChats();
     }
 
     /**
-     * Set the chats and notify all listeners.
+     * @return the unmodifiable chats which have been added or replaced by the last change of the model
+     * @see ModelState#getChangedChats()
+     */
+    public Collection<TelegramChat> getChangedChats() {
+        return state.getChangedChats();
+    }
+
+    /**
+     * The index is built when the chat is added to the model, so that histograms of any granularity can be computed
+     * without scanning the messages of the chat.
+     *
+     * @param chat a chat of the current state of this model
+     * @return the time index of the chat
+     */
+    public TimeIndex getTimeIndex(TelegramChat chat) {
+        return state.getTimeIndex(chat);
+    }
+
+    /**
+     * The index is built when the chat is added to the model, on the importing thread for background imports, so that
+     * messages can be searched by keywords without scanning their content.
+     *
+     * @param chat a chat of the current state of this model
+     * @return the text index of the chat
+     */
+    public TextIndex getTextIndex(TelegramChat chat) {
+        return state.getTextIndex(chat);
+    }
+
+    /**
+     * @param lazyContent whether subsequent imports keep the contents of the messages in a temporary file, from which
+     *                    they are read on demand, instead of on the heap. False by default.
+     */
+    public void setLazyContent(boolean lazyContent) {
+        this.lazyContent = lazyContent;
+    }
+
+    /**
+     * @return a new temporary file for the contents of an import, or null if contents are kept on the heap
+     * @see #discard(ContentFile)
+     */
+    private ContentFile newContentFile() throws ImportException {
+        if (!lazyContent) {
+            return null;
+        }
+        try {
+            return ContentFile.createTemporary(ContentFile.DEFAULT_CACHE_CAPACITY);
+        } catch (IOException cause) {
+            throw new ImportException("could not create a temporary file for the message contents", cause);
+        }
+    }
+
+    /**
+     * Closes and deletes the content file of an import which has not been applied to the model.
+     *
+     * @param contentFile the content file, or null if the import kept its contents on the heap
+     */
+    private static void discard(ContentFile contentFile) {
+        if (contentFile != null) {
+            try {
+                contentFile.close();
+            } catch (IOException exception) {
+                // the file is deleted when the virtual machine exits at the latest
+            }
+        }
+    }
+
+    /**
+     * Set the chats and notify all listeners. All chats are considered changed. Their indexes are built before the
+     * model is changed.
      *
      * @param chats new {@link TelegramChat}s. Null is not allowed, use an empty collection instead.
+     * @return the new state of the model
      */
-    private void setChats(Collection<TelegramChat> chats) {
+    private ModelState setChats(Collection<TelegramChat> chats) {
         Objects.requireNonNull(chats);
-        this.chats = chats;
-        changeListeners.forEach(listener -> listener.accept(this));
+        return setChats(chats, chats, ChatIndexes.of(chats));
     }
 
     /**
-     * Adds a new listener to the model and fire a change event at it at once. The change event is implemented by a
-     * call to the accept method of the listener. This model instance is passed as the parameter.
+     * Set the chats and notify all listeners.
      *
-     * @param listener the change listener, a {@link Consumer<TelegramDataModel>}
+     * @param chats        new {@link TelegramChat}s. Null is not allowed, use an empty collection instead.
+     * @param changedChats the chats which have been added or replaced
+     * @param newIndexes   indexes of the changed chats which have already been built, the missing ones are built now
+     * @return the new state of the model
      */
-    public void addChangeListener(Consumer<TelegramDataModel> listener) {
+    private ModelState setChats(Collection<TelegramChat> chats, Collection<TelegramChat> changedChats,
+                                ChatIndexes newIndexes) {
+        ModelState newState;
+        synchronized (changeLock) {
+            newState = publish(chats, changedChats, newIndexes);
+        }
+        changed(newState);
+        return newState;
+    }
+
+    /**
+     * Replaces the state of the model by the next version. The caller must hold the change lock.
+     */
+    private ModelState publish(Collection<TelegramChat> chats, Collection<TelegramChat> changedChats,
+                               ChatIndexes newIndexes) {
+        Objects.requireNonNull(chats);
+        Objects.requireNonNull(changedChats);
+        ModelState current = state;
+        ModelState newState = new ModelState(current.getVersion() + 1, chats, changedChats,
+                ChatIndexes.of(chats, newIndexes, current.getIndexes()), analysisCache);
+        state = newState;
+        return newState;
+    }
+
+    /**
+     * Records the size of the new state and notifies the listeners of it, or of a newer state.
+     */
+    private void changed(ModelState newState) {
+        long messageCount = 0, heapBytes = 0;
+        for (TelegramChat chat : newState.getChats()) {
+            messageCount += chat.getMessageCount();
+            heapBytes += heapBytes(chat);
+        }
+        Instrumentation.get().modelChanged(newState.getChats().size(), messageCount, heapBytes);
+        if (notificationPending.compareAndSet(false, true)) {
+            listenerExecutor.execute(this::notifyListeners);
+        }
+    }
+
+    /**
+     * Notifies the listeners of the current state, unless they have been notified of it already, and completes the
+     * futures of the versions up to it. Run by the listener executor.
+     */
+    private void notifyListeners() {
+        synchronized (notificationLock) {
+            notificationPending.set(false);
+            ModelState current = state;
+            try {
+                if (current.getVersion() > notifiedState.getVersion()) {
+                    ModelState change = current.since(notifiedState);
+                    notifiedState = current;
+                    long start = System.nanoTime();
+                    analysisCache.stateChanged(change);
+                    changeListeners.forEach(listener -> listener.accept(change));
+                    Instrumentation.get().recordPhase(Phase.NOTIFY_LISTENERS, System.nanoTime() - start);
+                    ContentFile.releaseUnreachable();
+                }
+            } finally {
+                Map<Long, CompletableFuture<Void>> notified =
+                        notificationFutures.headMap(notifiedState.getVersion(), true);
+                notified.values().forEach(future -> future.complete(null));
+                notified.clear();
+            }
+        }
+    }
+
+    /**
+     * @param newState a state of this model
+     * @return a future which completes once the listeners have been notified of the state, or of a newer one
+     */
+    private CompletableFuture<Void> whenNotified(ModelState newState) {
+        synchronized (notificationLock) {
+            if (notifiedState.getVersion() >= newState.getVersion()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return notificationFutures.computeIfAbsent(newState.getVersion(), version -> new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * @return the bytes of the columns of the chat which are held on the heap, rather than mapped from a file
+     */
+    private static long heapBytes(TelegramChat chat) {
+        long bytes = 0;
+        bytes += chat.getTimestampColumn().isDirect() ? 0 : (long) chat.getMessageCount() * Long.BYTES;
+        bytes += chat.getSenderIdColumn().isDirect() ? 0 : (long) chat.getMessageCount() * Integer.BYTES;
+        IntBuffer contentOffsets = chat.getContentOffsetColumn();
+        bytes += contentOffsets.isDirect() ? 0 : (long) contentOffsets.limit() * Integer.BYTES;
+        if (!chat.hasContentFile()) {
+            CharBuffer content = chat.getContentColumn();
+            bytes += content.isDirect() ? 0 : (long) content.limit() * Character.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Adds a new listener to the model and fire a change event at it at once, on the calling thread. The change event
+     * is implemented by a call to the accept method of the listener. The new state of the model is passed as the
+     * parameter, of which all chats are changed for the initial event.
+     *
+     * @param listener the change listener, a {@link Consumer<ModelState>}
+     */
+    public void addChangeListener(Consumer<ModelState> listener) {
         changeListeners.add(listener);
-        listener.accept(this);
+        listener.accept(state.since(ModelState.empty(analysisCache)));
     }
 
     /**
-     * Imports Telegram data from a file and populates the model with it.
+     * Imports Telegram data from a file and populates the model with it. The file is streamed, so that exports of
+     * several gigabytes can be imported without holding their json representation in memory, and its chats are parsed
+     * in parallel.
      *
      * @param dataFile source file
      * @throws ImportException when the data are malformed or the file can not be accessed
-     * @see TelegramImporter#importChats()
+     * @see ParallelTelegramImporter#importChats()
      */
     public void importTgData(File dataFile) throws ImportException {
-        setChats(new TelegramImporter(dataFile).importChats());
+        importNow(replacingChats(dataFile));
+    }
+
+    /**
+     * Like {@link #importTgData(File)}, but parses the file on a background thread. Only once the file has been parsed
+     * completely, the model is changed by the background thread, and the listeners are notified by the listener
+     * executor. If the import is cancelled before, either by the returned future or by the progress, the model stays
+     * unchanged.
+     *
+     * @param dataFile source file
+     * @param progress receives the progress of the import
+     * @return a future which completes after the listeners have been notified, or exceptionally with an
+     * {@link ImportException} when the data are malformed or the file can not be accessed
+     */
+    public CompletableFuture<Void> importTgDataInBackground(File dataFile, ImportProgress progress) {
+        return importInBackground(progress, replacingChats(dataFile));
+    }
+
+    private ModelImport replacingChats(File dataFile) {
+        return (contentFile, progress) -> {
+            Collection<TelegramChat> importedChats = readChats(dataFile, contentFile, progress);
+            ChatIndexes newIndexes = ChatIndexes.of(importedChats);
+            return () -> setChats(importedChats, importedChats, newIndexes);
+        };
+    }
+
+    /**
+     * Imports only the new messages of a Telegram export into the model. For every chat, only the messages sent after
+     * the last message of the chat of the same name already contained in the model are stored. Chats which are not
+     * contained in the model yet are added, chats which are missing from the export are kept. Only the chats which
+     * received new messages are reported as changed to the listeners. Their indexes are extended by the new messages,
+     * but their known messages are still copied into the updated chats.
+     *
+     * @param dataFile source file, usually a newer export of the data imported before
+     * @throws ImportException when the data are malformed or the file can not be accessed
+     */
+    public void importNewTgData(File dataFile) throws ImportException {
+        importNow(addingNewMessages(dataFile));
+    }
+
+    /**
+     * Like {@link #importNewTgData(File)}, but parses the file on a background thread, like
+     * {@link #importTgDataInBackground(File, ImportProgress)}.
+     *
+     * @param dataFile source file, usually a newer export of the data imported before
+     * @param progress receives the progress of the import
+     * @return a future which completes after the listeners have been notified, or exceptionally with an
+     * {@link ImportException} when the data are malformed or the file can not be accessed
+     */
+    public CompletableFuture<Void> importNewTgDataInBackground(File dataFile, ImportProgress progress) {
+        return importInBackground(progress, addingNewMessages(dataFile));
+    }
+
+    /**
+     * Reads the chats which received new messages and the new chats against the current chats of the model.
+     */
+    private ModelImport addingNewMessages(File dataFile) {
+        ModelState knownState = state;
+        Collection<TelegramChat> knownChats = knownState.getChats();
+        return (contentFile, progress) -> {
+            Map<String, TelegramChat> knownChatsByName = new HashMap<>();
+            knownChats.forEach(chat -> knownChatsByName.put(chat.getName(), chat));
+            IncrementalChatCollector collector = new IncrementalChatCollector(knownChatsByName, senders,
+                    contentFile);
+            readMessages(dataFile, progress, collector);
+            Map<String, TelegramChat> updatedChats = collector.getUpdatedChats();
+            ChatIndexes newIndexes = ChatIndexes.extending(updatedChats, knownChatsByName, knownState.getIndexes());
+            return () -> mergeNewChats(updatedChats, knownChatsByName, newIndexes, contentFile);
+        };
+    }
+
+    /**
+     * Replaces the chats of the model by their updated versions and appends the new chats. The chats are merged into
+     * the current state, which may be newer than the state the updated chats have been read against. If a chat has
+     * been replaced in the meantime, for example by another import, its update is merged again with the current chat
+     * by a {@link ChatMerger}, so that the messages of neither are lost. The merging is done outside of the change lock,
+     * and repeated if the state changes again before the merged chats are published.
+     *
+     * @param updatedChats the updated and the new chats, by name
+     * @param baseChats    the chats the updates have been read against, by name
+     * @param contentFile  the file holding the contents of chats merged again, or null to keep them on the heap
+     * @return the new state of the model
+     */
+    private ModelState mergeNewChats(Map<String, TelegramChat> updatedChats, Map<String, TelegramChat> baseChats,
+                                     ChatIndexes newIndexes, ContentFile contentFile) {
+        Map<String, TelegramChat> chatsToPublish = new LinkedHashMap<>(updatedChats);
+        Map<String, TelegramChat> bases = new HashMap<>(baseChats);
+        ChatIndexes indexesToPublish = newIndexes;
+        ChatMerger merger = null;
+        while (true) {
+            List<TelegramChat> chats;
+            Set<String> staleNames = new HashSet<>();
+            ModelState newState = null;
+            synchronized (changeLock) {
+                chats = state.getChats();
+                Set<TelegramChat> currentChats = Collections.newSetFromMap(new IdentityHashMap<>());
+                Set<String> currentNames = new HashSet<>();
+                chats.forEach(chat -> {
+                    currentChats.add(chat);
+                    currentNames.add(chat.getName());
+                });
+                chatsToPublish.keySet().forEach(name -> {
+                    TelegramChat base = bases.get(name);
+                    if (base == null ? currentNames.contains(name) : !currentChats.contains(base)) {
+                        staleNames.add(name);
+                    }
+                });
+                if (staleNames.isEmpty()) {
+                    List<TelegramChat> newChats = new ArrayList<>(chats.size());
+                    chats.forEach(chat -> newChats.add(chatsToPublish.getOrDefault(chat.getName(), chat)));
+                    chatsToPublish.forEach((name, chat) -> {
+                        if (!currentNames.contains(name)) {
+                            newChats.add(chat);
+                        }
+                    });
+                    newState = publish(newChats, chatsToPublish.values(), indexesToPublish);
+                }
+            }
+            if (newState != null) {
+                changed(newState);
+                return newState;
+            }
+            if (merger == null) {
+                merger = new ChatMerger(senders, contentFile);
+            }
+            Map<String, TelegramChat> currentChatsByName = new HashMap<>();
+            chats.forEach(chat -> currentChatsByName.putIfAbsent(chat.getName(), chat));
+            for (String name : staleNames) {
+                TelegramChat currentChat = currentChatsByName.get(name);
+                bases.put(name, currentChat);
+                if (currentChat == null) {
+                    chatsToPublish.put(name, updatedChats.get(name));
+                } else {
+                    // the current chat comes first, so that it is kept if it contains the update already
+                    TelegramChat mergedChat = merger.merge(name, Arrays.asList(currentChat, updatedChats.get(name)));
+                    if (mergedChat == currentChat) {
+                        chatsToPublish.remove(name);
+                    } else {
+                        chatsToPublish.put(name, mergedChat);
+                    }
+                }
+            }
+            indexesToPublish = ChatIndexes.of(chatsToPublish.values(), indexesToPublish);
+        }
+    }
+
+    /**
+     * Imports the chats of several source files, which may be telegram exports, WhatsApp chat exports or mailboxes, and
+     * populates the model with the chats of all files. The files are read in parallel, one per thread, and their
+     * senders are interned by the same dictionary, so the chats of all sources are analysed alike.
+     *
+     * @param dataFiles the source files, whose kind is chosen by their names
+     * @throws ImportException when a file is of no known kind, its data are malformed or it can not be accessed
+     * @see Importers#forFile(File)
+     */
+    public void importFiles(Collection<File> dataFiles) throws ImportException {
+        importNow(replacingChats(dataFiles));
+    }
+
+    /**
+     * Like {@link #importFiles(Collection)}, but reads the files in the background, like
+     * {@link #importTgDataInBackground(File, ImportProgress)}.
+     *
+     * @param dataFiles the source files, whose kind is chosen by their names
+     * @param progress  receives the progress of the import
+     * @return a future which completes after the listeners have been notified, or exceptionally with an
+     * {@link ImportException} when a file is of no known kind, its data are malformed or it can not be accessed
+     */
+    public CompletableFuture<Void> importFilesInBackground(Collection<File> dataFiles, ImportProgress progress) {
+        return importInBackground(progress, replacingChats(dataFiles));
+    }
+
+    private ModelImport replacingChats(Collection<File> dataFiles) {
+        List<File> files = new ArrayList<>(dataFiles);
+        return (contentFile, progress) -> {
+            Collection<TelegramChat> importedChats = readFiles(files, contentFile, progress);
+            ChatIndexes newIndexes = ChatIndexes.of(importedChats);
+            return () -> setChats(importedChats, importedChats, newIndexes);
+        };
+    }
+
+    /**
+     * Merges several exports into the chats of the model, which may overlap each other and the model, like exports
+     * made on different machines or dates. The versions of a chat in the model and in the exports are merged by the
+     * name of the chat, and every message is only kept once. Chats which are only contained in the model are kept, and
+     * chats which do not receive new messages keep their identity. Only the merged chats which received new messages
+     * and the new chats are reported as changed to the listeners.
+     *
+     * @param dataFiles the source files, whose kind is chosen by their names
+     * @throws ImportException when a file is of no known kind, its data are malformed or it can not be accessed
+     * @see ChatMerger
+     */
+    public void mergeFiles(Collection<File> dataFiles) throws ImportException {
+        importNow(mergingChats(dataFiles));
+    }
+
+    /**
+     * Like {@link #mergeFiles(Collection)}, but reads and merges the files in the background, like
+     * {@link #importTgDataInBackground(File, ImportProgress)}.
+     *
+     * @param dataFiles the source files, whose kind is chosen by their names
+     * @param progress  receives the progress of the import
+     * @return a future which completes after the listeners have been notified, or exceptionally with an
+     * {@link ImportException} when a file is of no known kind, its data are malformed or it can not be accessed
+     */
+    public CompletableFuture<Void> mergeFilesInBackground(Collection<File> dataFiles, ImportProgress progress) {
+        return importInBackground(progress, mergingChats(dataFiles));
+    }
+
+    private ModelImport mergingChats(Collection<File> dataFiles) {
+        List<File> files = new ArrayList<>(dataFiles);
+        Collection<TelegramChat> knownChats = state.getChats();
+        return (contentFile, progress) -> {
+            Map<String, TelegramChat> knownChatsByName = new HashMap<>();
+            for (TelegramChat knownChat : knownChats) {
+                knownChatsByName.putIfAbsent(knownChat.getName(), knownChat);
+            }
+            Map<String, TelegramChat> mergedChats = readMergedChats(files, knownChatsByName, contentFile, progress);
+            ChatIndexes newIndexes = ChatIndexes.of(mergedChats.values());
+            return () -> mergeNewChats(mergedChats, knownChatsByName, newIndexes, contentFile);
+        };
+    }
+
+    /**
+     * Reads the files one after another, and merges the chats of every file into the chats merged so far as soon as
+     * the file has been read. Hence only the merged chats and the chats of a single export are held at a time.
+     *
+     * @return the merged chats which received new messages and the new chats, by name in the order of the files
+     */
+    private Map<String, TelegramChat> readMergedChats(Collection<File> dataFiles,
+                                                      Map<String, TelegramChat> knownChatsByName,
+                                                      ContentFile contentFile, ImportProgress progress)
+            throws ImportException {
+        Map<String, TelegramChat> mergedChats = new LinkedHashMap<>();
+        ChatMerger merger = new ChatMerger(senders, contentFile);
+        readFiles(dataFiles, contentFile, progress, 1, importedChats -> {
+            for (TelegramChat importedChat : importedChats) {
+                String name = importedChat.getName();
+                TelegramChat mergedChat = mergedChats.get(name);
+                if (mergedChat == null) {
+                    mergedChat = knownChatsByName.get(name);
+                }
+                // the version merged so far comes first, so that it is kept if the export contains no new messages
+                mergedChats.put(name, mergedChat == null
+                        ? importedChat : merger.merge(name, Arrays.asList(mergedChat, importedChat)));
+            }
+        });
+        mergedChats.entrySet().removeIf(merged -> merged.getValue() == knownChatsByName.get(merged.getKey()));
+        return mergedChats;
+    }
+
+    /**
+     * @return the chats of all files, in the order of the files
+     */
+    private List<TelegramChat> readFiles(Collection<File> dataFiles, ContentFile contentFile,
+                                         ImportProgress progress) throws ImportException {
+        List<TelegramChat> chats = new ArrayList<>();
+        readFiles(dataFiles, contentFile, progress,
+                Math.min(dataFiles.size(), Runtime.getRuntime().availableProcessors()), chats::addAll);
+        return chats;
+    }
+
+    /**
+     * Reads several files in parallel, and passes the chats of every file to a consumer in the order of the files.
+     * At most as many files as given by the parallelism are read ahead of the consumer.
+     *
+     * @param parallelism the number of files which are read at once
+     * @param consumer    receives the chats of every file, on the calling thread
+     */
+    private void readFiles(Collection<File> dataFiles, ContentFile contentFile, ImportProgress progress,
+                           int parallelism, Consumer<List<TelegramChat>> consumer) throws ImportException {
+        List<MessageImporter> importers = new ArrayList<>(dataFiles.size());
+        long totalBytes = 0;
+        for (File dataFile : dataFiles) {
+            importers.add(Importers.forFile(dataFile));
+            totalBytes += dataFile.length();
+        }
+        progress.setTotalBytes(totalBytes);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        Instrumentation.RunningImport runningImport = startImport(progress);
+        try {
+            Deque<ForkJoinTask<List<TelegramChat>>> tasks = new ArrayDeque<>(parallelism);
+            int index = 0;
+            for (File dataFile : dataFiles) {
+                if (tasks.size() == parallelism) {
+                    consumer.accept(join(tasks.removeFirst()));
+                }
+                MessageImporter importer = importers.get(index++);
+                tasks.addLast(pool.submit(() -> readFile(dataFile, importer, contentFile, progress)));
+            }
+            while (!tasks.isEmpty()) {
+                consumer.accept(join(tasks.removeFirst()));
+            }
+        } finally {
+            pool.shutdownNow();
+            finishImport(runningImport, progress);
+        }
+    }
+
+    private List<TelegramChat> readFile(File dataFile, MessageImporter importer, ContentFile contentFile,
+                                        ImportProgress progress) throws ImportException {
+        InputStream input;
+        try {
+            input = progress.track(new FileInputStream(dataFile));
+        } catch (FileNotFoundException exception) {
+            throw new ImportException("source file does not exist, is not readable or is no file", exception);
+        }
+        ChatCollectingSink collector = new ChatCollectingSink(senders, contentFile);
+        importer.importMessages(CompressedSources.uncompressedName(dataFile.getName()),
+                CompressedSources.decompress(input), progress.track(collector));
+        return collector.getChats();
+    }
+
+    private static List<TelegramChat> join(ForkJoinTask<List<TelegramChat>> task) throws ImportException {
+        try {
+            return task.get();
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new ImportException("interrupted while waiting for files to be imported", cause);
+        } catch (ExecutionException cause) {
+            if (cause.getCause() instanceof ImportException) {
+                throw (ImportException) cause.getCause();
+            }
+            throw new ImportException("unexpected error while importing files", cause.getCause());
+        }
+    }
+
+    /**
+     * Reads all chats of a file, parsing them with one thread per available processor.
+     *
+     * @see ParallelTelegramImporter
+     */
+    private Collection<TelegramChat> readChats(File dataFile, ContentFile contentFile, ImportProgress progress)
+            throws ImportException {
+        ParallelTelegramImporter importer = new ParallelTelegramImporter(
+                CompressedSources.decompress(openTracked(dataFile, progress)), Runtime.getRuntime().availableProcessors());
+        importer.setContentFile(contentFile);
+        Instrumentation.RunningImport runningImport = startImport(progress);
+        try {
+            return importer.importChats(senders, progress::track);
+        } finally {
+            finishImport(runningImport, progress);
+        }
+    }
+
+    private void readMessages(File dataFile, ImportProgress progress, TelegramMessageHandler handler)
+            throws ImportException {
+        InputStream input = openTracked(dataFile, progress);
+        Instrumentation.RunningImport runningImport = startImport(progress);
+        try {
+            new TelegramStreamImporter(CompressedSources.decompress(input)).importMessages(progress.track(handler));
+        } finally {
+            finishImport(runningImport, progress);
+        }
+    }
+
+    private static InputStream openTracked(File dataFile, ImportProgress progress) throws ImportException {
+        try {
+            return progress.track(new FileInputStream(dataFile), dataFile.length());
+        } catch (FileNotFoundException exception) {
+            throw new ImportException("source file does not exist, is not readable or is no file", exception);
+        }
+    }
+
+    private static Instrumentation.RunningImport startImport(ImportProgress progress) {
+        return Instrumentation.get().importStarted(progress::getBytesRead, progress::getMessagesParsed);
+    }
+
+    /**
+     * Records the throughput of an import and the durations of reading and parsing its sources, both summed over the
+     * threads of the import.
+     */
+    private static void finishImport(Instrumentation.RunningImport runningImport, ImportProgress progress) {
+        Instrumentation.get().recordPhase(Phase.READ, progress.getReadNanos());
+        Instrumentation.get().recordPhase(Phase.PARSE, progress.getParseNanos());
+        runningImport.finish();
+    }
+
+    /**
+     * The reading part of an import, which runs on the importing thread.
+     */
+    private interface ModelImport {
+        /**
+         * @param contentFile the file to write the contents of the imported chats to, or null to keep them on the heap
+         * @param progress    receives the progress of the import
+         * @return the change of the model, which is run unless the import has been cancelled
+         * @throws ImportException if the import fails
+         */
+        Supplier<ModelState> run(ContentFile contentFile, ImportProgress progress) throws ImportException;
+    }
+
+    private void importNow(ModelImport modelImport) throws ImportException {
+        ContentFile contentFile = newContentFile();
+        Supplier<ModelState> change;
+        try {
+            change = modelImport.run(contentFile, new ImportProgress());
+        } catch (ImportException | RuntimeException exception) {
+            discard(contentFile);
+            throw exception;
+        }
+        change.get();
+    }
+
+    private CompletableFuture<Void> importInBackground(ImportProgress progress, ModelImport modelImport) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        result.whenComplete((ignored, exception) -> {
+            if (result.isCancelled()) {
+                progress.cancel();
+            }
+        });
+        Thread thread = new Thread(() -> {
+            ContentFile contentFile = null;
+            try {
+                contentFile = newContentFile();
+                Supplier<ModelState> change = modelImport.run(contentFile, progress);
+                if (progress.isCancelled()) {
+                    discard(contentFile);
+                    result.cancel(false);
+                } else {
+                    whenNotified(change.get()).thenRun(() -> result.complete(null));
+                }
+            } catch (ImportException | RuntimeException exception) {
+                discard(contentFile);
+                if (progress.isCancelled()) {
+                    result.cancel(false);
+                } else {
+                    result.completeExceptionally(exception);
+                }
+            }
+        }, "telegram-import");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * Writes the chats of the model to a binary snapshot file, which can be reopened much faster than the original
+     * export. The text indexes of the chats are written to a file next to it.
+     *
+     * @param snapshotFile destination file, which is overwritten if it exists
+     * @throws IOException if the file can not be written
+     * @see #openSnapshot(File)
+     */
+    public void writeSnapshot(File snapshotFile) throws IOException {
+        writeSnapshot(state, snapshotFile, new ImportProgress());
+    }
+
+    /**
+     * Like {@link #writeSnapshot(File)}, but writes the current chats of the model on a background thread. If writing
+     * is cancelled, the partially written files are deleted.
+     *
+     * @param snapshotFile destination file, which is overwritten if it exists
+     * @param progress     receives the bytes written to the snapshot
+     * @return a future which completes once the snapshot has been written, or exceptionally with an
+     * {@link IOException} if the file can not be written
+     */
+    public CompletableFuture<Void> writeSnapshotInBackground(File snapshotFile, ImportProgress progress) {
+        ModelState current = state;
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        result.whenComplete((ignored, exception) -> {
+            if (result.isCancelled()) {
+                progress.cancel();
+            }
+        });
+        Thread thread = new Thread(() -> {
+            try {
+                writeSnapshot(current, snapshotFile, progress);
+                result.complete(null);
+            } catch (IOException | RuntimeException exception) {
+                if (progress.isCancelled()) {
+                    snapshotFile.delete();
+                    TextIndexFile.nextTo(snapshotFile).delete();
+                    result.cancel(false);
+                } else {
+                    result.completeExceptionally(exception);
+                }
+            }
+        }, "snapshot-writer");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    private static void writeSnapshot(ModelState current, File snapshotFile, ImportProgress progress)
+            throws IOException {
+        List<TelegramChat> chats = current.getChats();
+        LongConsumer writeProgress = progress.trackWriting(SnapshotWriter.columnSize(chats));
+        SnapshotWriter.write(chats, snapshotFile, writeProgress);
+        // the index file is not counted, but writing it is not started once writing has been cancelled
+        writeProgress.accept(0);
+        List<TextIndex> textIndexes = new ArrayList<>(current.getChats().size());
+        current.getChats().forEach(chat -> textIndexes.add(current.getTextIndex(chat)));
+        TextIndexFile.write(textIndexes, TextIndexFile.nextTo(snapshotFile));
+    }
+
+    /**
+     * Populates the model with the chats of a snapshot file. The data of the chats are memory mapped instead of being
+     * read onto the heap. The text indexes are read from the file next to the snapshot, or rebuilt if it is missing or
+     * does not belong to the snapshot.
+     *
+     * @param snapshotFile source file, written by {@link #writeSnapshot(File)}
+     * @throws IOException if the file can not be read or is no valid snapshot
+     */
+    public void openSnapshot(File snapshotFile) throws IOException {
+        readSnapshot(snapshotFile).get();
+    }
+
+    /**
+     * Like {@link #openSnapshot(File)}, but reads the snapshot and builds its indexes on a background thread, like
+     * {@link #importTgDataInBackground(File, ImportProgress)}.
+     *
+     * @param snapshotFile source file, written by {@link #writeSnapshot(File)}
+     * @param progress     receives the progress of the import
+     * @return a future which completes after the listeners have been notified, or exceptionally with an
+     * {@link ImportException} if the file can not be read or is no valid snapshot
+     */
+    public CompletableFuture<Void> openSnapshotInBackground(File snapshotFile, ImportProgress progress) {
+        return importInBackground(progress, (contentFile, importProgress) -> {
+            // the contents of the chats are mapped from the snapshot itself
+            discard(contentFile);
+            try {
+                return readSnapshot(snapshotFile);
+            } catch (IOException cause) {
+                throw new ImportException("could not open the snapshot: " + cause.getMessage(), cause);
+            }
+        });
+    }
+
+    /**
+     * @return the change of the model to the chats of the snapshot
+     */
+    private Supplier<ModelState> readSnapshot(File snapshotFile) throws IOException {
+        List<TelegramChat> snapshotChats = SnapshotReader.read(snapshotFile);
+        ChatIndexes snapshotIndexes = new ChatIndexes();
+        File indexFile = TextIndexFile.nextTo(snapshotFile);
+        if (indexFile.isFile()) {
+            try {
+                snapshotIndexes = ChatIndexes.ofTextIndexes(TextIndexFile.read(indexFile, snapshotChats));
+            } catch (IOException exception) {
+                // the index file is stale or corrupt, so the indexes are rebuilt from the snapshot
+            }
+        }
+        ChatIndexes newIndexes = ChatIndexes.of(snapshotChats, snapshotIndexes);
+        return () -> setChats(snapshotChats, snapshotChats, newIndexes);
     }
 }
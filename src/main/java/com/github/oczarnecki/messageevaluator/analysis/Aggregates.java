@@ -0,0 +1,307 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Several {@link Aggregation}s of the messages of a chat, computed together in a single pass over the timestamp
+ * column. The calendar fields of a timestamp are derived once for all aggregations: the day of the week and the month
+ * are only derived when the day changes, which is rare since exports are sorted, and the hour of the day and the day of
+ * the week are both counted by the week heatmap and summed up afterwards.
+ * <p>
+ * The parallel variant splits the messages into ranges, aggregates the ranges on a fork join pool and merges the
+ * counts of the ranges.
+ */
+public final class Aggregates {
+    /**
+     * the number of messages up to which a range is aggregated by a single task
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int HOURS_PER_WEEK = EpochCalendar.DAYS_PER_WEEK * EpochCalendar.HOURS_PER_DAY;
+
+    private final Set<Aggregation> aggregations;
+    private int messageCount;
+    private long firstDay;
+    private long lastDay;
+    /**
+     * the day counts, starting at the first day. While aggregating, they start at some day before the first one.
+     */
+    private int[] dayCounts;
+    private long dayCountsStart;
+    private final int[] weekHeatmap;
+    private final int[] monthOfYearCounts;
+
+    private Aggregates(Set<Aggregation> aggregations) {
+        this.aggregations = aggregations;
+        firstDay = Long.MAX_VALUE;
+        lastDay = Long.MIN_VALUE;
+        dayCounts = new int[0];
+        weekHeatmap = new int[countsHeatmap() ? HOURS_PER_WEEK : 0];
+        monthOfYearCounts = new int[aggregations.contains(Aggregation.MONTH_OF_YEAR) ? EpochCalendar.MONTHS_PER_YEAR : 0];
+    }
+
+    /**
+     * @param chat         the chat
+     * @param aggregations the aggregations to compute
+     * @return the aggregates of all messages of the chat
+     */
+    public static Aggregates of(TelegramChat chat, Set<Aggregation> aggregations) {
+        Aggregates aggregates = new Aggregates(copy(aggregations));
+        aggregates.count(chat.getTimestampColumn(), 0, chat.getMessageCount());
+        aggregates.trimDays();
+        return aggregates;
+    }
+
+    /**
+     * Like {@link #of(TelegramChat, Set)}, but aggregates ranges of the messages in parallel.
+     *
+     * @param chat         the chat
+     * @param aggregations the aggregations to compute
+     * @param pool         the pool on which the ranges are aggregated
+     * @return the aggregates of all messages of the chat
+     */
+    public static Aggregates ofParallel(TelegramChat chat, Set<Aggregation> aggregations, ForkJoinPool pool) {
+        Aggregates aggregates = pool.invoke(new RangeTask(chat.getTimestampColumn(), copy(aggregations), 0,
+                chat.getMessageCount()));
+        aggregates.trimDays();
+        return aggregates;
+    }
+
+    private static Set<Aggregation> copy(Set<Aggregation> aggregations) {
+        Set<Aggregation> copy = EnumSet.noneOf(Aggregation.class);
+        copy.addAll(aggregations);
+        return Collections.unmodifiableSet(copy);
+    }
+
+    private boolean countsHeatmap() {
+        return aggregations.contains(Aggregation.WEEK_HEATMAP) || aggregations.contains(Aggregation.HOUR_OF_DAY)
+                || aggregations.contains(Aggregation.DAY_OF_WEEK);
+    }
+
+    /**
+     * Counts a range of messages.
+     *
+     * @param timestamps the timestamps of the messages
+     * @param from       the index of the first message, inclusive
+     * @param to         the index of the last message, exclusive
+     */
+    private void count(LongBuffer timestamps, int from, int to) {
+        boolean countsDays = aggregations.contains(Aggregation.DAYS);
+        boolean countsHeatmap = weekHeatmap.length > 0;
+        boolean countsMonths = monthOfYearCounts.length > 0;
+        long day = Long.MIN_VALUE;
+        int dayIndex = 0, dayOfWeekOffset = 0, monthOfYear = 0;
+        for (int message = from; message < to; message++) {
+            long epochSecond = timestamps.get(message);
+            long messageDay = EpochCalendar.epochDay(epochSecond);
+            if (messageDay != day) {
+                day = messageDay;
+                if (countsDays) {
+                    dayIndex = dayIndex(day);
+                }
+                dayOfWeekOffset = EpochCalendar.dayOfWeek(day) * EpochCalendar.HOURS_PER_DAY;
+                if (countsMonths) {
+                    monthOfYear = EpochCalendar.monthOfYear(EpochCalendar.epochMonth(day));
+                }
+            }
+            if (countsDays) {
+                dayCounts[dayIndex]++;
+            }
+            if (countsHeatmap) {
+                weekHeatmap[dayOfWeekOffset
+                        + (int) ((epochSecond - day * EpochCalendar.SECONDS_PER_DAY) / EpochCalendar.SECONDS_PER_HOUR)]++;
+            }
+            if (countsMonths) {
+                monthOfYearCounts[monthOfYear]++;
+            }
+        }
+        messageCount += to - from;
+    }
+
+    /**
+     * Makes room for the count of a day, doubling the day counts if the day is outside of them.
+     *
+     * @return the index of the count of the day
+     */
+    private int dayIndex(long day) {
+        firstDay = Math.min(firstDay, day);
+        lastDay = Math.max(lastDay, day);
+        if (dayCounts.length == 0) {
+            dayCounts = new int[64];
+            dayCountsStart = day;
+        } else if (day < dayCountsStart || day >= dayCountsStart + dayCounts.length) {
+            long start = Math.min(dayCountsStart, day);
+            long end = Math.max(dayCountsStart + dayCounts.length, day + 1);
+            long length = Math.max(end - start, 2L * dayCounts.length);
+            if (day < dayCountsStart) {
+                start = end - length;
+            }
+            int[] counts = new int[Math.toIntExact(length)];
+            System.arraycopy(dayCounts, 0, counts, (int) (dayCountsStart - start), dayCounts.length);
+            dayCounts = counts;
+            dayCountsStart = start;
+        }
+        return (int) (day - dayCountsStart);
+    }
+
+    /**
+     * Adds the counts of another range to the counts of this one.
+     */
+    private void merge(Aggregates other) {
+        if (other.firstDay <= other.lastDay) {
+            dayIndex(other.firstDay);
+            dayIndex(other.lastDay);
+            int offset = (int) (other.dayCountsStart - dayCountsStart);
+            for (int day = (int) (other.firstDay - other.dayCountsStart);
+                 day <= other.lastDay - other.dayCountsStart; day++) {
+                dayCounts[offset + day] += other.dayCounts[day];
+            }
+        }
+        for (int hour = 0; hour < weekHeatmap.length; hour++) {
+            weekHeatmap[hour] += other.weekHeatmap[hour];
+        }
+        for (int month = 0; month < monthOfYearCounts.length; month++) {
+            monthOfYearCounts[month] += other.monthOfYearCounts[month];
+        }
+        messageCount += other.messageCount;
+    }
+
+    private void trimDays() {
+        if (firstDay > lastDay) {
+            dayCounts = new int[0];
+        } else {
+            int start = (int) (firstDay - dayCountsStart);
+            dayCounts = Arrays.copyOfRange(dayCounts, start, start + (int) (lastDay - firstDay + 1));
+            dayCountsStart = firstDay;
+        }
+    }
+
+    /**
+     * @return the computed aggregations
+     */
+    public Set<Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    /**
+     * @return the number of aggregated messages
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * @return the histogram of the messages per day
+     * @throws IllegalStateException if {@link Aggregation#DAYS} has not been computed
+     */
+    public Histogram getDays() {
+        require(Aggregation.DAYS);
+        return new Histogram(Granularity.DAY, 1, dayCounts.length == 0 ? 0 : dayCountsStart, dayCounts.clone());
+    }
+
+    /**
+     * @param hourOfDay the hour of the day, from 0 to 23
+     * @return the number of messages sent in the hour of any day
+     * @throws IllegalStateException if {@link Aggregation#HOUR_OF_DAY} has not been computed
+     */
+    public int getHourOfDayCount(int hourOfDay) {
+        require(Aggregation.HOUR_OF_DAY);
+        checkIndex(hourOfDay, EpochCalendar.HOURS_PER_DAY);
+        int count = 0;
+        for (int hour = hourOfDay; hour < HOURS_PER_WEEK; hour += EpochCalendar.HOURS_PER_DAY) {
+            count += weekHeatmap[hour];
+        }
+        return count;
+    }
+
+    /**
+     * @param dayOfWeek the day of the week, from 0 (monday) to 6 (sunday)
+     * @return the number of messages sent on the day of any week
+     * @throws IllegalStateException if {@link Aggregation#DAY_OF_WEEK} has not been computed
+     */
+    public int getDayOfWeekCount(int dayOfWeek) {
+        require(Aggregation.DAY_OF_WEEK);
+        checkIndex(dayOfWeek, EpochCalendar.DAYS_PER_WEEK);
+        int count = 0;
+        for (int hour = 0; hour < EpochCalendar.HOURS_PER_DAY; hour++) {
+            count += weekHeatmap[dayOfWeek * EpochCalendar.HOURS_PER_DAY + hour];
+        }
+        return count;
+    }
+
+    /**
+     * @param monthOfYear the month of the year, from 0 (january) to 11 (december)
+     * @return the number of messages sent in the month of any year
+     * @throws IllegalStateException if {@link Aggregation#MONTH_OF_YEAR} has not been computed
+     */
+    public int getMonthOfYearCount(int monthOfYear) {
+        require(Aggregation.MONTH_OF_YEAR);
+        checkIndex(monthOfYear, EpochCalendar.MONTHS_PER_YEAR);
+        return monthOfYearCounts[monthOfYear];
+    }
+
+    /**
+     * @param dayOfWeek the day of the week, from 0 (monday) to 6 (sunday)
+     * @param hourOfDay the hour of the day, from 0 to 23
+     * @return the number of messages sent in the hour of the day of any week
+     * @throws IllegalStateException if {@link Aggregation#WEEK_HEATMAP} has not been computed
+     */
+    public int getHeatmapCount(int dayOfWeek, int hourOfDay) {
+        require(Aggregation.WEEK_HEATMAP);
+        checkIndex(dayOfWeek, EpochCalendar.DAYS_PER_WEEK);
+        checkIndex(hourOfDay, EpochCalendar.HOURS_PER_DAY);
+        return weekHeatmap[dayOfWeek * EpochCalendar.HOURS_PER_DAY + hourOfDay];
+    }
+
+    private void require(Aggregation aggregation) {
+        if (!aggregations.contains(aggregation)) {
+            throw new IllegalStateException(aggregation + " has not been computed");
+        }
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+    }
+
+    /**
+     * Aggregates a range of messages, splitting it in halves while it is larger than the threshold.
+     */
+    private static final class RangeTask extends RecursiveTask<Aggregates> {
+        private final LongBuffer timestamps;
+        private final Set<Aggregation> aggregations;
+        private final int from;
+        private final int to;
+
+        RangeTask(LongBuffer timestamps, Set<Aggregation> aggregations, int from, int to) {
+            this.timestamps = timestamps;
+            this.aggregations = aggregations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Aggregates compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                Aggregates aggregates = new Aggregates(aggregations);
+                aggregates.count(timestamps, from, to);
+                return aggregates;
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask second = new RangeTask(timestamps, aggregations, middle, to);
+            second.fork();
+            Aggregates aggregates = new RangeTask(timestamps, aggregations, from, middle).compute();
+            aggregates.merge(second.join());
+            return aggregates;
+        }
+    }
+}
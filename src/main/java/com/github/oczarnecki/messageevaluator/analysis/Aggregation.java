@@ -0,0 +1,27 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+/**
+ * The aggregations of the messages of a chat which {@link Aggregates} computes together.
+ */
+public enum Aggregation {
+    /**
+     * the number of messages per day, from the first to the last day with messages
+     */
+    DAYS,
+    /**
+     * the number of messages per hour of the day, over all days
+     */
+    HOUR_OF_DAY,
+    /**
+     * the number of messages per day of the week, over all weeks
+     */
+    DAY_OF_WEEK,
+    /**
+     * the number of messages per month of the year, over all years
+     */
+    MONTH_OF_YEAR,
+    /**
+     * the number of messages per hour of the week, by day of the week and hour of the day
+     */
+    WEEK_HEATMAP
+}
@@ -0,0 +1,61 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Selects the buckets of a histogram which are worth drawing when the histogram is wider than the chart showing it.
+ * The buckets are divided into columns, usually one per pixel, and only the first and the last bucket as well as the
+ * buckets with the minimum and the maximum count of every column are kept. Thereby the outline of the line drawn
+ * through the buckets does not change, while the number of drawn points is bounded by four per column.
+ */
+public final class Downsampling {
+    private Downsampling() {
+    }
+
+    /**
+     * @param histogram the histogram to draw
+     * @param columns   the number of columns available, usually the width of the chart in pixels
+     * @return the indices of the buckets to draw, in ascending order. If there are at most two buckets per column, all
+     * buckets are kept.
+     */
+    public static int[] minMax(Histogram histogram, int columns) {
+        int bucketCount = histogram.getBucketCount();
+        if (columns < 1 || bucketCount <= 2L * columns) {
+            int[] all = new int[bucketCount];
+            Arrays.setAll(all, bucket -> bucket);
+            return all;
+        }
+
+        int[] selected = new int[2 * columns + 2];
+        int selectedCount = 0;
+        selected[selectedCount++] = 0;
+        for (int column = 0; column < columns; column++) {
+            int start = (int) ((long) bucketCount * column / columns);
+            int end = (int) ((long) bucketCount * (column + 1) / columns);
+            int min = start, max = start;
+            for (int bucket = start + 1; bucket < end; bucket++) {
+                if (histogram.getCount(bucket) < histogram.getCount(min)) {
+                    min = bucket;
+                } else if (histogram.getCount(bucket) > histogram.getCount(max)) {
+                    max = bucket;
+                }
+            }
+            selectedCount = append(selected, selectedCount, Math.min(min, max));
+            selectedCount = append(selected, selectedCount, Math.max(min, max));
+        }
+        selectedCount = append(selected, selectedCount, bucketCount - 1);
+        return Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * Appends a bucket unless it is the last selected one.
+     *
+     * @return the new number of selected buckets
+     */
+    private static int append(int[] selected, int selectedCount, int bucket) {
+        if (selected[selectedCount - 1] != bucket) {
+            selected[selectedCount++] = bucket;
+        }
+        return selectedCount;
+    }
+}
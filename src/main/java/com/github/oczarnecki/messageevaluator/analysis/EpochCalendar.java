@@ -0,0 +1,119 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calendar computations on timestamps in seconds since the epoch, as stored in the columns of chats. Unlike
+ * {@link java.time.LocalDateTime}, these methods create no objects, so they can be applied to every message of large
+ * chats. Timestamps are interpreted as UTC, like the chat columns.
+ */
+public final class EpochCalendar {
+    public static final long SECONDS_PER_HOUR = TimeUnit.HOURS.toSeconds(1);
+    public static final long SECONDS_PER_DAY = TimeUnit.DAYS.toSeconds(1);
+    public static final int HOURS_PER_DAY = 24;
+    public static final int DAYS_PER_WEEK = 7;
+    public static final int MONTHS_PER_YEAR = 12;
+
+    private static final int EPOCH_YEAR = 1970;
+    /**
+     * the epoch day 0 (1970-01-01) was a thursday, the fourth day of the ISO week
+     */
+    private static final int EPOCH_DAY_OF_WEEK = 3;
+    /**
+     * days from 0000-03-01 to 1970-01-01 and days per 400 year cycle of the proleptic gregorian calendar
+     */
+    private static final long DAYS_0000_TO_1970 = 719468, DAYS_PER_CYCLE = 146097;
+
+    private EpochCalendar() {
+    }
+
+    /**
+     * @param epochSecond seconds since the epoch
+     * @return days since the epoch
+     */
+    public static long epochDay(long epochSecond) {
+        return Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+    }
+
+    /**
+     * @param epochSecond seconds since the epoch
+     * @return hours since the epoch
+     */
+    public static long epochHour(long epochSecond) {
+        return Math.floorDiv(epochSecond, SECONDS_PER_HOUR);
+    }
+
+    /**
+     * @param epochDay days since the epoch
+     * @return ISO weeks (starting on mondays) since the week containing the epoch
+     */
+    public static long epochWeek(long epochDay) {
+        return Math.floorDiv(epochDay + EPOCH_DAY_OF_WEEK, DAYS_PER_WEEK);
+    }
+
+    /**
+     * @param epochWeek ISO weeks since the week containing the epoch
+     * @return the days since the epoch of the monday starting the week
+     */
+    public static long firstDayOfWeek(long epochWeek) {
+        return epochWeek * DAYS_PER_WEEK - EPOCH_DAY_OF_WEEK;
+    }
+
+    /**
+     * Computes the month of a day with the algorithm by Howard Hinnant, see
+     * <a href="http://howardhinnant.github.io/date_algorithms.html">date algorithms</a>.
+     *
+     * @param epochDay days since the epoch
+     * @return months since January 1970
+     */
+    public static long epochMonth(long epochDay) {
+        long shifted = epochDay + DAYS_0000_TO_1970;
+        long cycle = Math.floorDiv(shifted, DAYS_PER_CYCLE);
+        long dayOfCycle = shifted - cycle * DAYS_PER_CYCLE;
+        long yearOfCycle = (dayOfCycle - dayOfCycle / 1460 + dayOfCycle / 36524 - dayOfCycle / 146096) / 365;
+        long dayOfYear = dayOfCycle - (365 * yearOfCycle + yearOfCycle / 4 - yearOfCycle / 100);
+        // the year is shifted to start in march, so that leap days are at its end
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long year = yearOfCycle + cycle * 400;
+        long month = shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10;
+        if (shiftedMonth >= 10) {
+            year++;
+        }
+        return (year - EPOCH_YEAR) * MONTHS_PER_YEAR + month;
+    }
+
+    /**
+     * @param epochMonth months since January 1970
+     * @return the days since the epoch of the first day of the month
+     */
+    public static long firstDayOfMonth(long epochMonth) {
+        int year = Math.toIntExact(EPOCH_YEAR + Math.floorDiv(epochMonth, MONTHS_PER_YEAR));
+        int month = (int) Math.floorMod(epochMonth, MONTHS_PER_YEAR) + 1;
+        return LocalDate.of(year, month, 1).toEpochDay();
+    }
+
+    /**
+     * @param epochSecond seconds since the epoch
+     * @return the hour of the day, from 0 to 23
+     */
+    public static int hourOfDay(long epochSecond) {
+        return (int) Math.floorMod(epochHour(epochSecond), HOURS_PER_DAY);
+    }
+
+    /**
+     * @param epochDay days since the epoch
+     * @return the day of the week, from 0 (monday) to 6 (sunday)
+     */
+    public static int dayOfWeek(long epochDay) {
+        return (int) Math.floorMod(epochDay + EPOCH_DAY_OF_WEEK, DAYS_PER_WEEK);
+    }
+
+    /**
+     * @param epochMonth months since January 1970
+     * @return the month of the year, from 0 (january) to 11 (december)
+     */
+    public static int monthOfYear(long epochMonth) {
+        return (int) Math.floorMod(epochMonth, MONTHS_PER_YEAR);
+    }
+}
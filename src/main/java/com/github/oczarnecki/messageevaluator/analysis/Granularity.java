@@ -0,0 +1,67 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+/**
+ * The calendar units by which messages can be grouped over time. Buckets are numbered consecutively from the bucket
+ * containing the epoch, so a bucket number identifies a single hour, day, week or month.
+ */
+public enum Granularity {
+    HOUR {
+        @Override
+        public long bucket(long epochSecond) {
+            return EpochCalendar.epochHour(epochSecond);
+        }
+
+        @Override
+        public long startOf(long bucket) {
+            return bucket * EpochCalendar.SECONDS_PER_HOUR;
+        }
+    },
+    DAY {
+        @Override
+        public long bucket(long epochSecond) {
+            return EpochCalendar.epochDay(epochSecond);
+        }
+
+        @Override
+        public long startOf(long bucket) {
+            return bucket * EpochCalendar.SECONDS_PER_DAY;
+        }
+    },
+    /**
+     * ISO weeks, starting on mondays
+     */
+    WEEK {
+        @Override
+        public long bucket(long epochSecond) {
+            return EpochCalendar.epochWeek(EpochCalendar.epochDay(epochSecond));
+        }
+
+        @Override
+        public long startOf(long bucket) {
+            return DAY.startOf(EpochCalendar.firstDayOfWeek(bucket));
+        }
+    },
+    MONTH {
+        @Override
+        public long bucket(long epochSecond) {
+            return EpochCalendar.epochMonth(EpochCalendar.epochDay(epochSecond));
+        }
+
+        @Override
+        public long startOf(long bucket) {
+            return DAY.startOf(EpochCalendar.firstDayOfMonth(bucket));
+        }
+    };
+
+    /**
+     * @param epochSecond seconds since the epoch
+     * @return the number of the bucket containing the second
+     */
+    public abstract long bucket(long epochSecond);
+
+    /**
+     * @param bucket number of a bucket
+     * @return the first second of the bucket, in seconds since the epoch
+     */
+    public abstract long startOf(long bucket);
+}
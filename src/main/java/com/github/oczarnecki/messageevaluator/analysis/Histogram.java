@@ -0,0 +1,112 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An immutable histogram of message counts over time. Each bucket spans a number of consecutive calendar units of a
+ * {@link Granularity}, for example 30 days. Buckets are numbered by dividing the number of their first unit by the
+ * width, so that the same bucket has the same number in all histograms of the same granularity and width.
+ */
+public final class Histogram {
+    private final Granularity granularity;
+    private final int width;
+    private final long firstBucket;
+    private final int[] counts;
+
+    /**
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket
+     * @param firstBucket the number of the first bucket
+     * @param counts      the message count of every bucket, starting at the first bucket. The array is not copied.
+     */
+    Histogram(Granularity granularity, int width, long firstBucket, int[] counts) {
+        this.granularity = granularity;
+        this.width = width;
+        this.firstBucket = firstBucket;
+        this.counts = counts;
+    }
+
+    /**
+     * @return the calendar unit of the buckets
+     */
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * @return the number of calendar units per bucket
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the number of the first bucket
+     */
+    public long getFirstBucket() {
+        return firstBucket;
+    }
+
+    /**
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * @param index index of the bucket, starting at 0 for the first bucket
+     * @return the number of messages in the bucket
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @param index index of the bucket, starting at 0 for the first bucket
+     * @return the first second of the bucket, in seconds since the epoch
+     */
+    public long getBucketStart(int index) {
+        return granularity.startOf((firstBucket + index) * width);
+    }
+
+    /**
+     * @return the number of messages in all buckets
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Histogram histogram = (Histogram) o;
+        return width == histogram.width &&
+                firstBucket == histogram.firstBucket &&
+                granularity == histogram.granularity &&
+                Arrays.equals(counts, histogram.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(granularity, width, firstBucket);
+        result = 31 * result + Arrays.hashCode(counts);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{" +
+                "granularity=" + granularity +
+                ", width=" + width +
+                ", firstBucket=" + firstBucket +
+                ", counts=" + Arrays.toString(counts) +
+                '}';
+    }
+}
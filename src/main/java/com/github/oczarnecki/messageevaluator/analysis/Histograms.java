@@ -0,0 +1,99 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+import java.nio.LongBuffer;
+import java.util.function.IntPredicate;
+
+/**
+ * Computes histograms directly from the timestamp column of a chat. Bucket counts are kept in a dense {@code int}
+ * array indexed relative to the first bucket, so computing a histogram allocates nothing per message, only the array
+ * of counts. Unlike a {@link TimeIndex}, this needs no preparation, which makes it suitable for histograms of subsets
+ * of the messages, for example the messages of a single sender.
+ */
+public final class Histograms {
+    private Histograms() {
+    }
+
+    /**
+     * @param timestamps  the timestamps of the messages in seconds since the epoch, in any order
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket, at least one
+     * @return the histogram of all messages, from the bucket of the first to the bucket of the last message
+     */
+    public static Histogram of(LongBuffer timestamps, Granularity granularity, int width) {
+        return of(timestamps, message -> true, granularity, width);
+    }
+
+    /**
+     * @param timestamps  the timestamps of the messages in seconds since the epoch, in any order
+     * @param filter      tests the index of a message, whether it is counted
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket, at least one
+     * @return the histogram of the accepted messages, from the bucket of the first to the bucket of the last accepted
+     * message
+     */
+    public static Histogram of(LongBuffer timestamps, IntPredicate filter, Granularity granularity, int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("buckets must span at least one unit");
+        }
+        long firstBucket = Long.MAX_VALUE, lastBucket = Long.MIN_VALUE;
+        for (int message = 0; message < timestamps.limit(); message++) {
+            if (filter.test(message)) {
+                long bucket = Math.floorDiv(granularity.bucket(timestamps.get(message)), width);
+                firstBucket = Math.min(firstBucket, bucket);
+                lastBucket = Math.max(lastBucket, bucket);
+            }
+        }
+        if (firstBucket > lastBucket) {
+            return new Histogram(granularity, width, 0, new int[0]);
+        }
+
+        int[] counts = new int[Math.toIntExact(lastBucket - firstBucket + 1)];
+        for (int message = 0; message < timestamps.limit(); message++) {
+            if (filter.test(message)) {
+                counts[(int) (Math.floorDiv(granularity.bucket(timestamps.get(message)), width) - firstBucket)]++;
+            }
+        }
+        return new Histogram(granularity, width, firstBucket, counts);
+    }
+
+    /**
+     * @param timestamps  the timestamps of the messages in seconds since the epoch, in any order
+     * @param messages    the indices of the counted messages
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket, at least one
+     * @return the histogram of the given messages, from the bucket of the first to the bucket of the last of them
+     */
+    public static Histogram of(LongBuffer timestamps, int[] messages, Granularity granularity, int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("buckets must span at least one unit");
+        }
+        if (messages.length == 0) {
+            return new Histogram(granularity, width, 0, new int[0]);
+        }
+        long firstBucket = Long.MAX_VALUE, lastBucket = Long.MIN_VALUE;
+        for (int message : messages) {
+            long bucket = Math.floorDiv(granularity.bucket(timestamps.get(message)), width);
+            firstBucket = Math.min(firstBucket, bucket);
+            lastBucket = Math.max(lastBucket, bucket);
+        }
+        int[] counts = new int[Math.toIntExact(lastBucket - firstBucket + 1)];
+        for (int message : messages) {
+            counts[(int) (Math.floorDiv(granularity.bucket(timestamps.get(message)), width) - firstBucket)]++;
+        }
+        return new Histogram(granularity, width, firstBucket, counts);
+    }
+
+    /**
+     * Adds the messages to existing counts of single unit buckets.
+     *
+     * @param timestamps  the timestamps of the messages in seconds since the epoch, all within the counted buckets
+     * @param granularity the calendar unit of the buckets
+     * @param firstBucket the number of the bucket counted by the first element of the counts
+     * @param counts      the counts, which are incremented
+     */
+    static void count(LongBuffer timestamps, Granularity granularity, long firstBucket, int[] counts) {
+        for (int message = 0; message < timestamps.limit(); message++) {
+            counts[(int) (granularity.bucket(timestamps.get(message)) - firstBucket)]++;
+        }
+    }
+}
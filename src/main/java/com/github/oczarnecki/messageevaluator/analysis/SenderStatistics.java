@@ -0,0 +1,174 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable statistics of the messages per sender: the number of messages and characters, and the distribution of
+ * the messages over the hours of the day, the days of the week and the months of the year. All of them are computed in
+ * a single pass over the timestamp, sender id and content offset columns, counting into dense arrays indexed by sender
+ * id, so no sender name is hashed per message.
+ * <p>
+ * Statistics of a single chat use the sender ids of the chat. Statistics of several chats merge the senders of the
+ * same name and number them in the order of their first appearance. The messages of a sender over time are counted by
+ * {@link Histograms#of(LongBuffer, java.util.function.IntPredicate, Granularity, int)}.
+ */
+public final class SenderStatistics {
+    private final String[] senders;
+    private final int[] messageCounts;
+    private final long[] characterCounts;
+    private final int[] hourOfDayCounts;
+    private final int[] dayOfWeekCounts;
+    private final int[] monthOfYearCounts;
+
+    private SenderStatistics(String[] senders) {
+        this.senders = senders;
+        messageCounts = new int[senders.length];
+        characterCounts = new long[senders.length];
+        hourOfDayCounts = new int[senders.length * EpochCalendar.HOURS_PER_DAY];
+        dayOfWeekCounts = new int[senders.length * EpochCalendar.DAYS_PER_WEEK];
+        monthOfYearCounts = new int[senders.length * EpochCalendar.MONTHS_PER_YEAR];
+    }
+
+    /**
+     * @param chat a chat
+     * @return the statistics of the senders of the chat, whose ids are the sender ids of the chat
+     */
+    public static SenderStatistics of(TelegramChat chat) {
+        return of(Collections.singletonList(chat));
+    }
+
+    /**
+     * @param chats any chats
+     * @return the statistics of the senders of all chats
+     */
+    public static SenderStatistics of(Collection<TelegramChat> chats) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> senders = new ArrayList<>();
+        List<int[]> chatSenderIds = new ArrayList<>(chats.size());
+        for (TelegramChat chat : chats) {
+            int[] senderIds = new int[chat.getSenderCount()];
+            for (int sender = 0; sender < senderIds.length; sender++) {
+                String name = chat.getSender(sender);
+                Integer id = ids.get(name);
+                if (id == null) {
+                    id = senders.size();
+                    ids.put(name, id);
+                    senders.add(name);
+                }
+                senderIds[sender] = id;
+            }
+            chatSenderIds.add(senderIds);
+        }
+
+        SenderStatistics statistics = new SenderStatistics(senders.toArray(new String[0]));
+        int chat = 0;
+        for (TelegramChat telegramChat : chats) {
+            statistics.count(telegramChat, chatSenderIds.get(chat++));
+        }
+        return statistics;
+    }
+
+    /**
+     * Adds the messages of a chat to the counts.
+     *
+     * @param chat      the chat
+     * @param senderIds the id in these statistics of every sender of the chat
+     */
+    private void count(TelegramChat chat, int[] senderIds) {
+        LongBuffer timestamps = chat.getTimestampColumn();
+        IntBuffer chatSenderIds = chat.getSenderIdColumn();
+        IntBuffer contentOffsets = chat.getContentOffsetColumn();
+        // messages are mostly sorted, so the day and month are only computed when the day changes
+        long day = Long.MIN_VALUE;
+        int dayOfWeek = 0, monthOfYear = 0;
+        for (int message = 0; message < chat.getMessageCount(); message++) {
+            int sender = senderIds[chatSenderIds.get(message)];
+            long epochSecond = timestamps.get(message);
+            long messageDay = EpochCalendar.epochDay(epochSecond);
+            if (messageDay != day) {
+                day = messageDay;
+                dayOfWeek = EpochCalendar.dayOfWeek(day);
+                monthOfYear = EpochCalendar.monthOfYear(EpochCalendar.epochMonth(day));
+            }
+            messageCounts[sender]++;
+            characterCounts[sender] += contentOffsets.get(message + 1) - contentOffsets.get(message);
+            hourOfDayCounts[sender * EpochCalendar.HOURS_PER_DAY + EpochCalendar.hourOfDay(epochSecond)]++;
+            dayOfWeekCounts[sender * EpochCalendar.DAYS_PER_WEEK + dayOfWeek]++;
+            monthOfYearCounts[sender * EpochCalendar.MONTHS_PER_YEAR + monthOfYear]++;
+        }
+    }
+
+    /**
+     * @return the number of senders. Sender ids range from 0 (inclusive) to this value (exclusive).
+     */
+    public int getSenderCount() {
+        return senders.length;
+    }
+
+    /**
+     * @param sender id of a sender
+     * @return the name of the sender
+     */
+    public String getSender(int sender) {
+        return senders[sender];
+    }
+
+    /**
+     * @param sender id of a sender
+     * @return the number of messages sent by the sender
+     */
+    public int getMessageCount(int sender) {
+        return messageCounts[sender];
+    }
+
+    /**
+     * @param sender id of a sender
+     * @return the number of characters of all messages sent by the sender, counted in UTF-16 code units
+     */
+    public long getCharacterCount(int sender) {
+        return characterCounts[sender];
+    }
+
+    /**
+     * @param sender    id of a sender
+     * @param hourOfDay the hour of the day, from 0 to 23
+     * @return the number of messages the sender sent in the hour of any day
+     */
+    public int getHourOfDayCount(int sender, int hourOfDay) {
+        return hourOfDayCounts[index(sender, hourOfDay, EpochCalendar.HOURS_PER_DAY)];
+    }
+
+    /**
+     * @param sender    id of a sender
+     * @param dayOfWeek the day of the week, from 0 (monday) to 6 (sunday)
+     * @return the number of messages the sender sent on the day of any week
+     */
+    public int getDayOfWeekCount(int sender, int dayOfWeek) {
+        return dayOfWeekCounts[index(sender, dayOfWeek, EpochCalendar.DAYS_PER_WEEK)];
+    }
+
+    /**
+     * @param sender      id of a sender
+     * @param monthOfYear the month of the year, from 0 (january) to 11 (december)
+     * @return the number of messages the sender sent in the month of any year
+     */
+    public int getMonthOfYearCount(int sender, int monthOfYear) {
+        return monthOfYearCounts[index(sender, monthOfYear, EpochCalendar.MONTHS_PER_YEAR)];
+    }
+
+    private int index(int sender, int unit, int unitsPerSender) {
+        if (sender < 0 || sender >= senders.length || unit < 0 || unit >= unitsPerSender) {
+            throw new IndexOutOfBoundsException("sender " + sender + ", unit " + unit);
+        }
+        return sender * unitsPerSender + unit;
+    }
+}
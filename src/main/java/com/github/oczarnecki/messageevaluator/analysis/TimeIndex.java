@@ -0,0 +1,290 @@
+package com.github.oczarnecki.messageevaluator.analysis;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+import com.github.oczarnecki.messageevaluator.instrumentation.Phase;
+
+import java.nio.Buffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable index over the timestamps of a chat, which answers histogram queries for any granularity and time
+ * range without scanning the messages.
+ * <p>
+ * The index holds prefix counts per day, so that the number of messages before any day boundary is a single lookup.
+ * Since weeks and months start at day boundaries, this covers all granularities but hours. For hours, prefix counts
+ * are only kept if the chat has at least one message per {@value #MAX_HOURS_PER_MESSAGE} hours of its time span,
+ * which bounds the memory of the index by the size of the chat. Other boundaries are found by a binary search among
+ * the sorted timestamps of their day, which is skipped for days without messages. Thus a histogram with b buckets is
+ * computed in O(b) time, plus a binary search per boundary within days with messages for hours of sparse chats.
+ */
+public final class TimeIndex {
+    /**
+     * maximum ratio between the hours spanned by the chat and its messages, up to which hourly prefix counts are kept
+     */
+    static final int MAX_HOURS_PER_MESSAGE = 4;
+
+    private final LongBuffer sortedTimestamps;
+    /**
+     * whether the sorted timestamps are the timestamp column of the chat itself
+     */
+    private final boolean sortedColumn;
+    private final int messageCount;
+    private final long firstDay;
+    private final int[] dayPrefixCounts;
+    private final long firstHour;
+    private final int[] hourPrefixCounts;
+
+    /**
+     * Builds the index with a pass over the messages of the chat per resolution.
+     *
+     * @param chat the indexed chat
+     */
+    public TimeIndex(TelegramChat chat) {
+        messageCount = chat.getMessageCount();
+        LongBuffer timestamps = chat.getTimestampColumn();
+        sortedTimestamps = sorted(timestamps);
+        sortedColumn = sortedTimestamps == timestamps;
+        if (messageCount == 0) {
+            firstDay = firstHour = 0;
+            dayPrefixCounts = hourPrefixCounts = new int[]{0};
+            return;
+        }
+
+        long first = sortedTimestamps.get(0), last = sortedTimestamps.get(messageCount - 1);
+        firstDay = EpochCalendar.epochDay(first);
+        firstHour = EpochCalendar.epochHour(first);
+        int[] dayCounts = new int[Math.toIntExact(EpochCalendar.epochDay(last) - firstDay + 1)];
+        Histograms.count(sortedTimestamps, Granularity.DAY, firstDay, dayCounts);
+        dayPrefixCounts = prefixCounts(dayCounts);
+
+        long hourSpan = EpochCalendar.epochHour(last) - firstHour + 1;
+        if (hourSpan <= (long) MAX_HOURS_PER_MESSAGE * messageCount) {
+            int[] hourCounts = new int[(int) hourSpan];
+            Histograms.count(sortedTimestamps, Granularity.HOUR, firstHour, hourCounts);
+            hourPrefixCounts = prefixCounts(hourCounts);
+        } else {
+            hourPrefixCounts = null;
+        }
+    }
+
+    private TimeIndex(LongBuffer timestamps, long firstDay, int[] dayPrefixCounts, long firstHour,
+                      int[] hourPrefixCounts) {
+        this.sortedTimestamps = timestamps;
+        this.sortedColumn = true;
+        this.messageCount = timestamps.limit();
+        this.firstDay = firstDay;
+        this.dayPrefixCounts = dayPrefixCounts;
+        this.firstHour = firstHour;
+        this.hourPrefixCounts = hourPrefixCounts;
+    }
+
+    /**
+     * Extends the index of a chat by the messages appended to it, so that only the appended messages are counted. The
+     * index is built anew if the chat is not sorted, or if it becomes dense enough for hourly prefix counts.
+     *
+     * @param known the index of a chat
+     * @param chat  a chat starting with the messages of the indexed chat
+     * @return the index of the chat
+     */
+    public static TimeIndex extend(TimeIndex known, TelegramChat chat) {
+        LongBuffer timestamps = chat.getTimestampColumn();
+        int knownCount = known.messageCount, count = chat.getMessageCount();
+        if (knownCount == 0 || count < knownCount || !known.sortedColumn) {
+            return new TimeIndex(chat);
+        }
+        for (int index = knownCount; index < count; index++) {
+            if (timestamps.get(index - 1) > timestamps.get(index)) {
+                return new TimeIndex(chat);
+            }
+        }
+
+        LongBuffer appended = timestamps.duplicate();
+        ((Buffer) appended).position(knownCount);
+        appended = appended.slice();
+        long last = timestamps.get(count - 1);
+        int[] dayPrefixCounts = extendPrefixCounts(known.dayPrefixCounts, appended, Granularity.DAY, known.firstDay,
+                EpochCalendar.epochDay(last));
+        int[] hourPrefixCounts = null;
+        long lastHour = EpochCalendar.epochHour(last);
+        if (lastHour - known.firstHour + 1 <= (long) MAX_HOURS_PER_MESSAGE * count) {
+            if (known.hourPrefixCounts == null) {
+                return new TimeIndex(chat);
+            }
+            hourPrefixCounts = extendPrefixCounts(known.hourPrefixCounts, appended, Granularity.HOUR,
+                    known.firstHour, lastHour);
+        }
+        return new TimeIndex(timestamps, known.firstDay, dayPrefixCounts, known.firstHour, hourPrefixCounts);
+    }
+
+    /**
+     * @param timestamps the timestamp column of a chat
+     * @return the column itself if it is sorted, which is the case for telegram exports, or a sorted copy otherwise
+     */
+    private static LongBuffer sorted(LongBuffer timestamps) {
+        for (int index = 1; index < timestamps.limit(); index++) {
+            if (timestamps.get(index - 1) > timestamps.get(index)) {
+                long[] copy = new long[timestamps.limit()];
+                timestamps.get(copy);
+                Arrays.sort(copy);
+                return LongBuffer.wrap(copy);
+            }
+        }
+        return timestamps;
+    }
+
+    private static int[] prefixCounts(int[] counts) {
+        int[] prefixCounts = new int[counts.length + 1];
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            prefixCounts[bucket + 1] = prefixCounts[bucket] + counts[bucket];
+        }
+        return prefixCounts;
+    }
+
+    /**
+     * Adds timestamps to prefix counts. Since the timestamps are not older than the counted ones, only the buckets
+     * from the last counted one on change.
+     *
+     * @param prefixCounts the prefix counts of at least one bucket
+     * @param appended     the timestamps to add
+     * @param granularity  the calendar unit of the buckets
+     * @param firstBucket  the first bucket of the prefix counts
+     * @param lastBucket   the bucket of the last appended timestamp
+     * @return the prefix counts of all timestamps up to the last bucket
+     */
+    private static int[] extendPrefixCounts(int[] prefixCounts, LongBuffer appended, Granularity granularity,
+                                            long firstBucket, long lastBucket) {
+        int lastKnownBucket = prefixCounts.length - 2;
+        int[] counts = new int[Math.toIntExact(lastBucket - firstBucket - lastKnownBucket + 1)];
+        Histograms.count(appended, granularity, firstBucket + lastKnownBucket, counts);
+        int[] extended = Arrays.copyOf(prefixCounts, lastKnownBucket + counts.length + 1);
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            int index = lastKnownBucket + bucket + 1;
+            extended[index] = (bucket == 0 ? prefixCounts[index] : extended[index - 1]) + counts[bucket];
+        }
+        return extended;
+    }
+
+    /**
+     * @return the number of indexed messages
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * @return the timestamp of the earliest message in seconds since the epoch
+     * @throws IndexOutOfBoundsException if the chat has no messages
+     */
+    public long getFirstSecond() {
+        return sortedTimestamps.get(0);
+    }
+
+    /**
+     * @return the timestamp of the latest message in seconds since the epoch
+     * @throws IndexOutOfBoundsException if the chat has no messages
+     */
+    public long getLastSecond() {
+        return sortedTimestamps.get(messageCount - 1);
+    }
+
+    /**
+     * Computes the histogram of all messages of the chat.
+     *
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket, at least one
+     * @return the histogram, from the bucket of the first to the bucket of the last message
+     */
+    public Histogram histogram(Granularity granularity, int width) {
+        if (messageCount == 0) {
+            return new Histogram(granularity, width, 0, new int[0]);
+        }
+        return histogram(granularity, width, getFirstSecond(), getLastSecond() + 1);
+    }
+
+    /**
+     * Computes the histogram of the messages sent in a time range. Buckets which are only partially covered by the
+     * range only count the messages within the range.
+     *
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket, at least one
+     * @param from        the start of the range in seconds since the epoch, inclusive
+     * @param to          the end of the range in seconds since the epoch, exclusive
+     * @return the histogram, from the bucket containing the start to the bucket containing the end of the range
+     */
+    public Histogram histogram(Granularity granularity, int width, long from, long to) {
+        if (width < 1) {
+            throw new IllegalArgumentException("buckets must span at least one unit");
+        }
+        if (from >= to) {
+            return new Histogram(granularity, width, Math.floorDiv(granularity.bucket(from), width), new int[0]);
+        }
+        long start = System.nanoTime();
+        long firstBucket = Math.floorDiv(granularity.bucket(from), width);
+        long lastBucket = Math.floorDiv(granularity.bucket(to - 1), width);
+        int[] counts = new int[Math.toIntExact(lastBucket - firstBucket + 1)];
+
+        int countBefore = countBefore(from);
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            long end = Math.min(to, granularity.startOf((firstBucket + bucket + 1) * width));
+            int countAfter = countBefore(end);
+            counts[bucket] = countAfter - countBefore;
+            countBefore = countAfter;
+        }
+        Instrumentation.get().recordPhase(Phase.BUILD_HISTOGRAM, System.nanoTime() - start);
+        return new Histogram(granularity, width, firstBucket, counts);
+    }
+
+    /**
+     * @param from the start of the range in seconds since the epoch, inclusive
+     * @param to   the end of the range in seconds since the epoch, exclusive
+     * @return the number of messages sent within the range
+     */
+    public int count(long from, long to) {
+        return from >= to ? 0 : countBefore(to) - countBefore(from);
+    }
+
+    /**
+     * @param epochSecond seconds since the epoch
+     * @return the number of messages sent before the second
+     */
+    private int countBefore(long epochSecond) {
+        if (hourPrefixCounts != null && epochSecond % EpochCalendar.SECONDS_PER_HOUR == 0) {
+            return prefixCount(hourPrefixCounts, EpochCalendar.epochHour(epochSecond) - firstHour);
+        }
+        long day = EpochCalendar.epochDay(epochSecond) - firstDay;
+        int countBeforeDay = prefixCount(dayPrefixCounts, day);
+        if (epochSecond % EpochCalendar.SECONDS_PER_DAY == 0) {
+            return countBeforeDay;
+        }
+        int countAfterDay = prefixCount(dayPrefixCounts, day + 1);
+        return countBeforeDay == countAfterDay ? countBeforeDay : lowerBound(epochSecond, countBeforeDay, countAfterDay);
+    }
+
+    private int prefixCount(int[] prefixCounts, long bucket) {
+        if (bucket <= 0) {
+            return 0;
+        }
+        return bucket >= prefixCounts.length ? messageCount : prefixCounts[(int) bucket];
+    }
+
+    /**
+     * @param epochSecond seconds since the epoch
+     * @param low         the first index to search
+     * @param high        the index after the last index to search
+     * @return the index of the first message in the searched indices sent at or after the second, or high if there is
+     * none
+     */
+    private int lowerBound(long epochSecond, int low, int high) {
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedTimestamps.get(middle) < epochSecond) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import com.github.oczarnecki.messageevaluator.sketch.ApproximateStatistics;
+import com.github.oczarnecki.messageevaluator.sketch.HeavyHitters;
+import com.github.oczarnecki.messageevaluator.sketch.HyperLogLog;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes approximate statistics as the CSV file {@value #APPROXIMATE_FILE}, one row per estimate with its error bound.
+ * The error is absolute for the counts of the top senders and terms, and relative for the distinct senders and the
+ * quantiles of the message lengths. Rows with an empty chat refer to all chats.
+ */
+final class ApproximateResultWriter implements AutoCloseable {
+    static final String APPROXIMATE_FILE = "approximate.csv";
+
+    static final String[] COLUMNS = {"chat", "metric", "key", "estimate", "error"};
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Writer writer;
+
+    /**
+     * @param directory the directory to write the file to, which must exist
+     * @throws IOException if the file can not be created
+     */
+    ApproximateResultWriter(File directory) throws IOException {
+        writer = Files.newBufferedWriter(new File(directory, APPROXIMATE_FILE).toPath(), StandardCharsets.UTF_8);
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+    }
+
+    /**
+     * @param chat       the name of the chat, or the empty string for all chats
+     * @param statistics the statistics of the chat
+     * @throws IOException if the statistics can not be written
+     */
+    void write(String chat, ApproximateStatistics statistics) throws IOException {
+        String chatPrefix = CsvResultWriter.quote(chat) + ',';
+        write(chatPrefix, "messages", "", statistics.getMessageCount(), "0");
+        HyperLogLog distinctSenders = statistics.getDistinctSenders();
+        write(chatPrefix, "distinct_senders", "", distinctSenders.estimate(),
+                relative(distinctSenders.getRelativeError()));
+        for (Map.Entry<Long, HyperLogLog> bucket : statistics.getDistinctSendersByBucket().entrySet()) {
+            write(chatPrefix, "distinct_senders",
+                    LocalDateTime.ofEpochSecond(bucket.getKey(), 0, ZoneOffset.UTC).toString(),
+                    bucket.getValue().estimate(), relative(bucket.getValue().getRelativeError()));
+        }
+        writeTop(chatPrefix, "top_sender", statistics.getTopSenders());
+        writeTop(chatPrefix, "top_term", statistics.getTopTerms());
+        for (double quantile : QUANTILES) {
+            write(chatPrefix, "length_quantile", Double.toString(quantile),
+                    Math.round(statistics.getMessageLengths().quantile(quantile)),
+                    relative(statistics.getMessageLengths().getRelativeError()));
+        }
+    }
+
+    private void writeTop(String chatPrefix, String metric, HeavyHitters heavyHitters) throws IOException {
+        String errorBound = Long.toString(heavyHitters.getErrorBound());
+        for (HeavyHitters.Entry entry : heavyHitters.getTop()) {
+            write(chatPrefix, metric, CsvResultWriter.quote(entry.getKey()), entry.getCount(), errorBound);
+        }
+    }
+
+    private void write(String chatPrefix, String metric, String key, long estimate, String error)
+            throws IOException {
+        writer.write(chatPrefix);
+        writer.write(metric);
+        writer.write(',');
+        writer.write(key);
+        writer.write(',');
+        writer.write(Long.toString(estimate));
+        writer.write(',');
+        writer.write(error);
+        writer.write("\r\n");
+    }
+
+    private static String relative(double error) {
+        return String.format(Locale.ROOT, "%.4f", error);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
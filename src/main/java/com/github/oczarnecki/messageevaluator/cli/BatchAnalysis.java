@@ -0,0 +1,266 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.importer.CompressedSources;
+import com.github.oczarnecki.messageevaluator.importer.Importers;
+import com.github.oczarnecki.messageevaluator.importer.MessageImporter;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+import com.github.oczarnecki.messageevaluator.instrumentation.StatsLog;
+import com.github.oczarnecki.messageevaluator.sketch.ApproximateStatistics;
+import com.github.oczarnecki.messageevaluator.sketch.SketchingSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless entry point, which analyses telegram exports without loading JavaFX. The exports are imported and analysed
+ * concurrently, and the results of every export are written as soon as it has been analysed, so that only the results
+ * of the exports being analysed are held in memory. Exports which can not be imported are reported and skipped.
+ * <p>
+ * Usage: {@code BatchAnalysis [options] <export>...}, with the options
+ * <ul>
+ * <li>{@code --output <directory>}: where to write the results, the working directory by default</li>
+ * <li>{@code --format csv|columnar}: the format of the results, csv by default</li>
+ * <li>{@code --granularity hour|day|week|month}: the buckets of the histograms, day by default</li>
+ * <li>{@code --threads <count>}: the number of exports analysed at once, the number of processors by default</li>
+ * <li>{@code --stats-log <seconds>}: logs the metrics of the analysis periodically, not at all by default</li>
+ * <li>{@code --mode exact|approximate}: exact by default. The approximate mode streams exports of any kind through
+ * sketches of fixed size instead of building their chats (see {@link ApproximateStatistics}), merges the sketches of
+ * the chats of the same name across all exports and writes them as csv when all exports have been analysed.</li>
+ * </ul>
+ * The metrics of the analysis are exposed via JMX in any case (see {@link Instrumentation}).
+ */
+public final class BatchAnalysis {
+    static final int EXIT_SUCCESS = 0, EXIT_IMPORT_FAILED = 1, EXIT_USAGE = 2, EXIT_WRITE_FAILED = 3;
+
+    private static final String USAGE = "usage: BatchAnalysis [--output <directory>] [--format csv|columnar] "
+            + "[--granularity hour|day|week|month] [--threads <count>] [--stats-log <seconds>] "
+            + "[--mode exact|approximate] <export>...";
+
+    private File outputDirectory = new File(".");
+    private boolean columnar;
+    private Granularity granularity = Granularity.DAY;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private long statsLogPeriod;
+    private boolean approximate;
+    private final List<File> exports = new ArrayList<>();
+
+    private BatchAnalysis() {
+    }
+
+    /**
+     * Entry point of the headless analysis.
+     *
+     * @param args options and export files
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.err));
+    }
+
+    /**
+     * Runs the analysis.
+     *
+     * @param args   options and export files
+     * @param errors receives usage and error messages
+     * @return the exit code: 0 on success, 1 if any export could not be imported, 2 on wrong usage and 3 if the results
+     * could not be written
+     */
+    static int run(String[] args, PrintStream errors) {
+        BatchAnalysis analysis = new BatchAnalysis();
+        try {
+            analysis.parseArguments(args);
+        } catch (IllegalArgumentException exception) {
+            errors.println(exception.getMessage());
+            errors.println(USAGE);
+            return EXIT_USAGE;
+        }
+        try {
+            return analysis.analyse(errors);
+        } catch (IOException exception) {
+            errors.println("could not write results: " + exception.getMessage());
+            return EXIT_WRITE_FAILED;
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        for (int index = 0; index < args.length; index++) {
+            String arg = args[index];
+            if (!arg.startsWith("--")) {
+                exports.add(new File(arg));
+                continue;
+            }
+            if (index + 1 == args.length) {
+                throw new IllegalArgumentException("missing value of " + arg);
+            }
+            String value = args[++index];
+            switch (arg) {
+                case "--output":
+                    outputDirectory = new File(value);
+                    break;
+                case "--format":
+                    if (!value.equals("csv") && !value.equals("columnar")) {
+                        throw new IllegalArgumentException("unknown format " + value);
+                    }
+                    columnar = value.equals("columnar");
+                    break;
+                case "--granularity":
+                    try {
+                        granularity = Granularity.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException exception) {
+                        throw new IllegalArgumentException("unknown granularity " + value, exception);
+                    }
+                    break;
+                case "--threads":
+                    try {
+                        threadCount = Integer.parseInt(value);
+                    } catch (NumberFormatException exception) {
+                        throw new IllegalArgumentException("invalid thread count " + value, exception);
+                    }
+                    if (threadCount < 1) {
+                        throw new IllegalArgumentException("at least one thread is required");
+                    }
+                    break;
+                case "--stats-log":
+                    try {
+                        statsLogPeriod = Long.parseLong(value);
+                    } catch (NumberFormatException exception) {
+                        throw new IllegalArgumentException("invalid stats log period " + value, exception);
+                    }
+                    if (statsLogPeriod < 1) {
+                        throw new IllegalArgumentException("the stats log period must be at least one second");
+                    }
+                    break;
+                case "--mode":
+                    if (!value.equals("exact") && !value.equals("approximate")) {
+                        throw new IllegalArgumentException("unknown mode " + value);
+                    }
+                    approximate = value.equals("approximate");
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        if (exports.isEmpty()) {
+            throw new IllegalArgumentException("no export given");
+        }
+        if (approximate && columnar) {
+            throw new IllegalArgumentException("approximate results are only written as csv");
+        }
+    }
+
+    private int analyse(PrintStream errors) throws IOException {
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("can not create " + outputDirectory);
+        }
+        Instrumentation.get().register();
+        StatsLog statsLog = statsLogPeriod > 0
+                ? StatsLog.start(Instrumentation.get(), statsLogPeriod, TimeUnit.SECONDS) : null;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, exports.size()));
+        try {
+            return approximate ? analyseApproximately(executor, errors) : analyseExactly(executor, errors);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", exception);
+        } finally {
+            executor.shutdownNow();
+            if (statsLog != null) {
+                statsLog.close();
+            }
+        }
+    }
+
+    private int analyseExactly(ExecutorService executor, PrintStream errors)
+            throws IOException, InterruptedException {
+        try (ResultWriter writer = columnar
+                ? new ColumnarResultWriter(outputDirectory) : new CsvResultWriter(outputDirectory)) {
+            return analyseAll(executor, export -> ExportAnalysis.analyse(export, granularity), writer::write, errors);
+        }
+    }
+
+    /**
+     * Merges the statistics of the chats of all exports by chat name, and into the statistics of all chats.
+     */
+    private int analyseApproximately(ExecutorService executor, PrintStream errors)
+            throws IOException, InterruptedException {
+        Map<String, ApproximateStatistics> chats = new LinkedHashMap<>();
+        ApproximateStatistics allChats = new ApproximateStatistics(granularity);
+        int exitCode = analyseAll(executor, this::sketch, exportChats -> exportChats.forEach((name, statistics) -> {
+            chats.computeIfAbsent(name, ignored -> new ApproximateStatistics(granularity)).merge(statistics);
+            allChats.merge(statistics);
+        }), errors);
+        try (ApproximateResultWriter writer = new ApproximateResultWriter(outputDirectory)) {
+            for (Map.Entry<String, ApproximateStatistics> chat : chats.entrySet()) {
+                writer.write(chat.getKey(), chat.getValue());
+            }
+            writer.write("", allChats);
+        }
+        return exitCode;
+    }
+
+    private Map<String, ApproximateStatistics> sketch(File export) throws ImportException {
+        MessageImporter importer = Importers.forFile(export);
+        SketchingSink sink = new SketchingSink(granularity);
+        importer.importMessages(CompressedSources.uncompressedName(export.getName()), CompressedSources.open(export),
+                sink);
+        return sink.getChats();
+    }
+
+    /**
+     * Analyses all exports concurrently, and passes the result of every export to the handler on the calling thread as
+     * soon as it is available.
+     *
+     * @return {@link #EXIT_SUCCESS}, or {@link #EXIT_IMPORT_FAILED} if any export could not be analysed
+     */
+    private <T> int analyseAll(ExecutorService executor, ExportTask<T> task, ResultHandler<T> handler,
+                               PrintStream errors) throws IOException, InterruptedException {
+        int exitCode = EXIT_SUCCESS;
+        CompletionService<T> analyses = new ExecutorCompletionService<>(executor);
+        List<Future<T>> futures = new ArrayList<>();
+        for (File export : exports) {
+            futures.add(analyses.submit(() -> task.analyse(export)));
+        }
+        for (int remaining = exports.size(); remaining > 0; remaining--) {
+            Future<T> analysis = analyses.take();
+            try {
+                handler.handle(analysis.get());
+            } catch (ExecutionException exception) {
+                File export = exports.get(futures.indexOf(analysis));
+                errors.println(export + ": " + describe(exception.getCause()));
+                exitCode = EXIT_IMPORT_FAILED;
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * The analysis of a single export, which runs on a thread of the executor.
+     */
+    private interface ExportTask<T> {
+        T analyse(File export) throws ImportException;
+    }
+
+    /**
+     * Receives the result of an export on the thread which started the analysis.
+     */
+    private interface ResultHandler<T> {
+        void handle(T result) throws IOException;
+    }
+
+    private static String describe(Throwable failure) {
+        return failure instanceof ImportException ? failure.getMessage() : failure.toString();
+    }
+}
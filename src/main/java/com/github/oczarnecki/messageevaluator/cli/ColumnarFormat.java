@@ -0,0 +1,80 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Describes the compact columnar result files. A file consists of a header and a sequence of row groups, each
+ * holding the values of all columns column by column, like in Parquet:
+ * <pre>
+ * file:      int MAGIC, int VERSION, varint columnCount, (string name, byte type) * columnCount,
+ *            rowGroup *, varint 0
+ * rowGroup:  varint rowCount, column * columnCount
+ * column:    STRING: varint dictionarySize, string * dictionarySize, varint dictionaryIndex * rowCount
+ *            LONG:   zigzag varint (value - previous value) * rowCount, starting at a previous value of 0
+ * string:    varint byteCount, UTF-8 bytes
+ * </pre>
+ * Strings are dictionary encoded per row group and longs delta encoded, so repeated names and sorted timestamps take
+ * one or two bytes per row.
+ */
+final class ColumnarFormat {
+    static final int MAGIC = 0x4d454354; // "MECT"
+    static final int VERSION = 1;
+
+    /**
+     * the types of columns
+     */
+    enum ColumnType {
+        STRING, LONG
+    }
+
+    private ColumnarFormat() {
+    }
+
+    static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(output, bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInput input) throws IOException {
+        long length = readVarint(input);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("corrupt string length");
+        }
+        byte[] bytes = new byte[(int) length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarint(DataOutput output, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            output.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    static long readVarint(DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("corrupt varint");
+    }
+
+    static void writeZigzag(DataOutput output, long value) throws IOException {
+        writeVarint(output, (value << 1) ^ (value >> 63));
+    }
+
+    static long readZigzag(DataInput input) throws IOException {
+        long value = readVarint(input);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a table from a columnar file written by a {@link ColumnarWriter}. All rows are read onto the heap.
+ *
+ * @see ColumnarFormat
+ */
+public final class ColumnarReader {
+    private final String[] names;
+    private final ColumnarFormat.ColumnType[] types;
+    private final List<Object[]> rows;
+
+    /**
+     * Reads a columnar file.
+     *
+     * @param file the file
+     * @throws IOException if the file can not be read or is no columnar file
+     */
+    public ColumnarReader(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != ColumnarFormat.MAGIC) {
+                throw new IOException("not a columnar file");
+            }
+            int version = input.readInt();
+            if (version != ColumnarFormat.VERSION) {
+                throw new IOException("unsupported columnar file version " + version);
+            }
+            names = new String[toInt(ColumnarFormat.readVarint(input))];
+            types = new ColumnarFormat.ColumnType[names.length];
+            for (int column = 0; column < names.length; column++) {
+                names[column] = ColumnarFormat.readString(input);
+                int type = input.readUnsignedByte();
+                if (type >= ColumnarFormat.ColumnType.values().length) {
+                    throw new IOException("corrupt columnar file");
+                }
+                types[column] = ColumnarFormat.ColumnType.values()[type];
+            }
+            rows = new ArrayList<>();
+            for (int rowCount; (rowCount = toInt(ColumnarFormat.readVarint(input))) > 0; ) {
+                readRowGroup(input, rowCount);
+            }
+        }
+    }
+
+    private void readRowGroup(DataInputStream input, int rowCount) throws IOException {
+        Object[][] group = new Object[rowCount][names.length];
+        for (int column = 0; column < names.length; column++) {
+            if (types[column] == ColumnarFormat.ColumnType.STRING) {
+                String[] dictionary = new String[toInt(ColumnarFormat.readVarint(input))];
+                for (int entry = 0; entry < dictionary.length; entry++) {
+                    dictionary[entry] = ColumnarFormat.readString(input);
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    long index = ColumnarFormat.readVarint(input);
+                    if (index >= dictionary.length) {
+                        throw new IOException("corrupt columnar file");
+                    }
+                    group[row][column] = dictionary[(int) index];
+                }
+            } else {
+                long value = 0;
+                for (int row = 0; row < rowCount; row++) {
+                    value += ColumnarFormat.readZigzag(input);
+                    group[row][column] = value;
+                }
+            }
+        }
+        for (Object[] row : group) {
+            rows.add(row);
+        }
+    }
+
+    private static int toInt(long value) throws IOException {
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("corrupt columnar file");
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return the names of the columns
+     */
+    public String[] getColumnNames() {
+        return names.clone();
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * @param row    index of the row
+     * @param column index of the column
+     * @return the value, a String or a Long depending on the type of the column
+     */
+    public Object getValue(int row, int column) {
+        return rows.get(row)[column];
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import com.github.oczarnecki.messageevaluator.analysis.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.github.oczarnecki.messageevaluator.cli.ColumnarFormat.ColumnType.LONG;
+import static com.github.oczarnecki.messageevaluator.cli.ColumnarFormat.ColumnType.STRING;
+
+/**
+ * Writes the results as three columnar files, {@value #HISTOGRAM_FILE}, {@value #CYCLE_FILE} and {@value #SENDER_FILE},
+ * with one row group per export. Bucket starts are written as seconds since the epoch.
+ *
+ * @see ColumnarFormat
+ */
+final class ColumnarResultWriter implements ResultWriter {
+    static final String HISTOGRAM_FILE = "histograms.col", CYCLE_FILE = "cycles.col", SENDER_FILE = "senders.col";
+
+    private static final ColumnarFormat.ColumnType[] HISTOGRAM_TYPES = {STRING, STRING, LONG, LONG},
+            CYCLE_TYPES = {STRING, STRING, STRING, LONG, LONG},
+            SENDER_TYPES = {STRING, STRING, STRING, LONG};
+
+    private final ColumnarWriter histograms;
+    private final ColumnarWriter cycles;
+    private final ColumnarWriter senders;
+
+    /**
+     * @param directory the directory to write the files to, which must exist
+     * @throws IOException if the files can not be created
+     */
+    ColumnarResultWriter(File directory) throws IOException {
+        histograms = new ColumnarWriter(new File(directory, HISTOGRAM_FILE), HISTOGRAM_COLUMNS, HISTOGRAM_TYPES);
+        cycles = new ColumnarWriter(new File(directory, CYCLE_FILE), CYCLE_COLUMNS, CYCLE_TYPES);
+        senders = new ColumnarWriter(new File(directory, SENDER_FILE), SENDER_COLUMNS, SENDER_TYPES);
+    }
+
+    @Override
+    public void write(ExportAnalysis analysis) throws IOException {
+        for (ExportAnalysis.ChatAnalysis chat : analysis.getChats()) {
+            Histogram histogram = chat.getHistogram();
+            for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+                histograms.set(0, analysis.getExportName());
+                histograms.set(1, chat.getName());
+                histograms.set(2, histogram.getBucketStart(bucket));
+                histograms.set(3, histogram.getCount(bucket));
+                histograms.endRow();
+            }
+            for (ExportAnalysis.Cycle cycle : ExportAnalysis.Cycle.values()) {
+                for (int position = 0; position < cycle.getLength(); position++) {
+                    cycles.set(0, analysis.getExportName());
+                    cycles.set(1, chat.getName());
+                    cycles.set(2, cycle.getName());
+                    cycles.set(3, position);
+                    cycles.set(4, chat.getCycleCount(cycle, position));
+                    cycles.endRow();
+                }
+            }
+            for (int sender = 0; sender < chat.getSenderCount(); sender++) {
+                senders.set(0, analysis.getExportName());
+                senders.set(1, chat.getName());
+                senders.set(2, chat.getSender(sender));
+                senders.set(3, chat.getMessageCount(sender));
+                senders.endRow();
+            }
+        }
+        histograms.endRowGroup();
+        cycles.endRowGroup();
+        senders.endRowGroup();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            histograms.close();
+        } finally {
+            try {
+                cycles.close();
+            } finally {
+                senders.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a table to a columnar file, row by row. Rows are buffered until {@link #endRowGroup()} writes them as a row
+ * group.
+ *
+ * @see ColumnarFormat
+ */
+final class ColumnarWriter implements Closeable {
+    private final DataOutputStream output;
+    private final ColumnarFormat.ColumnType[] types;
+
+    /**
+     * the values of the buffered rows per column, the dictionary indices for string columns
+     */
+    private final long[][] values;
+    private final List<Map<String, Integer>> dictionaries;
+    private final List<List<String>> dictionaryEntries;
+    private int rowCount;
+
+    /**
+     * @param file  the destination, which is overwritten
+     * @param names the names of the columns
+     * @param types the types of the columns
+     * @throws IOException if the file can not be written
+     */
+    ColumnarWriter(File file, String[] names, ColumnarFormat.ColumnType[] types) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.types = types.clone();
+        this.values = new long[types.length][16];
+        this.dictionaries = new ArrayList<>();
+        this.dictionaryEntries = new ArrayList<>();
+        for (int column = 0; column < types.length; column++) {
+            dictionaries.add(new HashMap<>());
+            dictionaryEntries.add(new ArrayList<>());
+        }
+
+        output.writeInt(ColumnarFormat.MAGIC);
+        output.writeInt(ColumnarFormat.VERSION);
+        ColumnarFormat.writeVarint(output, names.length);
+        for (int column = 0; column < names.length; column++) {
+            ColumnarFormat.writeString(output, names[column]);
+            output.writeByte(types[column].ordinal());
+        }
+    }
+
+    /**
+     * Sets a value of the current row.
+     *
+     * @param column index of a string column
+     * @param value  the value
+     */
+    void set(int column, String value) {
+        List<String> entries = dictionaryEntries.get(column);
+        Integer index = dictionaries.get(column).get(value);
+        if (index == null) {
+            index = entries.size();
+            dictionaries.get(column).put(value, index);
+            entries.add(value);
+        }
+        values[column][rowCount] = index;
+    }
+
+    /**
+     * Sets a value of the current row.
+     *
+     * @param column index of a long column
+     * @param value  the value
+     */
+    void set(int column, long value) {
+        values[column][rowCount] = value;
+    }
+
+    /**
+     * Finishes the current row, whose values must all have been set.
+     */
+    void endRow() {
+        rowCount++;
+        if (rowCount == values[0].length) {
+            for (int column = 0; column < values.length; column++) {
+                values[column] = Arrays.copyOf(values[column], 2 * rowCount);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered rows as a row group.
+     *
+     * @throws IOException if the file can not be written
+     */
+    void endRowGroup() throws IOException {
+        if (rowCount == 0) {
+            return;
+        }
+        ColumnarFormat.writeVarint(output, rowCount);
+        for (int column = 0; column < types.length; column++) {
+            if (types[column] == ColumnarFormat.ColumnType.STRING) {
+                List<String> entries = dictionaryEntries.get(column);
+                ColumnarFormat.writeVarint(output, entries.size());
+                for (String entry : entries) {
+                    ColumnarFormat.writeString(output, entry);
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    ColumnarFormat.writeVarint(output, values[column][row]);
+                }
+                entries.clear();
+                dictionaries.get(column).clear();
+            } else {
+                long previous = 0;
+                for (int row = 0; row < rowCount; row++) {
+                    ColumnarFormat.writeZigzag(output, values[column][row] - previous);
+                    previous = values[column][row];
+                }
+            }
+        }
+        rowCount = 0;
+    }
+
+    /**
+     * Writes the buffered rows and closes the file.
+     *
+     * @throws IOException if the file can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try (DataOutputStream closed = output) {
+            endRowGroup();
+            ColumnarFormat.writeVarint(closed, 0);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import com.github.oczarnecki.messageevaluator.analysis.Histogram;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Writes the results as three CSV files, {@value #HISTOGRAM_FILE}, {@value #CYCLE_FILE} and {@value #SENDER_FILE}, as
+ * described by RFC 4180. Bucket starts are written as local date times like in the exports.
+ */
+final class CsvResultWriter implements ResultWriter {
+    static final String HISTOGRAM_FILE = "histograms.csv", CYCLE_FILE = "cycles.csv", SENDER_FILE = "senders.csv";
+
+    private final Writer histograms;
+    private final Writer cycles;
+    private final Writer senders;
+
+    /**
+     * @param directory the directory to write the files to, which must exist
+     * @throws IOException if the files can not be created
+     */
+    CsvResultWriter(File directory) throws IOException {
+        histograms = open(new File(directory, HISTOGRAM_FILE), HISTOGRAM_COLUMNS);
+        cycles = open(new File(directory, CYCLE_FILE), CYCLE_COLUMNS);
+        senders = open(new File(directory, SENDER_FILE), SENDER_COLUMNS);
+    }
+
+    private static Writer open(File file, String[] columns) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        writer.write(String.join(",", columns));
+        writer.write("\r\n");
+        return writer;
+    }
+
+    @Override
+    public void write(ExportAnalysis analysis) throws IOException {
+        String export = quote(analysis.getExportName());
+        for (ExportAnalysis.ChatAnalysis chat : analysis.getChats()) {
+            String chatPrefix = export + ',' + quote(chat.getName()) + ',';
+            Histogram histogram = chat.getHistogram();
+            for (int bucket = 0; bucket < histogram.getBucketCount(); bucket++) {
+                histograms.write(chatPrefix);
+                histograms.write(LocalDateTime.ofEpochSecond(histogram.getBucketStart(bucket), 0, ZoneOffset.UTC)
+                        .toString());
+                histograms.write(',');
+                histograms.write(Integer.toString(histogram.getCount(bucket)));
+                histograms.write("\r\n");
+            }
+            for (ExportAnalysis.Cycle cycle : ExportAnalysis.Cycle.values()) {
+                for (int position = 0; position < cycle.getLength(); position++) {
+                    cycles.write(chatPrefix);
+                    cycles.write(cycle.getName());
+                    cycles.write(',');
+                    cycles.write(Integer.toString(position));
+                    cycles.write(',');
+                    cycles.write(Integer.toString(chat.getCycleCount(cycle, position)));
+                    cycles.write("\r\n");
+                }
+            }
+            for (int sender = 0; sender < chat.getSenderCount(); sender++) {
+                senders.write(chatPrefix);
+                senders.write(quote(chat.getSender(sender)));
+                senders.write(',');
+                senders.write(Integer.toString(chat.getMessageCount(sender)));
+                senders.write("\r\n");
+            }
+        }
+    }
+
+    /**
+     * @return the value, enclosed in double quotes if it contains special characters
+     */
+    static String quote(String value) {
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            histograms.close();
+        } finally {
+            try {
+                cycles.close();
+            } finally {
+                senders.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import com.github.oczarnecki.messageevaluator.analysis.Aggregates;
+import com.github.oczarnecki.messageevaluator.analysis.Aggregation;
+import com.github.oczarnecki.messageevaluator.analysis.EpochCalendar;
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.analysis.Histogram;
+import com.github.oczarnecki.messageevaluator.analysis.SenderStatistics;
+import com.github.oczarnecki.messageevaluator.analysis.TimeIndex;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramStreamImporter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The results of analysing a single export: the histogram, the cyclic message counts and the message count per sender
+ * of every chat. Only the results are kept, the messages are dropped once they have been analysed.
+ */
+final class ExportAnalysis {
+    private final String exportName;
+    private final List<ChatAnalysis> chats;
+
+    private ExportAnalysis(String exportName, List<ChatAnalysis> chats) {
+        this.exportName = exportName;
+        this.chats = chats;
+    }
+
+    /**
+     * Imports and analyses an export.
+     *
+     * @param exportFile  the telegram export
+     * @param granularity the granularity of the histograms
+     * @return the results
+     * @throws ImportException when the data are malformed or the file can not be accessed
+     */
+    static ExportAnalysis analyse(File exportFile, Granularity granularity) throws ImportException {
+        List<ChatAnalysis> chats = new ArrayList<>();
+        for (TelegramChat chat : new TelegramStreamImporter(exportFile).importChats(new SenderDictionary())) {
+            chats.add(new ChatAnalysis(chat, granularity));
+        }
+        return new ExportAnalysis(exportFile.getPath(), chats);
+    }
+
+    /**
+     * @return the path of the export, as given on the command line
+     */
+    String getExportName() {
+        return exportName;
+    }
+
+    /**
+     * @return the results of the chats, in the order of the export
+     */
+    List<ChatAnalysis> getChats() {
+        return Collections.unmodifiableList(chats);
+    }
+
+    /**
+     * The cumulative message counts which are written for every chat, by the position within a cycle. Positions start
+     * at 0, which is midnight, monday or january, and hours of the week count from midnight of monday.
+     */
+    enum Cycle {
+        HOUR_OF_DAY(EpochCalendar.HOURS_PER_DAY),
+        DAY_OF_WEEK(EpochCalendar.DAYS_PER_WEEK),
+        MONTH_OF_YEAR(EpochCalendar.MONTHS_PER_YEAR),
+        HOUR_OF_WEEK(EpochCalendar.DAYS_PER_WEEK * EpochCalendar.HOURS_PER_DAY);
+
+        /**
+         * the aggregations computing all cycles
+         */
+        private static final Set<Aggregation> AGGREGATIONS = EnumSet.of(Aggregation.HOUR_OF_DAY,
+                Aggregation.DAY_OF_WEEK, Aggregation.MONTH_OF_YEAR, Aggregation.WEEK_HEATMAP);
+
+        private final int length;
+
+        Cycle(int length) {
+            this.length = length;
+        }
+
+        /**
+         * @return the number of positions of the cycle
+         */
+        int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the name of the cycle in the results
+         */
+        String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        private int getCount(Aggregates aggregates, int position) {
+            switch (this) {
+                case HOUR_OF_DAY:
+                    return aggregates.getHourOfDayCount(position);
+                case DAY_OF_WEEK:
+                    return aggregates.getDayOfWeekCount(position);
+                case MONTH_OF_YEAR:
+                    return aggregates.getMonthOfYearCount(position);
+                default:
+                    return aggregates.getHeatmapCount(position / EpochCalendar.HOURS_PER_DAY,
+                            position % EpochCalendar.HOURS_PER_DAY);
+            }
+        }
+    }
+
+    /**
+     * The results of analysing a single chat.
+     */
+    static final class ChatAnalysis {
+        private final String name;
+        private final Histogram histogram;
+        private final Aggregates cycles;
+        private final SenderStatistics senders;
+
+        ChatAnalysis(TelegramChat chat, Granularity granularity) {
+            name = chat.getName();
+            histogram = new TimeIndex(chat).histogram(granularity, 1);
+            cycles = Aggregates.of(chat, Cycle.AGGREGATIONS);
+            senders = SenderStatistics.of(chat);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Histogram getHistogram() {
+            return histogram;
+        }
+
+        /**
+         * @param cycle    the cycle
+         * @param position the position within the cycle, from 0 to its length, exclusive
+         * @return the number of messages sent at the position of any cycle
+         */
+        int getCycleCount(Cycle cycle, int position) {
+            return cycle.getCount(cycles, position);
+        }
+
+        /**
+         * @return the number of distinct senders of the chat
+         */
+        int getSenderCount() {
+            return senders.getSenderCount();
+        }
+
+        String getSender(int sender) {
+            return senders.getSender(sender);
+        }
+
+        int getMessageCount(int sender) {
+            return senders.getMessageCount(sender);
+        }
+    }
+}
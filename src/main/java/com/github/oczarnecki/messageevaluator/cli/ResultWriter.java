@@ -0,0 +1,32 @@
+package com.github.oczarnecki.messageevaluator.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes the results of analysed exports, as soon as each export has been analysed. Implementations write three tables,
+ * one row per histogram bucket, one row per position of every {@link ExportAnalysis.Cycle cycle} and one row per
+ * sender of each chat, and need not be thread safe.
+ */
+interface ResultWriter extends Closeable {
+    /**
+     * the names of the columns of the histogram table
+     */
+    String[] HISTOGRAM_COLUMNS = {"export", "chat", "bucket_start", "messages"};
+
+    /**
+     * the names of the columns of the cycle table
+     */
+    String[] CYCLE_COLUMNS = {"export", "chat", "cycle", "position", "messages"};
+
+    /**
+     * the names of the columns of the sender table
+     */
+    String[] SENDER_COLUMNS = {"export", "chat", "sender", "messages"};
+
+    /**
+     * @param analysis the results of an export
+     * @throws IOException if the results can not be written
+     */
+    void write(ExportAnalysis analysis) throws IOException;
+}
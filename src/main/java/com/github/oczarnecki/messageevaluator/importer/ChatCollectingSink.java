@@ -0,0 +1,65 @@
+package com.github.oczarnecki.messageevaluator.importer;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ContentFile;
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TextEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects all messages passed to it into chats. Collectors of different sources may share a
+ * {@link SenderDictionary}, so that the chats of all sources land in one model.
+ */
+public final class ChatCollectingSink implements MessageSink {
+    private final List<TelegramChat> chats = new ArrayList<>();
+    private final SenderDictionary senders;
+    private final ContentFile contentFile;
+    private TelegramChat.Builder chat;
+
+    /**
+     * @param senders the dictionary by which sender names are interned
+     */
+    public ChatCollectingSink(SenderDictionary senders) {
+        this(senders, null);
+    }
+
+    /**
+     * @param senders     the dictionary by which sender names are interned
+     * @param contentFile the file holding the contents of the chats, or null to keep them on the heap
+     */
+    public ChatCollectingSink(SenderDictionary senders, ContentFile contentFile) {
+        this.senders = senders;
+        this.contentFile = contentFile;
+    }
+
+    /**
+     * @return the chats which have been finished so far, in the order they were passed to this collector
+     */
+    public List<TelegramChat> getChats() {
+        return Collections.unmodifiableList(chats);
+    }
+
+    @Override
+    public void chatStarted(String name) {
+        chat = new TelegramChat.Builder(name, senders, contentFile);
+    }
+
+    @Override
+    public void messageParsed(long epochSecond, String sender, CharSequence content) {
+        chat.add(epochSecond, sender, content);
+    }
+
+    @Override
+    public void messageParsed(long epochSecond, String sender, CharSequence content, List<TextEntity> entities) {
+        chat.add(epochSecond, sender, content, entities);
+    }
+
+    @Override
+    public void chatFinished() {
+        chats.add(chat.build());
+        chat = null;
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.oczarnecki.messageevaluator.importer;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens sources which may be compressed. The compression is recognized by the first bytes of a source, not by its name:
+ * <ul>
+ * <li>gzip streams are decompressed,</li>
+ * <li>zip archives, like the archives of telegram exports, are searched for their first file named
+ * {@value #ARCHIVED_EXPORT_NAME}, which is decompressed,</li>
+ * <li>zstd streams are recognized, but rejected, since decompressing them requires a native library,</li>
+ * <li>all other sources are read as they are.</li>
+ * </ul>
+ * Compressed sources are decompressed on a separate thread, ahead of the thread parsing them, so that decompression and
+ * parsing overlap.
+ */
+public final class CompressedSources {
+    /**
+     * the name of the file holding the messages within the archive of a telegram export
+     */
+    public static final String ARCHIVED_EXPORT_NAME = "result.json";
+
+    private static final String DECOMPRESSION_THREAD_NAME = "export-decompression";
+    private static final String[] COMPRESSION_EXTENSIONS = {".gz", ".zst"};
+    private static final String ARCHIVE_EXTENSION = ".zip";
+
+    private static final int GZIP_MAGIC = 0x1f8b;
+    private static final int ZIP_MAGIC = 0x504b0304;
+    private static final int ZSTD_MAGIC = 0x28b52ffd;
+    private static final int MAGIC_LENGTH = 4;
+
+    private CompressedSources() {
+    }
+
+    /**
+     * @param sourceFile a source file, which may be compressed
+     * @return a stream of the decompressed data of the file
+     * @throws ImportException if the file can not be opened, or is a compressed file which can not be decompressed
+     * @see #decompress(InputStream)
+     */
+    public static InputStream open(File sourceFile) throws ImportException {
+        InputStream input;
+        try {
+            input = new FileInputStream(sourceFile);
+        } catch (FileNotFoundException exception) {
+            throw new ImportException("source file does not exist, is not readable or is no file", exception);
+        }
+        return decompress(input);
+    }
+
+    /**
+     * @param input the data of a source, which may be compressed
+     * @return a stream of the decompressed data, which closes the input when it is closed
+     * @throws ImportException if the input can not be read, or is compressed and can not be decompressed, in which case
+     *                         it is closed
+     */
+    public static InputStream decompress(InputStream input) throws ImportException {
+        BufferedInputStream buffered = new BufferedInputStream(input, ReadAheadInputStream.CHUNK_SIZE);
+        try {
+            int magic = peekMagic(buffered);
+            if (magic >>> 16 == GZIP_MAGIC) {
+                return new ReadAheadInputStream(new GZIPInputStream(buffered, ReadAheadInputStream.CHUNK_SIZE),
+                        DECOMPRESSION_THREAD_NAME);
+            } else if (magic == ZIP_MAGIC) {
+                return new ReadAheadInputStream(archivedExport(new ZipInputStream(buffered)),
+                        DECOMPRESSION_THREAD_NAME);
+            } else if (magic == ZSTD_MAGIC) {
+                buffered.close();
+                throw new ImportException("zstd compressed sources are not supported, please decompress them first");
+            }
+            return buffered;
+        } catch (IOException cause) {
+            closeQuietly(buffered);
+            throw new ImportException("IOException while reading the source", cause);
+        }
+    }
+
+    /**
+     * @param fileName the name of a source file, which may be compressed
+     * @return the name of the file within, by which its importer is chosen
+     */
+    public static String uncompressedName(String fileName) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        if (lowerCaseName.endsWith(ARCHIVE_EXTENSION)) {
+            return ARCHIVED_EXPORT_NAME;
+        }
+        for (String extension : COMPRESSION_EXTENSIONS) {
+            if (lowerCaseName.endsWith(extension)) {
+                return fileName.substring(0, fileName.length() - extension.length());
+            }
+        }
+        return fileName;
+    }
+
+    /**
+     * @return the first four bytes of the stream as big endian number, without consuming them
+     */
+    private static int peekMagic(BufferedInputStream input) throws IOException {
+        input.mark(MAGIC_LENGTH);
+        int magic = 0;
+        for (int index = 0; index < MAGIC_LENGTH; index++) {
+            int read = input.read();
+            magic = magic << 8 | (read < 0 ? 0 : read);
+        }
+        input.reset();
+        return magic;
+    }
+
+    /**
+     * Skips the entries of an archive up to the telegram export.
+     *
+     * @return the archive, positioned at the start of the export
+     * @throws ImportException if the archive contains no export, in which case it is closed
+     */
+    private static ZipInputStream archivedExport(ZipInputStream archive) throws IOException, ImportException {
+        for (ZipEntry entry = archive.getNextEntry(); entry != null; entry = archive.getNextEntry()) {
+            String name = entry.getName();
+            if (!entry.isDirectory() && (name.equals(ARCHIVED_EXPORT_NAME)
+                    || name.endsWith('/' + ARCHIVED_EXPORT_NAME))) {
+                return archive;
+            }
+        }
+        archive.close();
+        throw new ImportException("the archive contains no " + ARCHIVED_EXPORT_NAME);
+    }
+
+    private static void closeQuietly(InputStream input) {
+        try {
+            input.close();
+        } catch (IOException ignored) {
+            // the failure of reading is reported instead
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.oczarnecki.messageevaluator.importer;
+
+import com.github.oczarnecki.messageevaluator.importer.mbox.MboxImporter;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessageImporter;
+import com.github.oczarnecki.messageevaluator.importer.whatsapp.WhatsAppImporter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * The available {@link MessageImporter}s: the built-in importers for telegram exports, WhatsApp chat exports and
+ * mailboxes, followed by the importers registered as services in {@code META-INF/services}.
+ */
+public final class Importers {
+    private static final List<MessageImporter> IMPORTERS = loadImporters();
+
+    private Importers() {
+    }
+
+    private static List<MessageImporter> loadImporters() {
+        List<MessageImporter> importers = new ArrayList<>();
+        importers.add(new TelegramMessageImporter());
+        importers.add(new WhatsAppImporter());
+        importers.add(new MboxImporter());
+        ServiceLoader.load(MessageImporter.class).forEach(importers::add);
+        return Collections.unmodifiableList(importers);
+    }
+
+    /**
+     * @return all available importers
+     */
+    public static List<MessageImporter> all() {
+        return IMPORTERS;
+    }
+
+    /**
+     * @param file a source file, which may be compressed
+     * @return the first importer accepting the file, or the file within if it is compressed
+     * @see CompressedSources#uncompressedName(String)
+     * @throws ImportException if no importer accepts the file
+     */
+    public static MessageImporter forFile(File file) throws ImportException {
+        String fileName = CompressedSources.uncompressedName(file.getName());
+        for (MessageImporter importer : IMPORTERS) {
+            if (importer.accepts(fileName)) {
+                return importer;
+            }
+        }
+        throw new ImportException("no importer accepts the file " + file.getName());
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.oczarnecki.messageevaluator.importer;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the lines of a UTF-8 encoded channel through a single byte buffer. Line breaks are searched among the bytes,
+ * which is safe since the byte of a line feed never occurs within a multi-byte character, and only the bytes of a line
+ * are decoded, into a character buffer which is reused for all lines. Thereby scanning creates no objects per line.
+ * Malformed input is replaced instead of failing the import.
+ */
+public final class LineScanner {
+    /**
+     * Receives the lines of a channel.
+     */
+    public interface LineConsumer {
+        /**
+         * @param line the line without its line break, which is only valid during the call
+         * @throws ImportException if the line is malformed
+         */
+        void accept(CharSequence line) throws ImportException;
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder;
+    private ByteBuffer bytes;
+    private CharBuffer line;
+
+    /**
+     * @param channel the channel to read, which is not closed by the scanner
+     */
+    public LineScanner(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        this.line = CharBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * Passes every line of the channel to the consumer. Lines may be terminated by a line feed or by a carriage return
+     * followed by a line feed. A byte order mark at the start of the channel is skipped.
+     *
+     * @param consumer the receiver of the lines
+     * @throws ImportException if the channel can not be read or the consumer fails
+     */
+    public void scan(LineConsumer consumer) throws ImportException {
+        boolean firstLine = true;
+        try {
+            while (channel.read(bytes) >= 0) {
+                ((Buffer) bytes).flip();
+                int start = bytes.position();
+                for (int index = start; index < bytes.limit(); index++) {
+                    if (bytes.get(index) == '\n') {
+                        accept(start, index, firstLine, consumer);
+                        firstLine = false;
+                        start = index + 1;
+                    }
+                }
+                ((Buffer) bytes).position(start);
+                bytes.compact();
+                if (!bytes.hasRemaining()) {
+                    // the buffer holds a single line which is longer than the buffer
+                    ByteBuffer larger = ByteBuffer.allocate(2 * bytes.capacity());
+                    ((Buffer) bytes).flip();
+                    larger.put(bytes);
+                    bytes = larger;
+                }
+            }
+        } catch (IOException cause) {
+            throw new ImportException("IOException while reading the source", cause);
+        }
+        ((Buffer) bytes).flip();
+        if (bytes.hasRemaining()) {
+            accept(bytes.position(), bytes.limit(), firstLine, consumer);
+        }
+    }
+
+    /**
+     * Decodes the bytes from start to end of the byte buffer and passes them to the consumer.
+     */
+    private void accept(int start, int end, boolean firstLine, LineConsumer consumer) throws ImportException {
+        if (end > start && bytes.get(end - 1) == '\r') {
+            end--;
+        }
+        ByteBuffer lineBytes = bytes.duplicate();
+        ((Buffer) lineBytes).limit(end);
+        ((Buffer) lineBytes).position(start);
+        if (line.capacity() < end - start) {
+            line = CharBuffer.allocate(end - start);
+        }
+        ((Buffer) line).clear();
+        decoder.reset();
+        CoderResult result = decoder.decode(lineBytes, line, true);
+        if (!result.isUnderflow()) {
+            // a line of n bytes decodes to at most n characters
+            throw new IllegalStateException(result.toString());
+        }
+        decoder.flush(line);
+        ((Buffer) line).flip();
+        if (firstLine && line.hasRemaining() && line.get(0) == '\uFEFF') {
+            ((Buffer) line).position(1);
+        }
+        consumer.accept(line);
+    }
+}
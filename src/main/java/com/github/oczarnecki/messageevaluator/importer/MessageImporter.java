@@ -0,0 +1,33 @@
+package com.github.oczarnecki.messageevaluator.importer;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+
+import java.io.InputStream;
+
+/**
+ * Imports the messages of one kind of source, like a telegram export or a mailbox, into a {@link MessageSink}.
+ * Importers are stateless and may be used by several threads at once, each importing a different source. Importers
+ * besides the built-in ones are found by {@link java.util.ServiceLoader}, see {@link Importers}.
+ */
+public interface MessageImporter {
+    /**
+     * @return the name of the kind of source, for example "Telegram"
+     */
+    String getName();
+
+    /**
+     * @param fileName the name of a file
+     * @return true, if the file is probably a source of this importer, judged by its name
+     */
+    boolean accepts(String fileName);
+
+    /**
+     * Passes all chats and messages of a source to a sink. The stream is closed afterwards.
+     *
+     * @param sourceName the name of the source file, which may be used to name the chats
+     * @param input      the content of the source
+     * @param sink       the receiver of the chats and messages
+     * @throws ImportException if the source can not be read or is malformed
+     */
+    void importMessages(String sourceName, InputStream input, MessageSink sink) throws ImportException;
+}
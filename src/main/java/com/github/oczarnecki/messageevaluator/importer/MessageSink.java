@@ -0,0 +1,49 @@
+package com.github.oczarnecki.messageevaluator.importer;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.TextEntity;
+
+import java.util.List;
+
+/**
+ * Receives the chats and messages of any source one at a time, while they are read by a {@link MessageImporter}. For
+ * every chat, {@link #chatStarted(String)} is called once, followed by a call to
+ * {@link #messageParsed(long, String, CharSequence)} for every message of the chat and finally by
+ * {@link #chatFinished()}. No objects are created per message, the content is passed in a buffer of the importer.
+ */
+public interface MessageSink {
+    /**
+     * Called when the messages of a new chat are about to be read.
+     *
+     * @param name name of the chat
+     */
+    void chatStarted(String name);
+
+    /**
+     * Called for every message of the current chat.
+     *
+     * @param epochSecond the local date and time at which the message was sent, in seconds since the epoch as if it
+     *                    was UTC
+     * @param sender      name of the sender
+     * @param content     text content of the message, which is only valid during the call
+     */
+    void messageParsed(long epochSecond, String sender, CharSequence content);
+
+    /**
+     * Called instead of {@link #messageParsed(long, String, CharSequence)} for every message of the current chat, if
+     * the importer keeps the text entities of the messages. By default, the entities are ignored.
+     *
+     * @param epochSecond the local date and time at which the message was sent, in seconds since the epoch as if it
+     *                    was UTC
+     * @param sender      name of the sender
+     * @param content     text content of the message, which is only valid during the call
+     * @param entities    text entities of the message, which are only valid during the call
+     */
+    default void messageParsed(long epochSecond, String sender, CharSequence content, List<TextEntity> entities) {
+        messageParsed(epochSecond, sender, content);
+    }
+
+    /**
+     * Called after the last message of the current chat has been read.
+     */
+    void chatFinished();
+}
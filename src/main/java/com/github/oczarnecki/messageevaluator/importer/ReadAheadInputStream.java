@@ -0,0 +1,150 @@
+package com.github.oczarnecki.messageevaluator.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a source on a separate thread into a bounded queue of chunks, so that an expensive source, like a decompressing
+ * stream, is read while the previous chunks are being parsed. At most {@link #CHUNKS_IN_FLIGHT} chunks are read ahead,
+ * which bounds the memory of the stream. Failures of the source are rethrown to the consumer once it has read the
+ * chunks before them. Closing the stream stops the reading thread, which then closes the source.
+ */
+final class ReadAheadInputStream extends InputStream {
+    static final int CHUNK_SIZE = 1 << 16;
+    static final int CHUNKS_IN_FLIGHT = 16;
+
+    /**
+     * marks the end of the source in the queue, or its failure if {@link #failure} is set
+     */
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks;
+    private final Thread reader;
+    private volatile IOException failure;
+
+    private byte[] chunk;
+    private int chunkLength;
+    private int position;
+    private boolean closed;
+
+    /**
+     * Starts reading the source.
+     *
+     * @param source     the stream to read ahead, which is closed by the reading thread
+     * @param threadName the name of the reading thread
+     */
+    ReadAheadInputStream(InputStream source, String threadName) {
+        this.chunks = new ArrayBlockingQueue<>(CHUNKS_IN_FLIGHT);
+        this.reader = new Thread(() -> readAhead(source), threadName);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readAhead(InputStream source) {
+        try (InputStream input = source) {
+            while (true) {
+                byte[] buffer = new byte[CHUNK_SIZE];
+                int length = fill(input, buffer);
+                if (length == 0) {
+                    break;
+                }
+                // the last chunk is trimmed, so that the length of every chunk is the length of its array
+                chunks.put(length == CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, length));
+            }
+        } catch (IOException exception) {
+            failure = exception;
+        } catch (InterruptedException exception) {
+            // closed by the consumer, which does not wait for the end marker
+            return;
+        }
+        try {
+            chunks.put(END);
+        } catch (InterruptedException ignored) {
+            // closed by the consumer
+        }
+    }
+
+    /**
+     * @return the number of bytes read into the buffer, which is only less than its length at the end of the source
+     */
+    private static int fill(InputStream input, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = input.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int read = Math.min(length, chunkLength - position);
+        System.arraycopy(chunk, position, buffer, offset, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return chunk == null ? 0 : chunkLength - position;
+    }
+
+    /**
+     * Makes sure that the current chunk has unread bytes, waiting for the reading thread if necessary.
+     *
+     * @return false at the end of the source
+     * @throws IOException if the source failed or the stream has been closed
+     */
+    private boolean nextChunk() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        while (chunk == null || position == chunkLength) {
+            if (chunk == END) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return false;
+            }
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException cause) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the source");
+            }
+            chunkLength = chunk.length;
+            position = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            reader.interrupt();
+            chunks.clear();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.oczarnecki.messageevaluator.importer.mbox;
+
+import com.github.oczarnecki.messageevaluator.importer.LineScanner;
+import com.github.oczarnecki.messageevaluator.importer.MessageImporter;
+import com.github.oczarnecki.messageevaluator.importer.MessageSink;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.instrumentation.DropReason;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Imports mailboxes in the mbox format, which hold the e-mails of a mailbox as a single chat named after the file. Each
+ * mail starts with a line beginning with "From " and consists of its header, an empty line and its body. The sender is
+ * the display name of the From header, or its address if it has no display name. The timestamp is the local date and
+ * time of the Date header, ignoring its zone, like the local times of telegram exports. Escaped body lines starting
+ * with "&gt;From " are unescaped, otherwise the body is taken as it is, without decoding MIME parts. Mails without a
+ * From header, and mails without a Date header or with one which can not be parsed, are dropped and counted (see
+ * {@link Instrumentation#messageDropped(DropReason)}).
+ */
+public final class MboxImporter implements MessageImporter {
+    private static final String[] FILE_EXTENSIONS = {".mbox", ".mbx"};
+
+    @Override
+    public String getName() {
+        return "mbox";
+    }
+
+    @Override
+    public boolean accepts(String fileName) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        for (String extension : FILE_EXTENSIONS) {
+            if (lowerCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void importMessages(String sourceName, InputStream input, MessageSink sink) throws ImportException {
+        try (ReadableByteChannel channel = Channels.newChannel(input)) {
+            sink.chatStarted(chatName(sourceName));
+            MailParser parser = new MailParser(sink);
+            new LineScanner(channel).scan(parser::parseLine);
+            parser.finishMail();
+            sink.chatFinished();
+        } catch (IOException cause) {
+            throw new ImportException("IOException while closing the source", cause);
+        }
+    }
+
+    private static String chatName(String fileName) {
+        int extension = fileName.lastIndexOf('.');
+        return extension > 0 ? fileName.substring(0, extension) : fileName;
+    }
+
+    /**
+     * @param date the value of a Date header, like "Sat, 24 Dec 2016 06:00:00 +0100 (CET)"
+     * @return the local date and time in seconds since the epoch, as if it was UTC, or {@link Long#MIN_VALUE} if the
+     * string is not a valid date
+     */
+    static long parseDate(String date) {
+        String withoutComment = date;
+        int comment = date.indexOf('(');
+        if (comment >= 0) {
+            withoutComment = date.substring(0, comment);
+        }
+        try {
+            return LocalDateTime.parse(withoutComment.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException invalidDate) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * @param from the value of a From header, like "Name &lt;address&gt;", "address (Name)" or "address"
+     * @return the display name, or the address if there is none
+     */
+    static String senderName(String from) {
+        String value = from.trim();
+        int address = value.indexOf('<');
+        if (address > 0) {
+            String name = value.substring(0, address).trim();
+            if (name.length() >= 2 && name.charAt(0) == '"' && name.charAt(name.length() - 1) == '"') {
+                name = name.substring(1, name.length() - 1);
+            }
+            if (!name.isEmpty()) {
+                return name;
+            }
+        }
+        if (address >= 0) {
+            int end = value.indexOf('>', address);
+            return value.substring(address + 1, end < 0 ? value.length() : end).trim();
+        }
+        int comment = value.indexOf('(');
+        int commentEnd = value.lastIndexOf(')');
+        if (comment > 0 && commentEnd > comment + 1) {
+            return value.substring(comment + 1, commentEnd).trim();
+        }
+        return value;
+    }
+
+    /**
+     * Parses the lines of a mailbox. The mail being read is kept until the line starting the next mail has been read.
+     */
+    private static final class MailParser {
+        private final MessageSink sink;
+        private final StringBuilder body = new StringBuilder();
+        private final StringBuilder header = new StringBuilder();
+        private boolean inMail, inHeader, previousLineEmpty = true;
+        private String from, date;
+
+        MailParser(MessageSink sink) {
+            this.sink = sink;
+        }
+
+        void parseLine(CharSequence line) {
+            if (previousLineEmpty && startsWith(line, 0, "From ")) {
+                finishMail();
+                inMail = inHeader = true;
+            } else if (inHeader) {
+                parseHeaderLine(line);
+            } else if (inMail) {
+                if (body.length() > 0 || line.length() > 0) {
+                    if (body.length() > 0) {
+                        body.append('\n');
+                    }
+                    int start = 0;
+                    while (start < line.length() && line.charAt(start) == '>') {
+                        start++;
+                    }
+                    body.append(line, start > 0 && startsWith(line, start, "From ") ? 1 : 0, line.length());
+                }
+            }
+            previousLineEmpty = line.length() == 0;
+        }
+
+        /**
+         * Collects the fields of the header, joining folded lines.
+         */
+        private void parseHeaderLine(CharSequence line) {
+            if (line.length() > 0 && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+                header.append(' ').append(line, 1, line.length());
+                return;
+            }
+            finishHeaderField();
+            if (line.length() == 0) {
+                inHeader = false;
+            } else {
+                header.append(line);
+            }
+        }
+
+        private void finishHeaderField() {
+            if (header.length() > 0) {
+                int colon = header.indexOf(":");
+                if (colon > 0) {
+                    String name = header.substring(0, colon).trim();
+                    if (name.equalsIgnoreCase("From") && from == null) {
+                        from = header.substring(colon + 1);
+                    } else if (name.equalsIgnoreCase("Date") && date == null) {
+                        date = header.substring(colon + 1);
+                    }
+                }
+                header.setLength(0);
+            }
+        }
+
+        void finishMail() {
+            finishHeaderField();
+            if (inMail) {
+                long epochSecond = date == null ? Long.MIN_VALUE : parseDate(date);
+                if (from == null) {
+                    Instrumentation.get().messageDropped(DropReason.NO_SENDER);
+                } else if (epochSecond == Long.MIN_VALUE) {
+                    Instrumentation.get().messageDropped(DropReason.INVALID_DATE);
+                } else {
+                    while (body.length() > 0 && Character.isWhitespace(body.charAt(body.length() - 1))) {
+                        body.setLength(body.length() - 1);
+                    }
+                    sink.messageParsed(epochSecond, senderName(from), body);
+                }
+            }
+            inMail = inHeader = false;
+            from = date = null;
+            body.setLength(0);
+        }
+
+        private static boolean startsWith(CharSequence line, int start, String prefix) {
+            if (line.length() - start < prefix.length()) {
+                return false;
+            }
+            for (int index = 0; index < prefix.length(); index++) {
+                if (line.charAt(start + index) != prefix.charAt(index)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The bytes of a single chat, which are written in chunks by a {@link ChatSplitter} while the thread parsing the chat
+ * reads them. Only a few chunks are buffered, so that a chat is never held in memory as a whole: reading blocks until
+ * more bytes have been written, and writing blocks while the buffer is full.
+ * <p>
+ * Slices are written by one thread and read by another one.
+ */
+final class ChatSlice extends InputStream {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final int capacity;
+    private final Deque<ByteBuffer> chunks;
+    /**
+     * the chunk currently being read, only accessed by the reading thread
+     */
+    private ByteBuffer chunk = EMPTY;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * @param capacity the number of chunks which may be written but not yet read
+     */
+    ChatSlice(int capacity) {
+        this.capacity = capacity;
+        this.chunks = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Appends a chunk of bytes, and waits while the buffer is full. Chunks written after the reader closed the slice
+     * are dropped.
+     *
+     * @param bytes  the array holding the chunk, which is owned by the slice afterwards
+     * @param length the number of bytes of the chunk
+     * @throws InterruptedIOException if the writing thread is interrupted while waiting
+     */
+    synchronized void write(byte[] bytes, int length) throws InterruptedIOException {
+        while (chunks.size() == capacity && !closed) {
+            await();
+        }
+        if (!closed) {
+            chunks.addLast(ByteBuffer.wrap(bytes, 0, length));
+            notifyAll();
+        }
+    }
+
+    /**
+     * Marks the end of the slice, after which the reader reaches the end of the stream.
+     */
+    synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextChunk() ? chunk.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int count = Math.min(length, chunk.remaining());
+        chunk.get(buffer, offset, count);
+        return count;
+    }
+
+    /**
+     * Makes sure that the current chunk has bytes left, by waiting for the next chunk if necessary.
+     *
+     * @return false, if the end of the slice has been reached
+     */
+    private boolean nextChunk() throws IOException {
+        if (chunk.hasRemaining()) {
+            return true;
+        }
+        synchronized (this) {
+            while (!chunk.hasRemaining()) {
+                while (chunks.isEmpty() && !finished && !closed) {
+                    await();
+                }
+                if (closed) {
+                    throw new IOException("stream closed");
+                }
+                if (chunks.isEmpty()) {
+                    return false;
+                }
+                chunk = chunks.removeFirst();
+                notifyAll();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Releases the buffered chunks and lets the writer drop the remaining ones.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        chunks.clear();
+        notifyAll();
+    }
+
+    private void await() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the bytes of a chat");
+        }
+    }
+}
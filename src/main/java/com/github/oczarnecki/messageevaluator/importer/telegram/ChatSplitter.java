@@ -0,0 +1,324 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits the bytes of a telegram export at chat boundaries, without parsing them. The splitter only tracks strings and
+ * the nesting of objects and arrays, which is much cheaper than parsing and allows the chats to be parsed in parallel
+ * afterwards. Content outside of the chat list is only checked for balanced structure. The bytes of every chat are
+ * passed on in chunks while they are split, so that even chats of several gigabytes are never held in memory whole.
+ * <p>
+ * Instances are not thread safe.
+ */
+final class ChatSplitter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * number of chunks of a chat which may be split but not yet parsed
+     */
+    private static final int CHUNKS_PER_SLICE = 4;
+    private static final int END_OF_STREAM = -1;
+
+    private static final byte[] CHATS_KEY = TelegramImporter.CHATS_FIELD.getBytes(StandardCharsets.UTF_8),
+            CHATS_LIST_KEY = TelegramImporter.CHATS_LIST_FIELD.getBytes(StandardCharsets.UTF_8);
+
+    private final InputStream input;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    /**
+     * the chat currently being read, and the bytes of it which have not been written to the slice yet
+     */
+    private ChatSlice slice;
+    private byte[] chunk;
+    private int chunkLength;
+
+    /**
+     * the bytes of the key currently being read
+     */
+    private byte[] key;
+    private int keyLength;
+
+    /**
+     * Receives every chat found by the splitter.
+     */
+    interface ChatSliceConsumer {
+        /**
+         * Called when a chat starts, before its bytes are written. Since the splitter waits while the chunks of the
+         * slice are not read, the slice has to be read by another thread.
+         *
+         * @param chat the bytes of a single json chat object
+         * @throws ImportException to abort splitting
+         */
+        void accept(ChatSlice chat) throws ImportException;
+    }
+
+    /**
+     * @param input the stream to split. It is not closed by the splitter.
+     */
+    ChatSplitter(InputStream input) {
+        this.input = input;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.chunk = new byte[BUFFER_SIZE];
+        this.key = new byte[64];
+    }
+
+    /**
+     * Reads the whole input and passes every element of chats.list to the consumer, in the order of the input.
+     *
+     * @param consumer the receiver of the chats
+     * @throws ImportException if the input can not be read or is malformed
+     */
+    void split(ChatSliceConsumer consumer) throws ImportException {
+        try {
+            expect('{', nextToken());
+            boolean chatsFound = false;
+            for (int token = nextToken(); token != '}'; token = nextSeparator('}')) {
+                boolean isChats = readKey(token, CHATS_KEY) && !chatsFound;
+                expect(':', nextToken());
+                if (isChats) {
+                    splitChats(consumer);
+                    chatsFound = true;
+                } else {
+                    skipValue(nextToken());
+                }
+            }
+            if (!chatsFound) {
+                throw new ImportException("required json field not set");
+            }
+        } catch (IOException cause) {
+            throw new ImportException("IOException while parsing json", cause);
+        }
+    }
+
+    private void splitChats(ChatSliceConsumer consumer) throws IOException, ImportException {
+        expectValue('{', nextToken());
+        boolean listFound = false;
+        for (int token = nextToken(); token != '}'; token = nextSeparator('}')) {
+            boolean isList = readKey(token, CHATS_LIST_KEY) && !listFound;
+            expect(':', nextToken());
+            if (isList) {
+                splitChatList(consumer);
+                listFound = true;
+            } else {
+                skipValue(nextToken());
+            }
+        }
+        if (!listFound) {
+            throw new ImportException("required json field not set");
+        }
+    }
+
+    private void splitChatList(ChatSliceConsumer consumer) throws IOException, ImportException {
+        expectValue('[', nextToken());
+        for (int token = nextToken(); token != ']'; token = nextSeparator(']')) {
+            expectValue('{', token);
+            slice = new ChatSlice(CHUNKS_PER_SLICE);
+            consumer.accept(slice);
+            try {
+                capture((byte) '{');
+                skipNested();
+                if (chunkLength > 0) {
+                    slice.write(Arrays.copyOf(chunk, chunkLength), chunkLength);
+                }
+            } finally {
+                // a chat which is split only partly ends early, so that its reader fails instead of waiting
+                slice.finish();
+                slice = null;
+                chunkLength = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads a key and compares it with an expected one.
+     *
+     * @param token    the first token of the key
+     * @param expected the raw bytes of the expected key
+     * @return true, if the key matches the expected bytes
+     */
+    private boolean readKey(int token, byte[] expected) throws IOException, ImportException {
+        expect('"', token);
+        keyLength = 0;
+        for (int b = read(); b != '"'; b = read()) {
+            if (b == '\\') {
+                appendKey(b);
+                b = read();
+            }
+            appendKey(b);
+        }
+        if (keyLength != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            if (key[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendKey(int b) {
+        if (keyLength == key.length) {
+            key = Arrays.copyOf(key, key.length * 2);
+        }
+        key[keyLength++] = (byte) b;
+    }
+
+    /**
+     * Skips a json value.
+     *
+     * @param token the first token of the value
+     */
+    private void skipValue(int token) throws IOException, ImportException {
+        switch (token) {
+            case '{':
+            case '[':
+                skipNested();
+                break;
+            case '"':
+                skipString();
+                break;
+            case ',':
+            case ':':
+            case '}':
+            case ']':
+                throw malformed();
+            default:
+                skipLiteral();
+        }
+    }
+
+    /**
+     * Skips the rest of an object or array, whose opening bracket has already been read.
+     */
+    private void skipNested() throws IOException, ImportException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (read()) {
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                case '"':
+                    skipString();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of a string, whose opening quote has already been read.
+     */
+    private void skipString() throws IOException, ImportException {
+        for (int b = read(); b != '"'; b = read()) {
+            if (b == '\\') {
+                read();
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of a number, boolean or null literal.
+     */
+    private void skipLiteral() throws IOException, ImportException {
+        while (true) {
+            int b = peek();
+            if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                return;
+            }
+            read();
+        }
+    }
+
+    /**
+     * Reads the token following a value, which is either a comma followed by the next token or the closing bracket.
+     *
+     * @param closing the closing bracket of the current object or array
+     * @return the first token of the next element or the closing bracket
+     */
+    private int nextSeparator(int closing) throws IOException, ImportException {
+        int token = nextToken();
+        if (token == closing) {
+            return token;
+        }
+        expect(',', token);
+        return nextToken();
+    }
+
+    /**
+     * @return the next byte which is not whitespace
+     */
+    private int nextToken() throws IOException, ImportException {
+        int b = read();
+        while (isWhitespace(b)) {
+            b = read();
+        }
+        return b;
+    }
+
+    private int read() throws IOException, ImportException {
+        int b = peek();
+        position++;
+        if (slice != null) {
+            capture((byte) b);
+        }
+        return b;
+    }
+
+    private int peek() throws IOException, ImportException {
+        if (position == limit) {
+            limit = input.read(buffer);
+            position = 0;
+            if (limit == END_OF_STREAM) {
+                limit = 0;
+                throw malformed();
+            }
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    /**
+     * Appends a byte to the current chat, and passes the chunk on to the slice once it is full.
+     */
+    private void capture(byte b) throws IOException {
+        if (chunkLength == chunk.length) {
+            slice.write(chunk, chunkLength);
+            chunk = new byte[BUFFER_SIZE];
+            chunkLength = 0;
+        }
+        chunk[chunkLength++] = b;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static void expect(int expected, int token) throws ImportException {
+        if (token != expected) {
+            throw malformed();
+        }
+    }
+
+    /**
+     * Like {@link #expect(int, int)}, but for the start of a value whose type is prescribed by the telegram format.
+     */
+    private static void expectValue(int expected, int token) throws ImportException {
+        if (token != expected) {
+            throw new ImportException("wrong json field type");
+        }
+    }
+
+    private static ImportException malformed() {
+        return new ImportException("malformed json");
+    }
+}
@@ -0,0 +1,362 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Holds the contents of chats on disk instead of the heap. Chats built with a content file (see
+ * {@link TelegramChat.Builder#Builder(String, SenderDictionary, ContentFile)}) write the concatenated contents of their
+ * messages to the file once they are built, and only keep the offsets of the contents in memory. While a chat is being
+ * built, its content is buffered in chunks of {@link #CHUNK_SIZE} characters, and chunks of large chats are spilled to
+ * a temporary file of their own, so that the contents of chats built concurrently do not interleave. The content of a
+ * message is loaded on demand by a positional read, which is fronted by a cache of the most recently read contents,
+ * bounded by their total length. Scans over all contents of a chat, like building its text index, read a memory mapped
+ * view of the file instead.
+ * <p>
+ * The contents are stored as UTF-16 characters, so that offsets in characters translate to file positions without an
+ * index. Content files are safe to be used by several threads.
+ * <p>
+ * A temporary content file may be read as long as it is reachable, for example by a chat of an old state of a model
+ * which an analysis still holds. Once it is unreachable, it is closed and deleted by the next call of
+ * {@link #releaseUnreachable()}, which is also made whenever a temporary content file is created.
+ */
+public final class ContentFile implements Closeable {
+    /**
+     * the number of characters which are cached by default, about 2 MB of text
+     */
+    public static final int DEFAULT_CACHE_CAPACITY = 1 << 20;
+
+    /**
+     * the number of characters a chat buffers on the heap while it is built
+     */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * the temporary content files which have become unreachable without being closed
+     */
+    private static final ReferenceQueue<ContentFile> UNREACHABLE = new ReferenceQueue<>();
+    /**
+     * the releases of the temporary content files which have not been closed, kept reachable until they are run
+     */
+    private static final Set<Release> PENDING_RELEASES = ConcurrentHashMap.newKeySet();
+
+    private final File file;
+    /**
+     * closes and deletes the file if it is temporary, or null
+     */
+    private final Release release;
+    private final FileChannel channel;
+    private final int cacheCapacity;
+    /**
+     * the cached contents by their start in characters, in the order of their last access
+     */
+    private final Map<Long, String> cache;
+    private long cachedCharacters;
+    private long length;
+
+    /**
+     * Creates an empty content file, replacing the file if it exists.
+     *
+     * @param file          the file which holds the contents
+     * @param cacheCapacity the maximum total length of the cached contents in characters
+     * @throws IOException if the file can not be created
+     */
+    public ContentFile(File file, int cacheCapacity) throws IOException {
+        this(file, cacheCapacity, false);
+    }
+
+    private ContentFile(File file, int cacheCapacity, boolean temporary) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        this.release = temporary ? new Release(this, channel, file) : null;
+        this.cacheCapacity = cacheCapacity;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @param cacheCapacity the maximum total length of the cached contents in characters
+     * @return a content file in the temporary directory, which is deleted when it is closed or has become unreachable,
+     * or at the latest when the virtual machine exits
+     * @throws IOException if the file can not be created
+     */
+    public static ContentFile createTemporary(int cacheCapacity) throws IOException {
+        releaseUnreachable();
+        File file = File.createTempFile("content", ".chars");
+        file.deleteOnExit();
+        return new ContentFile(file, cacheCapacity, true);
+    }
+
+    /**
+     * Appends the contents of a chat.
+     *
+     * @param content the concatenated contents of the messages of the chat
+     * @param count   the number of characters to append
+     * @return the position of the first appended character in characters
+     * @throws UncheckedIOException if the file can not be written
+     */
+    synchronized long append(char[] content, int count) {
+        return append(null, content, count);
+    }
+
+    /**
+     * Appends the contents of a chat, of which the first part has been spilled. The spill is closed afterwards.
+     *
+     * @param spill   the first part of the contents, or null if all contents are buffered
+     * @param content the buffered rest of the contents
+     * @param count   the number of buffered characters to append
+     * @return the position of the first appended character in characters
+     * @throws UncheckedIOException if the file can not be written
+     */
+    synchronized long append(Spill spill, char[] content, int count) {
+        long start = length;
+        try {
+            long spilled = 0;
+            if (spill != null) {
+                spilled = spill.transferTo(channel, start * Character.BYTES);
+                spill.close();
+            }
+            write(channel, (start + spilled) * Character.BYTES, content, count);
+            length += spilled + count;
+        } catch (IOException cause) {
+            throw new UncheckedIOException("could not write the content file", cause);
+        }
+        return start;
+    }
+
+    private static void write(FileChannel channel, long position, char[] content, int count) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(Math.min(count, WRITE_BUFFER_SIZE) * Character.BYTES);
+        for (int offset = 0; offset < count; offset += WRITE_BUFFER_SIZE) {
+            int chunk = Math.min(count - offset, WRITE_BUFFER_SIZE);
+            ((Buffer) bytes).clear();
+            bytes.asCharBuffer().put(content, offset, chunk);
+            ((Buffer) bytes).limit(chunk * Character.BYTES);
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+        }
+    }
+
+    /**
+     * @param start the position of the first character
+     * @param count the number of characters
+     * @return the characters, from the cache or read from the file
+     * @throws UncheckedIOException if the file can not be read
+     */
+    String read(long start, int count) {
+        if (count == 0) {
+            return "";
+        }
+        synchronized (cache) {
+            String cached = cache.get(start);
+            if (cached != null && cached.length() == count) {
+                return cached;
+            }
+        }
+        String content = readFromFile(start, count);
+        synchronized (cache) {
+            if (count <= cacheCapacity) {
+                String replaced = cache.put(start, content);
+                cachedCharacters += count - (replaced == null ? 0 : replaced.length());
+                evict();
+            }
+        }
+        return content;
+    }
+
+    private String readFromFile(long start, int count) {
+        ByteBuffer bytes = ByteBuffer.allocate(count * Character.BYTES);
+        try {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start * Character.BYTES + bytes.position()) < 0) {
+                    throw new EOFException("content file is truncated");
+                }
+            }
+        } catch (IOException cause) {
+            throw new UncheckedIOException("could not read the content file", cause);
+        }
+        ((Buffer) bytes).flip();
+        return bytes.asCharBuffer().toString();
+    }
+
+    /**
+     * Removes the least recently used contents until the cache is within its capacity.
+     */
+    private void evict() {
+        Iterator<String> contents = cache.values().iterator();
+        while (cachedCharacters > cacheCapacity && contents.hasNext()) {
+            cachedCharacters -= contents.next().length();
+            contents.remove();
+        }
+    }
+
+    /**
+     * @param start the position of the first character
+     * @param count the number of characters
+     * @return a read only, memory mapped view of the characters
+     * @throws UncheckedIOException if the file can not be mapped
+     */
+    CharBuffer map(long start, int count) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start * Character.BYTES, (long) count * Character.BYTES)
+                    .asCharBuffer();
+        } catch (IOException cause) {
+            throw new UncheckedIOException("could not map the content file", cause);
+        }
+    }
+
+    /**
+     * @return the total length of the cached contents in characters
+     */
+    long getCachedCharacters() {
+        synchronized (cache) {
+            return cachedCharacters;
+        }
+    }
+
+    /**
+     * Closes the file, and deletes it if it is temporary. The contents of chats backed by it can not be read
+     * afterwards, but views mapped before remain valid.
+     *
+     * @throws IOException if the file can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (release == null) {
+            channel.close();
+        } else {
+            release.run();
+        }
+    }
+
+    /**
+     * Closes and deletes the temporary content files which have become unreachable since the last call.
+     */
+    public static void releaseUnreachable() {
+        for (Reference<? extends ContentFile> unreachable = UNREACHABLE.poll(); unreachable != null;
+             unreachable = UNREACHABLE.poll()) {
+            try {
+                ((Release) unreachable).run();
+            } catch (IOException exception) {
+                // the file is deleted when the virtual machine exits at the latest
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes a temporary content file, either when it is closed or once it has become unreachable. It must
+     * not refer to the content file itself.
+     */
+    private static final class Release extends PhantomReference<ContentFile> {
+        private final FileChannel channel;
+        private final File file;
+
+        Release(ContentFile contentFile, FileChannel channel, File file) {
+            super(contentFile, UNREACHABLE);
+            this.channel = channel;
+            this.file = file;
+            PENDING_RELEASES.add(this);
+        }
+
+        void run() throws IOException {
+            PENDING_RELEASES.remove(this);
+            clear();
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * The first part of the contents of a chat which is too large to be buffered on the heap until the chat is built,
+     * in a temporary file which is deleted when the spill is closed.
+     */
+    static final class Spill implements Closeable {
+        private final FileChannel channel;
+        private long length;
+
+        /**
+         * @throws UncheckedIOException if the temporary file can not be created
+         */
+        Spill() {
+            try {
+                File file = File.createTempFile("content", ".spill");
+                file.deleteOnExit();
+                channel = FileChannel.open(file.toPath(), READ, WRITE, DELETE_ON_CLOSE);
+            } catch (IOException cause) {
+                throw new UncheckedIOException("could not create a spill file", cause);
+            }
+        }
+
+        /**
+         * @param content a chunk of the contents
+         * @param count   the number of characters to spill
+         * @throws UncheckedIOException if the file can not be written
+         */
+        void write(char[] content, int count) {
+            try {
+                ContentFile.write(channel, length * Character.BYTES, content, count);
+            } catch (IOException cause) {
+                throw new UncheckedIOException("could not write the spill file", cause);
+            }
+            length += count;
+        }
+
+        /**
+         * @return the number of spilled characters
+         */
+        long getLength() {
+            return length;
+        }
+
+        /**
+         * Copies the spilled contents to the end of another file, without reading them onto the heap.
+         *
+         * @param target   the file to copy to
+         * @param position the size of the target file in bytes
+         * @return the number of copied characters
+         */
+        private long transferTo(FileChannel target, long position) throws IOException {
+            long bytes = length * Character.BYTES;
+            channel.position(0);
+            for (long transferred = 0; transferred < bytes; ) {
+                long count = target.transferFrom(channel, position + transferred, bytes - transferred);
+                if (count <= 0) {
+                    throw new EOFException("spill file is truncated");
+                }
+                transferred += count;
+            }
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -12,7 +12,7 @@ public class ImportException extends Exception {
      *
      * @param message error message
      */
-    ImportException(String message) {
+    public ImportException(String message) {
         super(MESSAGE_PREFIX + message);
     }
 
@@ -23,7 +23,7 @@ public class ImportException extends Exception {
      * @param message error message
      * @param cause cause of error
      */
-    ImportException(String message, Throwable cause) {
+    public ImportException(String message, Throwable cause) {
         super(MESSAGE_PREFIX + message, cause);
     }
 }
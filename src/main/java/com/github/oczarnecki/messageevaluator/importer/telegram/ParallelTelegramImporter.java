@@ -0,0 +1,192 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import com.github.oczarnecki.messageevaluator.importer.ChatCollectingSink;
+import com.github.oczarnecki.messageevaluator.importer.CompressedSources;
+import com.github.oczarnecki.messageevaluator.importer.MessageSink;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.UnaryOperator;
+
+/**
+ * Imports all telegram chats from a json data source, parsing the chats in parallel. The calling thread splits the
+ * data at chat boundaries with a {@link ChatSplitter}, while a pool of worker threads parses the chats with a
+ * {@link TelegramStreamImporter} each. The chats are returned in the order of the data source, and the same messages
+ * are dropped as by {@link TelegramImporter}.
+ * <p>
+ * Since chats are independent, parsing scales with the number of threads until splitting the input becomes the
+ * bottleneck. Splitting only tracks strings and brackets and is several times faster than parsing, so exports
+ * consisting of many chats are imported considerably faster on machines with many cores. To bound memory, the bytes of
+ * a chat are handed to its parsing thread in chunks while it is split, and only a few chats per thread are read ahead
+ * of the chats which have been parsed. Hence, splitting waits for the parsing of a chat which is larger than a few
+ * chunks.
+ */
+public final class ParallelTelegramImporter {
+    /**
+     * number of chats per thread which may be split but not yet parsed
+     */
+    private static final int CHATS_IN_FLIGHT_PER_THREAD = 4;
+
+    private static final byte[] CHAT_PREFIX = "{\"chats\":{\"list\":[".getBytes(StandardCharsets.UTF_8),
+            CHAT_SUFFIX = "]}}".getBytes(StandardCharsets.UTF_8);
+
+    private final InputStream input;
+    private final int threadCount;
+    private ContentFile contentFile;
+
+    /**
+     * Create a new Importer with an underlying input stream.
+     *
+     * @param input       the {@link InputStream} where the telegram data is to be read from
+     * @param threadCount the number of threads parsing chats, at least one
+     */
+    public ParallelTelegramImporter(InputStream input, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("at least one thread is required");
+        }
+        this.input = input;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Create a new Importer with an underlying file input stream, which parses with one thread per available
+     * processor.
+     *
+     * @param dataFile the file from which to create the {@link InputStream}, which may be compressed
+     * @throws ImportException when {@link FileInputStream#FileInputStream(File)} throws a FileNotFoundException, or the
+     *                         file is compressed and can not be decompressed
+     * @see CompressedSources
+     */
+    public ParallelTelegramImporter(File dataFile) throws ImportException {
+        this(dataFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new Importer with an underlying file input stream.
+     *
+     * @param dataFile    the file from which to create the {@link InputStream}, which may be compressed
+     * @param threadCount the number of threads parsing chats, at least one
+     * @throws ImportException when {@link FileInputStream#FileInputStream(File)} throws a FileNotFoundException, or the
+     *                         file is compressed and can not be decompressed
+     * @see CompressedSources
+     */
+    public ParallelTelegramImporter(File dataFile, int threadCount) throws ImportException {
+        this(CompressedSources.open(dataFile), threadCount);
+    }
+
+    /**
+     * @param contentFile the file to which the contents of the chats are written, instead of keeping them on the heap,
+     *                    or null to keep them on the heap, which is the default
+     */
+    public void setContentFile(ContentFile contentFile) {
+        this.contentFile = contentFile;
+    }
+
+    /**
+     * Perform the import operation, by converting data from the underlying {@link InputStream} to a Collection of
+     * {@link TelegramChat}s. After this method has completed, the stream is closed. Hence, it may only be called once.
+     *
+     * @return a collection of {@link TelegramChat}s represented by the underlying input stream, in their original
+     * order
+     * @throws ImportException if the {@link InputStream} causes an {@link java.io.IOException} or the json data itself
+     *                         is malformed
+     */
+    public Collection<TelegramChat> importChats() throws ImportException {
+        return importChats(new SenderDictionary(), UnaryOperator.identity());
+    }
+
+    /**
+     * Like {@link #importChats()}, but interns the senders with the given dictionary, and lets the messages of every
+     * chat pass another sink before they are collected.
+     *
+     * @param senders the dictionary by which sender names are interned
+     * @param sinks   wraps the sink collecting a chat, for example to count its messages. It is called on the parsing
+     *                threads, once per chat.
+     * @return a collection of {@link TelegramChat}s represented by the underlying input stream, in their original
+     * order
+     * @throws ImportException if the {@link InputStream} causes an {@link java.io.IOException} or the json data itself
+     *                         is malformed
+     */
+    public Collection<TelegramChat> importChats(SenderDictionary senders, UnaryOperator<MessageSink> sinks)
+            throws ImportException {
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        Deque<ForkJoinTask<TelegramChat>> pending = new ArrayDeque<>();
+        List<TelegramChat> chats = new ArrayList<>();
+        try (InputStream source = input) {
+            new ChatSplitter(source).split(chat -> {
+                if (pending.size() >= threadCount * CHATS_IN_FLIGHT_PER_THREAD) {
+                    chats.add(join(pending.removeFirst()));
+                }
+                pending.addLast(pool.submit(() -> parseChat(chat, senders, sinks)));
+            });
+            while (!pending.isEmpty()) {
+                chats.add(join(pending.removeFirst()));
+            }
+            return chats;
+        } catch (IOException cause) {
+            throw new ImportException("IOException while closing the data source", cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the bytes of a single chat, by wrapping them into a minimal telegram export.
+     *
+     * @param chat    the bytes of a json chat object, which are closed afterwards
+     * @param senders the dictionary shared by all chats of the import
+     * @param sinks   wraps the sink collecting the chat
+     * @return the parsed chat
+     * @throws ImportException if the chat is malformed
+     */
+    private TelegramChat parseChat(ChatSlice chat, SenderDictionary senders, UnaryOperator<MessageSink> sinks)
+            throws ImportException {
+        try {
+            InputStream wrappedChat = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                    new ByteArrayInputStream(CHAT_PREFIX),
+                    chat,
+                    new ByteArrayInputStream(CHAT_SUFFIX))));
+            ChatCollectingSink collector = new ChatCollectingSink(senders, contentFile);
+            new TelegramStreamImporter(wrappedChat).importMessages(sinks.apply(collector));
+            return collector.getChats().get(0);
+        } finally {
+            chat.close();
+        }
+    }
+
+    /**
+     * Waits for a chat to be parsed.
+     *
+     * @param task the task parsing the chat
+     * @return the parsed chat
+     * @throws ImportException if the chat could not be parsed
+     */
+    private static TelegramChat join(ForkJoinTask<TelegramChat> task) throws ImportException {
+        try {
+            return task.get();
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new ImportException("interrupted while waiting for chats to be parsed", cause);
+        } catch (ExecutionException cause) {
+            if (cause.getCause() instanceof ImportException) {
+                throw (ImportException) cause.getCause();
+            }
+            throw new ImportException("unexpected error while parsing chats", cause.getCause());
+        }
+    }
+}
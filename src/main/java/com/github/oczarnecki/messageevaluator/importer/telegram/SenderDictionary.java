@@ -0,0 +1,68 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns sender names and assigns dense ids to them, in the order in which they are first seen. Chats built with the
+ * same dictionary share a single instance of every sender name. This class is thread safe.
+ */
+public final class SenderDictionary {
+    /**
+     * id returned by {@link #getId(String)} for unknown senders
+     */
+    public static final int UNKNOWN_SENDER = -1;
+
+    private final Map<String, Integer> ids;
+    private final List<String> names;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public SenderDictionary() {
+        ids = new HashMap<>();
+        names = new ArrayList<>();
+    }
+
+    /**
+     * Returns the id of a sender, adding the sender to the dictionary if it is unknown.
+     *
+     * @param name name of the sender
+     * @return the id of the sender
+     */
+    public synchronized int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * @param name name of the sender
+     * @return the id of the sender or {@link #UNKNOWN_SENDER}, if the sender is not part of the dictionary
+     */
+    public synchronized int getId(String name) {
+        return ids.getOrDefault(name, UNKNOWN_SENDER);
+    }
+
+    /**
+     * @param id id of the sender
+     * @return the interned name of the sender
+     * @throws IndexOutOfBoundsException if no sender has the id
+     */
+    public synchronized String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @return the number of senders in the dictionary. Ids range from 0 (inclusive) to this value (exclusive).
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+}
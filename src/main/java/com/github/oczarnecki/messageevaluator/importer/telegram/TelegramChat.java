@@ -1,26 +1,145 @@
 package com.github.oczarnecki.messageevaluator.importer.telegram;
 
+import java.nio.Buffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
- * An immutable object representing a telegram chat
+ * An immutable object representing a telegram chat.
+ * <p>
+ * The messages are stored column by column, instead of one object per message: the timestamps as seconds since the
+ * epoch, the senders as ids into a table of the chat's senders and the contents of all messages in one character
+ * column, delimited by a column of offsets. Timestamps are the local date and time of the export, converted to epoch
+ * seconds as if they were UTC. Message objects are only created on demand by the {@link #getMessages()} view.
+ * <p>
+ * If the chat has been imported with its text entities (see {@link TelegramStreamImporter#setKeepEntities(boolean)}),
+ * they are stored in columns as well. Chats created from existing columns have no entities.
+ * <p>
+ * The columns are {@link java.nio.Buffer}s, which wrap primitive arrays for imported chats, but may also be mapped
+ * from a file (see {@link #fromColumns(String, LongBuffer, IntBuffer, String[], CharBuffer, IntBuffer)}). Only
+ * absolute accesses are used, so the buffers are safe to be read concurrently.
+ * <p>
+ * Chats built with a {@link ContentFile} keep their content column on disk and only hold the offsets of the contents
+ * on the heap. The content of a message is then read from the file when it is requested.
+ * <p>
+ * Every chat has a 64 bit fingerprint of its messages (see {@link #getContentFingerprint()}), which is computed while
+ * the chat is built, so that chats can be compared without comparing their columns.
  */
 public final class TelegramChat {
+    /**
+     * The fingerprint of a chat of messages m_0 to m_n-1 is the sum of hash(m_i) * FINGERPRINT_FACTOR^(n-1-i), so that
+     * the fingerprint of two concatenated chats can be computed from their fingerprints.
+     */
+    private static final long FINGERPRINT_FACTOR = 0x9E3779B97F4A7C15L;
+
     private final String name;
-    private final List<TelegramMessage> messages;
+    private final LongBuffer timestamps;
+    private final IntBuffer senderIds;
+    /**
+     * the senders of the chat, in the order of their first message. Names are interned by a {@link SenderDictionary}.
+     */
+    private final String[] senders;
+    /**
+     * the content column, or null if it is held by a content file
+     */
+    private final CharBuffer content;
+    private final ContentFile contentFile;
+    /**
+     * the position of the content column within the content file
+     */
+    private final long contentStart;
+    /**
+     * the content of message i starts at contentOffsets[i] and ends at contentOffsets[i + 1]
+     */
+    private final IntBuffer contentOffsets;
+    private final TextEntities entities;
+    /**
+     * the fingerprint of the messages, which is only valid once it has been computed
+     */
+    private long contentFingerprint;
+    private volatile boolean fingerprinted;
 
     /**
-     * Creates an immutable {@link TelegramChat}. The list of messages is copied into an immutable one.
+     * Creates an immutable {@link TelegramChat}. The list of messages is copied into columns.
      *
-     * @param name name of the chat
+     * @param name     name of the chat
      * @param messages list of messages contained in the chat
      */
     TelegramChat(String name, List<TelegramMessage> messages) {
+        this(build(name, messages));
+    }
+
+    private TelegramChat(Builder builder) {
+        this.name = builder.name;
+        this.timestamps = LongBuffer.wrap(Arrays.copyOf(builder.timestamps, builder.size));
+        this.senderIds = IntBuffer.wrap(Arrays.copyOf(builder.senderIds, builder.size));
+        this.senders = builder.senders.toArray(new String[0]);
+        this.contentFile = builder.contentFile;
+        if (contentFile == null) {
+            this.content = CharBuffer.wrap(Arrays.copyOf(builder.content, builder.contentLength));
+            this.contentStart = 0;
+        } else {
+            this.content = null;
+            this.contentStart = contentFile.append(builder.spill, builder.content,
+                    builder.contentLength - builder.spilledLength());
+        }
+        this.contentOffsets = IntBuffer.wrap(Arrays.copyOf(builder.contentOffsets, builder.size + 1));
+        this.entities = builder.entities.build(builder.size);
+        this.contentFingerprint = builder.fingerprint;
+        this.fingerprinted = true;
+    }
+
+    private TelegramChat(String name, LongBuffer timestamps, IntBuffer senderIds, String[] senders,
+                         CharBuffer content, IntBuffer contentOffsets, TextEntities entities) {
         this.name = name;
-        this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+        this.timestamps = timestamps;
+        this.senderIds = senderIds;
+        this.senders = senders;
+        this.content = content;
+        this.contentFile = null;
+        this.contentStart = 0;
+        this.contentOffsets = contentOffsets;
+        this.entities = entities;
+    }
+
+    private static Builder build(String name, List<TelegramMessage> messages) {
+        Builder builder = new Builder(name, new SenderDictionary());
+        messages.forEach(builder::add);
+        return builder;
+    }
+
+    /**
+     * Creates a chat from existing columns, for example from buffers mapped from a file. The columns are used from
+     * index 0 to their limit and must not be modified afterwards.
+     *
+     * @param name           name of the chat
+     * @param timestamps     timestamp of every message in seconds since the epoch
+     * @param senderIds      sender of every message, as index into the senders
+     * @param senders        the names of the senders, in the order of their first message
+     * @param content        the concatenated text content of all messages
+     * @param contentOffsets the start offset of every message's content in the content column, followed by the total
+     *                       content length
+     * @return a chat backed by the columns
+     * @throws IllegalArgumentException if the sizes of the columns do not match
+     */
+    public static TelegramChat fromColumns(String name, LongBuffer timestamps, IntBuffer senderIds, String[] senders,
+                                           CharBuffer content, IntBuffer contentOffsets) {
+        int size = timestamps.limit();
+        if (senderIds.limit() != size || contentOffsets.limit() != size + 1
+                || contentOffsets.get(size) != content.limit()) {
+            throw new IllegalArgumentException("sizes of the columns of chat " + name + " do not match");
+        }
+        return new TelegramChat(name, timestamps, senderIds, senders.clone(), content, contentOffsets,
+                TextEntities.NONE);
     }
 
     /**
@@ -31,31 +150,451 @@ public final class TelegramChat {
     }
 
     /**
-     * @return an immutable list of all messages contained in the chat
+     * @return the number of messages in the chat
+     */
+    public int getMessageCount() {
+        return timestamps.limit();
+    }
+
+    /**
+     * @param index index of the message
+     * @return the timestamp of the message in seconds since the epoch
+     */
+    public long getEpochSecond(int index) {
+        return timestamps.get(index);
+    }
+
+    /**
+     * @param index index of the message
+     * @return the id of the message's sender, which is an index into the senders of this chat
+     * @see #getSender(int)
+     */
+    public int getSenderId(int index) {
+        return senderIds.get(index);
+    }
+
+    /**
+     * @param senderId id of a sender of this chat
+     * @return the name of the sender
+     */
+    public String getSender(int senderId) {
+        return senders[senderId];
+    }
+
+    /**
+     * @return the number of distinct senders of this chat. Sender ids range from 0 (inclusive) to this value
+     * (exclusive).
+     */
+    public int getSenderCount() {
+        return senders.length;
+    }
+
+    /**
+     * @param index index of the message
+     * @return the length of the message's text content
+     */
+    public int getContentLength(int index) {
+        return contentOffsets.get(index + 1) - contentOffsets.get(index);
+    }
+
+    /**
+     * @param index index of the message
+     * @return the text content of the message
+     * @throws java.io.UncheckedIOException if the content is held by a content file which can not be read
+     */
+    public String getContent(int index) {
+        int start = contentOffsets.get(index), end = contentOffsets.get(index + 1);
+        if (content == null) {
+            return contentFile.read(contentStart + start, end - start);
+        }
+        return content.subSequence(start, end).toString();
+    }
+
+    /**
+     * @return true, if the content column is held by a {@link ContentFile} instead of the heap
+     */
+    public boolean hasContentFile() {
+        return contentFile != null;
+    }
+
+    /**
+     * @return the content file which holds the content column, or null if it is held on the heap
+     */
+    public ContentFile getContentFile() {
+        return contentFile;
+    }
+
+    /**
+     * @param index index of the message
+     * @return the text entities of the message, which is empty if the chat has been imported without entities
+     */
+    public List<TextEntity> getEntities(int index) {
+        return entities.get(index);
+    }
+
+    /**
+     * @return a read only view of the timestamp column
+     * @see #getEpochSecond(int)
+     */
+    public LongBuffer getTimestampColumn() {
+        return timestamps.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read only view of the sender id column
+     * @see #getSenderId(int)
+     */
+    public IntBuffer getSenderIdColumn() {
+        return senderIds.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read only view of the concatenated contents of all messages, which is memory mapped if the content is
+     * held by a content file
+     * @throws java.io.UncheckedIOException if the content is held by a content file which can not be mapped
+     * @see #getContentOffsetColumn()
+     */
+    public CharBuffer getContentColumn() {
+        if (content == null) {
+            return contentFile.map(contentStart, contentOffsets.get(getMessageCount()));
+        }
+        return content.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read only view of the offsets of the messages' contents in the content column, followed by the total
+     * length of the content
+     */
+    public IntBuffer getContentOffsetColumn() {
+        return contentOffsets.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a fingerprint of the timestamps, senders and contents of the messages, in their order. Chats with the same
+     * messages have the same fingerprint, regardless of where their columns are stored, and chats with different
+     * messages have different fingerprints with high probability. The name and the text entities of the chat are not
+     * included. The fingerprint is computed while the chat is built, or on the first call for chats created from
+     * existing columns.
+     *
+     * @return the fingerprint of the messages
+     */
+    public long getContentFingerprint() {
+        if (!fingerprinted) {
+            CharBuffer contentColumn = getContentColumn();
+            long fingerprint = 0;
+            for (int message = 0; message < getMessageCount(); message++) {
+                fingerprint = fingerprint * FINGERPRINT_FACTOR + messageHash(getEpochSecond(message),
+                        senders[getSenderId(message)], contentColumn, contentOffsets.get(message),
+                        contentOffsets.get(message + 1));
+            }
+            contentFingerprint = fingerprint;
+            fingerprinted = true;
+        }
+        return contentFingerprint;
+    }
+
+    private static long messageHash(long epochSecond, String sender, CharSequence text, int start, int end) {
+        // FNV-1a over the characters of the content
+        long contentHash = 0xCBF29CE484222325L;
+        for (int i = start; i < end; i++) {
+            contentHash = (contentHash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(mix(mix(epochSecond) ^ sender.hashCode()) ^ contentHash);
+    }
+
+    /**
+     * @return the finalizer of SplitMix64, which spreads every bit of the value over the whole hash
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * @return factor^exponent, modulo 2^64
+     */
+    private static long power(long factor, int exponent) {
+        long result = 1;
+        for (; exponent > 0; exponent >>= 1) {
+            if ((exponent & 1) != 0) {
+                result *= factor;
+            }
+            factor *= factor;
+        }
+        return result;
+    }
+
+    /**
+     * @return an immutable list view of all messages contained in the chat. The message objects are created when
+     * they are accessed.
      */
     public List<TelegramMessage> getMessages() {
-        return messages;
+        return new MessageList();
     }
 
+    /**
+     * Chats are equal if they have the same name, messages and text entities, regardless of where their contents are
+     * stored. Chats with different fingerprints are told apart without comparing their contents.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         TelegramChat that = (TelegramChat) o;
         return Objects.equals(name, that.name) &&
-                Objects.equals(messages, that.messages);
+                getContentFingerprint() == that.getContentFingerprint() &&
+                Objects.equals(timestamps, that.timestamps) &&
+                Objects.equals(senderIds, that.senderIds) &&
+                Arrays.equals(senders, that.senders) &&
+                Objects.equals(contentOffsets, that.contentOffsets) &&
+                getContentColumn().equals(that.getContentColumn()) &&
+                Objects.equals(entities, that.entities);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, messages);
+        return Objects.hash(name, getContentFingerprint());
     }
 
     @Override
     public String toString() {
         return "TelegramChat{" +
                 "name='" + name + '\'' +
-                ", messages=" + messages +
+                ", messages=" + getMessages() +
                 '}';
     }
-}
\ No newline at end of file
+
+    /**
+     * Read only view of the columns of the chat as a list of messages.
+     */
+    private final class MessageList extends AbstractList<TelegramMessage> implements RandomAccess {
+        @Override
+        public TelegramMessage get(int index) {
+            return new TelegramMessage(getEpochSecond(index), senders[getSenderId(index)], getContent(index),
+                    getEntities(index));
+        }
+
+        @Override
+        public int size() {
+            return getMessageCount();
+        }
+    }
+
+    /**
+     * Collects messages one at a time into the columns of a new {@link TelegramChat}. Builders are not thread safe,
+     * but builders of different chats may share a {@link SenderDictionary} and a {@link ContentFile}.
+     */
+    public static final class Builder {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final String name;
+        private final SenderDictionary dictionary;
+        private final Map<String, Integer> senderIdsByName;
+        private final List<String> senders;
+        private final TextEntities.Builder entities;
+        private final ContentFile contentFile;
+        private long[] timestamps;
+        private int[] senderIds;
+        private char[] content;
+        private int[] contentOffsets;
+        private int size;
+        private int contentLength;
+        /**
+         * the fingerprint of the messages added so far
+         */
+        private long fingerprint;
+        /**
+         * the first part of the content, which has been written to disk, or null if all content is buffered
+         */
+        private ContentFile.Spill spill;
+
+        /**
+         * @param name       name of the chat
+         * @param dictionary the dictionary by which the sender names are interned
+         */
+        public Builder(String name, SenderDictionary dictionary) {
+            this(name, dictionary, null);
+        }
+
+        /**
+         * Creates a builder whose chat keeps its content on disk. At most {@link ContentFile#CHUNK_SIZE} characters of
+         * the content are buffered on the heap, larger contents are spilled to disk until the chat is built.
+         *
+         * @param name        name of the chat
+         * @param dictionary  the dictionary by which the sender names are interned
+         * @param contentFile the file to which the content of the chat is written, or null to keep it on the heap
+         */
+        public Builder(String name, SenderDictionary dictionary, ContentFile contentFile) {
+            this.name = name;
+            this.contentFile = contentFile;
+            this.dictionary = dictionary;
+            this.senderIdsByName = new HashMap<>();
+            this.senders = new ArrayList<>();
+            this.entities = new TextEntities.Builder();
+            this.timestamps = new long[INITIAL_CAPACITY];
+            this.senderIds = new int[INITIAL_CAPACITY];
+            this.content = new char[INITIAL_CAPACITY];
+            this.contentOffsets = new int[INITIAL_CAPACITY + 1];
+        }
+
+        /**
+         * Appends a message to the chat, including its text entities.
+         *
+         * @param message the message
+         * @return this builder
+         */
+        public Builder add(TelegramMessage message) {
+            return add(message.getEpochSecond(), message.getSender(), message.getContent(), message.getEntities());
+        }
+
+        /**
+         * Appends a message to the chat, including its text entities.
+         *
+         * @param epochSecond timestamp of the message in seconds since the epoch
+         * @param sender      name of the sender
+         * @param text        text content of the message
+         * @param entities    the text entities of the message
+         * @return this builder
+         */
+        public Builder add(long epochSecond, String sender, CharSequence text, List<TextEntity> entities) {
+            add(epochSecond, sender, text);
+            this.entities.add(size - 1, entities);
+            return this;
+        }
+
+        /**
+         * Appends a message to the chat.
+         *
+         * @param epochSecond timestamp of the message in seconds since the epoch
+         * @param sender      name of the sender
+         * @param text        text content of the message
+         * @return this builder
+         */
+        public Builder add(long epochSecond, String sender, CharSequence text) {
+            ensureCapacity(size + 1);
+            timestamps[size] = epochSecond;
+            senderIds[size] = senderId(sender);
+            appendContent(text);
+            fingerprint = fingerprint * FINGERPRINT_FACTOR + messageHash(epochSecond, sender, text, 0, text.length());
+            size++;
+            contentOffsets[size] = contentLength;
+            return this;
+        }
+
+        /**
+         * Appends all messages of a chat. The columns are copied in bulk, which is much faster than adding the
+         * messages one by one.
+         *
+         * @param chat the chat whose messages are appended
+         * @return this builder
+         */
+        public Builder addAll(TelegramChat chat) {
+            int count = chat.getMessageCount();
+            ensureCapacity(size + count);
+
+            int[] chatSenderIds = new int[chat.getSenderCount()];
+            for (int sender = 0; sender < chatSenderIds.length; sender++) {
+                chatSenderIds[sender] = senderId(chat.getSender(sender));
+            }
+            chat.getTimestampColumn().get(timestamps, size, count);
+            IntBuffer otherSenderIds = chat.getSenderIdColumn();
+            IntBuffer otherOffsets = chat.getContentOffsetColumn();
+            for (int message = 0; message < count; message++) {
+                senderIds[size + message] = chatSenderIds[otherSenderIds.get(message)];
+                contentOffsets[size + message + 1] = contentLength + otherOffsets.get(message + 1);
+            }
+
+            entities.addAll(size, chat.entities, count);
+            appendContent(chat.getContentColumn());
+            fingerprint = fingerprint * power(FINGERPRINT_FACTOR, count) + chat.getContentFingerprint();
+            size += count;
+            return this;
+        }
+
+        private void ensureCapacity(int messageCount) {
+            if (messageCount > timestamps.length) {
+                int capacity = Math.max(timestamps.length * 2, messageCount);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                senderIds = Arrays.copyOf(senderIds, capacity);
+                contentOffsets = Arrays.copyOf(contentOffsets, capacity + 1);
+            }
+        }
+
+        private void ensureContentCapacity(int length) {
+            if (length > content.length) {
+                content = Arrays.copyOf(content, Math.max(content.length * 2, length));
+            }
+        }
+
+        private int spilledLength() {
+            return spill == null ? 0 : (int) spill.getLength();
+        }
+
+        private int senderId(String sender) {
+            Integer id = senderIdsByName.get(sender);
+            if (id == null) {
+                id = senders.size();
+                senderIdsByName.put(sender, id);
+                senders.add(dictionary.getName(dictionary.intern(sender)));
+            }
+            return id;
+        }
+
+        /**
+         * Appends text to the content. With a content file, full chunks of the content are spilled to disk, so that at
+         * most one chunk is buffered.
+         */
+        private void appendContent(CharSequence text) {
+            int length = text.length();
+            if (contentFile == null) {
+                ensureContentCapacity(contentLength + length);
+                copy(text, 0, length, contentLength);
+                contentLength += length;
+                return;
+            }
+            for (int start = 0; start < length; ) {
+                int buffered = contentLength - spilledLength();
+                if (buffered == ContentFile.CHUNK_SIZE) {
+                    if (spill == null) {
+                        spill = new ContentFile.Spill();
+                    }
+                    spill.write(content, buffered);
+                    buffered = 0;
+                }
+                int count = Math.min(length - start, ContentFile.CHUNK_SIZE - buffered);
+                if (buffered + count > content.length) {
+                    content = Arrays.copyOf(content,
+                            Math.min(ContentFile.CHUNK_SIZE, Math.max(content.length * 2, buffered + count)));
+                }
+                copy(text, start, start + count, buffered);
+                contentLength += count;
+                start += count;
+            }
+        }
+
+        private void copy(CharSequence text, int start, int end, int destination) {
+            if (text instanceof String) {
+                ((String) text).getChars(start, end, content, destination);
+            } else if (text instanceof StringBuilder) {
+                ((StringBuilder) text).getChars(start, end, content, destination);
+            } else if (text instanceof CharBuffer) {
+                CharBuffer buffer = ((CharBuffer) text).duplicate();
+                ((Buffer) buffer).position(buffer.position() + start);
+                buffer.get(content, destination, end - start);
+            } else {
+                for (int i = start; i < end; i++) {
+                    content[destination + i - start] = text.charAt(i);
+                }
+            }
+        }
+
+        /**
+         * @return a new chat containing all messages added so far
+         * @throws java.io.UncheckedIOException if the content can not be written to the content file
+         */
+        public TelegramChat build() {
+            return new TelegramChat(this);
+        }
+    }
+}
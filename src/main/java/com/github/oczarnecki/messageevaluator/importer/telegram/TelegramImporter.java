@@ -1,17 +1,19 @@
 package com.github.oczarnecki.messageevaluator.importer.telegram;
 
+import com.github.oczarnecki.messageevaluator.importer.CompressedSources;
+import com.github.oczarnecki.messageevaluator.instrumentation.DropReason;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+
 import javax.json.*;
 import javax.json.stream.JsonParsingException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Imports all telegram chats from a json data source
@@ -20,7 +22,7 @@ public final class TelegramImporter {
     /**
      * json field names of telegram export file
      */
-    private static final String CHATS_FIELD = "chats",
+    static final String CHATS_FIELD = "chats",
             CHATS_LIST_FIELD = "list",
             CHAT_NAME_FIELD = "name",
             MESSAGE_LIST_FIELD = "messages",
@@ -28,9 +30,21 @@ public final class TelegramImporter {
             MESSAGE_FROM_FIELD = "from",
             MESSAGE_TEXT_FIELD = "text",
             MESSAGE_DATE_FIELD = "date",
-            MESSAGE_PART_TEXT_FIELD = MESSAGE_TEXT_FIELD;
+            MESSAGE_PART_TEXT_FIELD = MESSAGE_TEXT_FIELD,
+            MESSAGE_PART_TYPE_FIELD = MESSAGE_TYPE_FIELD;
+
+    /**
+     * value of the type field of messages which are imported, all other types are dropped
+     */
+    static final String MESSAGE_TYPE = "message";
 
     private final InputStream input;
+    private final SenderDictionary senders;
+    private final TimestampParser timestampParser = new TimestampParser();
+    /**
+     * the flattened text of composite messages, reused for all messages
+     */
+    private final StringBuilder textBuffer = new StringBuilder();
 
     /**
      * Create a new Importer with an underlying input stream.
@@ -39,20 +53,20 @@ public final class TelegramImporter {
      */
     public TelegramImporter(InputStream input) {
         this.input = input;
+        this.senders = new SenderDictionary();
     }
 
     /**
      * Create a new Importer with an underlying file input stream.
      *
-     * @param dataFile the file from which to create the {@link InputStream}
-     * @throws ImportException when {@link FileInputStream#FileInputStream(File)} throws a FileNotFoundException
+     * @param dataFile the file from which to create the {@link InputStream}, which may be compressed
+     * @throws ImportException when {@link FileInputStream#FileInputStream(File)} throws a FileNotFoundException, or the
+     *                         file is compressed and can not be decompressed
+     * @see CompressedSources
      */
     public TelegramImporter(File dataFile) throws ImportException {
-        try {
-            this.input = new FileInputStream(dataFile);
-        } catch (FileNotFoundException exception) {
-            throw new ImportException("source file does not exist, is not readable or is no file", exception);
-        }
+        this.input = CompressedSources.open(dataFile);
+        this.senders = new SenderDictionary();
     }
 
 
@@ -95,15 +109,14 @@ public final class TelegramImporter {
      */
     private TelegramChat parseChat(JsonValue chatEtValue) throws ImportException {
         JsonObject chatEt = chatEtValue.asJsonObject();
-        String name = chatEt.getString(CHAT_NAME_FIELD);
-        List<TelegramMessage> messages = new ArrayList<>();
+        TelegramChat.Builder chat = new TelegramChat.Builder(chatEt.getString(CHAT_NAME_FIELD), senders);
         for (JsonValue jsonValue : chatEt.getJsonArray(MESSAGE_LIST_FIELD)) {
             TelegramMessage telegramMessage = parseMessage(jsonValue);
             if (telegramMessage != null) {
-                messages.add(telegramMessage);
+                chat.add(telegramMessage);
             }
         }
-        return new TelegramChat(name, messages);
+        return chat.build();
     }
 
     /**
@@ -121,28 +134,40 @@ public final class TelegramImporter {
         JsonObject messageEt = messageEtValue.asJsonObject();
         String type = messageEt.getString(MESSAGE_TYPE_FIELD);
 
-        if (!type.equals("message")) {
+        if (!type.equals(MESSAGE_TYPE)) {
+            Instrumentation.get().messageDropped(DropReason.NOT_A_MESSAGE);
             return null;
         }
 
         String content = parseText(messageEt.get(MESSAGE_TEXT_FIELD));
         if (content.isEmpty()) {
+            Instrumentation.get().messageDropped(DropReason.EMPTY_TEXT);
             return null;
         }
 
         String sender = getStringOrNull(messageEt.get(MESSAGE_FROM_FIELD));
         if (sender == null) {
+            Instrumentation.get().messageDropped(DropReason.NO_SENDER);
             return null;
         }
 
-        String dateString = messageEt.getString(MESSAGE_DATE_FIELD);
-        LocalDateTime date;
+        long timestamp = timestampParser.parse(messageEt.getString(MESSAGE_DATE_FIELD));
+        return new TelegramMessage(timestamp, sender, content);
+    }
+
+    /**
+     * Parses the date field of a telegram message.
+     *
+     * @param dateString the value of the date field, formatted like 2015-12-24T06:00:00
+     * @return the parsed date
+     * @throws ImportException if the string is not a valid date
+     */
+    static LocalDateTime parseDate(String dateString) throws ImportException {
         try {
-            date = LocalDateTime.parse(dateString);
+            return LocalDateTime.parse(dateString);
         } catch (DateTimeParseException e) {
             throw new ImportException("Could not parse date", e);
         }
-        return new TelegramMessage(date, sender, content);
     }
 
     /**
@@ -159,13 +184,15 @@ public final class TelegramImporter {
             case STRING:
                 return asString(jsonValue);
             case ARRAY:
-                return jsonValue.asJsonArray().stream().map(textPart -> {
+                textBuffer.setLength(0);
+                for (JsonValue textPart : jsonValue.asJsonArray()) {
                     if (textPart.getValueType() == JsonValue.ValueType.STRING) {
-                        return asString(textPart);
+                        textBuffer.append(asString(textPart));
                     } else {
-                        return textPart.asJsonObject().getString(MESSAGE_PART_TEXT_FIELD);
+                        textBuffer.append(textPart.asJsonObject().getString(MESSAGE_PART_TEXT_FIELD));
                     }
-                }).collect(Collectors.joining());
+                }
+                return textBuffer.toString();
             default:
                 throw new ImportException("Unexpected type of message text part. Should be either string or object");
         }
@@ -1,6 +1,9 @@
 package com.github.oczarnecki.messageevaluator.importer.telegram;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -9,12 +12,29 @@ import java.util.Objects;
 public final class TelegramMessage {
     private final String sender;
     private final String content;
-    private final LocalDateTime timestamp;
+    private final long epochSecond;
+    private final List<TextEntity> entities;
 
     TelegramMessage(LocalDateTime timestamp, String sender, String content) {
+        this(timestamp.toEpochSecond(ZoneOffset.UTC), sender, content);
+    }
+
+    /**
+     * @param epochSecond the local date and time at which the message was sent, in seconds since the epoch as if it
+     *                    was UTC
+     */
+    TelegramMessage(long epochSecond, String sender, String content) {
+        this(epochSecond, sender, content, Collections.emptyList());
+    }
+
+    /**
+     * @param entities the text entities of the message, which are not copied
+     */
+    TelegramMessage(long epochSecond, String sender, String content, List<TextEntity> entities) {
         this.sender = sender;
         this.content = content;
-        this.timestamp = timestamp;
+        this.epochSecond = epochSecond;
+        this.entities = entities;
     }
 
     /**
@@ -35,7 +55,22 @@ public final class TelegramMessage {
      * @return the timestamp at which the message was sent
      */
     public LocalDateTime getTimestamp() {
-        return timestamp;
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * @return the local date and time at which the message was sent, in seconds since the epoch as if it was UTC
+     */
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    /**
+     * @return the text entities of the message, like mentions and hashtags, which is empty unless the message has
+     * been imported with its entities
+     */
+    public List<TextEntity> getEntities() {
+        return Collections.unmodifiableList(entities);
     }
 
     @Override
@@ -45,12 +80,13 @@ public final class TelegramMessage {
         TelegramMessage that = (TelegramMessage) o;
         return Objects.equals(sender, that.sender) &&
                 Objects.equals(content, that.content) &&
-                Objects.equals(timestamp, that.timestamp);
+                epochSecond == that.epochSecond &&
+                Objects.equals(entities, that.entities);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(sender, content, timestamp);
+        return Objects.hash(sender, content, epochSecond, entities);
     }
 
     @Override
@@ -58,7 +94,8 @@ public final class TelegramMessage {
         return "TelegramMessage{" +
                 "sender='" + sender + '\'' +
                 ", content='" + content + '\'' +
-                ", timestamp=" + timestamp +
+                ", timestamp=" + getTimestamp() +
+                ", entities=" + entities +
                 '}';
     }
 }
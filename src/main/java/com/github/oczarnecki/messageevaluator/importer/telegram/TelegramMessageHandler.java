@@ -0,0 +1,27 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+/**
+ * Receives the chats and messages of a telegram export one at a time, while they are read by a
+ * {@link TelegramStreamImporter}. For every chat, {@link #chatStarted(String)} is called once, followed by a call to
+ * {@link #messageParsed(TelegramMessage)} for every message of the chat and finally by {@link #chatFinished()}.
+ */
+public interface TelegramMessageHandler {
+    /**
+     * Called when the messages of a new chat are about to be read.
+     *
+     * @param name name of the chat
+     */
+    void chatStarted(String name);
+
+    /**
+     * Called for every message of the current chat which passes the import filters.
+     *
+     * @param message the parsed message
+     */
+    void messageParsed(TelegramMessage message);
+
+    /**
+     * Called after the last message of the current chat has been read.
+     */
+    void chatFinished();
+}
@@ -0,0 +1,47 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import com.github.oczarnecki.messageevaluator.importer.MessageImporter;
+import com.github.oczarnecki.messageevaluator.importer.MessageSink;
+
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Imports json exports of Telegram Desktop through a {@link TelegramStreamImporter}, which passes the messages to the
+ * sink straight from its reused buffers.
+ */
+public final class TelegramMessageImporter implements MessageImporter {
+    private final boolean keepEntities;
+
+    /**
+     * Create an importer which does not keep the text entities of the messages.
+     */
+    public TelegramMessageImporter() {
+        this(false);
+    }
+
+    /**
+     * @param keepEntities whether the text entities of the messages are passed to the sinks
+     * @see TelegramStreamImporter#setKeepEntities(boolean)
+     */
+    public TelegramMessageImporter(boolean keepEntities) {
+        this.keepEntities = keepEntities;
+    }
+
+    @Override
+    public String getName() {
+        return "Telegram";
+    }
+
+    @Override
+    public boolean accepts(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".json");
+    }
+
+    @Override
+    public void importMessages(String sourceName, InputStream input, MessageSink sink) throws ImportException {
+        TelegramStreamImporter importer = new TelegramStreamImporter(input);
+        importer.setKeepEntities(keepEntities);
+        importer.importMessages(sink);
+    }
+}
@@ -0,0 +1,481 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import com.github.oczarnecki.messageevaluator.importer.ChatCollectingSink;
+import com.github.oczarnecki.messageevaluator.importer.CompressedSources;
+import com.github.oczarnecki.messageevaluator.importer.MessageSink;
+import com.github.oczarnecki.messageevaluator.instrumentation.DropReason;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.github.oczarnecki.messageevaluator.importer.telegram.TelegramImporter.*;
+
+/**
+ * Imports telegram chats from a json data source without building a tree of the whole json document. The data are
+ * read event by event with a {@link JsonParser}, and every message is passed to a {@link MessageSink} or a
+ * {@link TelegramMessageHandler} as soon as it has been read. Thereby the memory needed by the import itself is bounded by the size of a single message.
+ * Messages are dropped by the same rules as by {@link TelegramImporter}.
+ * <p>
+ * Telegram Desktop writes the name of a chat before its messages, which is required by this importer, so that the
+ * messages can be passed on right away.
+ * <p>
+ * Composite texts are flattened into a single reused buffer, part by part. Optionally, the type and span of every
+ * formatted part of a composite text, like a mention or a hashtag, is kept as {@link TextEntity} of the message.
+ */
+public final class TelegramStreamImporter {
+    private final InputStream input;
+
+    /**
+     * the flattened text of the message currently being read, reused for all messages
+     */
+    private final StringBuilder textBuffer;
+
+    private final TimestampParser timestampParser;
+
+    /**
+     * the entities of the message currently being read, if entities are kept
+     */
+    private final List<TextEntity> entityBuffer;
+    /**
+     * the sender and timestamp of the message currently being read
+     */
+    private String sender;
+    private long timestamp;
+    private boolean keepEntities;
+    private ContentFile contentFile;
+
+    /**
+     * Create a new Importer with an underlying input stream.
+     *
+     * @param input the {@link InputStream} where the telegram data is to be read from
+     */
+    public TelegramStreamImporter(InputStream input) {
+        this.input = input;
+        this.textBuffer = new StringBuilder();
+        this.timestampParser = new TimestampParser();
+        this.entityBuffer = new ArrayList<>();
+    }
+
+    /**
+     * Create a new Importer with an underlying file input stream.
+     *
+     * @param dataFile the file from which to create the {@link InputStream}, which may be compressed
+     * @throws ImportException when {@link FileInputStream#FileInputStream(File)} throws a FileNotFoundException, or the
+     *                         file is compressed and can not be decompressed
+     * @see CompressedSources
+     */
+    public TelegramStreamImporter(File dataFile) throws ImportException {
+        this(CompressedSources.open(dataFile));
+    }
+
+    /**
+     * @param keepEntities whether the formatted parts of composite texts are kept as {@link TextEntity}s of the
+     *                     messages, false by default
+     */
+    public void setKeepEntities(boolean keepEntities) {
+        this.keepEntities = keepEntities;
+    }
+
+    /**
+     * @param contentFile the file to which {@link #importChats()} writes the contents of the chats, instead of keeping
+     *                    them on the heap, or null to keep them on the heap, which is the default
+     */
+    public void setContentFile(ContentFile contentFile) {
+        this.contentFile = contentFile;
+    }
+
+    /**
+     * Perform the import operation, by collecting the messages read from the underlying {@link InputStream} into
+     * {@link TelegramChat}s. After this method has completed, the stream is closed. Hence, it may only be called once.
+     *
+     * @return a collection of {@link TelegramChat}s represented by the underlying input stream.
+     * @throws ImportException if the {@link InputStream} causes an {@link java.io.IOException} or the json data itself
+     *                         is malformed
+     * @see #importMessages(MessageSink)
+     */
+    public Collection<TelegramChat> importChats() throws ImportException {
+        return importChats(new SenderDictionary());
+    }
+
+    /**
+     * Like {@link #importChats()}, but interns the senders with the given dictionary.
+     *
+     * @param senders the dictionary by which sender names are interned
+     * @return a collection of {@link TelegramChat}s represented by the underlying input stream.
+     * @throws ImportException if the {@link InputStream} causes an {@link java.io.IOException} or the json data itself
+     *                         is malformed
+     */
+    public Collection<TelegramChat> importChats(SenderDictionary senders) throws ImportException {
+        ChatCollectingSink collector = new ChatCollectingSink(senders, contentFile);
+        importMessages(collector);
+        return collector.getChats();
+    }
+
+    /**
+     * Perform the import operation, by passing all chats and messages read from the underlying {@link InputStream} to
+     * a handler. Every message is passed as a {@link TelegramMessage}, including its entities, so one object is
+     * created per message. See {@link #importMessages(MessageSink)} for the other details.
+     *
+     * @param handler the handler receiving the chats and messages in the order they appear in the data
+     * @throws ImportException if the {@link InputStream} causes an {@link java.io.IOException} or the json data itself
+     *                         is malformed
+     */
+    public void importMessages(TelegramMessageHandler handler) throws ImportException {
+        importMessages(new MessageSink() {
+            @Override
+            public void chatStarted(String name) {
+                handler.chatStarted(name);
+            }
+
+            @Override
+            public void messageParsed(long epochSecond, String sender, CharSequence content) {
+                handler.messageParsed(new TelegramMessage(epochSecond, sender, content.toString()));
+            }
+
+            @Override
+            public void messageParsed(long epochSecond, String sender, CharSequence content,
+                                      List<TextEntity> entities) {
+                handler.messageParsed(new TelegramMessage(epochSecond, sender, content.toString(),
+                        entities.isEmpty() ? Collections.emptyList() : new ArrayList<>(entities)));
+            }
+
+            @Override
+            public void chatFinished() {
+                handler.chatFinished();
+            }
+        });
+    }
+
+    /**
+     * Perform the import operation, by passing all chats and messages read from the underlying {@link InputStream} to
+     * a sink. No objects are created per message: the content is passed in the reused text buffer of this importer,
+     * and, if entities are kept, the entities in a reused list by
+     * {@link MessageSink#messageParsed(long, String, CharSequence, List)}. After this method has completed, the stream
+     * is closed. Hence, it may only be called once. If the data turn out to be malformed, the sink may already have
+     * received some of the messages before the exception is thrown.
+     *
+     * @param sink the sink receiving the chats and messages in the order they appear in the data
+     * @throws ImportException if the {@link InputStream} causes an {@link java.io.IOException} or the json data itself
+     *                         is malformed
+     */
+    public void importMessages(MessageSink sink) throws ImportException {
+        try (JsonParser parser = Json.createParser(input)) {
+            if (parser.next() != Event.START_OBJECT) {
+                throw wrongFieldType();
+            }
+            boolean chatsFound = false;
+            while (nextKey(parser)) {
+                String key = parser.getString();
+                Event value = parser.next();
+                if (key.equals(CHATS_FIELD) && !chatsFound) {
+                    parseChats(parser, value, sink);
+                    chatsFound = true;
+                } else {
+                    skipValue(parser, value);
+                }
+            }
+            requireField(chatsFound);
+        } catch (JsonParsingException | NoSuchElementException cause) {
+            throw new ImportException("malformed json", cause);
+        } catch (JsonException cause) {
+            throw new ImportException("IOException while parsing json", cause.getCause());
+        }
+    }
+
+    /**
+     * Reads the chats object, which contains the list of all chats.
+     *
+     * @param parser  the parser, positioned at the start of the chats object
+     * @param value   the event starting the value of the chats field
+     * @param handler the receiver of the chats
+     * @throws ImportException if the json data are malformed
+     */
+    private void parseChats(JsonParser parser, Event value, MessageSink handler) throws ImportException {
+        if (value != Event.START_OBJECT) {
+            throw wrongFieldType();
+        }
+        boolean listFound = false;
+        while (nextKey(parser)) {
+            String key = parser.getString();
+            Event listValue = parser.next();
+            if (key.equals(CHATS_LIST_FIELD) && !listFound) {
+                parseChatList(parser, listValue, handler);
+                listFound = true;
+            } else {
+                skipValue(parser, listValue);
+            }
+        }
+        requireField(listFound);
+    }
+
+    private void parseChatList(JsonParser parser, Event value, MessageSink handler) throws ImportException {
+        if (value != Event.START_ARRAY) {
+            throw wrongFieldType();
+        }
+        for (Event chat = parser.next(); chat != Event.END_ARRAY; chat = parser.next()) {
+            if (chat != Event.START_OBJECT) {
+                throw wrongFieldType();
+            }
+            parseChat(parser, handler);
+        }
+    }
+
+    /**
+     * Reads a single chat and passes its messages to the handler.
+     *
+     * @param parser  the parser, positioned at the start of the chat object
+     * @param handler the receiver of the chat
+     * @throws ImportException if the json data are malformed
+     */
+    private void parseChat(JsonParser parser, MessageSink handler) throws ImportException {
+        String name = null;
+        boolean messagesFound = false;
+        while (nextKey(parser)) {
+            String key = parser.getString();
+            Event value = parser.next();
+            if (key.equals(CHAT_NAME_FIELD) && !messagesFound) {
+                if (value != Event.VALUE_STRING) {
+                    throw wrongFieldType();
+                }
+                name = parser.getString();
+            } else if (key.equals(MESSAGE_LIST_FIELD) && !messagesFound) {
+                if (name == null) {
+                    throw new ImportException("the name of a chat has to precede its messages");
+                }
+                parseMessages(parser, value, name, handler);
+                messagesFound = true;
+            } else {
+                skipValue(parser, value);
+            }
+        }
+        requireField(messagesFound);
+        handler.chatFinished();
+    }
+
+    private void parseMessages(JsonParser parser, Event value, String chatName, MessageSink handler)
+            throws ImportException {
+        if (value != Event.START_ARRAY) {
+            throw wrongFieldType();
+        }
+        handler.chatStarted(chatName);
+        for (Event message = parser.next(); message != Event.END_ARRAY; message = parser.next()) {
+            if (message != Event.START_OBJECT) {
+                throw wrongFieldType();
+            }
+            if (!parseMessage(parser)) {
+                continue;
+            }
+            if (keepEntities) {
+                handler.messageParsed(timestamp, sender, textBuffer, entityBuffer);
+            } else {
+                handler.messageParsed(timestamp, sender, textBuffer);
+            }
+        }
+    }
+
+    /**
+     * Reads a single telegram message. Since the fields of a message may appear in any order, they are collected
+     * first and then checked in the same order as by {@link TelegramImporter}. Hence the same messages are dropped by
+     * returning false: those which are not of type message, those without text content and those where the sender is
+     * null. The message is left in the buffers and fields of this importer.
+     *
+     * @param parser the parser, positioned at the start of the message object
+     * @return true, if the message has been read, or false, if the message is to be dropped
+     * @throws ImportException if the data are malformed
+     */
+    private boolean parseMessage(JsonParser parser) throws ImportException {
+        Event typeEvent = null, senderEvent = null, dateEvent = null;
+        String type = null, sender = null, date = null;
+        boolean textFound = false, textValid = false;
+
+        while (nextKey(parser)) {
+            String key = parser.getString();
+            Event value = parser.next();
+            switch (key) {
+                case MESSAGE_TYPE_FIELD:
+                    typeEvent = value;
+                    type = stringOrSkip(parser, value);
+                    break;
+                case MESSAGE_FROM_FIELD:
+                    senderEvent = value;
+                    sender = stringOrSkip(parser, value);
+                    break;
+                case MESSAGE_DATE_FIELD:
+                    dateEvent = value;
+                    date = stringOrSkip(parser, value);
+                    break;
+                case MESSAGE_TEXT_FIELD:
+                    textFound = true;
+                    textValid = parseText(parser, value);
+                    break;
+                default:
+                    skipValue(parser, value);
+            }
+        }
+
+        if (!requireString(typeEvent, type).equals(MESSAGE_TYPE)) {
+            Instrumentation.get().messageDropped(DropReason.NOT_A_MESSAGE);
+            return false;
+        }
+
+        requireField(textFound);
+        if (!textValid) {
+            throw new ImportException("Unexpected type of message text part. Should be either string or object");
+        }
+        if (textBuffer.length() == 0) {
+            Instrumentation.get().messageDropped(DropReason.EMPTY_TEXT);
+            return false;
+        }
+
+        if (senderEvent == Event.VALUE_NULL) {
+            Instrumentation.get().messageDropped(DropReason.NO_SENDER);
+            return false;
+        }
+        this.sender = requireString(senderEvent, sender);
+        this.timestamp = timestampParser.parse(requireString(dateEvent, date));
+        return true;
+    }
+
+    /**
+     * Flattens the value of a text field into the text buffer. Text fields are either simple (strings) or composite
+     * (arrays of strings and objects with a text field of their own).
+     *
+     * @param parser the parser, positioned at the start of the value
+     * @param value  the event starting the value
+     * @return true, if the text value is well formed
+     */
+    private boolean parseText(JsonParser parser, Event value) {
+        textBuffer.setLength(0);
+        entityBuffer.clear();
+        switch (value) {
+            case VALUE_STRING:
+                textBuffer.append(parser.getString());
+                return true;
+            case START_ARRAY:
+                boolean valid = true;
+                for (Event textPart = parser.next(); textPart != Event.END_ARRAY; textPart = parser.next()) {
+                    if (textPart == Event.VALUE_STRING) {
+                        textBuffer.append(parser.getString());
+                    } else if (textPart == Event.START_OBJECT) {
+                        valid &= parseTextPart(parser);
+                    } else {
+                        skipValue(parser, textPart);
+                        valid = false;
+                    }
+                }
+                return valid;
+            default:
+                skipValue(parser, value);
+                return false;
+        }
+    }
+
+    /**
+     * Appends the text field of a composite text part (like a hashtag or mention) to the text buffer. If entities are
+     * kept, the type and span of the part are added to the entity buffer.
+     *
+     * @param parser the parser, positioned at the start of the text part object
+     * @return true, if the part has a text field of type string
+     */
+    private boolean parseTextPart(JsonParser parser) {
+        boolean textFound = false;
+        int offset = textBuffer.length();
+        String type = null;
+        while (nextKey(parser)) {
+            String key = parser.getString();
+            Event value = parser.next();
+            if (key.equals(MESSAGE_PART_TEXT_FIELD) && value == Event.VALUE_STRING && !textFound) {
+                textBuffer.append(parser.getString());
+                textFound = true;
+            } else if (keepEntities && key.equals(MESSAGE_PART_TYPE_FIELD) && value == Event.VALUE_STRING) {
+                type = parser.getString();
+            } else {
+                skipValue(parser, value);
+            }
+        }
+        if (textFound && type != null) {
+            entityBuffer.add(new TextEntity(type, offset, textBuffer.length() - offset));
+        }
+        return textFound;
+    }
+
+    /**
+     * Advances the parser to the next key of the current object.
+     *
+     * @param parser the parser, positioned inside an object
+     * @return true, if a key has been read, false if the end of the object has been reached
+     */
+    private static boolean nextKey(JsonParser parser) {
+        return parser.next() == Event.KEY_NAME;
+    }
+
+    /**
+     * @param parser the parser
+     * @param value  the event starting the current value
+     * @return the current value, if it is a string. Otherwise the value is skipped and null is returned.
+     */
+    private static String stringOrSkip(JsonParser parser, Event value) {
+        if (value == Event.VALUE_STRING) {
+            return parser.getString();
+        }
+        skipValue(parser, value);
+        return null;
+    }
+
+    /**
+     * Skips the current value, including all nested values if it is an object or an array.
+     *
+     * @param parser the parser
+     * @param value  the event starting the value
+     */
+    private static void skipValue(JsonParser parser, Event value) {
+        if (value != Event.START_OBJECT && value != Event.START_ARRAY) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            switch (parser.next()) {
+                case START_OBJECT:
+                case START_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static String requireString(Event event, String value) throws ImportException {
+        requireField(event != null);
+        if (event != Event.VALUE_STRING) {
+            throw wrongFieldType();
+        }
+        return value;
+    }
+
+    private static void requireField(boolean found) throws ImportException {
+        if (!found) {
+            throw new ImportException("required json field not set");
+        }
+    }
+
+    private static ImportException wrongFieldType() {
+        return new ImportException("wrong json field type");
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The text entities of the messages of a chat, stored column by column like the messages themselves: the interned type
+ * of every entity, its offset and its length. The entities of message i range from
+ * messageOffsets[i] to messageOffsets[i + 1]. Chats which have been imported without entities share an empty
+ * instance, which takes no memory per message.
+ */
+final class TextEntities {
+    /**
+     * the entities of a chat without entities
+     */
+    static final TextEntities NONE = new TextEntities(null, new String[0], new int[0], new int[0]);
+
+    private final int[] messageOffsets;
+    private final String[] types;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    private TextEntities(int[] messageOffsets, String[] types, int[] offsets, int[] lengths) {
+        this.messageOffsets = messageOffsets;
+        this.types = types;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * @param message index of a message
+     * @return the entities of the message, in the order of the export
+     */
+    List<TextEntity> get(int message) {
+        if (messageOffsets == null) {
+            return Collections.emptyList();
+        }
+        int start = messageOffsets[message], end = messageOffsets[message + 1];
+        List<TextEntity> entities = new ArrayList<>(end - start);
+        for (int entity = start; entity < end; entity++) {
+            entities.add(new TextEntity(types[entity], offsets[entity], lengths[entity]));
+        }
+        return Collections.unmodifiableList(entities);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TextEntities that = (TextEntities) o;
+        return Arrays.equals(messageOffsets, that.messageOffsets) &&
+                Arrays.equals(types, that.types) &&
+                Arrays.equals(offsets, that.offsets) &&
+                Arrays.equals(lengths, that.lengths);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(messageOffsets);
+        result = 31 * result + Arrays.hashCode(types);
+        result = 31 * result + Arrays.hashCode(offsets);
+        result = 31 * result + Arrays.hashCode(lengths);
+        return result;
+    }
+
+    /**
+     * Collects the entities of the messages of a chat, in the order of the messages. The columns are only allocated
+     * once the first entity is added.
+     */
+    static final class Builder {
+        private final Map<String, String> internedTypes = new HashMap<>();
+        private int[] messageOffsets;
+        private String[] types = new String[0];
+        private int[] offsets = new int[0];
+        private int[] lengths = new int[0];
+        private int count;
+        /**
+         * the number of messages whose start offsets have been set
+         */
+        private int messageCount;
+
+        /**
+         * Adds the entities of a message. Messages must be added in ascending order, messages without entities may be
+         * left out.
+         *
+         * @param message  index of the message
+         * @param entities the entities of the message
+         */
+        void add(int message, List<TextEntity> entities) {
+            if (entities.isEmpty()) {
+                return;
+            }
+            startMessages(message + 1);
+            if (count + entities.size() > types.length) {
+                int capacity = Math.max(2 * types.length, Math.max(16, count + entities.size()));
+                types = Arrays.copyOf(types, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            for (TextEntity entity : entities) {
+                types[count] = internedTypes.computeIfAbsent(entity.getType(), type -> type);
+                offsets[count] = entity.getOffset();
+                lengths[count] = entity.getLength();
+                count++;
+            }
+        }
+
+        /**
+         * Adds the entities of all messages of a chat.
+         *
+         * @param firstMessage index of the first message of the chat
+         * @param entities     the entities of the chat
+         * @param messages     the number of messages of the chat
+         */
+        void addAll(int firstMessage, TextEntities entities, int messages) {
+            if (entities.messageOffsets != null) {
+                for (int message = 0; message < messages; message++) {
+                    add(firstMessage + message, entities.get(message));
+                }
+            }
+        }
+
+        /**
+         * Sets the start offsets of the messages up to the given one to the current number of entities.
+         *
+         * @param end the index of the message after the last message to start
+         */
+        private void startMessages(int end) {
+            if (messageOffsets == null) {
+                messageOffsets = new int[Math.max(16, end + 1)];
+            } else if (end + 1 > messageOffsets.length) {
+                messageOffsets = Arrays.copyOf(messageOffsets, Math.max(2 * messageOffsets.length, end + 1));
+            }
+            for (; messageCount < end; messageCount++) {
+                messageOffsets[messageCount] = count;
+            }
+        }
+
+        /**
+         * @param messages the number of messages of the chat
+         * @return the entities of the messages
+         */
+        TextEntities build(int messages) {
+            if (messageOffsets == null) {
+                return NONE;
+            }
+            startMessages(messages + 1);
+            return new TextEntities(Arrays.copyOf(messageOffsets, messages + 1), Arrays.copyOf(types, count),
+                    Arrays.copyOf(offsets, count), Arrays.copyOf(lengths, count));
+        }
+    }
+}
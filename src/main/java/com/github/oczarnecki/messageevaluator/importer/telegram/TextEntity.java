@@ -0,0 +1,69 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import java.util.Objects;
+
+/**
+ * Immutable object representing a formatted part of the text of a telegram message, like a mention, a hashtag or a
+ * link. The span refers to the flattened text content of the message.
+ */
+public final class TextEntity {
+    private final String type;
+    private final int offset;
+    private final int length;
+
+    /**
+     * @param type   the type of the part as given by the export, for example "mention" or "hashtag"
+     * @param offset the start of the part in the text content of the message
+     * @param length the length of the part
+     */
+    public TextEntity(String type, int offset, int length) {
+        this.type = Objects.requireNonNull(type);
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return the type of the part as given by the export, for example "mention" or "hashtag"
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the start of the part in the text content of the message
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the length of the part
+     */
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TextEntity that = (TextEntity) o;
+        return offset == that.offset &&
+                length == that.length &&
+                type.equals(that.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return "TextEntity{" +
+                "type='" + type + '\'' +
+                ", offset=" + offset +
+                ", length=" + length +
+                '}';
+    }
+}
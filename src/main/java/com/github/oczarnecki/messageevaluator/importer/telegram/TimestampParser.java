@@ -0,0 +1,101 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Parses the dates of telegram messages, which Telegram Desktop formats like 2015-12-24T06:00:00, into seconds since
+ * the epoch, treating the local date and time as UTC. Dates of this format are decoded digit by digit, without
+ * creating any objects. Since consecutive messages are mostly sent on the same day, the epoch second of the last
+ * parsed day is cached, so that usually only the time of day is decoded. Dates which do not match the format exactly,
+ * for example because they have fractional seconds, are parsed by {@link TelegramImporter#parseDate(String)}.
+ * <p>
+ * A parser keeps state between dates and is not thread safe.
+ */
+final class TimestampParser {
+    private static final int LENGTH = "yyyy-MM-ddTHH:mm:ss".length();
+    private static final int DATE_LENGTH = "yyyy-MM-dd".length();
+    private static final int SECONDS_PER_MINUTE = 60, SECONDS_PER_HOUR = 3600, SECONDS_PER_DAY = 86400;
+
+    /**
+     * the date part of the last parsed date, and the epoch second at the start of its day
+     */
+    private final char[] cachedDate = new char[DATE_LENGTH];
+    private boolean dateCached;
+    private long cachedDaySecond;
+
+    /**
+     * @param date a date like 2015-12-24T06:00:00
+     * @return the local date and time in seconds since the epoch, as if it was UTC
+     * @throws ImportException if the string is not a valid date
+     */
+    long parse(CharSequence date) throws ImportException {
+        if (date.length() != LENGTH || date.charAt(10) != 'T' || date.charAt(13) != ':' || date.charAt(16) != ':') {
+            return parseStrictly(date);
+        }
+        int hour = twoDigits(date, 11), minute = twoDigits(date, 14), second = twoDigits(date, 17);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return parseStrictly(date);
+        }
+        if (!isCachedDate(date)) {
+            if (!cacheDate(date)) {
+                return parseStrictly(date);
+            }
+        }
+        return cachedDaySecond + hour * SECONDS_PER_HOUR + minute * SECONDS_PER_MINUTE + second;
+    }
+
+    private boolean isCachedDate(CharSequence date) {
+        if (!dateCached) {
+            return false;
+        }
+        // the day changes more often than the month or year, so the comparison starts at the end
+        for (int index = DATE_LENGTH - 1; index >= 0; index--) {
+            if (date.charAt(index) != cachedDate[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the date part of a date and caches it.
+     *
+     * @return false, if the date part does not match the format or is no valid date
+     */
+    private boolean cacheDate(CharSequence date) {
+        int year = twoDigits(date, 0) * 100 + twoDigits(date, 2);
+        int month = twoDigits(date, 5), day = twoDigits(date, 8);
+        if (year < 0 || month < 0 || day < 0 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return false;
+        }
+        long epochDay;
+        try {
+            epochDay = LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException invalidDate) {
+            return false;
+        }
+        for (int index = 0; index < DATE_LENGTH; index++) {
+            cachedDate[index] = date.charAt(index);
+        }
+        cachedDaySecond = epochDay * SECONDS_PER_DAY;
+        dateCached = true;
+        return true;
+    }
+
+    /**
+     * @return the value of the two decimal digits at the index, or a negative number if they are no digits
+     */
+    private static int twoDigits(CharSequence date, int index) {
+        int tens = date.charAt(index) - '0', ones = date.charAt(index + 1) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return -1000;
+        }
+        return tens * 10 + ones;
+    }
+
+    private static long parseStrictly(CharSequence date) throws ImportException {
+        return TelegramImporter.parseDate(date.toString()).toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,416 @@
+package com.github.oczarnecki.messageevaluator.importer.whatsapp;
+
+import com.github.oczarnecki.messageevaluator.importer.LineScanner;
+import com.github.oczarnecki.messageevaluator.importer.MessageImporter;
+import com.github.oczarnecki.messageevaluator.importer.MessageSink;
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.instrumentation.DropReason;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Imports the text exports of WhatsApp chats, which hold a single chat each. Every message starts with a line like
+ * <pre>
+ * 12/24/16, 6:00 AM - Sender: text    (Android)
+ * [24.12.16, 06:00:00] Sender: text   (iOS)
+ * </pre>
+ * and may continue on the following lines. Lines starting with a date but without a sender, like notifications about
+ * encryption or new members, are dropped and counted as {@link DropReason#NOT_A_MESSAGE}. Dates separated by dots are read day first. The order of dates separated by
+ * slashes depends on the locale of the export, so it is decided once per file by the first date which is only valid in
+ * one order, like 24/12/16. Messages before that date are held back until the order is decided, and read month first
+ * if no date of the file decides it. The chat is named after the file.
+ * <p>
+ * The header of a line is decoded character by character, without regular expressions.
+ */
+public final class WhatsAppImporter implements MessageImporter {
+    private static final String FILE_EXTENSION = ".txt";
+    private static final String[] FILE_NAME_PREFIXES = {"WhatsApp Chat with ", "WhatsApp Chat - "};
+
+    @Override
+    public String getName() {
+        return "WhatsApp";
+    }
+
+    @Override
+    public boolean accepts(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(FILE_EXTENSION);
+    }
+
+    @Override
+    public void importMessages(String sourceName, InputStream input, MessageSink sink) throws ImportException {
+        try (ReadableByteChannel channel = Channels.newChannel(input)) {
+            sink.chatStarted(chatName(sourceName));
+            ChatParser parser = new ChatParser(sink);
+            new LineScanner(channel).scan(parser::parseLine);
+            parser.finish();
+            sink.chatFinished();
+        } catch (IOException cause) {
+            throw new ImportException("IOException while closing the source", cause);
+        }
+    }
+
+    /**
+     * @return the name of the chat exported to the file
+     */
+    static String chatName(String fileName) {
+        String name = fileName;
+        if (name.toLowerCase(Locale.ROOT).endsWith(FILE_EXTENSION)) {
+            name = name.substring(0, name.length() - FILE_EXTENSION.length());
+        }
+        for (String prefix : FILE_NAME_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return name.substring(prefix.length());
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Parses the lines of a single chat. The message being read is kept until a line starting the next message has
+     * been read.
+     */
+    private static final class ChatParser {
+        private static final int NOT_A_HEADER = -1, NO_SENDER = -2;
+
+        private final MessageSink sink;
+        private final StringBuilder content = new StringBuilder();
+        private final Cursor cursor = new Cursor();
+        private boolean messagePending;
+        private long epochSecond;
+        private String sender;
+
+        /**
+         * the order of dates separated by slashes, which is null until a date of the file decides it
+         */
+        private Boolean monthFirst;
+        /**
+         * the messages read before the order of the dates has been decided
+         */
+        private final List<UndecidedMessage> undecidedMessages = new ArrayList<>();
+        /**
+         * the timestamp of the current message if its date is read day first, if it is another than month first
+         */
+        private long dayFirstSecond;
+        private boolean ambiguous;
+
+        /**
+         * the day of the last header, to skip its validation for the following messages of the same day
+         */
+        private int cachedDate = -1;
+        private long cachedDaySecond;
+
+        /**
+         * the fields of the header of the current line
+         */
+        private long headerSecond, headerDayFirstSecond;
+        private boolean headerAmbiguous;
+        private int senderStart, senderEnd;
+
+        ChatParser(MessageSink sink) {
+            this.sink = sink;
+        }
+
+        void parseLine(CharSequence line) {
+            int contentStart = parseHeader(line);
+            if (contentStart == NOT_A_HEADER) {
+                if (messagePending) {
+                    content.append('\n').append(line);
+                }
+                return;
+            }
+            finishMessage();
+            if (contentStart == NO_SENDER) {
+                Instrumentation.get().messageDropped(DropReason.NOT_A_MESSAGE);
+                return;
+            }
+            messagePending = true;
+            epochSecond = headerSecond;
+            dayFirstSecond = headerDayFirstSecond;
+            ambiguous = headerAmbiguous;
+            sender = senderName(line);
+            content.append(line, contentStart, line.length());
+        }
+
+        void finishMessage() {
+            if (messagePending) {
+                if (monthFirst == null && (ambiguous || !undecidedMessages.isEmpty())) {
+                    undecidedMessages.add(new UndecidedMessage(epochSecond, ambiguous ? dayFirstSecond : epochSecond,
+                            sender, content.toString()));
+                } else {
+                    sink.messageParsed(ambiguous && !monthFirst ? dayFirstSecond : epochSecond, sender, content);
+                }
+                messagePending = false;
+            }
+            content.setLength(0);
+        }
+
+        /**
+         * Finishes the last message, and passes the messages which are still undecided month first.
+         */
+        void finish() {
+            finishMessage();
+            if (monthFirst == null) {
+                decide(true);
+            }
+        }
+
+        /**
+         * Decides the order of dates separated by slashes, and passes the messages held back so far.
+         */
+        private void decide(boolean monthFirst) {
+            this.monthFirst = monthFirst;
+            for (UndecidedMessage message : undecidedMessages) {
+                sink.messageParsed(monthFirst ? message.monthFirstSecond : message.dayFirstSecond, message.sender,
+                        message.content);
+            }
+            undecidedMessages.clear();
+        }
+
+        /**
+         * @return the sender of the current line, which is the sender of the previous message if it has the same name
+         */
+        private String senderName(CharSequence line) {
+            int length = senderEnd - senderStart;
+            if (sender != null && sender.length() == length) {
+                boolean same = true;
+                for (int index = 0; index < length && same; index++) {
+                    same = sender.charAt(index) == line.charAt(senderStart + index);
+                }
+                if (same) {
+                    return sender;
+                }
+            }
+            return line.subSequence(senderStart, senderEnd).toString();
+        }
+
+        /**
+         * Decodes the header of a line, setting the timestamp and the span of the sender.
+         *
+         * @return the start of the content, {@link #NO_SENDER} if the line starts a message without sender, or
+         * {@link #NOT_A_HEADER} if the line continues the previous message
+         */
+        private int parseHeader(CharSequence line) {
+            cursor.reset(line);
+            cursor.skip('\u200E');
+            boolean bracketed = cursor.skip('[');
+
+            int firstField = cursor.number(4);
+            int firstDigits = cursor.digits;
+            char separator = cursor.peek();
+            if (firstField < 0 || (separator != '/' && separator != '.' && separator != '-')
+                    || !cursor.skip(separator)) {
+                return NOT_A_HEADER;
+            }
+            int secondField = cursor.number(2);
+            if (secondField < 0 || !cursor.skip(separator)) {
+                return NOT_A_HEADER;
+            }
+            int thirdField = cursor.number(4);
+            int thirdDigits = cursor.digits;
+            if (thirdField < 0) {
+                return NOT_A_HEADER;
+            }
+            cursor.skip(',');
+            if (!cursor.skip(' ')) {
+                return NOT_A_HEADER;
+            }
+
+            int hour = cursor.number(2), minute = -1, second = 0;
+            if (hour >= 0 && cursor.skip(':')) {
+                minute = cursor.number(2);
+                if (cursor.skip(':')) {
+                    second = cursor.number(2);
+                }
+            }
+            if (minute < 0 || second < 0) {
+                return NOT_A_HEADER;
+            }
+            int afternoon = cursor.meridiem();
+            if (afternoon >= 0) {
+                if (hour < 1 || hour > 12) {
+                    return NOT_A_HEADER;
+                }
+                hour = hour % 12 + 12 * afternoon;
+            }
+            if (hour > 23 || minute > 59 || second > 59) {
+                return NOT_A_HEADER;
+            }
+            if (bracketed ? !(cursor.skip(']') && cursor.skip(' ')) : !cursor.skipSeparator()) {
+                return NOT_A_HEADER;
+            }
+
+            int year, month, day;
+            boolean slashed = separator == '/' && firstDigits != 4;
+            if (firstDigits == 4) {
+                year = firstField;
+                month = secondField;
+                day = thirdField;
+            } else {
+                year = thirdField;
+                if (slashed && (monthFirst != null ? monthFirst : firstField <= 12)) {
+                    month = firstField;
+                    day = secondField;
+                } else {
+                    day = firstField;
+                    month = secondField;
+                }
+            }
+            if (firstDigits != 4 && thirdDigits == 2) {
+                year += 2000;
+            }
+            long daySecond = daySecond(year, month, day);
+            if (daySecond == Long.MIN_VALUE) {
+                return NOT_A_HEADER;
+            }
+            long timeOfDay = hour * 3600L + minute * 60L + second;
+            headerSecond = daySecond + timeOfDay;
+            headerAmbiguous = false;
+            if (slashed && monthFirst == null) {
+                if (firstField > 12 || secondField > 12) {
+                    decide(firstField <= 12);
+                } else if (firstField != secondField) {
+                    // both orders are valid, the day first timestamp is used if a later date decides so
+                    headerAmbiguous = true;
+                    headerDayFirstSecond = LocalDate.of(year, secondField, firstField).toEpochDay() * 86400L
+                            + timeOfDay;
+                }
+            }
+
+            senderStart = cursor.index;
+            senderEnd = cursor.find(": ");
+            if (senderEnd < 0) {
+                return NO_SENDER;
+            }
+            return senderEnd + 2;
+        }
+
+        /**
+         * @return the epoch second at the start of the day, or {@link Long#MIN_VALUE} if there is no such day
+         */
+        private long daySecond(int year, int month, int day) {
+            int date = (year * 100 + month) * 100 + day;
+            if (date != cachedDate) {
+                if (month < 1 || month > 12 || day < 1 || day > 31) {
+                    return Long.MIN_VALUE;
+                }
+                try {
+                    cachedDaySecond = LocalDate.of(year, month, day).toEpochDay() * 86400L;
+                } catch (DateTimeException invalidDate) {
+                    return Long.MIN_VALUE;
+                }
+                cachedDate = date;
+            }
+            return cachedDaySecond;
+        }
+    }
+
+    /**
+     * A message which has been read before the order of the dates of the file has been decided.
+     */
+    private static final class UndecidedMessage {
+        private final long monthFirstSecond;
+        private final long dayFirstSecond;
+        private final String sender;
+        private final String content;
+
+        UndecidedMessage(long monthFirstSecond, long dayFirstSecond, String sender, String content) {
+            this.monthFirstSecond = monthFirstSecond;
+            this.dayFirstSecond = dayFirstSecond;
+            this.sender = sender;
+            this.content = content;
+        }
+    }
+
+    /**
+     * A position within a line, which is reused for all lines.
+     */
+    private static final class Cursor {
+        private CharSequence line;
+        private int index;
+        /**
+         * the number of digits read by the last call of {@link #number(int)}
+         */
+        private int digits;
+
+        void reset(CharSequence line) {
+            this.line = line;
+            index = 0;
+        }
+
+        char peek() {
+            return index < line.length() ? line.charAt(index) : 0;
+        }
+
+        boolean skip(char expected) {
+            if (peek() == expected) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the value of the decimal number at the cursor, or -1 if there is none or it has too many digits
+         */
+        int number(int maxDigits) {
+            int value = 0;
+            digits = 0;
+            while (peek() >= '0' && peek() <= '9') {
+                if (++digits > maxDigits) {
+                    return -1;
+                }
+                value = 10 * value + (line.charAt(index++) - '0');
+            }
+            return digits == 0 ? -1 : value;
+        }
+
+        /**
+         * Skips a space and AM or PM, if present.
+         *
+         * @return 0 for AM, 1 for PM or -1 if there is none
+         */
+        int meridiem() {
+            if (index + 2 >= line.length() || !Character.isSpaceChar(line.charAt(index))) {
+                return -1;
+            }
+            char first = Character.toUpperCase(line.charAt(index + 1));
+            if ((first != 'A' && first != 'P') || Character.toUpperCase(line.charAt(index + 2)) != 'M') {
+                return -1;
+            }
+            index += 3;
+            return first == 'P' ? 1 : 0;
+        }
+
+        /**
+         * Skips the separator between the date and the sender of Android exports.
+         */
+        boolean skipSeparator() {
+            return skip(' ') && skip('-') && skip(' ');
+        }
+
+        /**
+         * @return the index of the first occurrence of the text after the cursor, or -1 if there is none
+         */
+        int find(String text) {
+            for (int start = index; start + text.length() <= line.length(); start++) {
+                boolean found = true;
+                for (int offset = 0; offset < text.length() && found; offset++) {
+                    found = line.charAt(start + offset) == text.charAt(offset);
+                }
+                if (found) {
+                    return start;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.oczarnecki.messageevaluator.instrumentation;
+
+/**
+ * The rules by which the importers drop messages.
+ */
+public enum DropReason {
+    /**
+     * the message is of another type than "message", like a service message
+     */
+    NOT_A_MESSAGE,
+    /**
+     * the message has no text, like a message only containing a photo
+     */
+    EMPTY_TEXT,
+    /**
+     * the sender of the message is null, like for deleted accounts
+     */
+    NO_SENDER,
+    /**
+     * the date of the message is missing or can not be parsed, like a malformed Date header of a mail
+     */
+    INVALID_DATE,
+    /**
+     * the message is contained in another export which is merged, see
+     * {@link com.github.oczarnecki.messageevaluator.merge.ChatMerger}
+     */
+    DUPLICATE
+}
@@ -0,0 +1,292 @@
+package com.github.oczarnecki.messageevaluator.instrumentation;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects the metrics of imports and analyses of the application: the throughput of imports, the messages dropped by
+ * the importers, the durations of the phases of an import and its display, and the size of the model. The metrics are
+ * exposed via JMX once the instrumentation has been registered (see {@link #register()}), and may be logged
+ * periodically by a {@link StatsLog}.
+ * <p>
+ * Recording a metric is cheap and safe from any thread: counters are {@link LongAdder}s, which do not contend between
+ * threads, and rates are only computed when they are read.
+ */
+public final class Instrumentation implements InstrumentationMXBean {
+    /**
+     * the name under which the instrumentation is registered with the platform MBean server
+     */
+    public static final String OBJECT_NAME = "com.github.oczarnecki.messageevaluator:type=Instrumentation";
+
+    private static final Instrumentation INSTANCE = new Instrumentation();
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongAdder[] droppedMessages;
+    private final LongAdder[] phaseCounts;
+    private final LongAdder[] phaseNanos;
+    private final LongAccumulator[] phaseMaxNanos;
+
+    private final Set<RunningImport> runningImports;
+    private final LongAdder importCount;
+    private final LongAdder finishedBytes;
+    private final LongAdder finishedMessages;
+    private volatile double lastBytesPerSecond;
+    private volatile double lastMessagesPerSecond;
+
+    private volatile int modelChatCount;
+    private volatile long modelMessageCount;
+    private volatile long modelHeapBytes;
+
+    Instrumentation() {
+        droppedMessages = adders(DropReason.values().length);
+        phaseCounts = adders(Phase.values().length);
+        phaseNanos = adders(Phase.values().length);
+        phaseMaxNanos = new LongAccumulator[Phase.values().length];
+        for (int phase = 0; phase < phaseMaxNanos.length; phase++) {
+            phaseMaxNanos[phase] = new LongAccumulator(Math::max, 0);
+        }
+        runningImports = ConcurrentHashMap.newKeySet();
+        importCount = new LongAdder();
+        finishedBytes = new LongAdder();
+        finishedMessages = new LongAdder();
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int index = 0; index < count; index++) {
+            adders[index] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * @return the instrumentation of the application
+     */
+    public static Instrumentation get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the instrumentation with the platform MBean server, unless it is registered already.
+     *
+     * @throws IllegalStateException if the MBean server rejects the instrumentation
+     */
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (InstanceAlreadyExistsException registeredConcurrently) {
+            // registered by another thread in the meantime
+        } catch (JMException cause) {
+            throw new IllegalStateException("could not register the instrumentation", cause);
+        }
+    }
+
+    /**
+     * @param reason the rule by which a message has been dropped
+     */
+    public void messageDropped(DropReason reason) {
+        droppedMessages[reason.ordinal()].increment();
+    }
+
+    /**
+     * @param phase the phase which has been run
+     * @param nanos the duration of the phase in nanoseconds
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        phaseCounts[phase.ordinal()].increment();
+        phaseNanos[phase.ordinal()].add(nanos);
+        phaseMaxNanos[phase.ordinal()].accumulate(nanos);
+    }
+
+    /**
+     * Starts to observe an import, whose throughput is included in the rates until it is finished.
+     *
+     * @param bytesRead      the bytes read by the import so far
+     * @param messagesParsed the messages parsed by the import so far
+     * @return the running import, which must be finished when the import ends
+     */
+    public RunningImport importStarted(LongSupplier bytesRead, LongSupplier messagesParsed) {
+        RunningImport runningImport = new RunningImport(bytesRead, messagesParsed);
+        runningImports.add(runningImport);
+        return runningImport;
+    }
+
+    /**
+     * @param chatCount    the number of chats of the model
+     * @param messageCount the number of messages of the model
+     * @param heapBytes    the estimated bytes of heap taken by the columns of the chats of the model
+     */
+    public void modelChanged(int chatCount, long messageCount, long heapBytes) {
+        modelChatCount = chatCount;
+        modelMessageCount = messageCount;
+        modelHeapBytes = heapBytes;
+    }
+
+    @Override
+    public long getImportCount() {
+        return importCount.sum();
+    }
+
+    @Override
+    public long getBytesImported() {
+        long bytes = finishedBytes.sum();
+        for (RunningImport runningImport : runningImports) {
+            bytes += runningImport.bytesRead.getAsLong();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getMessagesImported() {
+        long messages = finishedMessages.sum();
+        for (RunningImport runningImport : runningImports) {
+            messages += runningImport.messagesParsed.getAsLong();
+        }
+        return messages;
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        if (runningImports.isEmpty()) {
+            return lastBytesPerSecond;
+        }
+        double rate = 0;
+        for (RunningImport runningImport : runningImports) {
+            rate += runningImport.rate(runningImport.bytesRead.getAsLong());
+        }
+        return rate;
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        if (runningImports.isEmpty()) {
+            return lastMessagesPerSecond;
+        }
+        double rate = 0;
+        for (RunningImport runningImport : runningImports) {
+            rate += runningImport.rate(runningImport.messagesParsed.getAsLong());
+        }
+        return rate;
+    }
+
+    @Override
+    public Map<String, Long> getDroppedMessages() {
+        Map<String, Long> dropped = new LinkedHashMap<>();
+        for (DropReason reason : DropReason.values()) {
+            dropped.put(reason.name(), droppedMessages[reason.ordinal()].sum());
+        }
+        return dropped;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            counts.put(phase.name(), phaseCounts[phase.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseTotalMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            millis.put(phase.name(), phaseNanos[phase.ordinal()].sum() / NANOS_PER_MILLI);
+        }
+        return millis;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMaxMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            millis.put(phase.name(), phaseMaxNanos[phase.ordinal()].get() / NANOS_PER_MILLI);
+        }
+        return millis;
+    }
+
+    @Override
+    public int getModelChatCount() {
+        return modelChatCount;
+    }
+
+    @Override
+    public long getModelMessageCount() {
+        return modelMessageCount;
+    }
+
+    @Override
+    public long getModelHeapBytes() {
+        return modelHeapBytes;
+    }
+
+    /**
+     * @return a single line summarizing the metrics, as written by the {@link StatsLog}
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format(
+                "imports: %d finished, %,d bytes, %,d messages, %,.0f bytes/s, %,.0f messages/s; dropped: %s; "
+                        + "model: %d chats, %,d messages, %,d heap bytes; phases:",
+                getImportCount(), getBytesImported(), getMessagesImported(), getBytesPerSecond(),
+                getMessagesPerSecond(), getDroppedMessages(), modelChatCount, modelMessageCount, modelHeapBytes));
+        for (Phase phase : Phase.values()) {
+            long count = phaseCounts[phase.ordinal()].sum();
+            if (count > 0) {
+                summary.append(String.format(" %s %dx %.1f ms (max %.1f ms)", phase, count,
+                        phaseNanos[phase.ordinal()].sum() / NANOS_PER_MILLI,
+                        phaseMaxNanos[phase.ordinal()].get() / NANOS_PER_MILLI));
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * An import observed by the instrumentation.
+     */
+    public final class RunningImport {
+        private final LongSupplier bytesRead;
+        private final LongSupplier messagesParsed;
+        private final long startNanos;
+
+        private RunningImport(LongSupplier bytesRead, LongSupplier messagesParsed) {
+            this.bytesRead = bytesRead;
+            this.messagesParsed = messagesParsed;
+            this.startNanos = System.nanoTime();
+        }
+
+        private double rate(long count) {
+            long elapsed = System.nanoTime() - startNanos;
+            return elapsed <= 0 ? 0 : count * NANOS_PER_SECOND / elapsed;
+        }
+
+        /**
+         * Adds the final counts of the import to the totals, and keeps its rates until the next import is started.
+         */
+        public void finish() {
+            if (runningImports.remove(this)) {
+                long bytes = bytesRead.getAsLong(), messages = messagesParsed.getAsLong();
+                lastBytesPerSecond = rate(bytes);
+                lastMessagesPerSecond = rate(messages);
+                finishedBytes.add(bytes);
+                finishedMessages.add(messages);
+                importCount.increment();
+            }
+        }
+    }
+}
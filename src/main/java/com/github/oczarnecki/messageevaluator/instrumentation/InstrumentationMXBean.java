@@ -0,0 +1,69 @@
+package com.github.oczarnecki.messageevaluator.instrumentation;
+
+import java.util.Map;
+
+/**
+ * The metrics of the {@link Instrumentation}, as exposed via JMX. Durations are given in milliseconds, maps are keyed
+ * by the names of the {@link Phase}s and {@link DropReason}s.
+ */
+public interface InstrumentationMXBean {
+    /**
+     * @return the number of imports which have finished, successfully or not
+     */
+    long getImportCount();
+
+    /**
+     * @return the bytes read by all imports, including the running ones
+     */
+    long getBytesImported();
+
+    /**
+     * @return the messages parsed by all imports, including the running ones
+     */
+    long getMessagesImported();
+
+    /**
+     * @return the bytes read per second by the running imports, or by the last import if none is running
+     */
+    double getBytesPerSecond();
+
+    /**
+     * @return the messages parsed per second by the running imports, or by the last import if none is running
+     */
+    double getMessagesPerSecond();
+
+    /**
+     * @return the number of messages dropped per rule
+     */
+    Map<String, Long> getDroppedMessages();
+
+    /**
+     * @return the number of times each phase has been run
+     */
+    Map<String, Long> getPhaseCounts();
+
+    /**
+     * @return the total duration of each phase
+     */
+    Map<String, Double> getPhaseTotalMillis();
+
+    /**
+     * @return the longest duration of each phase
+     */
+    Map<String, Double> getPhaseMaxMillis();
+
+    /**
+     * @return the number of chats of the model
+     */
+    int getModelChatCount();
+
+    /**
+     * @return the number of messages of the model
+     */
+    long getModelMessageCount();
+
+    /**
+     * @return the estimated bytes of heap taken by the columns of the chats of the model
+     */
+    long getModelHeapBytes();
+}
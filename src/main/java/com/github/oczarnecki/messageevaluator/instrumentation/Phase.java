@@ -0,0 +1,31 @@
+package com.github.oczarnecki.messageevaluator.instrumentation;
+
+/**
+ * The phases whose durations are recorded by the {@link Instrumentation}.
+ */
+public enum Phase {
+    /**
+     * reading the source files of an import, summed over all reading threads
+     */
+    READ,
+    /**
+     * parsing the chats of an import, as CPU time summed over all parsing threads
+     */
+    PARSE,
+    /**
+     * building the indexes of the imported chats
+     */
+    BUILD_MODEL,
+    /**
+     * notifying the listeners of the model about a change
+     */
+    NOTIFY_LISTENERS,
+    /**
+     * converting histograms into the series of the chart
+     */
+    BUILD_SERIES,
+    /**
+     * computing a histogram from a time index
+     */
+    BUILD_HISTOGRAM
+}
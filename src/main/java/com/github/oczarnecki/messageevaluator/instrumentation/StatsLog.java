@@ -0,0 +1,44 @@
+package com.github.oczarnecki.messageevaluator.instrumentation;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Logs the {@link Instrumentation#summary() summary} of the instrumentation periodically at level INFO, on a daemon
+ * thread, until it is closed.
+ */
+public final class StatsLog implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(StatsLog.class.getName());
+
+    private final ScheduledExecutorService executor;
+
+    private StatsLog(Instrumentation instrumentation, long period, TimeUnit unit) {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> LOGGER.info(instrumentation.summary()), period, period, unit);
+    }
+
+    /**
+     * @param instrumentation the instrumentation whose metrics are logged
+     * @param period          the time between two log entries, greater than zero
+     * @param unit            the unit of the period
+     * @return the running log
+     */
+    public static StatsLog start(Instrumentation instrumentation, long period, TimeUnit unit) {
+        return new StatsLog(instrumentation, period, unit);
+    }
+
+    /**
+     * Stops logging.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.oczarnecki.messageevaluator.merge;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ContentFile;
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.instrumentation.DropReason;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merges the versions of a chat from several overlapping exports, like exports made on different machines or dates,
+ * into a single chat without duplicates. The messages of all versions are merged in timestamp order, and every message
+ * is identified by a 64 bit fingerprint of its timestamp, sender and content (see {@link MessageFingerprints}), which
+ * is looked up in a primitive hash set instead of comparing the contents of the messages. A message which occurs
+ * several times in one version, like two "ok"s sent in the same second, is kept as often as it occurs in the version
+ * containing it most often.
+ * <p>
+ * Merging takes time linear in the number of messages for a small number of versions, and only keeps the merged chat
+ * and 16 bytes per distinct message in memory besides the versions. Mergers are not thread safe, but mergers of
+ * different chats may share a {@link SenderDictionary} and a {@link ContentFile}.
+ */
+public final class ChatMerger {
+    private final SenderDictionary senders;
+    private final ContentFile contentFile;
+    private long duplicateCount;
+
+    /**
+     * @param senders     the dictionary by which sender names are interned, which should be the dictionary of the
+     *                    versions
+     * @param contentFile the file holding the contents of the merged chats, or null to keep them on the heap
+     */
+    public ChatMerger(SenderDictionary senders, ContentFile contentFile) {
+        this.senders = senders;
+        this.contentFile = contentFile;
+    }
+
+    /**
+     * Merges the versions of a chat. The messages of the first version come first among messages sent in the same
+     * second, the messages of the other versions are ordered by their version. The merged chat is only built once a
+     * message missing from the first version is found, so nothing is copied or spilled if the first version contains
+     * all messages.
+     *
+     * @param name     the name of the merged chat
+     * @param versions the versions of the chat, whose messages are usually sorted by their timestamps
+     * @return the merged chat, or the first version if it contains the messages of all versions already
+     */
+    public TelegramChat merge(String name, List<TelegramChat> versions) {
+        if (versions.size() == 1) {
+            return versions.get(0);
+        }
+        int totalCount = 0;
+        List<Cursor> cursors = new ArrayList<>(versions.size());
+        for (TelegramChat version : versions) {
+            totalCount += version.getMessageCount();
+            cursors.add(new Cursor(version));
+        }
+        LongHashSet fingerprints = new LongHashSet(versions.get(0).getMessageCount());
+        Cursor first = cursors.get(0);
+        TelegramChat.Builder merged = null;
+        int mergedCount = 0;
+        for (Cursor cursor = next(cursors); cursor != null; cursor = next(cursors)) {
+            if (fingerprints.add(cursor.fingerprint())) {
+                if (merged == null && cursor != first) {
+                    merged = new TelegramChat.Builder(name, senders, contentFile);
+                    first.copyPreviousTo(merged);
+                }
+                if (merged != null) {
+                    cursor.copyTo(merged);
+                }
+                mergedCount++;
+            } else {
+                Instrumentation.get().messageDropped(DropReason.DUPLICATE);
+            }
+            cursor.advance();
+        }
+        duplicateCount += totalCount - mergedCount;
+        return merged == null ? versions.get(0) : merged.build();
+    }
+
+    /**
+     * Picks the version with the earliest next message. A linear scan is faster than a heap for the few versions of a
+     * chat.
+     *
+     * @return the cursor of the version, or null if all messages have been merged
+     */
+    private static Cursor next(List<Cursor> cursors) {
+        Cursor next = null;
+        for (Cursor cursor : cursors) {
+            if (cursor.hasNext() && (next == null || cursor.timestamp() < next.timestamp())) {
+                next = cursor;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return the number of messages which have been dropped as duplicates by this merger
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * Iterates over the messages of a version in timestamp order, and computes their fingerprints.
+     */
+    private final class Cursor {
+        private final TelegramChat chat;
+        private final CharBuffer content;
+        private final IntBuffer contentOffsets;
+        /**
+         * the ids of the senders of the chat in the shared dictionary, by their ids in the chat
+         */
+        private final int[] senderIds;
+        /**
+         * the indexes of the messages in timestamp order, or null if the messages are sorted already
+         */
+        private final int[] order;
+        private int position;
+        private int index;
+
+        /**
+         * the fingerprints of the messages before the current one sent in the same second
+         */
+        private final MessageFingerprints.Occurrences occurrences = new MessageFingerprints.Occurrences();
+
+        private Cursor(TelegramChat chat) {
+            this.chat = chat;
+            this.content = chat.getContentColumn();
+            this.contentOffsets = chat.getContentOffsetColumn();
+            this.senderIds = new int[chat.getSenderCount()];
+            for (int sender = 0; sender < senderIds.length; sender++) {
+                senderIds[sender] = senders.intern(chat.getSender(sender));
+            }
+            this.order = timestampOrder(chat);
+            this.index = order == null || order.length == 0 ? 0 : order[0];
+        }
+
+        private boolean hasNext() {
+            return position < chat.getMessageCount();
+        }
+
+        private long timestamp() {
+            return chat.getEpochSecond(index);
+        }
+
+        private void advance() {
+            position++;
+            if (order != null && hasNext()) {
+                index = order[position];
+            } else {
+                index = position;
+            }
+        }
+
+        /**
+         * @return the fingerprint of the current message, counting the equal messages before it in the same second
+         */
+        private long fingerprint() {
+            long timestamp = timestamp();
+            long fingerprint = MessageFingerprints.of(timestamp, senderIds[chat.getSenderId(index)],
+                    MessageFingerprints.contentHash(content, contentOffsets.get(index),
+                            contentOffsets.get(index + 1)));
+            return occurrences.next(timestamp, fingerprint);
+        }
+
+        private void copyTo(TelegramChat.Builder merged) {
+            copyTo(merged, index);
+        }
+
+        /**
+         * Copies the messages before the current one, in timestamp order.
+         */
+        private void copyPreviousTo(TelegramChat.Builder merged) {
+            for (int previous = 0; previous < position; previous++) {
+                copyTo(merged, order == null ? previous : order[previous]);
+            }
+        }
+
+        private void copyTo(TelegramChat.Builder merged, int message) {
+            CharSequence text = content.subSequence(contentOffsets.get(message), contentOffsets.get(message + 1));
+            merged.add(chat.getEpochSecond(message), chat.getSender(chat.getSenderId(message)), text,
+                    chat.getEntities(message));
+        }
+    }
+
+    /**
+     * @return the indexes of the messages of the chat sorted by their timestamps, or null if they are sorted already
+     */
+    static int[] timestampOrder(TelegramChat chat) {
+        int count = chat.getMessageCount();
+        for (int index = 1; index < count; index++) {
+            if (chat.getEpochSecond(index) < chat.getEpochSecond(index - 1)) {
+                long[] timestamps = new long[count];
+                chat.getTimestampColumn().get(timestamps);
+                int[] order = new int[count];
+                Arrays.setAll(order, message -> message);
+                return sortStably(order, timestamps);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sorts indexes by their keys with a bottom up merge sort, which is stable, so that messages sent in the same
+     * second keep their order, and works on primitive arrays instead of boxing the indexes.
+     *
+     * @param order the indexes to sort, which is used as a buffer
+     * @param keys  the keys by index
+     * @return the sorted indexes, which is either the given array or a new one
+     */
+    private static int[] sortStably(int[] order, long[] keys) {
+        int[] source = order, target = new int[order.length];
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int start = 0; start < order.length; start += 2 * width) {
+                int middle = Math.min(start + width, order.length), end = Math.min(start + 2 * width, order.length);
+                int left = start, right = middle;
+                for (int position = start; position < end; position++) {
+                    if (left < middle && (right == end || keys[source[left]] <= keys[source[right]])) {
+                        target[position] = source[left++];
+                    } else {
+                        target[position] = source[right++];
+                    }
+                }
+            }
+            int[] sorted = target;
+            target = source;
+            source = sorted;
+        }
+        return source;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.oczarnecki.messageevaluator.merge;
+
+/**
+ * A set of longs in an open addressing hash table with linear probing, which stores its values in a single array
+ * instead of boxing them. The table is kept at most half full. Zero marks empty slots, so it is tracked separately.
+ */
+final class LongHashSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] slots;
+    private boolean containsZero;
+    private int size;
+
+    /**
+     * @param expectedSize the number of values which may be added without growing the table
+     */
+    LongHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2L * expectedSize) {
+            capacity *= 2;
+        }
+        slots = new long[capacity];
+    }
+
+    /**
+     * @param value the value
+     * @return true, if the value has not been contained in the set before
+     */
+    boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        for (int slot = slot(value, mask); ; slot = (slot + 1) & mask) {
+            if (slots[slot] == value) {
+                return false;
+            }
+            if (slots[slot] == 0) {
+                slots[slot] = value;
+                size++;
+                if (2 * size > slots.length) {
+                    rehash();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param value the value
+     * @return true, if the value has been added to the set
+     */
+    boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int mask = slots.length - 1;
+        for (int slot = slot(value, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slots[slot] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rehash() {
+        long[] oldSlots = slots;
+        slots = new long[2 * oldSlots.length];
+        int mask = slots.length - 1;
+        for (long value : oldSlots) {
+            if (value != 0) {
+                int slot = slot(value, mask);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = value;
+            }
+        }
+    }
+
+    private static int slot(long value, int mask) {
+        int hash = Long.hashCode(value);
+        // spreads the bits like HashMap, since the table is indexed by the low bits
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * @return the number of values in the set
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.oczarnecki.messageevaluator.merge;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Computes 64 bit fingerprints of messages from their timestamp, the id of their sender and a hash of their content.
+ * Messages with equal fingerprints are considered equal, which is much cheaper than comparing their contents. The
+ * chance that any two different messages of a chat of a hundred million messages are taken for equal is about one in
+ * four thousand.
+ */
+public final class MessageFingerprints {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+
+    private MessageFingerprints() {
+    }
+
+    /**
+     * @param content the content column of a chat
+     * @param start   the offset of the first character of the content
+     * @param end     the offset after the last character of the content
+     * @return the 64 bit FNV-1a hash of the characters of the content
+     */
+    public static long contentHash(CharBuffer content, int start, int end) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int index = start; index < end; index++) {
+            hash = (hash ^ content.get(index)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @param epochSecond the timestamp of the message
+     * @param senderId    the id of the sender in the sender dictionary shared by all chats which are compared
+     * @param contentHash the hash of the content of the message
+     * @return the fingerprint of the message
+     */
+    public static long of(long epochSecond, int senderId, long contentHash) {
+        return mix(mix(epochSecond * GOLDEN_RATIO + senderId) ^ contentHash);
+    }
+
+    /**
+     * Distinguishes equal messages which occur several times in the same export, like two "ok"s sent in the same
+     * second, so that they are not merged into one.
+     *
+     * @param fingerprint the fingerprint of the message
+     * @param occurrence  the number of equal messages before it in the same export
+     * @return the fingerprint of the occurrence of the message
+     */
+    public static long occurrence(long fingerprint, int occurrence) {
+        return occurrence == 0 ? fingerprint : mix(fingerprint + occurrence * GOLDEN_RATIO);
+    }
+
+    /**
+     * Counts the equal messages sent in the same second, to compute the fingerprints of their occurrences. The
+     * messages have to be passed in timestamp order. Instances are not thread safe.
+     */
+    public static final class Occurrences {
+        private long timestamp;
+        private long[] fingerprints = new long[4];
+        private int size;
+
+        /**
+         * @param timestamp   the timestamp of the message
+         * @param fingerprint the fingerprint of the message
+         * @return the fingerprint of the occurrence of the message, counting the equal messages passed before it in
+         * the same second
+         */
+        public long next(long timestamp, long fingerprint) {
+            if (size == 0 || timestamp != this.timestamp) {
+                this.timestamp = timestamp;
+                size = 0;
+            }
+            int occurrence = 0;
+            for (int member = 0; member < size; member++) {
+                if (fingerprints[member] == fingerprint) {
+                    occurrence++;
+                }
+            }
+            if (size == fingerprints.length) {
+                fingerprints = Arrays.copyOf(fingerprints, 2 * size);
+            }
+            fingerprints[size++] = fingerprint;
+            return occurrence(fingerprint, occurrence);
+        }
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which lets every bit of the input affect every bit of the output.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
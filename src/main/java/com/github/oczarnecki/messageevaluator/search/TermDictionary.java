@@ -0,0 +1,99 @@
+package com.github.oczarnecki.messageevaluator.search;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense ids to terms, in the order they are first seen. Terms are looked up by their characters in an open
+ * addressing hash table, so that only new terms are converted into strings.
+ */
+final class TermDictionary {
+    private String[] terms = new String[16];
+    private int[] hashes = new int[16];
+    /**
+     * the slots of the hash table, holding a term id plus one, or 0 for empty slots
+     */
+    private int[] slots = new int[32];
+    private int size;
+
+    /**
+     * @param term   buffer holding the term
+     * @param length the length of the term
+     * @return the id of the term, which is assigned if the term is new
+     */
+    int intern(char[] term, int length) {
+        int hash = hash(term, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return add(new String(term, 0, length), hash, slot);
+            }
+            if (hashes[id] == hash && equals(terms[id], term, length)) {
+                return id;
+            }
+        }
+    }
+
+    private int add(String term, int hash, int slot) {
+        if (size == terms.length) {
+            terms = Arrays.copyOf(terms, 2 * size);
+            hashes = Arrays.copyOf(hashes, 2 * size);
+        }
+        terms[size] = term;
+        hashes[size] = hash;
+        slots[slot] = size + 1;
+        size++;
+        if (2 * size > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int hash(char[] term, int length) {
+        int hash = 0;
+        for (int index = 0; index < length; index++) {
+            hash = 31 * hash + term[index];
+        }
+        // spreads the bits like HashMap, since the table is indexed by the low bits
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String string, char[] term, int length) {
+        if (string.length() != length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            if (string.charAt(index) != term[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of terms
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param id the id of a term
+     * @return the term
+     */
+    String getTerm(int id) {
+        return terms[id];
+    }
+}
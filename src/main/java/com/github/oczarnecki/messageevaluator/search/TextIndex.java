@@ -0,0 +1,473 @@
+package com.github.oczarnecki.messageevaluator.search;
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.analysis.Histogram;
+import com.github.oczarnecki.messageevaluator.analysis.Histograms;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable inverted index over the content of the messages of a chat. For every term, as defined by the
+ * {@link Tokenizer}, it holds the ascending indices of the messages containing the term. These posting lists are
+ * delta encoded with a variable number of bytes per index, so that terms occurring in consecutive messages take one
+ * byte per message. The terms are sorted, so that terms and prefixes are found by binary search.
+ * <p>
+ * Queries for terms and prefixes only decode the posting lists of the matching terms. Phrase queries intersect the
+ * posting lists of their terms and verify the order of the terms in the few remaining messages, so no positions are
+ * stored.
+ */
+public final class TextIndex {
+    private final TelegramChat chat;
+    private final String[] terms;
+    private final int[] documentFrequencies;
+    private final int[] postingOffsets;
+    private final ByteBuffer postings;
+
+    /**
+     * @param chat                the indexed chat
+     * @param terms               the sorted terms
+     * @param documentFrequencies the number of messages containing each term
+     * @param postingOffsets      the offsets of the posting lists of the terms, followed by the end of the postings
+     * @param postings            the encoded posting lists
+     */
+    TextIndex(TelegramChat chat, String[] terms, int[] documentFrequencies, int[] postingOffsets, ByteBuffer postings) {
+        this.chat = chat;
+        this.terms = terms;
+        this.documentFrequencies = documentFrequencies;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+    }
+
+    /**
+     * Builds the index with a single pass over the content of the chat.
+     *
+     * @param chat the chat to index
+     * @return the index
+     */
+    public static TextIndex build(TelegramChat chat) {
+        return new Builder(chat, null).build();
+    }
+
+    /**
+     * Extends the index of a chat by the messages appended to it. Only the appended messages are tokenized, and their
+     * posting lists are appended to the known ones.
+     *
+     * @param known the index of a chat
+     * @param chat  a chat starting with the messages of the indexed chat
+     * @return the index of the chat
+     */
+    public static TextIndex extend(TextIndex known, TelegramChat chat) {
+        return new Builder(chat, known).build();
+    }
+
+    /**
+     * @return the indexed chat
+     */
+    public TelegramChat getChat() {
+        return chat;
+    }
+
+    /**
+     * @return the number of distinct terms of the chat
+     */
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    String getTerm(int termId) {
+        return terms[termId];
+    }
+
+    int getDocumentFrequency(int termId) {
+        return documentFrequencies[termId];
+    }
+
+    int getPostingOffset(int termId) {
+        return postingOffsets[termId];
+    }
+
+    ByteBuffer getPostings() {
+        return postings.duplicate();
+    }
+
+    /**
+     * @param query one or more terms
+     * @return the ascending indices of the messages containing all terms of the query
+     */
+    public int[] keyword(String query) {
+        List<String> queryTerms = Tokenizer.terms(query);
+        if (queryTerms.isEmpty()) {
+            return new int[0];
+        }
+        int[] termIds = new int[queryTerms.size()];
+        for (int index = 0; index < termIds.length; index++) {
+            termIds[index] = Arrays.binarySearch(terms, queryTerms.get(index));
+            if (termIds[index] < 0) {
+                return new int[0];
+            }
+        }
+        // intersecting the rarest terms first keeps the intermediate results small
+        Integer[] byFrequency = new Integer[termIds.length];
+        for (int index = 0; index < termIds.length; index++) {
+            byFrequency[index] = termIds[index];
+        }
+        Arrays.sort(byFrequency, Comparator.comparingInt(termId -> documentFrequencies[termId]));
+        int[] messages = decode(byFrequency[0]);
+        for (int index = 1; index < byFrequency.length && messages.length > 0; index++) {
+            messages = intersect(messages, decode(byFrequency[index]));
+        }
+        return messages;
+    }
+
+    /**
+     * @param prefix the start of a term
+     * @return the ascending indices of the messages containing a term starting with the prefix
+     */
+    public int[] prefix(String prefix) {
+        List<String> prefixTerms = Tokenizer.terms(prefix);
+        if (prefixTerms.size() != 1) {
+            return new int[0];
+        }
+        String normalized = prefixTerms.get(0);
+        int first = insertionPoint(normalized);
+        int last = first;
+        while (last < terms.length && terms[last].startsWith(normalized)) {
+            last++;
+        }
+        if (last - first == 1) {
+            return decode(first);
+        }
+
+        long[] found = new long[(chat.getMessageCount() + Long.SIZE - 1) / Long.SIZE];
+        ByteBuffer encoded = postings.duplicate();
+        for (int termId = first; termId < last; termId++) {
+            ((Buffer) encoded).position(postingOffsets[termId]);
+            int message = -1;
+            for (int posting = 0; posting < documentFrequencies[termId]; posting++) {
+                message += readVarint(encoded) + 1;
+                found[message >>> 6] |= 1L << message;
+            }
+        }
+        int count = 0;
+        for (long word : found) {
+            count += Long.bitCount(word);
+        }
+        int[] messages = new int[count];
+        int index = 0;
+        for (int word = 0; word < found.length; word++) {
+            for (long bits = found[word]; bits != 0; bits &= bits - 1) {
+                messages[index++] = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * @param phrase a sequence of terms
+     * @return the ascending indices of the messages containing the terms of the phrase consecutively and in order
+     */
+    public int[] phrase(String phrase) {
+        List<String> phraseTerms = Tokenizer.terms(phrase);
+        int[] candidates = keyword(phrase);
+        if (phraseTerms.size() <= 1 || candidates.length == 0) {
+            return candidates;
+        }
+        int[] phraseIds = new int[phraseTerms.size()];
+        for (int index = 0; index < phraseIds.length; index++) {
+            phraseIds[index] = Arrays.binarySearch(terms, phraseTerms.get(index));
+        }
+
+        PhraseMatcher matcher = new PhraseMatcher(phraseIds);
+        Tokenizer tokenizer = new Tokenizer(matcher);
+        CharBuffer content = chat.getContentColumn();
+        IntBuffer offsets = chat.getContentOffsetColumn();
+        int matchCount = 0;
+        for (int message : candidates) {
+            matcher.reset();
+            tokenizer.tokenize(content, offsets.get(message), offsets.get(message + 1));
+            if (matcher.matched) {
+                candidates[matchCount++] = message;
+            }
+        }
+        return Arrays.copyOf(candidates, matchCount);
+    }
+
+    /**
+     * @param messages    ascending indices of messages, for example the result of a query
+     * @param granularity the calendar unit of the buckets
+     * @param width       the number of units per bucket, at least one
+     * @return the histogram of the messages, for example the occurrences of a term over time
+     */
+    public Histogram histogram(int[] messages, Granularity granularity, int width) {
+        return Histograms.of(chat.getTimestampColumn(), messages, granularity, width);
+    }
+
+    /**
+     * @return the index of the first term which is not less than the given term
+     */
+    private int insertionPoint(String term) {
+        int index = Arrays.binarySearch(terms, term);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * @return the id of the term in the buffer, or -1 if the chat does not contain it
+     */
+    private int termId(char[] term, int length) {
+        int low = 0, high = terms.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(terms[middle], term, length);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares like {@link String#compareTo(String)}.
+     */
+    private static int compare(String string, char[] term, int length) {
+        int common = Math.min(string.length(), length);
+        for (int index = 0; index < common; index++) {
+            int difference = string.charAt(index) - term[index];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return string.length() - length;
+    }
+
+    private int[] decode(int termId) {
+        int[] messages = new int[documentFrequencies[termId]];
+        ByteBuffer encoded = postings.duplicate();
+        // calls through Buffer, since ByteBuffer only overrides position as of Java 9
+        ((Buffer) encoded).position(postingOffsets[termId]);
+        int message = -1;
+        for (int index = 0; index < messages.length; index++) {
+            message += readVarint(encoded) + 1;
+            messages[index] = message;
+        }
+        return messages;
+    }
+
+    /**
+     * @return the index of the last message containing the term, or -1 if the chat does not contain it
+     */
+    private int lastMessage(char[] term, int length) {
+        int termId = termId(term, length);
+        if (termId < 0) {
+            return -1;
+        }
+        ByteBuffer encoded = postings.duplicate();
+        ((Buffer) encoded).position(postingOffsets[termId]);
+        int message = -1;
+        for (int posting = 0; posting < documentFrequencies[termId]; posting++) {
+            message += readVarint(encoded) + 1;
+        }
+        return message;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int[] intersect(int[] first, int[] second) {
+        int[] intersection = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                intersection[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(intersection, count);
+    }
+
+    /**
+     * Checks whether the terms passed to it contain a phrase, by remembering the ids of the last terms.
+     */
+    private final class PhraseMatcher implements Tokenizer.TermConsumer {
+        private final int[] phraseIds;
+        private final int[] lastIds;
+        private int termCount;
+        private boolean matched;
+
+        PhraseMatcher(int[] phraseIds) {
+            this.phraseIds = phraseIds;
+            this.lastIds = new int[phraseIds.length];
+        }
+
+        void reset() {
+            termCount = 0;
+            matched = false;
+        }
+
+        @Override
+        public void accept(char[] term, int length) {
+            if (matched) {
+                return;
+            }
+            lastIds[termCount++ % lastIds.length] = termId(term, length);
+            if (termCount >= lastIds.length) {
+                matched = true;
+                for (int index = 0; index < phraseIds.length && matched; index++) {
+                    matched = lastIds[(termCount + index) % lastIds.length] == phraseIds[index];
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the posting lists of all terms while tokenizing the messages of a chat, and merges them with the posting
+     * lists of a known index of the first messages of the chat.
+     */
+    private static final class Builder implements Tokenizer.TermConsumer {
+        private static final String[] NO_TERMS = new String[0];
+
+        private final TelegramChat chat;
+        private final TextIndex known;
+        private final TermDictionary dictionary = new TermDictionary();
+        private byte[][] encodedPostings = new byte[16][];
+        private int[] encodedLengths = new int[16];
+        private int[] frequencies = new int[16];
+        private int[] lastMessages = new int[16];
+        private int message;
+
+        /**
+         * @param chat  the chat to index
+         * @param known the index of the first messages of the chat, or null to index all messages
+         */
+        Builder(TelegramChat chat, TextIndex known) {
+            this.chat = chat;
+            this.known = known;
+        }
+
+        TextIndex build() {
+            Tokenizer tokenizer = new Tokenizer(this);
+            CharBuffer content = chat.getContentColumn();
+            IntBuffer offsets = chat.getContentOffsetColumn();
+            int from = known == null ? 0 : known.chat.getMessageCount();
+            for (message = from; message < chat.getMessageCount(); message++) {
+                tokenizer.tokenize(content, offsets.get(message), offsets.get(message + 1));
+            }
+
+            int termCount = dictionary.size();
+            Integer[] order = new Integer[termCount];
+            for (int termId = 0; termId < termCount; termId++) {
+                order[termId] = termId;
+            }
+            Arrays.sort(order, Comparator.comparing(dictionary::getTerm));
+
+            // merges the sorted known terms with the sorted new ones, a term may be both
+            String[] knownTerms = known == null ? NO_TERMS : known.terms;
+            int capacity = knownTerms.length + termCount;
+            String[] terms = new String[capacity];
+            int[] documentFrequencies = new int[capacity];
+            int[] postingOffsets = new int[capacity + 1];
+            int[] knownIds = new int[capacity];
+            int[] newIds = new int[capacity];
+            int mergedCount = 0;
+            for (int knownId = 0, sorted = 0; knownId < knownTerms.length || sorted < termCount; mergedCount++) {
+                int comparison = knownId == knownTerms.length ? 1 : sorted == termCount ? -1
+                        : knownTerms[knownId].compareTo(dictionary.getTerm(order[sorted]));
+                knownIds[mergedCount] = comparison <= 0 ? knownId++ : -1;
+                newIds[mergedCount] = comparison >= 0 ? order[sorted++] : -1;
+                int length = 0;
+                if (knownIds[mergedCount] >= 0) {
+                    int termId = knownIds[mergedCount];
+                    terms[mergedCount] = knownTerms[termId];
+                    documentFrequencies[mergedCount] = known.documentFrequencies[termId];
+                    length = known.postingOffsets[termId + 1] - known.postingOffsets[termId];
+                }
+                if (newIds[mergedCount] >= 0) {
+                    int termId = newIds[mergedCount];
+                    terms[mergedCount] = dictionary.getTerm(termId);
+                    documentFrequencies[mergedCount] += frequencies[termId];
+                    length += encodedLengths[termId];
+                }
+                postingOffsets[mergedCount + 1] = postingOffsets[mergedCount] + length;
+            }
+
+            byte[] postings = new byte[postingOffsets[mergedCount]];
+            ByteBuffer knownPostings = known == null ? null : known.postings.duplicate();
+            for (int merged = 0; merged < mergedCount; merged++) {
+                int offset = postingOffsets[merged];
+                if (knownIds[merged] >= 0) {
+                    int termId = knownIds[merged];
+                    int length = known.postingOffsets[termId + 1] - known.postingOffsets[termId];
+                    ((Buffer) knownPostings).position(known.postingOffsets[termId]);
+                    knownPostings.get(postings, offset, length);
+                    offset += length;
+                }
+                if (newIds[merged] >= 0) {
+                    int termId = newIds[merged];
+                    System.arraycopy(encodedPostings[termId], 0, postings, offset, encodedLengths[termId]);
+                }
+            }
+            return new TextIndex(chat, Arrays.copyOf(terms, mergedCount),
+                    Arrays.copyOf(documentFrequencies, mergedCount), Arrays.copyOf(postingOffsets, mergedCount + 1),
+                    ByteBuffer.wrap(postings));
+        }
+
+        @Override
+        public void accept(char[] term, int length) {
+            int termId = dictionary.intern(term, length);
+            if (termId == encodedPostings.length) {
+                int capacity = 2 * termId;
+                encodedPostings = Arrays.copyOf(encodedPostings, capacity);
+                encodedLengths = Arrays.copyOf(encodedLengths, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+                lastMessages = Arrays.copyOf(lastMessages, capacity);
+            }
+            if (encodedPostings[termId] == null) {
+                encodedPostings[termId] = new byte[4];
+                // the first new posting is encoded relative to the last known one, so that the lists can be appended
+                lastMessages[termId] = known == null ? -1 : known.lastMessage(term, length);
+            } else if (lastMessages[termId] == message) {
+                return;
+            }
+            writeVarint(termId, message - lastMessages[termId] - 1);
+            lastMessages[termId] = message;
+            frequencies[termId]++;
+        }
+
+        private void writeVarint(int termId, int value) {
+            byte[] encoded = encodedPostings[termId];
+            int length = encodedLengths[termId];
+            if (length + 5 > encoded.length) {
+                encoded = encodedPostings[termId] = Arrays.copyOf(encoded, 2 * encoded.length + 5);
+            }
+            while ((value & ~0x7f) != 0) {
+                encoded[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            encoded[length++] = (byte) value;
+            encodedLengths[termId] = length;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.oczarnecki.messageevaluator.search;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stores the text indexes of chats in a file next to a snapshot of the chats, so that they need not be rebuilt when
+ * the snapshot is opened. The file holds the index of every chat in the order of the snapshot:
+ * <pre>
+ * file:  int MAGIC, int VERSION, int chatCount, chat * chatCount
+ * chat:  int messageCount, long contentFingerprint, int termCount, (int length, UTF-8 term) * termCount, int documentFrequency * termCount,
+ *        int postingOffset * (termCount + 1), byte posting * postingOffset[termCount]
+ * </pre>
+ * The postings are written to the file and mapped from it in bulk, so only the terms and offsets are read onto the
+ * heap. The message count and the content fingerprint of every chat are checked on reading, so that the index of a
+ * chat whose messages changed since it was written is rejected.
+ */
+public final class TextIndexFile {
+    /**
+     * the extension appended to the name of the snapshot file, without a leading dot
+     */
+    public static final String FILE_EXTENSION = "index";
+
+    private static final int MAGIC = 0x4d455649; // "MEVI"
+    private static final int VERSION = 2;
+
+    private TextIndexFile() {
+    }
+
+    /**
+     * @param snapshotFile a snapshot file
+     * @return the file storing the text indexes of the snapshot
+     */
+    public static File nextTo(File snapshotFile) {
+        return new File(snapshotFile.getPath() + '.' + FILE_EXTENSION);
+    }
+
+    /**
+     * Writes text indexes to a file. An existing file is overwritten.
+     *
+     * @param indexes the indexes, in the order of the chats of the snapshot
+     * @param file    the destination
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Collection<TextIndex> indexes, File file) throws IOException {
+        try (FileOutputStream fileOutput = new FileOutputStream(file);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput, 1 << 16))) {
+            FileChannel channel = fileOutput.getChannel();
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(indexes.size());
+            for (TextIndex index : indexes) {
+                int termCount = index.getTermCount();
+                output.writeInt(index.getChat().getMessageCount());
+                output.writeLong(index.getChat().getContentFingerprint());
+                output.writeInt(termCount);
+                for (int term = 0; term < termCount; term++) {
+                    byte[] bytes = index.getTerm(term).getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                }
+                for (int term = 0; term < termCount; term++) {
+                    output.writeInt(index.getDocumentFrequency(term));
+                }
+                for (int term = 0; term <= termCount; term++) {
+                    output.writeInt(index.getPostingOffset(term));
+                }
+                // the buffered fields precede the postings, which are written by the channel of the same file
+                output.flush();
+                ByteBuffer postings = index.getPostings();
+                while (postings.hasRemaining()) {
+                    channel.write(postings);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the text indexes of chats.
+     *
+     * @param file  the file written by {@link #write(Collection, File)}
+     * @param chats the indexed chats, in the order of the file
+     * @return the indexes of the chats
+     * @throws IOException if the file can not be read, or does not belong to the chats
+     */
+    public static List<TextIndex> read(File file, Collection<TelegramChat> chats) throws IOException {
+        try (FileInputStream fileInput = new FileInputStream(file)) {
+            return new Reader(fileInput).read(chats);
+        }
+    }
+
+    /**
+     * Reads the fields of an index file through a buffer, and keeps track of the position in the file, so that the
+     * postings can be mapped instead of being read.
+     */
+    private static final class Reader {
+        private final FileChannel channel;
+        private final DataInputStream input;
+        private long position;
+
+        private Reader(FileInputStream fileInput) {
+            this.channel = fileInput.getChannel();
+            this.input = new DataInputStream(new BufferedInputStream(fileInput, 1 << 16));
+        }
+
+        private List<TextIndex> read(Collection<TelegramChat> chats) throws IOException {
+            if (readInt() != MAGIC) {
+                throw new IOException("not a text index file");
+            }
+            int version = readInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported text index version " + version);
+            }
+            if (readInt() != chats.size()) {
+                throw new IOException("text index does not belong to the chats");
+            }
+            List<TextIndex> indexes = new ArrayList<>(chats.size());
+            for (Iterator<TelegramChat> chat = chats.iterator(); chat.hasNext(); ) {
+                indexes.add(readIndex(chat.next()));
+            }
+            return indexes;
+        }
+
+        private TextIndex readIndex(TelegramChat chat) throws IOException {
+            if (readInt() != chat.getMessageCount() || readLong() != chat.getContentFingerprint()) {
+                throw new IOException("text index does not belong to the chats");
+            }
+            int termCount = readInt();
+            if (termCount < 0 || (long) termCount * Integer.BYTES > channel.size() - position) {
+                throw new IOException("corrupt text index file");
+            }
+            String[] terms = new String[termCount];
+            for (int term = 0; term < termCount; term++) {
+                int length = readInt();
+                if (length < 0 || length > channel.size() - position) {
+                    throw new IOException("corrupt text index file");
+                }
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                position += length;
+                terms[term] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            int[] documentFrequencies = new int[termCount];
+            for (int term = 0; term < termCount; term++) {
+                documentFrequencies[term] = readInt();
+            }
+            int[] postingOffsets = new int[termCount + 1];
+            for (int term = 0; term <= termCount; term++) {
+                postingOffsets[term] = readInt();
+                if (postingOffsets[term] < (term == 0 ? 0 : postingOffsets[term - 1])) {
+                    throw new IOException("corrupt text index file");
+                }
+            }
+            int postingLength = postingOffsets[termCount];
+            if (postingLength > channel.size() - position) {
+                throw new EOFException("text index file is truncated");
+            }
+            ByteBuffer postings = channel.map(FileChannel.MapMode.READ_ONLY, position, postingLength);
+            skip(postingLength);
+            return new TextIndex(chat, terms, documentFrequencies, postingOffsets, postings);
+        }
+
+        private int readInt() throws IOException {
+            int value = input.readInt();
+            position += Integer.BYTES;
+            return value;
+        }
+
+        private long readLong() throws IOException {
+            long value = input.readLong();
+            position += Long.BYTES;
+            return value;
+        }
+
+        private void skip(int length) throws IOException {
+            for (int skipped = 0; skipped < length; ) {
+                int count = input.skipBytes(length - skipped);
+                if (count <= 0) {
+                    throw new EOFException("text index file is truncated");
+                }
+                skipped += count;
+            }
+            position += length;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.oczarnecki.messageevaluator.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits text into terms. A term is a maximal sequence of letters and digits, converted to lower case, so that
+ * punctuation, white space and emoji separate terms. Tokenizing reuses a single buffer and creates no objects per term.
+ */
+public final class Tokenizer {
+    /**
+     * Receives the terms of a text.
+     */
+    public interface TermConsumer {
+        /**
+         * @param term   a buffer holding the term, which is reused for the next term
+         * @param length the length of the term
+         */
+        void accept(char[] term, int length);
+    }
+
+    private final TermConsumer consumer;
+    private char[] term = new char[32];
+
+    /**
+     * @param consumer receives the terms
+     */
+    public Tokenizer(TermConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Passes the terms of a region of a text to the consumer.
+     *
+     * @param text  the text
+     * @param start the start of the region, inclusive
+     * @param end   the end of the region, exclusive
+     */
+    public void tokenize(CharSequence text, int start, int end) {
+        int length = 0;
+        int index = start;
+        while (index < end) {
+            int codePoint = Character.codePointAt(text, index);
+            index += Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (length + 2 > term.length) {
+                    term = Arrays.copyOf(term, 2 * term.length);
+                }
+                length += Character.toChars(Character.toLowerCase(codePoint), term, length);
+            } else if (length > 0) {
+                consumer.accept(term, length);
+                length = 0;
+            }
+        }
+        if (length > 0) {
+            consumer.accept(term, length);
+        }
+    }
+
+    /**
+     * @param text a text, for example a query
+     * @return the terms of the text, in order
+     */
+    public static List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        new Tokenizer((term, length) -> terms.add(new String(term, 0, length))).tokenize(text, 0, text.length());
+        return terms;
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.oczarnecki.messageevaluator.sketch;
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.search.Tokenizer;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Approximate statistics of a set of messages, like the messages of a chat, whose memory does not grow with the
+ * number of messages: the distinct senders overall and per time bucket, the most frequent senders and
+ * terms, and the quantiles of the message lengths. The statistics are collected from the messages one at a time, so
+ * they can be built while an export is streamed (see {@link SketchingSink}), without keeping any message.
+ * <p>
+ * The distinct senders of every bucket are a sparse {@link HyperLogLog}, which takes 4 bytes per distinct sender of the
+ * bucket and at most {@link HyperLogLog#DEFAULT_PRECISION 2 KB}. Hence buckets with few senders, like the days of a
+ * private chat, stay small, but the memory still grows with the number of buckets covered by the messages. Statistics of the same granularity can be merged, which yields the statistics of
+ * the messages of both, so they can be collected per chat or per thread and combined afterwards. Every sketch reports
+ * the error bound of its estimates. Statistics are not thread safe.
+ */
+public final class ApproximateStatistics {
+    /**
+     * the number of senders and terms which are reported as the most frequent ones
+     */
+    public static final int TOP_COUNT = 20;
+
+    private final Granularity granularity;
+    private final HyperLogLog distinctSenders;
+    /**
+     * the distinct senders by the start of the bucket, in seconds since the epoch
+     */
+    private final NavigableMap<Long, HyperLogLog> distinctSendersByBucket;
+    private final HeavyHitters topSenders;
+    private final HeavyHitters topTerms;
+    private final QuantileSketch messageLengths;
+    private final Tokenizer tokenizer;
+    private long messageCount;
+
+    /**
+     * the bucket of the last message, since the messages of a chat usually arrive in the order they were sent
+     */
+    private long lastBucket = Long.MIN_VALUE;
+    private HyperLogLog lastBucketSenders;
+
+    /**
+     * @param granularity the time buckets of the distinct senders
+     */
+    public ApproximateStatistics(Granularity granularity) {
+        this.granularity = granularity;
+        this.distinctSenders = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        this.distinctSendersByBucket = new TreeMap<>();
+        this.topSenders = new HeavyHitters(TOP_COUNT, HeavyHitters.DEFAULT_WIDTH, HeavyHitters.DEFAULT_DEPTH);
+        this.topTerms = new HeavyHitters(TOP_COUNT, HeavyHitters.DEFAULT_WIDTH, HeavyHitters.DEFAULT_DEPTH);
+        this.messageLengths = new QuantileSketch(QuantileSketch.DEFAULT_RELATIVE_ERROR);
+        this.tokenizer = new Tokenizer(topTerms::add);
+    }
+
+    /**
+     * @param epochSecond the time at which the message was sent, in seconds since the epoch
+     * @param sender      the name of the sender
+     * @param content     the text content of the message, which is not kept
+     */
+    public void add(long epochSecond, String sender, CharSequence content) {
+        long senderHash = Hashes.hash(sender);
+        distinctSenders.addHash(senderHash);
+        long bucket = granularity.bucket(epochSecond);
+        if (bucket != lastBucket) {
+            lastBucket = bucket;
+            lastBucketSenders = distinctSendersByBucket.computeIfAbsent(granularity.startOf(bucket),
+                    start -> new HyperLogLog(HyperLogLog.DEFAULT_PRECISION));
+        }
+        lastBucketSenders.addHash(senderHash);
+        topSenders.add(sender);
+        tokenizer.tokenize(content, 0, content.length());
+        messageLengths.add(content.length());
+        messageCount++;
+    }
+
+    /**
+     * Adds the messages of other statistics to these.
+     *
+     * @param other statistics of the same granularity
+     * @throws IllegalArgumentException if the granularities differ
+     */
+    public void merge(ApproximateStatistics other) {
+        if (other.granularity != granularity) {
+            throw new IllegalArgumentException("can not merge statistics by " + granularity + " and "
+                    + other.granularity);
+        }
+        distinctSenders.merge(other.distinctSenders);
+        other.distinctSendersByBucket.forEach((start, senders) -> distinctSendersByBucket.merge(start, senders.copy(),
+                (merged, added) -> {
+                    merged.merge(added);
+                    return merged;
+                }));
+        topSenders.merge(other.topSenders);
+        topTerms.merge(other.topTerms);
+        messageLengths.merge(other.messageLengths);
+        messageCount += other.messageCount;
+    }
+
+    /**
+     * @return the time buckets of the distinct senders
+     */
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * @return the exact number of messages
+     */
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * @return the distinct senders of all messages
+     */
+    public HyperLogLog getDistinctSenders() {
+        return distinctSenders;
+    }
+
+    /**
+     * @return the distinct senders of the buckets containing messages, by the start of the bucket in seconds since the
+     * epoch, in chronological order
+     */
+    public Map<Long, HyperLogLog> getDistinctSendersByBucket() {
+        return Collections.unmodifiableMap(distinctSendersByBucket);
+    }
+
+    /**
+     * @return the senders of the most messages
+     */
+    public HeavyHitters getTopSenders() {
+        return topSenders;
+    }
+
+    /**
+     * @return the most frequent terms of the contents, as split by the {@link Tokenizer}
+     */
+    public HeavyHitters getTopTerms() {
+        return topTerms;
+    }
+
+    /**
+     * @return the lengths of the contents of the messages in characters
+     */
+    public QuantileSketch getMessageLengths() {
+        return messageLengths;
+    }
+}
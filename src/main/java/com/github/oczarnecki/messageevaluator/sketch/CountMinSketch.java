@@ -0,0 +1,126 @@
+package com.github.oczarnecki.messageevaluator.sketch;
+
+/**
+ * Estimates how often keys have been added, in a fixed table of depth rows of width counters regardless of the number
+ * of keys (see Cormode and Muthukrishnan, "An improved data stream summary: the count-min sketch and its
+ * applications"). Every key increments one counter per row, and its count is estimated by the minimum of its counters.
+ * Estimates are never too low, and too high by at most e / width times the total count with a probability of at least
+ * 1 - e^-depth.
+ * <p>
+ * Sketches of the same dimensions can be merged, which yields the sketch of the keys of both. Sketches are not thread
+ * safe.
+ */
+public final class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] counters;
+    private long totalCount;
+
+    /**
+     * @param width the number of counters per row, which bounds the error
+     * @param depth the number of rows, which bounds the probability of exceeding the error
+     * @throws IllegalArgumentException if the width or depth is not positive
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("width and depth must be positive: " + width + "x" + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[width * depth];
+    }
+
+    /**
+     * @param key   a key
+     * @param count the number of occurrences to add, not negative
+     */
+    public void add(CharSequence key, long count) {
+        addHash(Hashes.hash(key), count);
+    }
+
+    /**
+     * @param hash  a well mixed 64 bit hash of a key
+     * @param count the number of occurrences to add, not negative
+     * @return the estimated count of the key, including the added occurrences
+     */
+    long addHash(long hash, long count) {
+        totalCount += count;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int counter = counter(hash, row);
+            counters[counter] += count;
+            estimate = Math.min(estimate, counters[counter]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @param key a key
+     * @return the estimated number of occurrences of the key
+     */
+    public long estimate(CharSequence key) {
+        return estimateHash(Hashes.hash(key));
+    }
+
+    long estimateHash(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[counter(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Derives the counter of every row from the two halves of a single hash (see Kirsch and Mitzenmacher, "Less
+     * hashing, same performance").
+     */
+    private int counter(long hash, int row) {
+        int combined = (int) hash + row * (int) (hash >>> 32);
+        return row * width + (combined & Integer.MAX_VALUE) % width;
+    }
+
+    /**
+     * @return the total number of occurrences of all keys
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the amount by which estimates may be too high, with the probability given by {@link #getConfidence()}
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * totalCount);
+    }
+
+    /**
+     * @return the probability that an estimate is within the error bound
+     */
+    public double getConfidence() {
+        return 1 - Math.exp(-depth);
+    }
+
+    /**
+     * Adds the occurrences of another sketch to this one.
+     *
+     * @param other a sketch of the same width and depth
+     * @throws IllegalArgumentException if the dimensions differ
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("can not merge sketches of " + width + "x" + depth + " and "
+                    + other.width + "x" + other.depth + " counters");
+        }
+        for (int counter = 0; counter < counters.length; counter++) {
+            counters[counter] += other.counters[counter];
+        }
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * @return the number of bytes of the counters
+     */
+    public long getSizeInBytes() {
+        return (long) counters.length * Long.BYTES;
+    }
+}
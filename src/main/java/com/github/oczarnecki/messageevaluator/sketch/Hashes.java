@@ -0,0 +1,47 @@
+package com.github.oczarnecki.messageevaluator.sketch;
+
+/**
+ * 64 bit hashes of the keys counted by the sketches. The sketches derive several independent positions from a single
+ * hash, so every bit of a hash must depend on every character of its key.
+ */
+final class Hashes {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashes() {
+    }
+
+    /**
+     * @param text a key
+     * @return the hash of the characters of the key
+     */
+    static long hash(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int index = 0; index < text.length(); index++) {
+            hash = (hash ^ text.charAt(index)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * @param chars  a buffer holding a key
+     * @param length the length of the key
+     * @return the hash of the characters of the key, equal to the hash of the key as {@link CharSequence}
+     */
+    static long hash(char[] chars, int length) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int index = 0; index < length; index++) {
+            hash = (hash ^ chars[index]) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which lets every bit of the input affect every bit of the output.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
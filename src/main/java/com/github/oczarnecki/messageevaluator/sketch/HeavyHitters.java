@@ -0,0 +1,187 @@
+package com.github.oczarnecki.messageevaluator.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Finds the most frequent keys, like the top terms or senders of a chat, in fixed memory. All keys are counted by a
+ * {@link CountMinSketch}, and at most capacity keys with the highest estimated counts are kept as candidates. A key is
+ * only converted into a string when it becomes a candidate, so counting terms from a reused buffer creates no objects.
+ * <p>
+ * The counts of the reported keys are estimated by the count-min sketch, so they share its error bound. Sketches of
+ * the same dimensions can be merged. Sketches are not thread safe.
+ */
+public final class HeavyHitters {
+    /**
+     * the default number of counters per row, which bounds the error to 0.27% of the total count
+     */
+    public static final int DEFAULT_WIDTH = 1024;
+
+    /**
+     * the default number of rows, which bounds the probability of exceeding the error to 1.8%
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    private final int capacity;
+    private final CountMinSketch counts;
+    /**
+     * the candidates by the hashes of their keys
+     */
+    private final Map<Long, String> candidates;
+    /**
+     * a lower bound of the smallest estimated count of the candidates, which is refreshed when it is exceeded
+     */
+    private long minCandidateCount;
+
+    /**
+     * @param capacity the number of keys which are reported
+     * @param width    the number of counters per row of the count-min sketch
+     * @param depth    the number of rows of the count-min sketch
+     * @throws IllegalArgumentException if any of the arguments is not positive
+     */
+    public HeavyHitters(int capacity, int width, int depth) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counts = new CountMinSketch(width, depth);
+        this.candidates = new HashMap<>();
+    }
+
+    /**
+     * @param key an occurrence of a key
+     */
+    public void add(String key) {
+        add(Hashes.hash(key), key, null, 0);
+    }
+
+    /**
+     * @param key    a buffer holding an occurrence of a key, which may be reused afterwards
+     * @param length the length of the key
+     */
+    public void add(char[] key, int length) {
+        add(Hashes.hash(key, length), null, key, length);
+    }
+
+    private void add(long hash, String key, char[] keyBuffer, int length) {
+        long count = counts.addHash(hash, 1);
+        if (candidates.size() < capacity) {
+            candidates.computeIfAbsent(hash, ignored -> key != null ? key : new String(keyBuffer, 0, length));
+            minCandidateCount = Math.min(minCandidateCount, count);
+        } else if (count > minCandidateCount && !candidates.containsKey(hash)) {
+            long minHash = refreshMinCandidate();
+            if (count > minCandidateCount) {
+                candidates.remove(minHash);
+                candidates.put(hash, key != null ? key : new String(keyBuffer, 0, length));
+                refreshMinCandidate();
+            }
+        }
+    }
+
+    /**
+     * Updates the smallest estimated count of the candidates.
+     *
+     * @return the hash of the candidate with the smallest count
+     */
+    private long refreshMinCandidate() {
+        long minHash = 0;
+        minCandidateCount = Long.MAX_VALUE;
+        for (long hash : candidates.keySet()) {
+            long count = counts.estimateHash(hash);
+            if (count < minCandidateCount) {
+                minCandidateCount = count;
+                minHash = hash;
+            }
+        }
+        return minHash;
+    }
+
+    /**
+     * @return the most frequent keys with their estimated counts, in descending order of their counts
+     */
+    public List<Entry> getTop() {
+        List<Entry> top = new ArrayList<>(candidates.size());
+        candidates.forEach((hash, key) -> top.add(new Entry(key, counts.estimateHash(hash))));
+        top.sort(Comparator.comparingLong(Entry::getCount).reversed().thenComparing(Entry::getKey));
+        return top;
+    }
+
+    /**
+     * @return the amount by which the reported counts may be too high
+     * @see CountMinSketch#getErrorBound()
+     */
+    public long getErrorBound() {
+        return counts.getErrorBound();
+    }
+
+    /**
+     * @return the total number of occurrences of all keys
+     */
+    public long getTotalCount() {
+        return counts.getTotalCount();
+    }
+
+    /**
+     * Adds the occurrences of another sketch to this one. The candidates of both sketches compete for the capacity of
+     * this one by their merged counts.
+     *
+     * @param other a sketch of the same dimensions
+     * @throws IllegalArgumentException if the dimensions of the count-min sketches differ
+     */
+    public void merge(HeavyHitters other) {
+        counts.merge(other.counts);
+        candidates.putAll(other.candidates);
+        if (candidates.size() > capacity) {
+            List<Map.Entry<Long, String>> ranked = new ArrayList<>(candidates.entrySet());
+            ranked.sort(Comparator.comparingLong((Map.Entry<Long, String> candidate) ->
+                    counts.estimateHash(candidate.getKey())).reversed());
+            for (Map.Entry<Long, String> candidate : ranked.subList(capacity, ranked.size())) {
+                candidates.remove(candidate.getKey());
+            }
+        }
+        refreshMinCandidate();
+    }
+
+    /**
+     * A frequent key and its estimated count.
+     */
+    public static final class Entry {
+        private final String key;
+        private final long count;
+
+        Entry(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Entry entry = (Entry) o;
+            return count == entry.count && key.equals(entry.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, count);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.oczarnecki.messageevaluator.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the number of distinct keys, like the distinct senders of a month, in at most 2^precision bytes regardless
+ * of the number of keys. Every key is hashed to one of 2^precision registers, which keep the maximum number of leading
+ * zeros of the hashes of their keys (see Flajolet et al., "HyperLogLog: the analysis of a near-optimal cardinality
+ * estimation algorithm"). Small cardinalities are estimated by linear counting of the empty registers instead.
+ * <p>
+ * As long as few registers are set, like for the distinct senders of a single day, only the set registers are kept in
+ * a sorted list of 4 bytes each (the sparse representation of Heule et al., "HyperLogLog in Practice"). The registers
+ * are expanded to one byte each, once the list would take as much memory. Both representations yield the same
+ * estimates.
+ * <p>
+ * Sketches of the same precision can be merged, which yields the sketch of the union of their keys, so sketches can be
+ * built per chat or per thread and combined afterwards. Sketches are not thread safe.
+ */
+public final class HyperLogLog {
+    /**
+     * the default precision, 2048 registers of one byte each and a relative standard error of 2.3%
+     */
+    public static final int DEFAULT_PRECISION = 11;
+
+    private static final int MIN_PRECISION = 4, MAX_PRECISION = 18;
+    private static final int RANK_BITS = 8, RANK_MASK = (1 << RANK_BITS) - 1;
+
+    private final int precision;
+    /**
+     * the registers, or null while the sketch is sparse
+     */
+    private byte[] registers;
+    /**
+     * the set registers while the sketch is sparse, each one as its index shifted by 8 bits and its rank, sorted by
+     * index
+     */
+    private int[] sparseRegisters;
+    private int sparseCount;
+
+    /**
+     * @param precision the number of bits of the hash which select the register, between 4 and 18
+     * @throws IllegalArgumentException if the precision is out of range
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and "
+                    + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.sparseRegisters = new int[4];
+    }
+
+    /**
+     * @param key a key
+     */
+    public void add(CharSequence key) {
+        addHash(Hashes.hash(key));
+    }
+
+    /**
+     * @param hash a well mixed 64 bit hash of a key
+     */
+    void addHash(long hash) {
+        int register = (int) (hash >>> (Long.SIZE - precision));
+        // the marker bit bounds the rank if the remaining bits of the hash are all zero
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        update(register, rank);
+    }
+
+    /**
+     * Raises a register to the given rank, unless its rank is higher already.
+     */
+    private void update(int register, int rank) {
+        if (registers != null) {
+            if (rank > registers[register]) {
+                registers[register] = (byte) rank;
+            }
+            return;
+        }
+        int position = Arrays.binarySearch(sparseRegisters, 0, sparseCount, register << RANK_BITS);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        if (position < sparseCount && sparseRegisters[position] >>> RANK_BITS == register) {
+            if (rank > (sparseRegisters[position] & RANK_MASK)) {
+                sparseRegisters[position] = register << RANK_BITS | rank;
+            }
+            return;
+        }
+        if ((sparseCount + 1) * Integer.BYTES > registerCount()) {
+            expand();
+            registers[register] = (byte) rank;
+            return;
+        }
+        if (sparseCount == sparseRegisters.length) {
+            sparseRegisters = Arrays.copyOf(sparseRegisters, 2 * sparseCount);
+        }
+        System.arraycopy(sparseRegisters, position, sparseRegisters, position + 1, sparseCount - position);
+        sparseRegisters[position] = register << RANK_BITS | rank;
+        sparseCount++;
+    }
+
+    /**
+     * Switches from the sparse to the dense representation.
+     */
+    private void expand() {
+        registers = new byte[registerCount()];
+        for (int entry = 0; entry < sparseCount; entry++) {
+            registers[sparseRegisters[entry] >>> RANK_BITS] = (byte) (sparseRegisters[entry] & RANK_MASK);
+        }
+        sparseRegisters = null;
+        sparseCount = 0;
+    }
+
+    private int registerCount() {
+        return 1 << precision;
+    }
+
+    /**
+     * @return the estimated number of distinct keys added
+     */
+    public long estimate() {
+        int m = registerCount();
+        double sum = 0;
+        int emptyRegisters = 0;
+        if (registers == null) {
+            for (int entry = 0; entry < sparseCount; entry++) {
+                sum += 1.0 / (1L << (sparseRegisters[entry] & RANK_MASK));
+            }
+            emptyRegisters = m - sparseCount;
+            sum += emptyRegisters;
+        } else {
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    emptyRegisters++;
+                }
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && emptyRegisters > 0) {
+            estimate = m * Math.log((double) m / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    /**
+     * @return the relative standard error of the estimate, about two thirds of the estimates are within it
+     */
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(registerCount());
+    }
+
+    /**
+     * Adds the keys of another sketch to this one.
+     *
+     * @param other a sketch of the same precision
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("can not merge sketches of precision " + precision + " and "
+                    + other.precision);
+        }
+        if (other.registers == null) {
+            for (int entry = 0; entry < other.sparseCount; entry++) {
+                update(other.sparseRegisters[entry] >>> RANK_BITS, other.sparseRegisters[entry] & RANK_MASK);
+            }
+            return;
+        }
+        if (registers == null) {
+            expand();
+        }
+        for (int register = 0; register < registers.length; register++) {
+            if (other.registers[register] > registers[register]) {
+                registers[register] = other.registers[register];
+            }
+        }
+    }
+
+    /**
+     * @return a copy of this sketch, which is changed independently
+     */
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        if (registers == null) {
+            copy.sparseRegisters = Arrays.copyOf(sparseRegisters, Math.max(4, sparseCount));
+            copy.sparseCount = sparseCount;
+        } else {
+            copy.registers = registers.clone();
+            copy.sparseRegisters = null;
+        }
+        return copy;
+    }
+
+    /**
+     * @return the number of bytes of the registers, which is at most 2^precision
+     */
+    public int getSizeInBytes() {
+        return registers == null ? sparseRegisters.length * Integer.BYTES : registers.length;
+    }
+}
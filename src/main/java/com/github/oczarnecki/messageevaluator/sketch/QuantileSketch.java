@@ -0,0 +1,129 @@
+package com.github.oczarnecki.messageevaluator.sketch;
+
+/**
+ * Estimates quantiles of non-negative values, like the median length of messages, in fixed memory. Positive values
+ * are counted in buckets whose bounds grow geometrically by a factor of (1 + a) / (1 - a), and a quantile is estimated
+ * by the center of the bucket containing it, which is within a relative error of a of the exact quantile (see Masson
+ * et al., "DDSketch: a fast and fully-mergeable quantile sketch with relative-error guarantees"). The buckets cover
+ * all values up to {@link Long#MAX_VALUE}, which takes about 2200 buckets for a relative error of 1%.
+ * <p>
+ * Sketches of the same relative error can be merged, which yields the sketch of the values of both. Sketches are not
+ * thread safe.
+ */
+public final class QuantileSketch {
+    /**
+     * the default relative error of the estimated quantiles
+     */
+    public static final double DEFAULT_RELATIVE_ERROR = 0.01;
+
+    private final double relativeError;
+    private final double logGamma;
+    /**
+     * the counts of the positive values, by bucket
+     */
+    private final long[] counts;
+    private long zeroCount;
+    private long count;
+
+    /**
+     * @param relativeError the relative error of the estimated quantiles, between 0 and 1 exclusive
+     * @throws IllegalArgumentException if the relative error is out of range
+     */
+    public QuantileSketch(double relativeError) {
+        if (!(relativeError > 0 && relativeError < 1)) {
+            throw new IllegalArgumentException("relative error must be between 0 and 1: " + relativeError);
+        }
+        this.relativeError = relativeError;
+        this.logGamma = Math.log((1 + relativeError) / (1 - relativeError));
+        this.counts = new long[bucket(Long.MAX_VALUE) + 1];
+    }
+
+    /**
+     * @return the bucket of a positive value, whose upper bound is gamma^bucket
+     */
+    private int bucket(double value) {
+        return Math.max(0, (int) Math.ceil(Math.log(value) / logGamma));
+    }
+
+    /**
+     * @param value a value, not negative
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void add(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must not be negative: " + value);
+        }
+        if (value == 0) {
+            zeroCount++;
+        } else {
+            counts[bucket(value)]++;
+        }
+        count++;
+    }
+
+    /**
+     * @param quantile the quantile, between 0 and 1 inclusive, for example 0.5 for the median
+     * @return the estimated value of the quantile, or 0 if no value has been added
+     * @throws IllegalArgumentException if the quantile is out of range
+     */
+    public double quantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen > rank) {
+                // the center of the bucket, between gamma^(bucket - 1) and gamma^bucket
+                return bucket == 0 ? 1 : 2 * Math.exp(bucket * logGamma) / (1 + Math.exp(logGamma));
+            }
+        }
+        throw new IllegalStateException("the counts of the buckets do not add up");
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the relative error of the estimated quantiles
+     */
+    public double getRelativeError() {
+        return relativeError;
+    }
+
+    /**
+     * Adds the values of another sketch to this one.
+     *
+     * @param other a sketch of the same relative error
+     * @throws IllegalArgumentException if the relative errors differ
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeError != relativeError) {
+            throw new IllegalArgumentException("can not merge sketches of relative error " + relativeError + " and "
+                    + other.relativeError);
+        }
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /**
+     * @return the number of bytes of the buckets
+     */
+    public long getSizeInBytes() {
+        return (long) counts.length * Long.BYTES;
+    }
+}
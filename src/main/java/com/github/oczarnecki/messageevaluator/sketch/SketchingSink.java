@@ -0,0 +1,49 @@
+package com.github.oczarnecki.messageevaluator.sketch;
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.importer.MessageSink;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the {@link ApproximateStatistics} of every chat of a source while it is imported, without keeping any
+ * message. Chats of the same name are collected into the same statistics. Sinks are not thread safe, sources imported
+ * in parallel are collected by a sink each, whose statistics are merged afterwards.
+ */
+public final class SketchingSink implements MessageSink {
+    private final Granularity granularity;
+    private final Map<String, ApproximateStatistics> chats;
+    private ApproximateStatistics chat;
+
+    /**
+     * @param granularity the time buckets of the distinct senders
+     */
+    public SketchingSink(Granularity granularity) {
+        this.granularity = granularity;
+        this.chats = new LinkedHashMap<>();
+    }
+
+    @Override
+    public void chatStarted(String name) {
+        chat = chats.computeIfAbsent(name, ignored -> new ApproximateStatistics(granularity));
+    }
+
+    @Override
+    public void messageParsed(long epochSecond, String sender, CharSequence content) {
+        chat.add(epochSecond, sender, content);
+    }
+
+    @Override
+    public void chatFinished() {
+        chat = null;
+    }
+
+    /**
+     * @return the statistics of the chats collected so far, by name in the order of the source
+     */
+    public Map<String, ApproximateStatistics> getChats() {
+        return Collections.unmodifiableMap(chats);
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.oczarnecki.messageevaluator.snapshot;
+
+import java.nio.ByteOrder;
+
+/**
+ * Constants describing the binary snapshot format. All numbers are little endian. A snapshot consists of
+ * <ul>
+ * <li>a header: the magic number, the format version and the number of senders,</li>
+ * <li>the names of all senders, each one as a string,</li>
+ * <li>the number of chats, followed by the chats.</li>
+ * </ul>
+ * A chat consists of its name as a string, the number of messages n, the length of the content c, the number of the
+ * chat's senders s, s sender indexes into the global list of senders, padding to a multiple of eight bytes and the
+ * column data: n timestamps (long), n sender ids (int), n + 1 content offsets (int), 4 bytes of padding and c content
+ * characters (UTF-16). Strings are stored as their length in bytes (int) followed by their UTF-8 encoding.
+ */
+final class SnapshotFormat {
+    /**
+     * "MEVS" in ASCII
+     */
+    static final int MAGIC = 0x4D455653;
+    static final int VERSION = 1;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final int ALIGNMENT = Long.BYTES;
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * @param messageCount number of messages of a chat
+     * @param contentLength length of the content of a chat
+     * @return size of the column data of the chat in bytes
+     */
+    static long columnDataSize(int messageCount, int contentLength) {
+        return (long) messageCount * Long.BYTES
+                + (long) messageCount * Integer.BYTES
+                + (long) (messageCount + 1) * Integer.BYTES
+                + Integer.BYTES
+                + (long) contentLength * Character.BYTES;
+    }
+
+    /**
+     * @param position a position in the file
+     * @return the number of padding bytes needed to align the position
+     */
+    static int padding(long position) {
+        return (int) ((ALIGNMENT - position % ALIGNMENT) % ALIGNMENT);
+    }
+}
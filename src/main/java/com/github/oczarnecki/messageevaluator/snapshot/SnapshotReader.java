@@ -0,0 +1,203 @@
+package com.github.oczarnecki.messageevaluator.snapshot;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Opens snapshot files written by a {@link SnapshotWriter}. Only the names of chats and senders are read onto the
+ * heap. The columns of every chat are memory mapped, so opening a snapshot is fast and its data stay off-heap. The
+ * mappings remain valid after the file has been closed.
+ *
+ * @see SnapshotFormat
+ */
+public final class SnapshotReader {
+    /**
+     * the extension of snapshot files, without a leading dot
+     */
+    public static final String FILE_EXTENSION = "snapshot";
+
+    private final FileChannel channel;
+    private long position;
+
+    private SnapshotReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a snapshot file.
+     *
+     * @param snapshotFile the snapshot file
+     * @return the chats contained in the snapshot, backed by memory mapped buffers
+     * @throws IOException if the file can not be read, is no snapshot or has an unsupported version
+     */
+    public static List<TelegramChat> read(File snapshotFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), READ)) {
+            return new SnapshotReader(channel).readChats();
+        }
+    }
+
+    private List<TelegramChat> readChats() throws IOException {
+        if (readInt() != SnapshotFormat.MAGIC) {
+            throw new IOException("not a snapshot file");
+        }
+        int version = readInt();
+        if (version != SnapshotFormat.VERSION) {
+            throw new IOException("unsupported snapshot version " + version);
+        }
+
+        String[] senders = new String[readCount(Integer.BYTES)];
+        for (int sender = 0; sender < senders.length; sender++) {
+            senders[sender] = readString();
+        }
+
+        int chatCount = readCount(Integer.BYTES);
+        List<TelegramChat> chats = new ArrayList<>(chatCount);
+        for (int chat = 0; chat < chatCount; chat++) {
+            chats.add(readChat(senders));
+        }
+        return chats;
+    }
+
+    private TelegramChat readChat(String[] senders) throws IOException {
+        String name = readString();
+        int messageCount = readInt();
+        int contentLength = readInt();
+        if (messageCount < 0 || contentLength < 0) {
+            throw new IOException("corrupt snapshot file");
+        }
+        String[] chatSenders = new String[readCount(Integer.BYTES)];
+        for (int sender = 0; sender < chatSenders.length; sender++) {
+            int senderIndex = readInt();
+            if (senderIndex < 0 || senderIndex >= senders.length) {
+                throw new IOException("corrupt snapshot file");
+            }
+            chatSenders[sender] = senders[senderIndex];
+        }
+        position += SnapshotFormat.padding(position);
+
+        long dataSize = SnapshotFormat.columnDataSize(messageCount, contentLength);
+        if (position + dataSize > channel.size()) {
+            throw new EOFException("snapshot file is truncated");
+        }
+        // every column is mapped on its own, since a single mapping is limited to 2 GB
+        LongBuffer timestamps = map((long) messageCount * Long.BYTES).asLongBuffer();
+        IntBuffer senderIds = map((long) messageCount * Integer.BYTES).asIntBuffer();
+        IntBuffer contentOffsets = map(((long) messageCount + 1) * Integer.BYTES).asIntBuffer();
+        position += Integer.BYTES;
+        CharBuffer content = map((long) contentLength * Character.BYTES).asCharBuffer();
+        checkColumns(senderIds, chatSenders.length, contentOffsets, contentLength);
+        try {
+            return TelegramChat.fromColumns(name, timestamps, senderIds, chatSenders, content, contentOffsets);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException cause) {
+            throw new IOException("corrupt snapshot file", cause);
+        }
+    }
+
+    /**
+     * Checks that the sender ids and content offsets of a chat are within range, so that a corrupt snapshot is
+     * rejected when it is opened instead of failing when its messages are accessed.
+     *
+     * @throws IOException if a sender id or content offset is out of range
+     */
+    private static void checkColumns(IntBuffer senderIds, int senderCount, IntBuffer contentOffsets,
+                                     int contentLength) throws IOException {
+        for (int message = 0; message < senderIds.limit(); message++) {
+            int senderId = senderIds.get(message);
+            if (senderId < 0 || senderId >= senderCount) {
+                throw new IOException("corrupt snapshot file");
+            }
+        }
+        int previousOffset = 0;
+        for (int message = 0; message < contentOffsets.limit(); message++) {
+            int offset = contentOffsets.get(message);
+            if (offset < previousOffset || offset > contentLength || message == 0 && offset != 0) {
+                throw new IOException("corrupt snapshot file");
+            }
+            previousOffset = offset;
+        }
+    }
+
+    /**
+     * Maps a column at the current position and advances it.
+     *
+     * @param size the size of the column in bytes, which has been checked to be within the file
+     * @return a little endian read only mapping of the column
+     * @throws IOException if the column is too large to be mapped
+     */
+    private ByteBuffer map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("chat too large to be mapped: column of " + size + " bytes");
+        }
+        MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        position += size;
+        return column.order(SnapshotFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Reads the number of elements of a list, and checks that the rest of the file is large enough to contain them, so
+     * that corrupt counts do not cause huge allocations.
+     *
+     * @param minimumSize the minimum size of an element in bytes
+     * @return the number of elements
+     * @throws IOException if the count is negative or the file is too short
+     */
+    private int readCount(int minimumSize) throws IOException {
+        int count = readInt();
+        if (count < 0) {
+            throw new IOException("corrupt snapshot file");
+        }
+        if ((long) count * minimumSize > channel.size() - position) {
+            throw new EOFException("snapshot file is truncated");
+        }
+        return count;
+    }
+
+    private String readString() throws IOException {
+        int length = readInt();
+        if (length > channel.size() - position) {
+            throw new EOFException("snapshot file is truncated");
+        }
+        return new String(read(length).array(), StandardCharsets.UTF_8);
+    }
+
+    private int readInt() throws IOException {
+        return read(Integer.BYTES).getInt();
+    }
+
+    /**
+     * Reads bytes at the current position and advances it.
+     *
+     * @param length the number of bytes to read
+     * @return a flipped heap buffer containing the bytes
+     * @throws EOFException if the file ends early
+     */
+    private ByteBuffer read(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("corrupt snapshot file");
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length).order(SnapshotFormat.BYTE_ORDER);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, position + bytes.position()) < 0) {
+                throw new EOFException("snapshot file is truncated");
+            }
+        }
+        position += length;
+        ((Buffer) bytes).flip();
+        return bytes;
+    }
+}
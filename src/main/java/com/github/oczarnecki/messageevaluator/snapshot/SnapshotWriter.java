@@ -0,0 +1,184 @@
+package com.github.oczarnecki.messageevaluator.snapshot;
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary;
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.LongConsumer;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes chats to a binary snapshot file, which can be opened much faster than the original export by a
+ * {@link SnapshotReader}.
+ *
+ * @see SnapshotFormat
+ */
+public final class SnapshotWriter {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final LongConsumer progress;
+    private final ByteBuffer buffer;
+    private long position;
+
+    private SnapshotWriter(FileChannel channel, LongConsumer progress) {
+        this.channel = channel;
+        this.progress = progress;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(SnapshotFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Writes the chats to a snapshot file. An existing file is overwritten.
+     *
+     * @param chats        the chats to write
+     * @param snapshotFile the destination
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Collection<TelegramChat> chats, File snapshotFile) throws IOException {
+        write(chats, snapshotFile, bytes -> {
+        });
+    }
+
+    /**
+     * Like {@link #write(Collection, File)}, but reports the progress whenever the buffered bytes are written.
+     *
+     * @param chats        the chats to write
+     * @param snapshotFile the destination
+     * @param progress     receives the number of bytes written to the file at a time, and may abort writing by
+     *                     throwing an unchecked exception
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Collection<TelegramChat> chats, File snapshotFile, LongConsumer progress)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            new SnapshotWriter(channel, progress).writeChats(chats);
+        }
+    }
+
+    /**
+     * @param chats the chats to write
+     * @return the size of the columns of the chats in a snapshot, which is the size of the snapshot but for the
+     * names, the senders and the padding
+     */
+    public static long columnSize(Collection<TelegramChat> chats) {
+        long size = 0;
+        for (TelegramChat chat : chats) {
+            int messageCount = chat.getMessageCount();
+            size += (long) (Long.BYTES + Integer.BYTES) * messageCount + (long) Integer.BYTES * (messageCount + 2)
+                    + (long) Character.BYTES * chat.getContentOffsetColumn().get(messageCount);
+        }
+        return size;
+    }
+
+    private void writeChats(Collection<TelegramChat> chats) throws IOException {
+        SenderDictionary senders = new SenderDictionary();
+        chats.forEach(chat -> {
+            for (int sender = 0; sender < chat.getSenderCount(); sender++) {
+                senders.intern(chat.getSender(sender));
+            }
+        });
+
+        putInt(SnapshotFormat.MAGIC);
+        putInt(SnapshotFormat.VERSION);
+        putInt(senders.size());
+        for (int sender = 0; sender < senders.size(); sender++) {
+            putString(senders.getName(sender));
+        }
+
+        putInt(chats.size());
+        for (TelegramChat chat : chats) {
+            writeChat(chat, senders);
+        }
+        flush();
+    }
+
+    private void writeChat(TelegramChat chat, SenderDictionary senders) throws IOException {
+        putString(chat.getName());
+        putInt(chat.getMessageCount());
+        putInt(chat.getContentColumn().limit());
+        putInt(chat.getSenderCount());
+        for (int sender = 0; sender < chat.getSenderCount(); sender++) {
+            putInt(senders.getId(chat.getSender(sender)));
+        }
+        pad();
+
+        LongBuffer timestamps = chat.getTimestampColumn();
+        while (timestamps.hasRemaining()) {
+            putLong(timestamps.get());
+        }
+        putInts(chat.getSenderIdColumn());
+        putInts(chat.getContentOffsetColumn());
+        putInt(0);
+        CharBuffer content = chat.getContentColumn();
+        while (content.hasRemaining()) {
+            ensureCapacity(Character.BYTES);
+            buffer.putChar(content.get());
+            position += Character.BYTES;
+        }
+    }
+
+    private void putInts(IntBuffer ints) throws IOException {
+        while (ints.hasRemaining()) {
+            putInt(ints.get());
+        }
+    }
+
+    private void putString(String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        for (byte b : bytes) {
+            ensureCapacity(Byte.BYTES);
+            buffer.put(b);
+            position++;
+        }
+    }
+
+    private void pad() throws IOException {
+        for (int i = SnapshotFormat.padding(position); i > 0; i--) {
+            ensureCapacity(Byte.BYTES);
+            buffer.put((byte) 0);
+            position++;
+        }
+    }
+
+    private void putInt(int value) throws IOException {
+        ensureCapacity(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    private void putLong(long value) throws IOException {
+        ensureCapacity(Long.BYTES);
+        buffer.putLong(value);
+        position += Long.BYTES;
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        // calls through Buffer, since ByteBuffer only overrides flip and clear as of Java 9
+        ((Buffer) buffer).flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+        progress.accept(length);
+    }
+}
@@ -1,20 +1,60 @@
 package com.github.oczarnecki.messageevaluator.ui;
 
+import com.github.oczarnecki.messageevaluator.ImportProgress;
 import com.github.oczarnecki.messageevaluator.TelegramDataModel;
-import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException;
+import com.github.oczarnecki.messageevaluator.snapshot.SnapshotReader;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public final class MainWindowController {
     @FXML
     private MessageHistogramController histogramController;
 
+    @FXML
+    private HBox importStatusBox;
+
+    @FXML
+    private ProgressBar importProgressBar;
+
+    @FXML
+    private Label importStatusLabel;
+
     private final Stage stage;
     private TelegramDataModel tgModel;
 
+    /**
+     * the progress of the running import or snapshot write, or null if none is running
+     */
+    private ImportProgress importProgress;
+
+    /**
+     * describes the progress of the running import or snapshot write
+     */
+    private Function<ImportProgress, String> importStatus;
+
+    /**
+     * updates the import status once per frame while an import is running
+     */
+    private final AnimationTimer importStatusTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            updateImportStatus();
+        }
+    };
+
     public MainWindowController(Stage stage, TelegramDataModel tgModel) {
         this.stage = stage;
         this.tgModel = tgModel;
@@ -23,18 +63,153 @@ public final class MainWindowController {
     @FXML
     private void initialize() {
         tgModel.addChangeListener(histogramController::chatsChanged);
+        importStatusBox.managedProperty().bind(importStatusBox.visibleProperty());
+    }
+
+    @FXML
+    private void importTgData() {
+        File dataFile = tgDataFileChooser().showOpenDialog(stage);
+        if (dataFile != null) {
+            startImport(progress -> tgModel.importTgDataInBackground(dataFile, progress));
+        }
+    }
+
+    @FXML
+    private void importNewTgData() {
+        File dataFile = tgDataFileChooser().showOpenDialog(stage);
+        if (dataFile != null) {
+            startImport(progress -> tgModel.importNewTgDataInBackground(dataFile, progress));
+        }
+    }
+
+    @FXML
+    private void importFiles() {
+        List<File> dataFiles = chooseExports("Please choose the exports to import from...");
+        if (dataFiles != null) {
+            startImport(progress -> tgModel.importFilesInBackground(dataFiles, progress));
+        }
+    }
+
+    @FXML
+    private void mergeFiles() {
+        List<File> dataFiles = chooseExports("Please choose the exports to merge...");
+        if (dataFiles != null) {
+            startImport(progress -> tgModel.mergeFilesInBackground(dataFiles, progress));
+        }
+    }
+
+    /**
+     * Opens a snapshot or imports a Telegram export in the background and shows the progress, like the menu actions,
+     * for example for a file passed to the application on startup.
+     *
+     * @param dataFile a snapshot, recognized by its extension, or a Telegram export
+     */
+    public void open(File dataFile) {
+        if (dataFile.getName().endsWith("." + SnapshotReader.FILE_EXTENSION)) {
+            startImport(progress -> tgModel.openSnapshotInBackground(dataFile, progress));
+        } else {
+            startImport(progress -> tgModel.importTgDataInBackground(dataFile, progress));
+        }
+    }
+
+    /**
+     * @return the chosen exports of any supported kind, or null if the dialog has been cancelled
+     */
+    private List<File> chooseExports(String title) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Supported exports", "*.json", "*.txt", "*.mbox", "*.mbx",
+                        "*.gz", "*.zip"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        fileChooser.setTitle(title);
+        return fileChooser.showOpenMultipleDialog(stage);
+    }
+
+    /**
+     * Starts a background import and shows its progress, unless another import is running.
+     *
+     * @param backgroundImport starts the import with the given progress
+     */
+    private void startImport(Function<ImportProgress, CompletableFuture<Void>> backgroundImport) {
+        startTask(backgroundImport, progress -> String.format("%,d of %,d MB read, %,d messages parsed",
+                progress.getBytesRead() >> 20, progress.getTotalBytes() >> 20, progress.getMessagesParsed()));
+    }
+
+    /**
+     * Starts a background task tracked by an {@link ImportProgress} and shows its progress, unless another task is
+     * running.
+     *
+     * @param backgroundTask starts the task with the given progress
+     * @param status         describes the progress of the task
+     */
+    private void startTask(Function<ImportProgress, CompletableFuture<Void>> backgroundTask,
+                           Function<ImportProgress, String> status) {
+        if (importProgress != null) {
+            return;
+        }
+        importProgress = new ImportProgress();
+        importStatus = status;
+        updateImportStatus();
+        importStatusBox.setVisible(true);
+        importStatusTimer.start();
+        backgroundTask.apply(importProgress)
+                .whenComplete((ignored, exception) -> Platform.runLater(() -> importFinished(exception)));
+    }
+
+    private void updateImportStatus() {
+        importProgressBar.setProgress(importProgress.getFraction());
+        importStatusLabel.setText(importStatus.apply(importProgress));
     }
 
     @FXML
-    private void importTgData() throws ImportException {
+    private void cancelImport() {
+        if (importProgress != null) {
+            importProgress.cancel();
+        }
+    }
+
+    private void importFinished(Throwable exception) {
+        importStatusTimer.stop();
+        importStatusBox.setVisible(false);
+        importProgress = null;
+        if (exception != null && !(exception instanceof CancellationException)) {
+            new Alert(Alert.AlertType.ERROR, exception.getMessage()).show();
+        }
+    }
+
+    private FileChooser tgDataFileChooser() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().addAll(
-                new FileChooser.ExtensionFilter("Json", "*.json"),
+                new FileChooser.ExtensionFilter("Json", "*.json", "*.json.gz", "*.zip"),
                 new FileChooser.ExtensionFilter("All files", "*.*"));
         fileChooser.setTitle("Please choose a telegram export file to import from...");
-        File dataFile = fileChooser.showOpenDialog(stage);
-        if (dataFile != null) {
-            tgModel.importTgData(dataFile);
+        return fileChooser;
+    }
+
+    @FXML
+    private void openSnapshot() {
+        File snapshotFile = snapshotFileChooser("Please choose a snapshot to open...").showOpenDialog(stage);
+        if (snapshotFile != null) {
+            startImport(progress -> tgModel.openSnapshotInBackground(snapshotFile, progress));
         }
     }
+
+    @FXML
+    private void saveSnapshot() {
+        File snapshotFile = snapshotFileChooser("Please choose where to save the snapshot...").showSaveDialog(stage);
+        if (snapshotFile != null) {
+            startTask(progress -> tgModel.writeSnapshotInBackground(snapshotFile, progress),
+                    progress -> String.format("%,d of %,d MB of the snapshot written",
+                            progress.getBytesWritten() >> 20, progress.getTotalBytes() >> 20));
+        }
+    }
+
+    private FileChooser snapshotFileChooser(String title) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Snapshot", "*." + SnapshotReader.FILE_EXTENSION),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        fileChooser.setTitle(title);
+        return fileChooser;
+    }
 }
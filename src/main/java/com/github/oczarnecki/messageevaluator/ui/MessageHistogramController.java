@@ -1,38 +1,74 @@
 package com.github.oczarnecki.messageevaluator.ui;
 
-import com.github.oczarnecki.messageevaluator.TelegramDataModel;
+import com.github.oczarnecki.messageevaluator.ModelState;
+import com.github.oczarnecki.messageevaluator.analysis.Downsampling;
+import com.github.oczarnecki.messageevaluator.analysis.Granularity;
+import com.github.oczarnecki.messageevaluator.analysis.Histogram;
 import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat;
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation;
+import com.github.oczarnecki.messageevaluator.instrumentation.Phase;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
+import javafx.scene.Node;
+import javafx.scene.chart.Axis;
+import javafx.scene.chart.ValueAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.CheckBox;
 import javafx.scene.layout.VBox;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-import static java.time.temporal.ChronoField.EPOCH_DAY;
-
+/**
+ * Shows the histograms of the selected chats. Histograms with more buckets than the chart has pixels are downsampled
+ * to the width of the chart, and the series are updated at most once per pulse, so that selecting many chats at once
+ * only causes a single layout of the chart.
+ */
 public class MessageHistogramController {
+    private static final Granularity GRANULARITY = Granularity.DAY;
+    private static final int BUCKET_WIDTH = 30;
+
     @FXML
     private XYChart<Number, Number> histogramChart;
 
     @FXML
     private VBox chartSelectionBox;
 
+    /**
+     * the histograms of all chats, by name
+     */
+    private Map<String, Histogram> chatHistograms;
+
+    /**
+     * the series of the chats which have been shown at the current width of the chart, by name
+     */
     private Map<String, XYChart.Series<Number, Number>> chatSeries;
 
+    private boolean chartUpdatePending;
+
     /**
      * Constructor
      */
     public MessageHistogramController() {
+        chatHistograms = new HashMap<>();
         chatSeries = new HashMap<>();
     }
 
     @FXML
     private void initialize() {
         histogramChart.setAnimated(false);
+        histogramChart.getXAxis().widthProperty().addListener(observable -> {
+            chatSeries.clear();
+            scheduleChartUpdate();
+        });
     }
 
     public void selectAll() {
@@ -47,42 +83,111 @@ public class MessageHistogramController {
         chartSelectionBox.getChildren().forEach(checkBox -> ((CheckBox) checkBox).setSelected(selected));
     }
 
-    public void chatsChanged(TelegramDataModel tgModel) {
+    public void chatsChanged(ModelState modelState) {
         chartSelectionBox.getChildren().clear();
-        chatSeries.clear();
 
-        Collection<TelegramChat> chats = tgModel.getChats();
+        Collection<TelegramChat> chats = modelState.getChats();
         chartSelectionBox.getChildren().addAll(
                 chats.stream()
                         .map(this::chartCheckboxChanged)
                         .collect(Collectors.toList()));
 
-        chats.forEach(chat -> chatSeries.put(chat.getName(), toDataSeries(chat)));
+        // only the histograms of changed chats are looked up again, which are served by the analysis cache if the same
+        // chat has been shown before
+        Set<TelegramChat> changedChats = Collections.newSetFromMap(new IdentityHashMap<>());
+        changedChats.addAll(modelState.getChangedChats());
+        Map<String, Histogram> previousHistograms = chatHistograms;
+        chatHistograms = new HashMap<>();
+        chats.forEach(chat -> {
+            Histogram histogram = previousHistograms.get(chat.getName());
+            if (histogram == null || changedChats.contains(chat)) {
+                histogram = modelState.histogram(chat, GRANULARITY, BUCKET_WIDTH);
+                chatSeries.remove(chat.getName());
+            }
+            chatHistograms.put(chat.getName(), histogram);
+        });
+        chatSeries.keySet().retainAll(chatHistograms.keySet());
         selectAll();
+        scheduleChartUpdate();
     }
 
     private CheckBox chartCheckboxChanged(TelegramChat chat) {
         CheckBox checkBox = new CheckBox(chat.getName());
-        checkBox.selectedProperty().addListener((observable, oldValue, newValue) -> {
-            XYChart.Series<Number, Number> series = chatSeries.get(checkBox.getText());
-            if (newValue) {
-                histogramChart.getData().add(series);
-            } else {
-                histogramChart.getData().remove(series);
-            }
-        });
+        checkBox.selectedProperty().addListener(observable -> scheduleChartUpdate());
         return checkBox;
     }
 
-    private XYChart.Series<Number, Number> toDataSeries(TelegramChat telegramChat) {
-        XYChart.Series<Number, Number> series = new XYChart.Series<>();
-        series.setName(telegramChat.getName());
-        Map<Long, Double> histogram = new HashMap<>();
-        telegramChat.getMessages().forEach(message -> {
-            long days = message.getTimestamp().getLong(EPOCH_DAY) / 30;
-            histogram.put(days, 1 + histogram.getOrDefault(days, 0.0));
-        });
-        histogram.forEach((key, value) -> series.getData().add(new XYChart.Data<>(key, (value))));
-        return series;
+    /**
+     * Updates the series of the chart later in this pulse, unless an update is already scheduled.
+     */
+    private void scheduleChartUpdate() {
+        if (!chartUpdatePending) {
+            chartUpdatePending = true;
+            Platform.runLater(this::updateChart);
+        }
+    }
+
+    /**
+     * Replaces the series of the chart by the series of the selected chats at once.
+     */
+    private void updateChart() {
+        long start = System.nanoTime();
+        chartUpdatePending = false;
+        List<XYChart.Series<Number, Number>> selectedSeries = new ArrayList<>();
+        for (Node node : chartSelectionBox.getChildren()) {
+            CheckBox checkBox = (CheckBox) node;
+            if (checkBox.isSelected()) {
+                selectedSeries.add(chatSeries.computeIfAbsent(checkBox.getText(), this::toDataSeries));
+            }
+        }
+        if (!histogramChart.getData().equals(selectedSeries)) {
+            histogramChart.getData().setAll(selectedSeries);
+        }
+        Instrumentation.get().recordPhase(Phase.BUILD_SERIES, System.nanoTime() - start);
+    }
+
+    /**
+     * Converts the buckets of the histogram of a chat into a chart series, downsampled to the width of the chart. The
+     * data are added to the series at once, so that the chart is only notified once.
+     */
+    private XYChart.Series<Number, Number> toDataSeries(String chatName) {
+        Histogram histogram = chatHistograms.get(chatName);
+        int[] buckets = Downsampling.minMax(histogram, columns(histogram));
+        List<XYChart.Data<Number, Number>> data = new ArrayList<>(buckets.length);
+        for (int bucket : buckets) {
+            data.add(new XYChart.Data<>(histogram.getFirstBucket() + bucket, histogram.getCount(bucket)));
+        }
+        return new XYChart.Series<>(chatName, FXCollections.observableList(data));
+    }
+
+    /**
+     * @return the number of pixel columns the buckets of the histogram span, or 0 if the chart has not been laid out
+     */
+    private int columns(Histogram histogram) {
+        double pixels = histogramChart.getXAxis().getWidth();
+        double visibleBuckets = visibleBucketCount();
+        if (pixels <= 0 || visibleBuckets <= 0) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(histogram.getBucketCount() * pixels / visibleBuckets));
+    }
+
+    /**
+     * @return the number of buckets the x axis spans
+     */
+    private double visibleBucketCount() {
+        Axis<Number> xAxis = histogramChart.getXAxis();
+        if (xAxis instanceof ValueAxis && !xAxis.isAutoRanging()) {
+            ValueAxis<Number> valueAxis = (ValueAxis<Number>) xAxis;
+            return valueAxis.getUpperBound() - valueAxis.getLowerBound();
+        }
+        long firstBucket = Long.MAX_VALUE, lastBucket = Long.MIN_VALUE;
+        for (Histogram histogram : chatHistograms.values()) {
+            if (histogram.getBucketCount() > 0) {
+                firstBucket = Math.min(firstBucket, histogram.getFirstBucket());
+                lastBucket = Math.max(lastBucket, histogram.getFirstBucket() + histogram.getBucketCount() - 1);
+            }
+        }
+        return firstBucket > lastBucket ? 0 : lastBucket - firstBucket + 1;
     }
 }
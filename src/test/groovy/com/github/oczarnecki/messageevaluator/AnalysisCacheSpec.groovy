@@ -0,0 +1,127 @@
+package com.github.oczarnecki.messageevaluator
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat
+import spock.lang.Specification
+import spock.lang.Subject
+
+class AnalysisCacheSpec extends Specification {
+
+    @Subject
+    private TelegramDataModel model
+
+    def setup() {
+        model = new TelegramDataModel()
+    }
+
+    def "histograms of chats which did not change are served from the cache"() {
+        given:
+        def first = chat('first', 0, 86400)
+        def second = chat('second', 0)
+        model.setChats([first, second])
+        def histogram = model.getState().histogram(first, Granularity.DAY, 1)
+
+        when: 'another chat is added'
+        model.setChats([first, second, chat('third', 0)])
+
+        then:
+        model.getState().histogram(first, Granularity.DAY, 1).is(histogram)
+        model.getState().histogram(first, Granularity.DAY, 1, 0, 86400).getTotalCount() == 1
+        cache().getHitCount() == 1
+        cache().getMissCount() == 2
+    }
+
+    def "histograms of chats which are replaced by equal chats are served from the cache"() {
+        given:
+        model.setChats([chat('chat', 0, 3600)])
+        def histogram = model.getState().histogram(model.getChats()[0], Granularity.HOUR, 1)
+
+        when: 'the same data are loaded again'
+        model.setChats([chat('chat', 0, 3600)])
+
+        then:
+        model.getState().histogram(model.getChats()[0], Granularity.HOUR, 1).is(histogram)
+    }
+
+    def "histograms of chats which are reimported with lazy contents are served from the cache"() {
+        given: 'a model keeping the contents in a file'
+        model.setLazyContent(true)
+        def export = File.createTempFile('export', '.json')
+        export.deleteOnExit()
+        export.text = '{"chats":{"list":[{"name":"chat", "messages":[' +
+                '{"type":"message", "date":"2016-12-24T06:00:00", "from":"Sender", "text":"first"},' +
+                '{"type":"message", "date":"2016-12-25T06:00:00", "from":"Sender", "text":"second"}]}]}}'
+        model.importTgData(export)
+        def histogram = model.getState().histogram(model.getChats()[0], Granularity.DAY, 1)
+
+        when: 'the same export is imported again into another content file'
+        model.importTgData(export)
+
+        then:
+        model.getState().histogram(model.getChats()[0], Granularity.DAY, 1).is(histogram)
+
+        cleanup:
+        export.delete()
+    }
+
+    def "results of changed and removed chats are invalidated"() {
+        given:
+        def removed = chat('removed', 0)
+        model.setChats([chat('chat', 0), removed])
+        def histogram = model.getState().histogram(model.getChats()[0], Granularity.DAY, 1)
+        model.getState().histogram(removed, Granularity.DAY, 1)
+
+        when: 'a chat receives new messages and another one is removed'
+        model.setChats([chat('chat', 0, 86400)])
+
+        then:
+        cache().getSize() == 0
+        def changed = model.getState().histogram(model.getChats()[0], Granularity.DAY, 1)
+        !changed.is(histogram)
+        changed.getTotalCount() == 2
+    }
+
+    def "the least recently used results are evicted"() {
+        given:
+        def cache = new AnalysisCache(2)
+        def chat = chat('chat', 0)
+        cache.stateChanged(new ModelState(1, [chat], [chat], new ChatIndexes(), cache))
+        def computations = 0
+        def compute = { computations++; return 'result' }
+
+        when:
+        cache.get(chat, 'a', Granularity.DAY, 1, 0, 1, compute)
+        cache.get(chat, 'b', Granularity.DAY, 1, 0, 1, compute)
+        cache.get(chat, 'a', Granularity.DAY, 1, 0, 1, compute)
+        cache.get(chat, 'c', Granularity.DAY, 1, 0, 1, compute)
+        cache.get(chat, 'a', Granularity.DAY, 1, 0, 1, compute)
+        cache.get(chat, 'b', Granularity.DAY, 1, 0, 1, compute)
+
+        then:
+        computations == 4
+        cache.getSize() == 2
+    }
+
+    def "analyses of chats the cache has not been notified of are not cached"() {
+        given:
+        def cache = new AnalysisCache(2)
+
+        when:
+        cache.get(chat('chat', 0), 'a', Granularity.DAY, 1, 0, 1, { 'result' })
+
+        then:
+        cache.getSize() == 0
+        cache.getMissCount() == 1
+    }
+
+    private AnalysisCache cache() {
+        return model.getState().getAnalysisCache()
+    }
+
+    private static TelegramChat chat(String name, long... epochSeconds) {
+        def builder = new TelegramChat.Builder(name, new SenderDictionary())
+        epochSeconds.each { builder.add(it, 'sender', 'text') }
+        return builder.build()
+    }
+}
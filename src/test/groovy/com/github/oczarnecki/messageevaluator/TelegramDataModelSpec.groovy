@@ -1,12 +1,26 @@
 package com.github.oczarnecki.messageevaluator
 
+import com.github.oczarnecki.messageevaluator.importer.ChatCollectingSink
+import com.github.oczarnecki.messageevaluator.importer.telegram.ContentFile
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
 import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat
 import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessage
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation
+import spock.lang.Requires
 import spock.lang.Specification
 import spock.lang.Subject
+import spock.util.concurrent.PollingConditions
 
+import java.lang.management.ManagementFactory
+import java.nio.file.Files
 import java.time.LocalDateTime
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
 import java.util.function.Consumer
+import java.util.zip.GZIPOutputStream
 
 class TelegramDataModelSpec extends Specification {
 
@@ -50,8 +64,8 @@ class TelegramDataModelSpec extends Specification {
         when: 'the listener is added'
         model.addChangeListener(listener)
 
-        then: 'it is also notified'
-        1 * listener.accept(model)
+        then: 'it is also notified of the current state'
+        1 * listener.accept({ it.version == 0 && it.chats.isEmpty() })
     }
 
     def "the setter notifies all listeners"() {
@@ -62,8 +76,8 @@ class TelegramDataModelSpec extends Specification {
         when: 'a new collection of chats is set'
         model.setChats(Collections.singleton(A_CHAT))
 
-        then: 'the listener is called'
-        1 * listener.accept(model)
+        then: 'the listener is called with the new state'
+        1 * listener.accept({ it.version == 1 && it.chats == [A_CHAT] && it.changedChats == [A_CHAT] })
     }
 
     def "chats may not be set to null"() {
@@ -86,4 +100,537 @@ class TelegramDataModelSpec extends Specification {
                         LocalDateTime.of(2016, 12, 24, 6, 0, 0), 'Sender', 'Message text'))))
 
     }
+
+    def "a snapshot of the model can be reopened"() {
+        given: 'a model with imported data'
+        def resource = getClass().getClassLoader().getResource('telegramTestData/twoChats.json')
+        model.importTgData(new File(resource.toURI()))
+        def snapshotFile = File.createTempFile('model', '.snapshot')
+        snapshotFile.deleteOnExit()
+
+        when: 'a snapshot is written and opened by another model'
+        model.writeSnapshot(snapshotFile)
+        def reopened = new TelegramDataModel()
+        reopened.openSnapshot(snapshotFile)
+
+        then: 'both models contain the same chats'
+        reopened.getChats().asList() == model.getChats().asList()
+
+        and: 'the text indexes are reopened with them'
+        reopened.getTextIndex(reopened.getChats()[1]).keyword('message text') == [0] as int[]
+
+        cleanup:
+        snapshotFile.delete()
+        new File(snapshotFile.path + '.index').delete()
+    }
+
+    def "snapshots are written and opened in the background"() {
+        given: 'a model with imported data'
+        def resource = getClass().getClassLoader().getResource('telegramTestData/twoChats.json')
+        model.importTgData(new File(resource.toURI()))
+        def snapshotFile = File.createTempFile('model', '.snapshot')
+        snapshotFile.deleteOnExit()
+
+        when: 'a snapshot is written and opened by another model in the background'
+        def writeProgress = new ImportProgress()
+        model.writeSnapshotInBackground(snapshotFile, writeProgress).get(10, TimeUnit.SECONDS)
+        def reopened = new TelegramDataModel()
+        reopened.openSnapshotInBackground(snapshotFile, new ImportProgress()).get(10, TimeUnit.SECONDS)
+
+        then: 'both models contain the same chats'
+        reopened.getChats().asList() == model.getChats().asList()
+
+        and: 'the progress of writing has been reported'
+        writeProgress.getBytesWritten() == snapshotFile.length()
+        writeProgress.getTotalBytes() > 0
+        writeProgress.getFraction() == 1
+
+        when: 'a file which is no snapshot is opened in the background'
+        def noSnapshot = File.createTempFile('invalid', '.snapshot')
+        noSnapshot.deleteOnExit()
+        noSnapshot.text = 'no snapshot'
+        reopened.openSnapshotInBackground(noSnapshot, new ImportProgress()).get(10, TimeUnit.SECONDS)
+
+        then: 'the import fails and the model stays unchanged'
+        def exception = thrown(ExecutionException)
+        exception.cause instanceof ImportException
+        reopened.getChats().asList() == model.getChats().asList()
+
+        cleanup:
+        snapshotFile.delete()
+        noSnapshot?.delete()
+        new File(snapshotFile.path + '.index').delete()
+    }
+
+    def "cancelled snapshots are deleted"() {
+        given: 'a model with imported data'
+        def resource = getClass().getClassLoader().getResource('telegramTestData/twoChats.json')
+        model.importTgData(new File(resource.toURI()))
+        def snapshotFile = File.createTempFile('model', '.snapshot')
+        snapshotFile.deleteOnExit()
+        def progress = new ImportProgress()
+
+        when: 'writing is cancelled before the buffered bytes are written'
+        progress.cancel()
+        model.writeSnapshotInBackground(snapshotFile, progress).get(10, TimeUnit.SECONDS)
+
+        then:
+        thrown(CancellationException)
+        !snapshotFile.exists()
+        !new File(snapshotFile.path + '.index').exists()
+    }
+
+    def "an incremental import only adds new messages"() {
+        given: 'a model with imported data'
+        model.importTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first'), message('2016-12-24T07:00:00', 'second')),
+                chat('Chat B', message('2016-12-24T06:00:00', 'unchanged'))))
+        def chatB = model.getChats().find { it.name == 'Chat B' }
+        def listener = Mock(Consumer)
+        model.addChangeListener(listener)
+
+        when: 'a newer export is imported incrementally'
+        model.importNewTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first'), message('2016-12-24T07:00:00', 'second'),
+                        message('2016-12-24T07:00:00', 'same second'), message('2016-12-25T06:00:00', 'third')),
+                chat('Chat B', message('2016-12-24T06:00:00', 'unchanged')),
+                chat('Chat C', message('2016-12-26T06:00:00', 'new chat'))))
+
+        then: 'the listener is notified once'
+        1 * listener.accept({ it.is(model.getState()) })
+
+        and: 'only the new messages are appended'
+        model.getChats()*.name == ['Chat A', 'Chat B', 'Chat C']
+        model.getChats()[0].getMessages()*.content == ['first', 'second', 'same second', 'third']
+        model.getChats()[2].getMessages()*.content == ['new chat']
+
+        and: 'unchanged chats are kept'
+        model.getChats()[1].is(chatB)
+
+        and: 'only the updated and new chats are reported as changed'
+        model.getChangedChats()*.name == ['Chat A', 'Chat C']
+    }
+
+    def "an incremental import keeps messages repeated in the last known second"() {
+        given: 'a model whose chat ends with an "ok" sent once'
+        model.importTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first'), message('2016-12-24T07:00:00', 'ok'))))
+
+        when: 'a newer export contains the "ok" twice in the same second'
+        model.importNewTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first'), message('2016-12-24T07:00:00', 'ok'),
+                        message('2016-12-24T07:00:00', 'ok'), message('2016-12-24T08:00:00', 'later'))))
+
+        then: 'only the known occurrence is skipped'
+        model.getChats()[0].getMessages()*.content == ['first', 'ok', 'ok', 'later']
+
+        when: 'the same export is imported again'
+        model.importNewTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first'), message('2016-12-24T07:00:00', 'ok'),
+                        message('2016-12-24T07:00:00', 'ok'), message('2016-12-24T08:00:00', 'later'))))
+
+        then: 'nothing is added'
+        model.getChats()[0].getMessages()*.content == ['first', 'ok', 'ok', 'later']
+    }
+
+    def "after a full import, all chats are reported as changed"() {
+        when:
+        model.importTgData(exportFile(chat('Chat A'), chat('Chat B')))
+
+        then:
+        model.getChangedChats()*.name == ['Chat A', 'Chat B']
+    }
+
+    def "building the indexes is recorded once per import"() {
+        given:
+        def buildsBefore = Instrumentation.get().getPhaseCounts().BUILD_MODEL
+
+        when: 'data are imported, whose indexes are built before the model is changed'
+        model.importTgData(exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'))))
+
+        then: 'publishing the already built indexes is not recorded as another build'
+        Instrumentation.get().getPhaseCounts().BUILD_MODEL == buildsBefore + 1
+    }
+
+    @Requires({ ManagementFactory.getThreadMXBean().isCurrentThreadCpuTimeSupported() })
+    def "the parse time of an import does not include the time its threads wait"() {
+        given: 'a sink which waits while receiving a chat'
+        def progress = new ImportProgress()
+        def sink = progress.track(new ChatCollectingSink(new SenderDictionary()))
+
+        when: 'a chat is received'
+        sink.chatStarted('Chat')
+        Thread.sleep(200)
+        sink.chatFinished()
+
+        then: 'only the CPU time of the thread is counted as parsing'
+        progress.getParseNanos() < TimeUnit.MILLISECONDS.toNanos(100)
+    }
+
+    def "the time indexes of unchanged chats are kept by an incremental import"() {
+        given: 'a model with imported data'
+        model.importTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first')),
+                chat('Chat B', message('2016-12-24T06:00:00', 'unchanged'))))
+        def indexA = model.getTimeIndex(model.getChats()[0])
+        def indexB = model.getTimeIndex(model.getChats()[1])
+
+        when: 'new messages of one chat are imported'
+        model.importNewTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first'), message('2016-12-25T06:00:00', 'second'))))
+
+        then: 'only the index of the changed chat is rebuilt'
+        !model.getTimeIndex(model.getChats()[0]).is(indexA)
+        model.getTimeIndex(model.getChats()[0]).getMessageCount() == 2
+        model.getTimeIndex(model.getChats()[1]).is(indexB)
+    }
+
+    def "the text indexes of unchanged chats are kept by an incremental import"() {
+        given: 'a model with imported data'
+        model.importTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first')),
+                chat('Chat B', message('2016-12-24T06:00:00', 'unchanged'))))
+        def indexB = model.getTextIndex(model.getChats()[1])
+
+        when: 'new messages of one chat are imported'
+        model.importNewTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first'), message('2016-12-25T06:00:00', 'second'))))
+
+        then: 'the index of the changed chat finds the new messages'
+        model.getTextIndex(model.getChats()[0]).keyword('second') == [1] as int[]
+        model.getTextIndex(model.getChats()[1]).is(indexB)
+    }
+
+    def "a background import notifies the listeners with the listener executor"() {
+        given: 'a model whose listener executor defers the notifications'
+        def deferred = []
+        model = new TelegramDataModel({ deferred << it } as Executor)
+        def listener = Mock(Consumer)
+        model.addChangeListener(listener)
+        def file = exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'),
+                message('2016-12-24T07:00:00', 'second')))
+        def progress = new ImportProgress()
+
+        when: 'the file is imported in the background'
+        def future = model.importTgDataInBackground(file, progress)
+        new PollingConditions(timeout: 10).eventually { assert deferred.size() == 1 }
+
+        then: 'the model has been changed, but the listeners have not been notified yet'
+        0 * listener.accept(_)
+        model.getChats()*.name == ['Chat A']
+        !future.isDone()
+        progress.getBytesRead() == file.length()
+        progress.getTotalBytes() == file.length()
+        progress.getFraction() == 1
+        progress.getMessagesParsed() == 2
+
+        when: 'the listener executor runs the notification'
+        deferred[0].run()
+
+        then: 'the listeners are notified'
+        1 * listener.accept({ it.chats*.name == ['Chat A'] })
+        future.isDone()
+    }
+
+    def "changes made before the listeners are notified are coalesced"() {
+        given: 'a model whose listener executor defers the notifications'
+        def deferred = []
+        model = new TelegramDataModel({ deferred << it } as Executor)
+        model.importTgData(exportFile(chat('Chat A'), chat('Chat B')))
+        deferred.remove(0).run()
+        def listener = Mock(Consumer)
+        model.addChangeListener(listener)
+
+        when: 'the model is changed twice'
+        model.importNewTgData(exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'))))
+        model.importNewTgData(exportFile(chat('Chat C', message('2016-12-24T06:00:00', 'new chat'))))
+
+        then: 'a single notification is pending'
+        0 * listener.accept(_)
+        deferred.size() == 1
+
+        when:
+        deferred[0].run()
+
+        then: 'the listener is notified once of the newest state and of the chats changed by both changes'
+        1 * listener.accept({ it.version == 3 && it.changedChats*.name == ['Chat A', 'Chat C'] })
+    }
+
+    def "a state is not affected by later changes of the model"() {
+        given:
+        model.importTgData(exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'))))
+        def state = model.getState()
+        def timeIndex = state.getTimeIndex(state.getChats()[0])
+
+        when:
+        model.importNewTgData(exportFile(chat('Chat A', message('2016-12-25T06:00:00', 'second'))))
+
+        then: 'the old state still holds the old chats and indexes'
+        state.getVersion() == 1
+        state.getChats()[0].getMessageCount() == 1
+        state.getTimeIndex(state.getChats()[0]).is(timeIndex)
+
+        and: 'the model has a new version'
+        model.getState().getVersion() == 2
+        model.getChats()[0].getMessageCount() == 2
+    }
+
+    def "concurrent incremental imports do not lose changes"() {
+        given: 'exports of distinct chats'
+        def files = (0..<8).collect { exportFile(chat('Chat ' + it, message('2016-12-24T06:00:00', 'text'))) }
+
+        when: 'they are imported by several threads at once'
+        def futures = files.collect { model.importNewTgDataInBackground(it, new ImportProgress()) }
+        futures.each { it.get(10, TimeUnit.SECONDS) }
+
+        then: 'every import has been applied to the model'
+        model.getState().getVersion() == 8
+        model.getChats()*.name as Set == (0..<8).collect { 'Chat ' + it } as Set
+        model.getChats().every { model.getTimeIndex(it).getMessageCount() == 1 }
+    }
+
+    def "incremental imports read against the same chat keep the messages of both"() {
+        given: 'a model with imported data'
+        model.importTgData(exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'))))
+
+        when: 'two newer exports are imported in the background, both against the same chat'
+        def futures = [
+                model.importNewTgDataInBackground(exportFile(chat('Chat A',
+                        message('2016-12-24T06:00:00', 'first'), message('2016-12-24T07:00:00', 'second'))),
+                        new ImportProgress()),
+                model.importNewTgDataInBackground(exportFile(chat('Chat A',
+                        message('2016-12-24T06:00:00', 'first'), message('2016-12-24T08:00:00', 'third'))),
+                        new ImportProgress())]
+        futures.each { it.get(10, TimeUnit.SECONDS) }
+
+        then: 'the later update is merged with the chat of the earlier one'
+        model.getChats().size() == 1
+        model.getChats()[0].getMessages()*.content == ['first', 'second', 'third']
+        model.getTextIndex(model.getChats()[0]).keyword('third') == [2] as int[]
+    }
+
+    def "a cancelled background import leaves the model unchanged"() {
+        given: 'a cancelled progress'
+        def progress = new ImportProgress()
+        progress.cancel()
+
+        when:
+        def future = model.importTgDataInBackground(exportFile(chat('Chat A')), progress)
+        future.get(10, TimeUnit.SECONDS)
+
+        then:
+        thrown(CancellationException)
+        future.isCancelled()
+        model.getChats().isEmpty()
+    }
+
+    def "cancelling the future of a background import cancels the progress"() {
+        given: 'a model which never applies the results of background imports'
+        model = new TelegramDataModel({} as Executor)
+        def progress = new ImportProgress()
+        def future = model.importNewTgDataInBackground(exportFile(chat('Chat A')), progress)
+
+        when:
+        future.cancel(false)
+
+        then:
+        progress.isCancelled()
+    }
+
+    def "a failing background import completes exceptionally"() {
+        when:
+        model.importTgDataInBackground(new File('does not exist'), new ImportProgress()).get(10, TimeUnit.SECONDS)
+
+        then:
+        def exception = thrown(ExecutionException)
+        exception.getCause() instanceof ImportException
+    }
+
+    def "exports of different sources are imported into one model"() {
+        given: 'a telegram export, a WhatsApp chat and a mailbox'
+        def directory = Files.createTempDirectory('sources').toFile()
+        directory.deleteOnExit()
+        def whatsApp = new File(directory, 'WhatsApp Chat with Alice.txt')
+        whatsApp.setText('12/24/16, 6:00 AM - Alice: hello\n12/24/16, 6:01 AM - Sender: hi', 'UTF-8')
+        def mailbox = new File(directory, 'inbox.mbox')
+        mailbox.setText('From a@b.com Sat Dec 24 06:00:00 2016\nFrom: Alice <a@b.com>\n' +
+                'Date: Sat, 24 Dec 2016 07:00:00 +0100\n\nmail', 'UTF-8')
+        [whatsApp, mailbox].each { it.deleteOnExit() }
+        def files = [exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'))), whatsApp, mailbox]
+        def progress = new ImportProgress()
+
+        when:
+        model.importFilesInBackground(files, progress).get(10, TimeUnit.SECONDS)
+
+        then: 'the chats are listed in the order of the files'
+        model.getChats()*.name == ['Chat A', 'Alice', 'inbox']
+        model.getChats()[1].getMessages() == [
+                new TelegramMessage(LocalDateTime.of(2016, 12, 24, 6, 0), 'Alice', 'hello'),
+                new TelegramMessage(LocalDateTime.of(2016, 12, 24, 6, 1), 'Sender', 'hi')]
+        model.getChats()[2].getMessages() == [
+                new TelegramMessage(LocalDateTime.of(2016, 12, 24, 7, 0), 'Alice', 'mail')]
+        model.getTextIndex(model.getChats()[2]).keyword('mail') == [0] as int[]
+
+        and: 'the progress covers all files'
+        progress.getBytesRead() == files.sum { it.length() }
+        progress.getTotalBytes() == files.sum { it.length() }
+        progress.getMessagesParsed() == 4
+    }
+
+    def "compressed exports are imported directly"() {
+        given: 'a gzip compressed export and a compressed WhatsApp chat'
+        def export = exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first')))
+        def compressedExport = new File(export.path + '.gz')
+        compressedExport.deleteOnExit()
+        new GZIPOutputStream(new FileOutputStream(compressedExport)).withCloseable { it.write(export.bytes) }
+        def whatsApp = File.createTempFile('chat', '.txt.gz')
+        whatsApp.deleteOnExit()
+        new GZIPOutputStream(new FileOutputStream(whatsApp)).withCloseable {
+            it.write('12/24/16, 6:00 AM - Alice: hello'.getBytes('UTF-8'))
+        }
+        def progress = new ImportProgress()
+
+        when:
+        model.importTgData(compressedExport)
+
+        then:
+        model.getChats()*.name == ['Chat A']
+
+        when:
+        model.importFilesInBackground([compressedExport, whatsApp], progress).get(10, TimeUnit.SECONDS)
+
+        then: 'the progress refers to the compressed files'
+        model.getChats()*.name == ['Chat A', whatsApp.name - '.txt.gz']
+        model.getChats()[1].getMessages()*.content == ['hello']
+        progress.getBytesRead() == compressedExport.length() + whatsApp.length()
+        progress.getFraction() == 1
+    }
+
+    def "with lazy content, the contents of imported messages are read from a file"() {
+        given:
+        model.setLazyContent(true)
+        def file = exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'),
+                message('2016-12-25T06:00:00', 'second')))
+
+        when:
+        model.importTgData(file)
+        def importedChat = model.getChats()[0]
+
+        then:
+        importedChat.hasContentFile()
+        importedChat.getMessages()*.content == ['first', 'second']
+        model.getTextIndex(importedChat).keyword('second') == [1] as int[]
+
+        when: 'new messages are imported'
+        model.importNewTgData(exportFile(chat('Chat A', message('2016-12-25T06:00:00', 'second'),
+                message('2016-12-26T06:00:00', 'third'))))
+
+        then:
+        model.getChats()[0].hasContentFile()
+        model.getChats()[0].getMessages()*.content == ['first', 'second', 'third']
+    }
+
+    def "content files are deleted once no chat backed by them is reachable"() {
+        given:
+        model.setLazyContent(true)
+        model.importTgData(exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'))))
+        def firstFile = model.getChats()[0].getContentFile().file
+
+        when: 'the chat is replaced by a chat of another import'
+        model.importNewTgData(exportFile(chat('Chat A', message('2016-12-25T06:00:00', 'second'))))
+
+        then: 'the file of the replaced chat is deleted once it has been collected'
+        new PollingConditions(timeout: 10).eventually {
+            System.gc()
+            ContentFile.releaseUnreachable()
+            assert !firstFile.exists()
+        }
+        model.getChats()[0].getContentFile().file.exists()
+        model.getChats()[0].getMessages()*.content == ['first', 'second']
+    }
+
+    def "older states of a lazy model stay readable after newer imports have been published"() {
+        given: 'a lazy model with imported data, and an analysis holding its state'
+        model.setLazyContent(true)
+        model.importTgData(exportFile(chat('Chat A', message('2016-12-24T06:00:00', 'first'))))
+        def oldState = model.getState()
+
+        when: 'the chats are replaced by newer imports, and their listeners have been notified'
+        model.importTgData(exportFile(chat('Chat B', message('2016-12-25T06:00:00', 'second'))))
+        model.importTgData(exportFile(chat('Chat C', message('2016-12-26T06:00:00', 'third'))))
+        System.gc()
+        ContentFile.releaseUnreachable()
+
+        then: 'the contents of the old state can still be read'
+        oldState.getChats()[0].getMessages()*.content == ['first']
+        oldState.getChats()[0].getContentFile().file.exists()
+        model.getChats()[0].getMessages()*.content == ['third']
+    }
+
+    def "content files of failed imports are deleted"() {
+        given:
+        model.setLazyContent(true)
+        def contentFiles = { new File(System.getProperty('java.io.tmpdir')).list().findAll { it.endsWith('.chars') } }
+        def before = contentFiles()
+        def malformed = File.createTempFile('export', '.json')
+        malformed.deleteOnExit()
+        malformed.text = '{"chats":{"list":[' + chat('Chat A', message('2016-12-24T06:00:00', 'first')) + ', {'
+
+        when:
+        model.importTgDataInBackground(malformed, new ImportProgress()).get(10, TimeUnit.SECONDS)
+
+        then:
+        thrown(ExecutionException)
+        (contentFiles() - before).isEmpty()
+    }
+
+    def "overlapping exports are merged into the model"() {
+        given: 'a model with imported data'
+        model.importTgData(exportFile(
+                chat('Chat A', message('2016-12-24T06:00:00', 'first'), message('2016-12-24T07:00:00', 'second')),
+                chat('Chat B', message('2016-12-24T06:00:00', 'unchanged'))))
+        def chatB = model.getChats()[1]
+
+        when: 'two exports overlapping each other and the model are merged'
+        model.mergeFiles([
+                exportFile(chat('Chat A', message('2016-12-24T07:00:00', 'second'),
+                        message('2016-12-25T06:00:00', 'third')),
+                        chat('Chat B', message('2016-12-24T06:00:00', 'unchanged'))),
+                exportFile(chat('Chat A', message('2016-12-24T05:00:00', 'zeroth'),
+                        message('2016-12-25T06:00:00', 'third')),
+                        chat('Chat C', message('2016-12-26T06:00:00', 'new chat')))])
+
+        then: 'every message is kept once, in timestamp order'
+        model.getChats()*.name == ['Chat A', 'Chat B', 'Chat C']
+        model.getChats()[0].getMessages()*.content == ['zeroth', 'first', 'second', 'third']
+        model.getTextIndex(model.getChats()[0]).keyword('third') == [3] as int[]
+
+        and: 'chats without new messages are kept and not reported as changed'
+        model.getChats()[1].is(chatB)
+        model.getChangedChats()*.name == ['Chat A', 'Chat C']
+    }
+
+    def "files of unknown kind are rejected"() {
+        when:
+        model.importFiles([new File('chat.pdf')])
+
+        then:
+        thrown(ImportException)
+        model.getChats().isEmpty()
+    }
+
+    File exportFile(String... chats) {
+        def file = File.createTempFile('export', '.json')
+        file.deleteOnExit()
+        file.text = '{"chats":{"list":[' + chats.join(',') + ']}}'
+        return file
+    }
+
+    static String chat(String name, String... messages) {
+        return '{"name":"' + name + '", "messages":[' + messages.join(',') + ']}'
+    }
+
+    static String message(String date, String text) {
+        return '{"type":"message", "date":"' + date + '", "from":"Sender", "text":"' + text + '"}'
+    }
 }
@@ -0,0 +1,75 @@
+package com.github.oczarnecki.messageevaluator.analysis
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+import java.util.concurrent.ForkJoinPool
+
+class AggregatesSpec extends Specification {
+
+    private static final long START = 1482559200L // 2016-12-24T06:00:00
+
+    @Unroll
+    def "#variant aggregates of #order messages equal a naive count"() {
+        given:
+        def random = new Random(42)
+        def timestamps = (1..200000).collect { START + (long) (random.nextDouble() * 86400L * 900) - 86400L * 300 }
+        if (order == 'sorted') {
+            timestamps.sort()
+        }
+        def chat = chat(timestamps)
+        def times = timestamps.collect { LocalDateTime.ofEpochSecond(it, 0, ZoneOffset.UTC) }
+
+        when:
+        def aggregates = variant == 'sequential' ? Aggregates.of(chat, EnumSet.allOf(Aggregation))
+                : Aggregates.ofParallel(chat, EnumSet.allOf(Aggregation), new ForkJoinPool(4))
+
+        then:
+        aggregates.getMessageCount() == timestamps.size()
+        TimeIndexSpec.toMap(aggregates.getDays()) ==
+                TimeIndexSpec.naiveHistogram(timestamps, Granularity.DAY, 1)
+        (0..23).collect { aggregates.getHourOfDayCount(it) } == (0..23).collect { h -> times.count { it.hour == h } }
+        (0..6).collect { aggregates.getDayOfWeekCount(it) } ==
+                (0..6).collect { d -> times.count { it.dayOfWeek.ordinal() == d } }
+        (0..11).collect { aggregates.getMonthOfYearCount(it) } ==
+                (0..11).collect { m -> times.count { it.monthValue == m + 1 } }
+        aggregates.getHeatmapCount(5, 6) == times.count { it.dayOfWeek.ordinal() == 5 && it.hour == 6 }
+
+        where:
+        [variant, order] << [['sequential', 'parallel'], ['sorted', 'unsorted']].combinations()
+    }
+
+    def "only the requested aggregations are computed"() {
+        when:
+        def aggregates = Aggregates.of(chat([START]), EnumSet.of(Aggregation.HOUR_OF_DAY))
+
+        then:
+        aggregates.getHourOfDayCount(6) == 1
+        aggregates.getAggregations() == EnumSet.of(Aggregation.HOUR_OF_DAY)
+
+        when:
+        aggregates.getDayOfWeekCount(5)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "the aggregates of an empty chat are empty"() {
+        when:
+        def aggregates = Aggregates.ofParallel(chat([]), EnumSet.allOf(Aggregation), ForkJoinPool.commonPool())
+
+        then:
+        aggregates.getDays().getBucketCount() == 0
+        aggregates.getMonthOfYearCount(0) == 0
+    }
+
+    static TelegramChat chat(List<Long> timestamps) {
+        def builder = new TelegramChat.Builder('chat', new SenderDictionary())
+        timestamps.each { builder.add(it, 'Sender', '') }
+        return builder.build()
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.oczarnecki.messageevaluator.analysis
+
+import spock.lang.Specification
+
+class DownsamplingSpec extends Specification {
+
+    def "narrow histograms are not downsampled"() {
+        expect:
+        Downsampling.minMax(histogram(5, 1, 3, 2), 2) == [0, 1, 2, 3] as int[]
+    }
+
+    def "the first, the last and the extreme buckets of every column are kept"() {
+        given: 'three columns of three buckets each'
+        def histogram = histogram(1, 9, 5, 4, 4, 4, 7, 0, 3)
+
+        expect:
+        Downsampling.minMax(histogram, 3) == [0, 1, 3, 6, 7, 8] as int[]
+    }
+
+    def "the number of kept buckets is bounded by the number of columns"() {
+        given:
+        def random = new Random(3)
+        def histogram = histogram((1..100000).collect { random.nextInt(1000) } as int[])
+
+        when:
+        def selected = Downsampling.minMax(histogram, 800)
+
+        then:
+        selected.length <= 2 * 800 + 2
+        selected.toList() == selected.toList().sort()
+        selected[0] == 0
+        selected[-1] == 99999
+
+        and: 'the maximum count is kept'
+        selected.collect { histogram.getCount(it) }.max() == (0..<100000).collect { histogram.getCount(it) }.max()
+    }
+
+    static Histogram histogram(int... counts) {
+        return new Histogram(Granularity.DAY, 1, 0, counts)
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.oczarnecki.messageevaluator.analysis
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+import java.time.temporal.ChronoUnit
+import java.time.temporal.IsoFields
+
+class EpochCalendarSpec extends Specification {
+
+    @Unroll
+    def "calendar fields of #dateTime agree with java.time"() {
+        given:
+        def epochSecond = dateTime.toEpochSecond(ZoneOffset.UTC)
+        def epochDay = dateTime.toLocalDate().toEpochDay()
+        def epochMonth = ChronoUnit.MONTHS.between(LocalDate.of(1970, 1, 1),
+                dateTime.toLocalDate().withDayOfMonth(1))
+
+        expect:
+        EpochCalendar.epochDay(epochSecond) == epochDay
+        EpochCalendar.hourOfDay(epochSecond) == dateTime.hour
+        EpochCalendar.dayOfWeek(epochDay) == dateTime.dayOfWeek.value - 1
+        EpochCalendar.epochMonth(epochDay) == epochMonth
+        EpochCalendar.monthOfYear(epochMonth) == dateTime.monthValue - 1
+        EpochCalendar.firstDayOfMonth(epochMonth) == dateTime.toLocalDate().withDayOfMonth(1).toEpochDay()
+        EpochCalendar.firstDayOfWeek(EpochCalendar.epochWeek(epochDay)) ==
+                dateTime.toLocalDate().minusDays(dateTime.dayOfWeek.value - 1).toEpochDay()
+
+        where:
+        dateTime << [
+                LocalDateTime.of(1970, 1, 1, 0, 0),
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59),
+                LocalDateTime.of(1900, 3, 1, 12, 0),
+                LocalDateTime.of(2000, 2, 29, 13, 30),
+                LocalDateTime.of(2016, 12, 24, 6, 0),
+                LocalDateTime.of(2018, 12, 31, 23, 0),
+                LocalDateTime.of(2100, 3, 1, 0, 0)]
+    }
+
+    def "months agree with java.time for every day of several centuries"() {
+        expect:
+        (-40000L..60000L).every { epochDay ->
+            def date = LocalDate.ofEpochDay(epochDay)
+            EpochCalendar.epochMonth(epochDay) == (date.year - 1970) * 12 + date.monthValue - 1
+        }
+    }
+
+    def "weeks are numbered like ISO weeks"() {
+        given: 'two days of the same ISO week and a day of the following week'
+        def sunday = LocalDate.of(2017, 1, 1)
+        def monday = sunday.plusDays(1)
+
+        expect:
+        sunday.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR) == 52
+        EpochCalendar.epochWeek(sunday.toEpochDay()) + 1 == EpochCalendar.epochWeek(monday.toEpochDay())
+        EpochCalendar.epochWeek(monday.toEpochDay()) == EpochCalendar.epochWeek(monday.plusDays(6).toEpochDay())
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.oczarnecki.messageevaluator.analysis
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.LongBuffer
+
+class HistogramsSpec extends Specification {
+
+    private static final long START = 1482559200L // 2016-12-24T06:00:00
+
+    @Unroll
+    def "#granularity histograms equal the histograms of a time index"() {
+        given: 'unsorted random timestamps'
+        def random = new Random(7)
+        def timestamps = (1..500).collect { START + (long) (random.nextDouble() * 86400L * 400) }
+        def index = new TimeIndex(TimeIndexSpec.chat(timestamps))
+
+        expect:
+        Histograms.of(LongBuffer.wrap(timestamps as long[]), granularity, width) == index.histogram(granularity, width)
+
+        where:
+        [granularity, width] << [Granularity.values(), [1, 30]].combinations()
+    }
+
+    def "only the messages accepted by the filter are counted"() {
+        given:
+        def timestamps = LongBuffer.wrap([START, START + 86400L, START + 86400L * 2, START + 86400L * 3] as long[])
+
+        when: 'only messages with an odd index are counted'
+        def histogram = Histograms.of(timestamps, { it % 2 == 1 }, Granularity.DAY, 1)
+
+        then:
+        histogram.getFirstBucket() == Granularity.DAY.bucket(START) + 1
+        (0..<histogram.getBucketCount()).collect { histogram.getCount(it) } == [1, 0, 1]
+    }
+
+    def "the histogram of no messages has no buckets"() {
+        expect:
+        Histograms.of(LongBuffer.allocate(0), Granularity.WEEK, 1).getBucketCount() == 0
+        Histograms.of(LongBuffer.wrap([START] as long[]), { false }, Granularity.WEEK, 1).getBucketCount() == 0
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.oczarnecki.messageevaluator.analysis
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+
+class SenderStatisticsSpec extends Specification {
+
+    def "the statistics of a chat equal a naive count per sender"() {
+        given: 'a chat with random messages of three senders'
+        def random = new Random(42)
+        def senders = ['Alice', 'Bob', 'Carol']
+        def messages = (1..2000).collect {
+            [1482559200L + (long) (random.nextDouble() * 86400L * 800), senders[random.nextInt(3)],
+             'x' * random.nextInt(20)]
+        }.sort { it[0] }
+        def builder = new TelegramChat.Builder('chat', new SenderDictionary())
+        messages.each { builder.add(it[0], it[1], it[2]) }
+        def chat = builder.build()
+
+        when:
+        def statistics = SenderStatistics.of(chat)
+
+        then:
+        statistics.getSenderCount() == 3
+        (0..2).every { sender ->
+            def sent = messages.findAll { it[1] == statistics.getSender(sender) }
+            def times = sent.collect { LocalDateTime.ofEpochSecond(it[0], 0, ZoneOffset.UTC) }
+            statistics.getMessageCount(sender) == sent.size() &&
+                    statistics.getCharacterCount(sender) == sent.sum { it[2].length() } &&
+                    (0..23).every { statistics.getHourOfDayCount(sender, it) == times.count { t -> t.hour == it } } &&
+                    (0..6).every { statistics.getDayOfWeekCount(sender, it) == times.count { t -> t.dayOfWeek.ordinal() == it } } &&
+                    (0..11).every { statistics.getMonthOfYearCount(sender, it) == times.count { t -> t.monthValue - 1 == it } }
+        }
+    }
+
+    def "the statistics of several chats merge senders of the same name"() {
+        given:
+        def dictionary = new SenderDictionary()
+        def first = new TelegramChat.Builder('first', dictionary)
+                .add(0, 'Alice', 'ab').add(3600, 'Bob', 'c').build()
+        def second = new TelegramChat.Builder('second', dictionary)
+                .add(7200, 'Carol', '').add(86400, 'Alice', 'defg').build()
+
+        when:
+        def statistics = SenderStatistics.of([first, second])
+
+        then:
+        (0..<statistics.getSenderCount()).collect { statistics.getSender(it) } == ['Alice', 'Bob', 'Carol']
+        (0..2).collect { statistics.getMessageCount(it) } == [2, 1, 1]
+        (0..2).collect { statistics.getCharacterCount(it) } == [6L, 1L, 0L]
+        statistics.getHourOfDayCount(0, 0) == 2
+        statistics.getDayOfWeekCount(0, 3) == 1 // 1970-01-01 was a thursday
+        statistics.getDayOfWeekCount(0, 4) == 1
+    }
+
+    def "distributions can not be read beyond their units"() {
+        when:
+        SenderStatistics.of(new TelegramChat.Builder('chat', new SenderDictionary()).add(0, 'Alice', '').build())
+                .getHourOfDayCount(0, 24)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
+}
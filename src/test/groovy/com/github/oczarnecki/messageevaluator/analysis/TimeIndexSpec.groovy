@@ -0,0 +1,130 @@
+package com.github.oczarnecki.messageevaluator.analysis
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TimeIndexSpec extends Specification {
+
+    private static final long START = 1482559200L // 2016-12-24T06:00:00
+
+    @Unroll
+    def "#granularity histograms of a #density chat equal the naive histogram"() {
+        given: 'a chat with random timestamps'
+        def random = new Random(42)
+        def timestamps = (1..1000).collect { START + (long) (random.nextDouble() * span) }.sort()
+        def index = new TimeIndex(chat(timestamps))
+
+        when:
+        def histogram = index.histogram(granularity, width)
+
+        then:
+        histogram.getTotalCount() == 1000
+        toMap(histogram) == naiveHistogram(timestamps, granularity, width)
+
+        where:
+        [granularity, width, density] << [Granularity.values(), [1, 7], ['dense', 'sparse']].combinations()
+        span = density == 'dense' ? 86400L * 30 : 86400L * 3000
+    }
+
+    def "histograms of a time range only count the messages within the range"() {
+        given:
+        def timestamps = (0..99).collect { START + it * 3600L }
+        def index = new TimeIndex(chat(timestamps))
+
+        when: 'a range starting and ending within a day is queried'
+        def from = START + 1800, to = START + 50 * 3600 + 1
+        def histogram = index.histogram(Granularity.DAY, 1, from, to)
+
+        then:
+        toMap(histogram) == naiveHistogram(timestamps.findAll { it >= from && it < to }, Granularity.DAY, 1)
+        index.count(from, to) == 50
+    }
+
+    def "chats whose messages are not sorted are indexed correctly"() {
+        given:
+        def timestamps = [START + 86400L * 3, START, START + 86400L, START - 1]
+        def index = new TimeIndex(chat(timestamps))
+
+        expect:
+        index.getFirstSecond() == START - 1
+        index.getLastSecond() == START + 86400L * 3
+        toMap(index.histogram(Granularity.DAY, 1)) == naiveHistogram(timestamps, Granularity.DAY, 1)
+    }
+
+    def "the histogram of an empty chat has no buckets"() {
+        expect:
+        new TimeIndex(chat([])).histogram(Granularity.MONTH, 1).getBucketCount() == 0
+    }
+
+    def "histograms include buckets without messages"() {
+        given:
+        def index = new TimeIndex(chat([START, START + 86400L * 2]))
+
+        when:
+        def histogram = index.histogram(Granularity.DAY, 1)
+
+        then:
+        histogram.getBucketCount() == 3
+        (0..2).collect { histogram.getCount(it) } == [1, 0, 1]
+        histogram.getBucketStart(1) == Granularity.DAY.startOf(Granularity.DAY.bucket(START) + 1)
+    }
+
+    @Unroll
+    def "extending the index of a #density chat by #appended messages equals building it"() {
+        given: 'a chat whose last messages are appended to a known chat'
+        def random = new Random(42)
+        def timestamps = (1..1000).collect { START + (long) (random.nextDouble() * span) }.sort()
+        timestamps += (1..appended).collect { timestamps.last() + (long) (random.nextDouble() * 86400 * 5) }.sort()
+        def known = new TimeIndex(chat(timestamps.subList(0, 1000)))
+
+        when:
+        def index = TimeIndex.extend(known, chat(timestamps))
+
+        then:
+        index.getMessageCount() == timestamps.size()
+        Granularity.values().every { toMap(index.histogram(it, 1)) == naiveHistogram(timestamps, it, 1) }
+        index.count(timestamps[990], timestamps.last()) == timestamps.count { it >= timestamps[990] && it < timestamps.last() }
+
+        where:
+        density  | span           | appended
+        'dense'  | 86400L * 30    | 0
+        'dense'  | 86400L * 30    | 200
+        'sparse' | 86400L * 3000  | 200
+        'sparse' | 86400L * 3000  | 50000
+    }
+
+    def "buckets must span at least one unit"() {
+        when:
+        new TimeIndex(chat([START])).histogram(Granularity.DAY, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    static TelegramChat chat(List<Long> timestamps) {
+        def builder = new TelegramChat.Builder('chat', new SenderDictionary())
+        timestamps.each { builder.add(it, 'Sender', 'text') }
+        return builder.build()
+    }
+
+    static Map<Long, Integer> toMap(Histogram histogram) {
+        def counts = [:]
+        (0..<histogram.getBucketCount()).each {
+            if (histogram.getCount(it) > 0) {
+                counts[histogram.getFirstBucket() + it] = histogram.getCount(it)
+            }
+        }
+        return counts
+    }
+
+    static Map<Long, Integer> naiveHistogram(List<Long> timestamps, Granularity granularity, int width) {
+        def counts = [:]
+        timestamps.each {
+            long bucket = Math.floorDiv(granularity.bucket(it), (long) width)
+            counts[bucket] = (counts[bucket] ?: 0) + 1
+        }
+        return counts
+    }
+}
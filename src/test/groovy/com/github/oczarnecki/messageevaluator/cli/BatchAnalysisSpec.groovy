@@ -0,0 +1,185 @@
+package com.github.oczarnecki.messageevaluator.cli
+
+import com.github.oczarnecki.messageevaluator.cli.ColumnarFormat.ColumnType
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class BatchAnalysisSpec extends Specification {
+
+    File outputDirectory
+    ByteArrayOutputStream errors
+
+    def setup() {
+        outputDirectory = Files.createTempDirectory('results').toFile()
+        errors = new ByteArrayOutputStream()
+    }
+
+    def cleanup() {
+        outputDirectory.deleteDir()
+    }
+
+    def "histograms and sender counts of several exports are written as csv"() {
+        when:
+        def exitCode = run('--output', outputDirectory.path, '--threads', '2', resource('twoChats.json'),
+                export('"Chat, \\"quoted\\""', '2016-12-24T06:00:00', '2016-12-24T07:00:00', '2016-12-26T06:00:00'))
+
+        then:
+        exitCode == BatchAnalysis.EXIT_SUCCESS
+        errors.toString().isEmpty()
+
+        and: 'every bucket of every chat is written'
+        def histograms = lines(CsvResultWriter.HISTOGRAM_FILE)
+        histograms[0] == 'export,chat,bucket_start,messages'
+        histograms.findAll { it.startsWith(resource('twoChats.json') + ',Chat 1,') } ==
+                [resource('twoChats.json') + ',Chat 1,2016-11-24T00:00,1']
+        histograms.findAll { it.contains(',"Chat, ""quoted""",') }*.replaceAll('^.*quoted""",', '') ==
+                ['2016-12-24T00:00,2', '2016-12-25T00:00,0', '2016-12-26T00:00,1']
+
+        and: 'every position of every cycle of every chat is written'
+        def cycles = lines(CsvResultWriter.CYCLE_FILE)
+        cycles[0] == 'export,chat,cycle,position,messages'
+        def quotedCycles = cycles.findAll { it.contains(',"Chat, ""quoted""",') }*.replaceAll('^.*quoted""",', '')
+        quotedCycles.size() == 24 + 7 + 12 + 168
+        quotedCycles.findAll { !it.endsWith(',0') } == ['hour_of_day,6,2', 'hour_of_day,7,1',
+                                                        'day_of_week,0,1', 'day_of_week,5,2',
+                                                        'month_of_year,11,3',
+                                                        'hour_of_week,6,1', 'hour_of_week,126,1',
+                                                        'hour_of_week,127,1']
+
+        and: 'every sender of every chat is written'
+        def senders = lines(CsvResultWriter.SENDER_FILE)
+        senders[0] == 'export,chat,sender,messages'
+        senders.size() == 4
+        senders.any { it.endsWith(',"Chat, ""quoted""",Sender,3') }
+    }
+
+    def "results can be written as columnar files"() {
+        when:
+        def exitCode = run('--output', outputDirectory.path, '--format', 'columnar', '--granularity', 'month',
+                resource('twoChats.json'))
+
+        then:
+        exitCode == BatchAnalysis.EXIT_SUCCESS
+
+        and:
+        def histograms = new ColumnarReader(new File(outputDirectory, ColumnarResultWriter.HISTOGRAM_FILE))
+        histograms.getColumnNames() == ResultWriter.HISTOGRAM_COLUMNS
+        histograms.getRowCount() == 2
+        (0..1).collect { histograms.getValue(it, 1) } as Set == ['Chat 1', 'Chat 2'] as Set
+        (0..1).collect { histograms.getValue(it, 2) } as Set == [1477958400L, 1480550400L] as Set
+        (0..1).collect { histograms.getValue(it, 3) } == [1L, 1L]
+
+        and:
+        def cycles = new ColumnarReader(new File(outputDirectory, ColumnarResultWriter.CYCLE_FILE))
+        cycles.getColumnNames() == ResultWriter.CYCLE_COLUMNS
+        cycles.getRowCount() == 2 * (24 + 7 + 12 + 168)
+        def monthsOfChat1 = (0..<cycles.getRowCount()).findAll {
+            cycles.getValue(it, 1) == 'Chat 1' && cycles.getValue(it, 2) == 'month_of_year'
+        }
+        monthsOfChat1.collect { cycles.getValue(it, 4) } == [0L] * 10 + [1L, 0L]
+
+        and:
+        def senders = new ColumnarReader(new File(outputDirectory, ColumnarResultWriter.SENDER_FILE))
+        senders.getRowCount() == 2
+        senders.getValue(0, 2) == 'Sender'
+    }
+
+    def "approximate statistics of chats of the same name are merged across exports"() {
+        when:
+        def exitCode = run('--output', outputDirectory.path, '--mode', 'approximate', '--threads', '2',
+                export('"Chat"', '2016-12-24T06:00:00', '2016-12-24T07:00:00'),
+                export('"Chat"', '2016-12-26T06:00:00'), resource('twoChats.json'))
+
+        then:
+        exitCode == BatchAnalysis.EXIT_SUCCESS
+        errors.toString().isEmpty()
+
+        and:
+        def rows = lines(ApproximateResultWriter.APPROXIMATE_FILE)
+        rows[0] == 'chat,metric,key,estimate,error'
+        rows.contains('Chat,messages,,3,0')
+        rows.findAll { it.startsWith('Chat,distinct_senders,') } ==
+                ['Chat,distinct_senders,,1,0.0230', 'Chat,distinct_senders,2016-12-24T00:00,1,0.0230',
+                 'Chat,distinct_senders,2016-12-26T00:00,1,0.0230']
+        rows.contains('Chat,top_sender,Sender,3,1')
+        rows.contains('Chat,top_term,text,3,1')
+        rows.contains('Chat,length_quantile,0.5,4,0.0100')
+
+        and: 'the other chats and all chats are written as well'
+        rows.contains('Chat 1,messages,,1,0')
+        rows.contains(',messages,,5,0')
+        rows.contains(',top_sender,Sender,5,1')
+        !new File(outputDirectory, CsvResultWriter.HISTOGRAM_FILE).exists()
+    }
+
+    def "exports which can not be imported are reported and skipped"() {
+        when:
+        def exitCode = run('--output', outputDirectory.path, 'does not exist.json', resource('minimal.json'))
+
+        then:
+        exitCode == BatchAnalysis.EXIT_IMPORT_FAILED
+        errors.toString().startsWith('does not exist.json: Could not import data')
+        lines(CsvResultWriter.HISTOGRAM_FILE).size() == 2
+    }
+
+    def "wrong usage is reported"() {
+        expect:
+        run(args as String[]) == BatchAnalysis.EXIT_USAGE
+        errors.toString().contains('usage: BatchAnalysis')
+
+        where:
+        args << [[], ['--format', 'xml', 'export.json'], ['--threads', '0', 'export.json'], ['export.json', '--output'],
+                 ['--stats-log', '0', 'export.json'], ['--mode', 'sampled', 'export.json'],
+                 ['--mode', 'approximate', '--format', 'columnar', 'export.json']]
+    }
+
+    def "columnar files survive large and negative values and many row groups"() {
+        given:
+        def file = new File(outputDirectory, 'table.col')
+        def writer = new ColumnarWriter(file, ['name', 'value'] as String[],
+                [ColumnType.STRING, ColumnType.LONG] as ColumnType[])
+        def values = [Long.MIN_VALUE, Long.MAX_VALUE, -1L, 0L] + (1..100).collect { it * 1000L }
+
+        when:
+        values.eachWithIndex { value, index ->
+            writer.set(0, 'name ' + (index % 3))
+            writer.set(1, value)
+            writer.endRow()
+            if (index % 10 == 0) {
+                writer.endRowGroup()
+            }
+        }
+        writer.close()
+        def reader = new ColumnarReader(file)
+
+        then:
+        reader.getRowCount() == values.size()
+        (0..<values.size()).collect { reader.getValue(it, 1) } == values
+        (0..<values.size()).collect { reader.getValue(it, 0) } == (0..<values.size()).collect { 'name ' + (it % 3) }
+    }
+
+    int run(String... args) {
+        return BatchAnalysis.run(args, new PrintStream(errors, true))
+    }
+
+    List<String> lines(String fileName) {
+        return new File(outputDirectory, fileName).readLines('UTF-8')
+    }
+
+    String resource(String name) {
+        return new File(getClass().getClassLoader().getResource('telegramTestData/' + name).toURI()).path
+    }
+
+    /**
+     * @param chatNameJson the name of the chat as json string literal
+     */
+    String export(String chatNameJson, String... dates) {
+        def file = new File(outputDirectory.parentFile, 'export' + System.nanoTime() + '.json')
+        file.deleteOnExit()
+        file.text = '{"chats":{"list":[{"name":' + chatNameJson + ',"messages":[' +
+                dates.collect { '{"type":"message","date":"' + it + '","from":"Sender","text":"text"}' }.join(',') +
+                ']}]}}'
+        return file.path
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.oczarnecki.messageevaluator.importer
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ImportException
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPOutputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class CompressedSourcesSpec extends Specification {
+
+    /**
+     * larger than the chunks the decompressing thread may read ahead
+     */
+    byte[] data = (0..<(ReadAheadInputStream.CHUNK_SIZE * (ReadAheadInputStream.CHUNKS_IN_FLIGHT + 3) + 17))
+            .collect { (byte) (it * 31 % 251) } as byte[]
+
+    def "uncompressed sources are read as they are"() {
+        expect:
+        read(CompressedSources.decompress(new ByteArrayInputStream(data))) == data
+        read(CompressedSources.decompress(new ByteArrayInputStream(new byte[0]))) == new byte[0]
+        read(CompressedSources.decompress(new ByteArrayInputStream([1, 2] as byte[]))) == [1, 2] as byte[]
+    }
+
+    def "gzip sources are decompressed"() {
+        when:
+        def input = CompressedSources.decompress(new ByteArrayInputStream(gzip(data)))
+
+        then:
+        input instanceof ReadAheadInputStream
+        read(input) == data
+    }
+
+    def "the export within a zip archive is decompressed"() {
+        given: 'a telegram export archive with media before the export'
+        def archive = zip('DataExport/photos/photo.jpg': [1, 2, 3] as byte[],
+                'DataExport/result.json': data,
+                'DataExport/other/result.json': [4] as byte[])
+
+        expect:
+        read(CompressedSources.decompress(new ByteArrayInputStream(archive))) == data
+    }
+
+    def "archives without export are rejected"() {
+        when:
+        CompressedSources.decompress(new ByteArrayInputStream(zip('export.json': data)))
+
+        then:
+        def exception = thrown(ImportException)
+        exception.message.contains(CompressedSources.ARCHIVED_EXPORT_NAME)
+    }
+
+    def "zstd sources are rejected"() {
+        when:
+        CompressedSources.decompress(new ByteArrayInputStream([0x28, 0xb5, 0x2f, 0xfd, 0, 0] as byte[]))
+
+        then:
+        def exception = thrown(ImportException)
+        exception.message.contains('zstd')
+    }
+
+    def "failures of the source are passed to the consumer after the data before them"() {
+        given: 'a source which fails after its first chunk'
+        def source = new SequenceInputStream(new ByteArrayInputStream(new byte[ReadAheadInputStream.CHUNK_SIZE]),
+                new InputStream() {
+                    @Override
+                    int read() throws IOException {
+                        throw new IOException('broken')
+                    }
+                })
+        def input = new ReadAheadInputStream(source, 'test')
+
+        when:
+        def bytesRead = input.read(new byte[ReadAheadInputStream.CHUNK_SIZE])
+        input.read()
+
+        then:
+        bytesRead == ReadAheadInputStream.CHUNK_SIZE
+        def exception = thrown(IOException)
+        exception.message == 'broken'
+    }
+
+    def "closing the stream closes the source, even if it has not been read"() {
+        given:
+        def closed = new CountDownLatch(1)
+        def source = new ByteArrayInputStream(data) {
+            @Override
+            void close() {
+                closed.countDown()
+            }
+        }
+
+        when:
+        new ReadAheadInputStream(source, 'test').close()
+
+        then:
+        closed.await(10, TimeUnit.SECONDS)
+    }
+
+    @Unroll
+    def "the file within '#fileName' is '#uncompressedName'"() {
+        expect:
+        CompressedSources.uncompressedName(fileName) == uncompressedName
+
+        where:
+        fileName                          || uncompressedName
+        'result.json'                     || 'result.json'
+        'result.json.gz'                  || 'result.json'
+        'WhatsApp Chat with Alice.txt.GZ' || 'WhatsApp Chat with Alice.txt'
+        'inbox.mbox.zst'                  || 'inbox.mbox'
+        'Telegram Export.zip'             || 'result.json'
+    }
+
+    static byte[] read(InputStream input) {
+        try {
+            return input.bytes
+        } finally {
+            input.close()
+        }
+    }
+
+    static byte[] gzip(byte[] data) {
+        def bytes = new ByteArrayOutputStream()
+        new GZIPOutputStream(bytes).withCloseable { it.write(data) }
+        return bytes.toByteArray()
+    }
+
+    static byte[] zip(Map<String, byte[]> entries) {
+        def bytes = new ByteArrayOutputStream()
+        new ZipOutputStream(bytes).withCloseable { archive ->
+            entries.each { name, data ->
+                archive.putNextEntry(new ZipEntry(name))
+                archive.write(data)
+                archive.closeEntry()
+            }
+        }
+        return bytes.toByteArray()
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.oczarnecki.messageevaluator.importer.mbox
+
+import com.github.oczarnecki.messageevaluator.importer.ChatCollectingSink
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessage
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+
+class MboxImporterSpec extends Specification {
+
+    LocalDateTime testDate = LocalDateTime.of(2016, 12, 24, 6, 0, 0)
+
+    def "every mail of the mailbox is a message of a chat named after the file"() {
+        when:
+        def chats = importChats('inbox.mbox',
+                'From alice@example.com Sat Dec 24 06:00:00 2016',
+                'From: Alice <alice@example.com>',
+                'Date: Sat, 24 Dec 2016 06:00:00 +0100',
+                'Subject: first',
+                '',
+                'first mail',
+                '',
+                'From bob@example.com Sat Dec 24 07:00:00 2016',
+                'Date: Sat, 24 Dec 2016 07:00:00 +0100 (CET)',
+                'From: bob@example.com',
+                '',
+                'second mail',
+                'with two lines',
+                '')
+
+        then:
+        chats.size() == 1
+        chats[0].getName() == 'inbox'
+        chats[0].getMessages() == [
+                new TelegramMessage(testDate, 'Alice', 'first mail'),
+                new TelegramMessage(testDate.plusHours(1), 'bob@example.com', 'second mail\nwith two lines')]
+    }
+
+    def "folded headers are joined and escaped From lines are unescaped"() {
+        when:
+        def chats = importChats('inbox.mbox',
+                'From alice@example.com Sat Dec 24 06:00:00 2016',
+                'From: "Alice',
+                '  Example" <alice@example.com>',
+                'Date: Sat,',
+                '\t24 Dec 2016 06:00:00 +0100',
+                '',
+                '>From here on',
+                '>>From quoted',
+                'From the middle of a paragraph')
+
+        then:
+        chats[0].getMessages() == [new TelegramMessage(testDate, 'Alice  Example',
+                'From here on\n>From quoted\nFrom the middle of a paragraph')]
+    }
+
+    def "mails without sender or with a missing or malformed date are dropped and counted"() {
+        given:
+        def before = Instrumentation.get().getDroppedMessages()
+
+        when:
+        def chats = importChats('inbox.mbox',
+                'From alice@example.com Sat Dec 24 06:00:00 2016',
+                'From: Alice <alice@example.com>',
+                '',
+                'no date',
+                '',
+                'From alice@example.com Sat Dec 24 06:00:00 2016',
+                'Date: Sat, 24 Dec 2016 06:00:00 +0100',
+                '',
+                'no sender',
+                '',
+                'From alice@example.com Sat Dec 24 06:00:00 2016',
+                'From: Alice <alice@example.com>',
+                'Date: yesterday',
+                '',
+                'malformed date',
+                '',
+                'From alice@example.com Sat Dec 24 06:00:00 2016',
+                'From: Alice <alice@example.com>',
+                'Date: Sat, 24 Dec 2016 06:00:00 +0100',
+                '',
+                'kept')
+        def after = Instrumentation.get().getDroppedMessages()
+
+        then:
+        chats[0].getMessages()*.content == ['kept']
+        after.NO_SENDER - before.NO_SENDER == 1
+        after.INVALID_DATE - before.INVALID_DATE == 2
+    }
+
+    @Unroll
+    def "the sender of '#from' is '#sender'"() {
+        expect:
+        MboxImporter.senderName(from) == sender
+
+        where:
+        from                              || sender
+        'Alice <alice@example.com>'       || 'Alice'
+        ' "Alice, Example" <a@b.com>'     || 'Alice, Example'
+        '<alice@example.com>'             || 'alice@example.com'
+        'alice@example.com (Alice)'       || 'Alice'
+        'alice@example.com'               || 'alice@example.com'
+    }
+
+    def "dates are read as local dates and times"() {
+        expect:
+        MboxImporter.parseDate(' Sat, 24 Dec 2016 06:00:00 -0800 (PST)') == testDate.toEpochSecond(ZoneOffset.UTC)
+        MboxImporter.parseDate('4 Jan 2016 06:00:00 GMT') ==
+                LocalDateTime.of(2016, 1, 4, 6, 0).toEpochSecond(ZoneOffset.UTC)
+    }
+
+    List importChats(String fileName, String... lines) {
+        def sink = new ChatCollectingSink(new SenderDictionary())
+        new MboxImporter().importMessages(fileName,
+                new ByteArrayInputStream(lines.join('\n').getBytes(StandardCharsets.UTF_8)), sink)
+        return sink.getChats()
+    }
+}
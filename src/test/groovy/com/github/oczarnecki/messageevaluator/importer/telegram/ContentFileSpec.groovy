@@ -0,0 +1,149 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram
+
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class ContentFileSpec extends Specification {
+
+    File file
+    ContentFile contentFile
+
+    def setup() {
+        file = File.createTempFile('content', '.chars')
+        contentFile = new ContentFile(file, 16)
+    }
+
+    def cleanup() {
+        contentFile.close()
+        file.delete()
+    }
+
+    def "chats built with a content file keep their content in the file"() {
+        given:
+        def senders = new SenderDictionary()
+        def first = new TelegramChat.Builder('first', senders, contentFile)
+                .add(1L, 'Alice', 'hello')
+                .add(2L, 'Bob', '')
+                .add(3L, 'Alice', 'gr\u00FC\u00DF dich \uD83D\uDE00')
+                .build()
+        def second = new TelegramChat.Builder('second', senders, contentFile)
+                .add(4L, 'Bob', 'second chat')
+                .build()
+
+        expect: 'the contents are read from the file'
+        first.hasContentFile()
+        (0..2).collect { first.getContent(it) } == ['hello', '', 'gr\u00FC\u00DF dich \uD83D\uDE00']
+        second.getContent(0) == 'second chat'
+        file.length() == ('hello' + 'gr\u00FC\u00DF dich \uD83D\uDE00' + 'second chat').length() * 2
+
+        and: 'the other columns are on the heap as before'
+        first.getContentLength(2) == 'gr\u00FC\u00DF dich \uD83D\uDE00'.length()
+        first.getSender(first.getSenderId(1)) == 'Bob'
+        first.getMessages()*.content == ['hello', '', 'gr\u00FC\u00DF dich \uD83D\uDE00']
+
+        and: 'the content column is mapped from the file'
+        first.getContentColumn().toString() == 'hellogr\u00FC\u00DF dich \uD83D\uDE00'
+        second.getContentColumn().toString() == 'second chat'
+    }
+
+    def "chats with contents on disk can be copied to the heap"() {
+        given:
+        def lazyChat = new TelegramChat.Builder('chat', new SenderDictionary(), contentFile)
+                .add(1L, 'Alice', 'first').add(2L, 'Bob', 'second').build()
+
+        when:
+        def heapChat = new TelegramChat.Builder('chat', new SenderDictionary()).addAll(lazyChat).build()
+
+        then:
+        !heapChat.hasContentFile()
+        heapChat.getMessages() == lazyChat.getMessages()
+    }
+
+    def "the cache keeps the most recently read contents within its capacity"() {
+        given: 'a chat whose contents exceed the capacity of the cache together'
+        def chat = new TelegramChat.Builder('chat', new SenderDictionary(), contentFile)
+                .add(1L, 'Alice', 'a' * 6).add(2L, 'Alice', 'b' * 6).add(3L, 'Alice', 'c' * 6)
+                .add(4L, 'Alice', 'd' * 20)
+                .build()
+
+        when: 'the contents are read'
+        def second = chat.getContent(1)
+        def first = chat.getContent(0)
+
+        then: 'they are cached'
+        contentFile.getCachedCharacters() == 12
+        chat.getContent(1).is(second)
+        chat.getContent(0).is(first)
+
+        when: 'the cache overflows'
+        chat.getContent(2)
+
+        then: 'the least recently read content is evicted'
+        contentFile.getCachedCharacters() == 12
+        chat.getContent(0).is(first)
+        !chat.getContent(1).is(second)
+        chat.getContent(1) == second
+
+        when: 'a content larger than the cache is read'
+        def large = chat.getContent(3)
+
+        then: 'it is not cached'
+        large == 'd' * 20
+        contentFile.getCachedCharacters() <= 16
+    }
+
+    def "contents larger than a chunk are spilled while the chat is built"() {
+        given: 'two chats built at the same time, of which one exceeds several chunks'
+        def senders = new SenderDictionary()
+        def large = new TelegramChat.Builder('large', senders, contentFile)
+        def small = new TelegramChat.Builder('small', senders, contentFile)
+        def texts = (0..<300).collect { (('a'..'z')[it % 26]) * (it * 7 % 1000 + 1) }
+        texts.eachWithIndex { text, index ->
+            large.add(index, 'Alice', text)
+            small.add(index, 'Bob', 'small ' + index)
+        }
+        large.add(300L, 'Alice', 'x' * (ContentFile.CHUNK_SIZE * 2 + 5))
+
+        when:
+        def smallChat = small.build()
+        def largeChat = large.build()
+
+        then: 'the contents of both chats are contiguous in the file'
+        (0..<300).every { largeChat.getContent(it) == texts[it] && smallChat.getContent(it) == 'small ' + it }
+        largeChat.getContent(300) == 'x' * (ContentFile.CHUNK_SIZE * 2 + 5)
+        largeChat.getContentColumn().toString() == texts.join('') + 'x' * (ContentFile.CHUNK_SIZE * 2 + 5)
+
+        and: 'at most a chunk has been buffered on the heap'
+        large.content.length <= ContentFile.CHUNK_SIZE
+    }
+
+    def "temporary content files are deleted when they are closed"() {
+        given:
+        def temporary = ContentFile.createTemporary(16)
+        def temporaryFile = temporary.file
+
+        when:
+        temporary.close()
+
+        then:
+        !temporaryFile.exists()
+    }
+
+    def "the stream importer writes contents to the content file"() {
+        given:
+        def json = '{"chats":{"list":[{"name":"Chat", "messages":[' +
+                '{"type":"message", "date":"2016-12-24T06:00:00", "from":"Sender", "text":"first"},' +
+                '{"type":"message", "date":"2016-12-24T07:00:00", "from":"Sender", "text":["a ", {"type":"bold", "text":"b"}]}' +
+                ']}]}}'
+        def importer = new TelegramStreamImporter(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))
+        importer.setContentFile(contentFile)
+
+        when:
+        def chats = importer.importChats()
+
+        then:
+        chats[0].hasContentFile()
+        chats[0].getMessages()*.content == ['first', 'a b']
+    }
+}
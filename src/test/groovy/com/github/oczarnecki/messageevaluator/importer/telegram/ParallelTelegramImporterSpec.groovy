@@ -0,0 +1,184 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram
+
+import com.github.oczarnecki.messageevaluator.importer.MessageSink
+import spock.lang.Specification
+import spock.lang.Timeout
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+
+class ParallelTelegramImporterSpec extends Specification {
+
+    String testDateString = "2015-12-24T06:00:00"
+
+    def "chats are returned in their original order"() {
+        given: 'data containing many chats'
+        def chats = (1..50).collect { i ->
+            '{"name":"Chat ' + i + '", "id":' + i + ', "messages":[' +
+                    '{"type":"message", "date":"' + testDateString + '", "from":"Sender", "text":"message ' + i + '"}]}'
+        }
+        def tgData = '{"chats":{"list":[' + chats.join(',') + ']}}'
+
+        when: 'the data are imported with several threads'
+        def imported = new ParallelTelegramImporter(inputStream(tgData), 4).importChats()
+
+        then: 'the chats keep their order'
+        imported*.getName() == (1..50).collect { 'Chat ' + it }
+        imported*.getMessages()*.get(0)*.getContent() == (1..50).collect { 'message ' + it }
+    }
+
+    def "strings containing brackets, quotes and unicode do not confuse the splitter"() {
+        given: 'data with tricky strings inside and outside of the chats'
+        def tgData = '{"about":"}]\\"{[", "chats" : {"about":{"list":"not this one"},\n "list" : [\n' +
+                '{"name":"Chat }\\"", "messages":[{"type":"message", "date":"' + testDateString + '", "from":"Sendér", "text":["a]}\\\\", {"type":"link", "text":"{ü"}]}]} ,' +
+                '{"name":"Empty", "messages":[], "flags":[true, false, null, -1.5e3]}' +
+                ']}, "left_chats":{"list":[{"name":"ignored"}]}}'
+
+        when: 'the data are imported'
+        def imported = new ParallelTelegramImporter(inputStream(tgData), 2).importChats()
+
+        then: 'the result equals the one of the streaming importer'
+        imported == new TelegramStreamImporter(inputStream(tgData)).importChats()
+        imported*.getName() == ['Chat }"', 'Empty']
+        imported[0].getMessages()[0].getContent() == 'a]}\\{ü'
+        imported[0].getMessages()[0].getSender() == 'Sendér'
+    }
+
+    def "the import yields the same chats as the TelegramImporter"() {
+        given: 'a test data file'
+        def file = new File(getClass().getClassLoader().getResource('telegramTestData/twoChats.json').toURI())
+
+        expect:
+        new ParallelTelegramImporter(file).importChats() == new TelegramImporter(file).importChats()
+    }
+
+    def "chats larger than the buffered chunks are streamed to their parsing threads"() {
+        given: 'a chat of several megabytes between two small chats'
+        def message = '{"type":"message", "date":"' + testDateString + '", "from":"Sender", "text":"' + 'x' * 1000 + '"}'
+        def tgData = '{"chats":{"list":[{"name":"Small", "messages":[' + message + ']},' +
+                '{"name":"Large", "messages":[' + ([message] * 3000).join(',') + ']},' +
+                '{"name":"Last", "messages":[]}]}}'
+
+        when: 'the data are imported with several threads'
+        def imported = new ParallelTelegramImporter(inputStream(tgData), 2).importChats()
+
+        then: 'the result equals the one of the streaming importer'
+        imported*.getName() == ['Small', 'Large', 'Last']
+        imported == new TelegramStreamImporter(inputStream(tgData)).importChats()
+    }
+
+    @Timeout(10)
+    def "a large chat which ends early fails instead of waiting for more data"() {
+        given: 'a chat of several megabytes which is cut off'
+        def message = '{"type":"message", "date":"' + testDateString + '", "from":"Sender", "text":"' + 'x' * 1000 + '"}'
+        def tgData = '{"chats":{"list":[{"name":"Large", "messages":[' + ([message] * 3000).join(',')
+
+        when: 'the data are imported'
+        new ParallelTelegramImporter(inputStream(tgData), 2).importChats()
+
+        then: 'an ImportException is thrown'
+        thrown(ImportException)
+    }
+
+    def "the contents are written to the content file and every chat passes the given sink"() {
+        given: 'a content file and a sink counting messages'
+        def contentFile = ContentFile.createTemporary(16)
+        def tgData = '{"chats":{"list":[' + (1..10).collect { i ->
+            '{"name":"Chat ' + i + '", "messages":[' + (1..i).collect {
+                '{"type":"message", "date":"' + testDateString + '", "from":"Sender", "text":"message ' + it + '"}'
+            }.join(',') + ']}'
+        }.join(',') + ']}}'
+        def importer = new ParallelTelegramImporter(inputStream(tgData), 3)
+        importer.setContentFile(contentFile)
+        def senders = new SenderDictionary()
+        def counted = Collections.synchronizedList([])
+
+        when: 'the data are imported'
+        def imported = importer.importChats(senders, { sink -> counting(sink, counted) })
+
+        then: 'the chats are stored in the content file and every message has been counted'
+        imported.every { it.getContentFile().is(contentFile) }
+        imported*.getName() == (1..10).collect { 'Chat ' + it }
+        imported*.getMessages()*.size() == (1..10).toList()
+        imported[9].getMessages()*.getContent() == (1..10).collect { 'message ' + it }
+        counted.size() == 55
+        senders.size() == 1
+
+        cleanup:
+        contentFile?.close()
+    }
+
+    @Unroll("an exception is thrown when given: '#tgData'")
+    def "an exception is thrown on invalid data"() {
+        when: 'the invalid data are parsed'
+        new ParallelTelegramImporter(inputStream(tgData), 2).importChats()
+
+        then: 'an ImportException is thrown'
+        thrown(ImportException)
+
+        where:
+        tgData << [
+                '',
+                '{"chats":',
+                '{"key":"unrelated data"}',
+                '{key:"is not quoted!"}',
+                '{"chats":{"list":"this is not a list"}}',
+                '{"chats":{"list":[{"not a chat": true}]}}',
+                '{"chats":{"list":[{"name": 42}]}}',
+                '{"chats":{"list":[{"name": "Chat without messages"}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":"not a list"}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[[]]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"not a message":true}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"type":"message","date":"24.12.2015 06:00","text":"something", "from":"sender"}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"type":"message","date":"2015-12-24T06:00:00","text":"something"}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[]}, "not a chat"]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[]}',
+        ]
+    }
+
+    def "an ImportException is thrown when the underlying input stream produces an IOException"() {
+        given: 'a bad InputStream'
+        def input = Mock(InputStream)
+        input._ >> { throw new IOException() }
+
+        when: 'the importer attempts to parse data from the stream'
+        new ParallelTelegramImporter(input, 2).importChats()
+
+        then: 'an ImportException is thrown'
+        def exception = thrown(ImportException)
+        exception.getCause() instanceof IOException
+    }
+
+    def "at least one thread is required"() {
+        when:
+        //noinspection GroovyResultOfObjectAllocationIgnored
+        new ParallelTelegramImporter(inputStream('{}'), 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    static MessageSink counting(MessageSink sink, List counted) {
+        return new MessageSink() {
+            @Override
+            void chatStarted(String name) {
+                sink.chatStarted(name)
+            }
+
+            @Override
+            void messageParsed(long epochSecond, String sender, CharSequence content) {
+                counted << content.toString()
+                sink.messageParsed(epochSecond, sender, content)
+            }
+
+            @Override
+            void chatFinished() {
+                sink.chatFinished()
+            }
+        }
+    }
+
+    static InputStream inputStream(String str) {
+        return new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8))
+    }
+}
@@ -1,6 +1,5 @@
 package com.github.oczarnecki.messageevaluator.importer.telegram
 
-import nl.jqno.equalsverifier.EqualsVerifier
 import spock.lang.Specification
 
 import java.time.LocalDateTime
@@ -11,9 +10,33 @@ import static java.util.Collections.singletonList
 class TelegramChatSpec extends Specification {
     def MESSAGE = new TelegramMessage(LocalDateTime.now(), "sender", "content")
 
-    def "equals and hash code work correctly"() {
-        expect: 'equals and hashCode work'
-        EqualsVerifier.forClass(TelegramChat).verify()
+    def "chats with the same messages are equal wherever their contents are stored"() {
+        given: 'a chat on the heap and the same chat at different positions of content files'
+        def red = ContentFile.createTemporary(16)
+        def blue = ContentFile.createTemporary(16)
+        def heap = chat(null)
+        new TelegramChat.Builder('other', new SenderDictionary(), blue).add(0L, 'Carol', 'first').build()
+
+        expect:
+        [chat(red), chat(blue)].every { it == heap && heap == it && it.hashCode() == heap.hashCode() }
+
+        cleanup:
+        red?.close()
+        blue?.close()
+    }
+
+    def "chats with different names or messages are not equal"() {
+        given:
+        def heap = chat(null)
+        def senders = new SenderDictionary()
+
+        expect:
+        heap != null
+        heap != new TelegramChat.Builder('other', senders).addAll(heap).build()
+        heap != new TelegramChat.Builder('chat', senders).addAll(heap).add(120L, 'Alice', 'bye').build()
+        heap != new TelegramChat.Builder('chat', senders).add(0L, 'Alice', 'hello').add(60L, 'Bob', 'hi!').build()
+        heap != new TelegramChat.Builder('chat', senders).add(0L, 'Alice', 'hello').add(61L, 'Bob', 'hi').build()
+        heap != new TelegramChat.Builder('chat', senders).add(0L, 'Alice', 'hello').add(60L, 'Carol', 'hi').build()
     }
 
     def "a telegram chat holds its own copy of messages"() {
@@ -38,4 +61,86 @@ class TelegramChatSpec extends Specification {
         then: 'an UnsupportedOperationException is thrown'
         thrown(UnsupportedOperationException)
     }
+
+    def "the columns of a chat match its messages"() {
+        given: 'a chat with messages of two senders'
+        def first = new TelegramMessage(LocalDateTime.of(2018, 1, 1, 0, 0, 1), 'Bob', 'hello')
+        def second = new TelegramMessage(LocalDateTime.of(2018, 1, 1, 0, 0, 2), 'Alice', '')
+        def third = new TelegramMessage(LocalDateTime.of(2018, 1, 1, 0, 0, 3), 'Bob', 'bye')
+        def chat = new TelegramChat('chat', [first, second, third])
+
+        expect: 'the message view returns the original messages'
+        chat.getMessages() == [first, second, third]
+        chat.getMessageCount() == 3
+
+        and: 'the columns hold the message data'
+        chat.getEpochSecond(0) == 1514764801L
+        chat.getSenderCount() == 2
+        chat.getSender(chat.getSenderId(0)) == 'Bob'
+        chat.getSenderId(0) == chat.getSenderId(2)
+        chat.getSender(chat.getSenderId(1)) == 'Alice'
+        chat.getContent(0) == 'hello'
+        chat.getContentLength(1) == 0
+        chat.getContent(2) == 'bye'
+    }
+
+    def "chats built with the same dictionary share their sender names"() {
+        given: 'a dictionary shared by two builders'
+        def dictionary = new SenderDictionary()
+        def timestamp = 1514764800L
+
+        when: 'two chats with the same sender are built'
+        def chatA = new TelegramChat.Builder('A', dictionary).add(timestamp, new String('sender'), 'a').build()
+        def chatB = new TelegramChat.Builder('B', dictionary).add(timestamp, new String('sender'), new StringBuilder('b')).build()
+
+        then: 'the sender name is interned'
+        chatA.getSender(0).is(chatB.getSender(0))
+        dictionary.size() == 1
+        dictionary.getId('sender') == 0
+        dictionary.getId('unknown') == SenderDictionary.UNKNOWN_SENDER
+
+        and: 'the contents are kept apart'
+        chatA.getContent(0) == 'a'
+        chatB.getContent(0) == 'b'
+    }
+
+    def "chats with equal messages are equal, regardless of how they were built"() {
+        given: 'a dictionary which already knows other senders'
+        def dictionary = new SenderDictionary()
+        dictionary.intern('someone else')
+
+        expect:
+        new TelegramChat.Builder('chat', dictionary).add(MESSAGE).build() == new TelegramChat('chat', [MESSAGE])
+    }
+
+    def "chats with the same messages have the same fingerprint"() {
+        given:
+        def senders = new SenderDictionary()
+        def first = new TelegramChat.Builder('first', senders).add(0L, 'Alice', 'hello').add(60L, 'Bob', 'hi').build()
+        def second = new TelegramChat.Builder('second', senders).add(120L, 'Alice', 'bye').build()
+        def both = new TelegramChat.Builder('both', senders).add(0L, 'Alice', 'hello').add(60L, 'Bob', 'hi')
+                .add(120L, 'Alice', 'bye').build()
+
+        expect: 'the fingerprint does not depend on how the chat has been built'
+        new TelegramChat.Builder('copy', senders).addAll(first).addAll(second).build().getContentFingerprint() ==
+                both.getContentFingerprint()
+        TelegramChat.fromColumns('columns', both.getTimestampColumn(), both.getSenderIdColumn(),
+                (0..<both.getSenderCount()).collect { both.getSender(it) } as String[], both.getContentColumn(),
+                both.getContentOffsetColumn()).getContentFingerprint() == both.getContentFingerprint()
+
+        and: 'it differs for different messages'
+        first.getContentFingerprint() != both.getContentFingerprint()
+        new TelegramChat.Builder('other', senders).add(0L, 'Alice', 'hello').add(60L, 'Bob', 'hi!').build()
+                .getContentFingerprint() != first.getContentFingerprint()
+        new TelegramChat.Builder('other', senders).add(60L, 'Bob', 'hi').add(0L, 'Alice', 'hello').build()
+                .getContentFingerprint() != first.getContentFingerprint()
+    }
+
+    /**
+     * @param contentFile the file holding the contents, or null to keep them on the heap
+     */
+    static TelegramChat chat(ContentFile contentFile) {
+        return new TelegramChat.Builder('chat', new SenderDictionary(), contentFile).add(0L, 'Alice', 'hello')
+                .add(60L, 'Bob', 'hi').build()
+    }
 }
@@ -0,0 +1,221 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram
+
+import com.github.oczarnecki.messageevaluator.importer.MessageSink
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+import java.time.LocalDateTime
+
+class TelegramStreamImporterSpec extends Specification {
+
+    LocalDateTime testDate = LocalDateTime.of(2015, 12, 24, 6, 0, 0)
+    String testDateString = "2015-12-24T06:00:00"
+
+    def "a valid telegram message is parsed correctly"() {
+        given: 'a chat with a valid telegram message'
+        def tgData = chatWithMessages('{"type":"message", "date":"' + testDateString + '", "from":"Sender", "text":"message content"}')
+
+        when: 'the data are imported'
+        def chats = importer(tgData).importChats()
+
+        then: 'the message matches the data'
+        chats.size() == 1
+        chats[0].getName() == 'Chat'
+        chats[0].getMessages() == [new TelegramMessage(testDate, 'Sender', 'message content')]
+    }
+
+    def "the fields of a message may appear in any order"() {
+        given: 'a message where the text precedes the type'
+        def tgData = chatWithMessages('{"text":"message content", "from":"Sender", "id":1, "date":"' + testDateString + '", "type":"message"}')
+
+        when: 'the data are imported'
+        def chats = importer(tgData).importChats()
+
+        then: 'the message is parsed correctly'
+        chats[0].getMessages() == [new TelegramMessage(testDate, 'Sender', 'message content')]
+    }
+
+    def "messages are dropped by the same rules as by the TelegramImporter"() {
+        given: 'a chat containing more than messages'
+        def tgData = chatWithMessages(
+                '{"type":"message", "from":"someone", "text":""}',
+                '{"type":"message", "date":"' + testDateString + '", "from":"Sender", "text":"message content", "ignored field":{"nested":[1, 2]}}',
+                '{"type":"message", "from":null, "text":"content", "date":"' + testDateString + '"}',
+                '{"type":"not a message", "text":["expected:", false]}')
+
+        when: 'the data are imported'
+        def chats = importer(tgData).importChats()
+
+        then: 'only the valid text message is kept'
+        chats[0].getMessages() == [new TelegramMessage(testDate, 'Sender', 'message content')]
+    }
+
+    def "composite texts are flattened"() {
+        given: 'a message with a composite text'
+        def tgData = chatWithMessages('{"type":"message", "date":"' + testDateString + '", "from":"Sender", ' +
+                '"text":["text ", {"type":"hashtag", "text":"#composite"}, " end"]}')
+
+        when: 'the data are imported'
+        def chats = importer(tgData).importChats()
+
+        then: 'the text is flattened'
+        chats[0].getMessages()[0].getContent() == 'text #composite end'
+    }
+
+    def "the entities of composite texts are kept on request"() {
+        given: 'a message with a composite text'
+        def tgData = chatWithMessages('{"type":"message", "date":"' + testDateString + '", "from":"Sender", ' +
+                '"text":["hi ", {"text":"@someone", "type":"mention"}, " ", {"type":"hashtag", "text":"#tag"}]}',
+                '{"type":"message", "date":"' + testDateString + '", "from":"Sender", "text":"plain"}')
+
+        when: 'the data are imported with entities'
+        def entityImporter = importer(tgData)
+        entityImporter.setKeepEntities(true)
+        def chat = entityImporter.importChats()[0]
+
+        then: 'the spans of the parts are kept'
+        chat.getEntities(0) == [new TextEntity('mention', 3, 8), new TextEntity('hashtag', 12, 4)]
+        chat.getEntities(1).isEmpty()
+        chat.getMessages()[0].getEntities() == chat.getEntities(0)
+
+        and: 'they are kept when the chat is copied'
+        new TelegramChat.Builder('copy', new SenderDictionary()).addAll(chat).build().getEntities(0) ==
+                chat.getEntities(0)
+
+        and: 'they are not kept by default'
+        importer(tgData).importChats()[0].getEntities(0).isEmpty()
+    }
+
+    def "the handler receives chats and messages in order"() {
+        given: 'valid telegram data with two chats'
+        def tgData = '{"about":{"skipped":[true]}, "chats":{"about":"skipped", "list":[' +
+                '{"name":"ChatA", "messages":[{"type":"message", "date":"' + testDateString + '", "from":"Sender", "text":"a"}]},' +
+                '{"name":"ChatB", "messages":[]}' +
+                ']}}'
+        def handler = Mock(TelegramMessageHandler)
+
+        when: 'the data are imported'
+        importer(tgData).importMessages(handler)
+
+        then: 'the first chat is passed to the handler'
+        1 * handler.chatStarted('ChatA')
+
+        then:
+        1 * handler.messageParsed(new TelegramMessage(testDate, 'Sender', 'a'))
+
+        then:
+        1 * handler.chatFinished()
+
+        then: 'the second chat follows'
+        1 * handler.chatStarted('ChatB')
+
+        then:
+        1 * handler.chatFinished()
+        0 * handler._
+    }
+
+    def "the sink receives the messages in the reused buffers of the importer"() {
+        given: 'two messages with composite texts'
+        def tgData = chatWithMessages('{"type":"message", "date":"' + testDateString + '", "from":"Sender", ' +
+                '"text":["hi ", {"text":"@someone", "type":"mention"}]}',
+                '{"type":"message", "date":"' + testDateString + '", "from":"Other", "text":"plain"}')
+        def contents = []
+        def entities = []
+        def buffers = [] as Set
+        def sink = new MessageSink() {
+            void chatStarted(String name) {}
+
+            void messageParsed(long epochSecond, String sender, CharSequence content) {
+                throw new AssertionError('the entities are kept')
+            }
+
+            void messageParsed(long epochSecond, String sender, CharSequence content, List<TextEntity> textEntities) {
+                contents << content.toString()
+                entities << new ArrayList<>(textEntities)
+                buffers << System.identityHashCode(content)
+            }
+
+            void chatFinished() {}
+        }
+
+        when: 'the data are imported by the telegram message importer with entities'
+        new TelegramMessageImporter(true).importMessages('result.json',
+                new ByteArrayInputStream(tgData.getBytes(StandardCharsets.UTF_8)), sink)
+
+        then: 'the contents and entities are passed without creating a message per message'
+        contents == ['hi @someone', 'plain']
+        entities == [[new TextEntity('mention', 3, 8)], []]
+        buffers.size() == 1
+    }
+
+    def "the streamed import yields the same chats as the TelegramImporter"() {
+        given: 'a test data file'
+        def resource = getClass().getClassLoader().getResource('telegramTestData/twoChats.json')
+
+        expect:
+        new TelegramStreamImporter(new File(resource.toURI())).importChats() ==
+                new TelegramImporter(new File(resource.toURI())).importChats()
+    }
+
+    @Unroll("an exception is thrown when given: '#tgData'")
+    def "an exception is thrown on invalid data"() {
+        when: 'the invalid data are parsed'
+        importer(tgData).importChats()
+
+        then: 'an ImportException is thrown'
+        thrown(ImportException)
+
+        where:
+        tgData << [
+                '{"chats":',
+                '{"key":"unrelated data"}',
+                '{key:"is not quoted!"}',
+                '["not an object"]',
+                '{"chats":{"list":"this is not a list"}}',
+                '{"chats":{"list":[{"not a chat": true}]}}',
+                '{"chats":{"list":[{"name": 42}]}}',
+                '{"chats":{"list":[{"name": "Chat without messages"}]}}',
+                '{"chats":{"list":[{"messages":[], "name": "Chat with name after messages"}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":"not a list"}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[[]]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"not a message":true}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"type":"message","date":"24.12.2015 06:00","text":"something", "from":"sender"}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"type":"message","date":"2015-12-24T06:00:00","text_missing":"true", "from":"sender"}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"type":"message","date":"2015-12-24T06:00:00","text":0, "from":"sender"}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"type":"message","date":"2015-12-24T06:00:00","text":"something"}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"type":"message","date":"2015-12-24T06:00:00","text":["expected:", false], "from":"sender"}]}]}}',
+                '{"chats":{"list":[{"name": "Chat", "messages":[{"type":"message","date":"2015-12-24T06:00:00","text":[{"type":"bold"}], "from":"sender"}]}]}}',
+        ]
+    }
+
+    def "an ImportException is thrown when the underlying input stream produces an IOException"() {
+        given: 'a bad InputStream'
+        def input = Mock(InputStream)
+        input._ >> { throw new IOException() }
+
+        when: 'the importer attempts to parse data from the stream'
+        new TelegramStreamImporter(input).importChats()
+
+        then: 'an ImportException is thrown'
+        def exception = thrown(ImportException)
+        exception.getCause() instanceof IOException
+    }
+
+    def "creating with an invalid file causes an ImportException"() {
+        when: 'a non-existent file is passed'
+        //noinspection GroovyResultOfObjectAllocationIgnored
+        new TelegramStreamImporter(new File('$does-not-exist.json'))
+
+        then: "an ImportException is thrown"
+        thrown(ImportException)
+    }
+
+    static String chatWithMessages(String... messages) {
+        return '{"chats":{"list":[{"name":"Chat", "messages":[' + messages.join(',') + ']}]}}'
+    }
+
+    static TelegramStreamImporter importer(String tgData) {
+        return new TelegramStreamImporter(new ByteArrayInputStream(tgData.getBytes(StandardCharsets.UTF_8)))
+    }
+}
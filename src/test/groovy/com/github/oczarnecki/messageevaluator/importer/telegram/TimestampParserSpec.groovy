@@ -0,0 +1,52 @@
+package com.github.oczarnecki.messageevaluator.importer.telegram
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+
+class TimestampParserSpec extends Specification {
+
+    @Subject
+    TimestampParser parser = new TimestampParser()
+
+    def "dates of many days equal the strictly parsed dates"() {
+        given:
+        def random = new Random(42)
+        def dates = (1..5000).collect {
+            LocalDateTime.ofEpochSecond((long) (random.nextDouble() * 4102444800L) - 2208988800L, 0, ZoneOffset.UTC)
+        }
+
+        expect: 'every date, and every date again from the cache of its day'
+        dates.every {
+            def second = it.toEpochSecond(ZoneOffset.UTC)
+            parser.parse(it.toString().padRight(19, ':00')) == second &&
+                    parser.parse(it.plusSeconds(1).toString().padRight(19, ':00')) == second + 1
+        }
+    }
+
+    @Unroll
+    def "'#date' is parsed by the strict parser"() {
+        expect:
+        parser.parse(date) == LocalDateTime.parse(date).toEpochSecond(ZoneOffset.UTC)
+
+        where:
+        date << ['2016-12-24T06:00', '2016-12-24T06:00:00.5', '+12016-12-24T06:00:00']
+    }
+
+    @Unroll
+    def "'#date' is no valid date"() {
+        when:
+        parser.parse('2016-12-24T06:00:00')
+        parser.parse(date)
+
+        then:
+        thrown(ImportException)
+
+        where:
+        date << ['2016-12-24T24:00:00', '2016-02-30T06:00:00', '2016-12-24 06:00:00', '2016-12-24T06:60:00',
+                 '2016-1a-24T06:00:00', '2016-12-24T06:00:0x', '', 'yesterday']
+    }
+}
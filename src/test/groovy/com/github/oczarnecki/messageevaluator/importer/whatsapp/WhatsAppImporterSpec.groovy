@@ -0,0 +1,139 @@
+package com.github.oczarnecki.messageevaluator.importer.whatsapp
+
+import com.github.oczarnecki.messageevaluator.importer.ChatCollectingSink
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramMessage
+import com.github.oczarnecki.messageevaluator.instrumentation.Instrumentation
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+import java.time.LocalDateTime
+
+class WhatsAppImporterSpec extends Specification {
+
+    LocalDateTime testDate = LocalDateTime.of(2016, 12, 24, 6, 0, 0)
+
+    @Unroll
+    def "the header '#header' is parsed"() {
+        when:
+        def chats = importChats('chat.txt', header + 'Sender: message content')
+
+        then:
+        chats[0].getMessages() == [new TelegramMessage(date, 'Sender', 'message content')]
+
+        where:
+        header                      || date
+        '12/24/16, 6:00 AM - '      || LocalDateTime.of(2016, 12, 24, 6, 0, 0)
+        '12/24/16, 6:00 PM - '      || LocalDateTime.of(2016, 12, 24, 18, 0, 0)
+        '12/24/16, 12:30 AM - '     || LocalDateTime.of(2016, 12, 24, 0, 30, 0)
+        '24/12/2016, 18:00 - '      || LocalDateTime.of(2016, 12, 24, 18, 0, 0)
+        '24.12.16, 06:00 - '        || LocalDateTime.of(2016, 12, 24, 6, 0, 0)
+        '[24.12.16, 06:00:15] '     || LocalDateTime.of(2016, 12, 24, 6, 0, 15)
+        '\u200E[24.12.16, 06:00:15] ' || LocalDateTime.of(2016, 12, 24, 6, 0, 15)
+        '[2016-12-24, 06:00:15] '   || LocalDateTime.of(2016, 12, 24, 6, 0, 15)
+    }
+
+    def "the order of slashed dates is decided once per file"() {
+        when: 'the first dates of a day first export are valid in both orders'
+        def dayFirst = importChats('chat.txt',
+                '05/12/16, 18:00 - Sender: first',
+                'continued',
+                '06/12/16, 18:00 - Sender added Other',
+                '06/12/16, 18:00 - Other: second',
+                '24/12/16, 18:00 - Sender: third',
+                '05/01/17, 18:00 - Other: fourth')
+
+        then:
+        dayFirst[0].getMessages() == [
+                new TelegramMessage(LocalDateTime.of(2016, 12, 5, 18, 0), 'Sender', 'first\ncontinued'),
+                new TelegramMessage(LocalDateTime.of(2016, 12, 6, 18, 0), 'Other', 'second'),
+                new TelegramMessage(LocalDateTime.of(2016, 12, 24, 18, 0), 'Sender', 'third'),
+                new TelegramMessage(LocalDateTime.of(2017, 1, 5, 18, 0), 'Other', 'fourth')]
+
+        when: 'no date decides the order'
+        def undecided = importChats('chat.txt', '05/12/16, 6:00 PM - Sender: first', '05/12/16, 6:01 PM - Sender: second')
+
+        then: 'the dates are read month first'
+        undecided[0].getMessages()*.timestamp ==
+                [LocalDateTime.of(2016, 5, 12, 18, 0), LocalDateTime.of(2016, 5, 12, 18, 1)]
+    }
+
+    def "messages may span several lines"() {
+        when:
+        def chats = importChats('chat.txt',
+                '12/24/16, 6:00 AM - Sender: first line',
+                'second line',
+                '',
+                '12/24/16, 6:01 AM - Other: next message')
+
+        then:
+        chats[0].getMessages() == [
+                new TelegramMessage(testDate, 'Sender', 'first line\nsecond line\n'),
+                new TelegramMessage(testDate.plusMinutes(1), 'Other', 'next message')]
+    }
+
+    def "lines without a sender are dropped and counted"() {
+        given:
+        def before = Instrumentation.get().getDroppedMessages().NOT_A_MESSAGE
+
+        when:
+        def chats = importChats('chat.txt',
+                '12/24/16, 5:59 AM - Messages to this chat are now secured with end-to-end encryption.',
+                'continued notification',
+                '12/24/16, 6:00 AM - Sender: text',
+                '12/24/16, 6:01 AM - Sender added Other')
+
+        then:
+        chats[0].getMessages() == [new TelegramMessage(testDate, 'Sender', 'text')]
+        Instrumentation.get().getDroppedMessages().NOT_A_MESSAGE - before == 2
+    }
+
+    def "lines which only look like headers continue the previous message"() {
+        when:
+        def chats = importChats('chat.txt',
+                '12/24/16, 6:00 AM - Sender: text',
+                '13/13/16, 6:00 AM - Sender: not a date',
+                '12/24/16, 25:00 - Sender: not a time')
+
+        then:
+        chats[0].getMessages() == [new TelegramMessage(testDate, 'Sender', 'text\n' +
+                '13/13/16, 6:00 AM - Sender: not a date\n12/24/16, 25:00 - Sender: not a time')]
+    }
+
+    def "non-ASCII text and windows line endings are read"() {
+        given:
+        def text = '\uFEFF12/24/16, 6:00 AM - J\u00FCrgen: gr\u00FC\u00DF dich \uD83D\uDE00\r\n'
+
+        when:
+        def chats = importChats('chat.txt', text)
+
+        then:
+        chats[0].getMessages() == [new TelegramMessage(testDate, 'J\u00FCrgen', 'gr\u00FC\u00DF dich \uD83D\uDE00')]
+    }
+
+    @Unroll
+    def "the chat of the file '#fileName' is named '#name'"() {
+        expect:
+        WhatsAppImporter.chatName(fileName) == name
+
+        where:
+        fileName                       || name
+        'WhatsApp Chat with Alice.txt' || 'Alice'
+        'WhatsApp Chat - Family.txt'   || 'Family'
+        '_chat.TXT'                    || '_chat'
+    }
+
+    def "only text files are accepted"() {
+        expect:
+        new WhatsAppImporter().accepts('WhatsApp Chat with Alice.txt')
+        !new WhatsAppImporter().accepts('result.json')
+    }
+
+    List importChats(String fileName, String... lines) {
+        def sink = new ChatCollectingSink(new SenderDictionary())
+        new WhatsAppImporter().importMessages(fileName,
+                new ByteArrayInputStream(lines.join('\n').getBytes(StandardCharsets.UTF_8)), sink)
+        return sink.getChats()
+    }
+}
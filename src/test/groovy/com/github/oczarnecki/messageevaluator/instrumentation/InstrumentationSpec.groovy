@@ -0,0 +1,107 @@
+package com.github.oczarnecki.messageevaluator.instrumentation
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramImporter
+import spock.lang.Specification
+
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.TimeUnit
+
+class InstrumentationSpec extends Specification {
+
+    Instrumentation instrumentation = new Instrumentation()
+
+    def "the importers count the dropped messages by reason"() {
+        given: 'an export with one message of every kind'
+        def json = '{"chats":{"list":[{"name":"Chat","messages":[' +
+                '{"type":"service","date":"2015-12-24T06:00:00","text":"joined","from":"Alice"},' +
+                '{"type":"message","date":"2015-12-24T06:00:00","text":"","from":"Alice"},' +
+                '{"type":"message","date":"2015-12-24T06:00:00","text":"hello","from":null},' +
+                '{"type":"message","date":"2015-12-24T06:00:00","text":"hello","from":"Alice"}]}]}}'
+        def before = Instrumentation.get().getDroppedMessages()
+
+        when:
+        def chats = new TelegramImporter(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))).importChats()
+        def after = Instrumentation.get().getDroppedMessages()
+
+        then: 'the kept message is imported and every dropped one is counted once'
+        chats[0].getMessageCount() == 1
+        after.keySet() == DropReason.values()*.name() as Set
+        after.collectEntries { reason, count -> [reason, count - before[reason]] } ==
+                [NOT_A_MESSAGE: 1L, EMPTY_TEXT: 1L, NO_SENDER: 1L, INVALID_DATE: 0L, DUPLICATE: 0L]
+    }
+
+    def "phases are counted with their total and maximum durations"() {
+        when:
+        instrumentation.recordPhase(Phase.PARSE, TimeUnit.MILLISECONDS.toNanos(3))
+        instrumentation.recordPhase(Phase.PARSE, TimeUnit.MILLISECONDS.toNanos(5))
+        instrumentation.recordPhase(Phase.READ, TimeUnit.MILLISECONDS.toNanos(1))
+
+        then:
+        instrumentation.getPhaseCounts() == [READ: 1L, PARSE: 2L, BUILD_MODEL: 0L, NOTIFY_LISTENERS: 0L,
+                                             BUILD_SERIES: 0L, BUILD_HISTOGRAM: 0L]
+        instrumentation.getPhaseTotalMillis().PARSE == 8.0d
+        instrumentation.getPhaseMaxMillis().PARSE == 5.0d
+        instrumentation.getPhaseMaxMillis().BUILD_MODEL == 0.0d
+    }
+
+    def "running imports are included in the totals and rates until they are finished"() {
+        given:
+        long bytes = 0
+        long messages = 0
+        def runningImport = instrumentation.importStarted({ bytes }, { messages })
+
+        when: 'the import makes progress'
+        bytes = 1000
+        messages = 10
+        Thread.sleep(5)
+
+        then: 'it is observed while it runs'
+        instrumentation.getImportCount() == 0
+        instrumentation.getBytesImported() == 1000
+        instrumentation.getMessagesImported() == 10
+        instrumentation.getBytesPerSecond() > 0
+        instrumentation.getMessagesPerSecond() > 0
+
+        when: 'the import is finished, twice'
+        runningImport.finish()
+        runningImport.finish()
+        bytes = 5000
+
+        then: 'its final counts are kept, once'
+        instrumentation.getImportCount() == 1
+        instrumentation.getBytesImported() == 1000
+        instrumentation.getMessagesImported() == 10
+        instrumentation.getBytesPerSecond() > 0
+    }
+
+    def "the instrumentation is readable via JMX once it is registered"() {
+        when: 'it is registered twice'
+        Instrumentation.get().register()
+        Instrumentation.get().register()
+        Instrumentation.get().modelChanged(2, 30, 4096)
+
+        then:
+        def server = ManagementFactory.getPlatformMBeanServer()
+        def name = new ObjectName(Instrumentation.OBJECT_NAME)
+        server.isRegistered(name)
+        server.getAttribute(name, 'ModelChatCount') == 2
+        server.getAttribute(name, 'ModelMessageCount') == 30L
+        server.getAttribute(name, 'ModelHeapBytes') == 4096L
+    }
+
+    def "the summary lists the recorded metrics"() {
+        given:
+        instrumentation.modelChanged(1, 42, 1024)
+        instrumentation.recordPhase(Phase.BUILD_HISTOGRAM, TimeUnit.MILLISECONDS.toNanos(2))
+
+        when:
+        def summary = instrumentation.summary()
+
+        then:
+        summary.contains('1 chats')
+        summary.contains('BUILD_HISTOGRAM 1x')
+        !summary.contains('PARSE')
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.oczarnecki.messageevaluator.merge
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.ContentFile
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.CharBuffer
+import java.nio.file.Files
+
+class ChatMergerSpec extends Specification {
+
+    SenderDictionary senders = new SenderDictionary()
+
+    @Subject
+    ChatMerger merger = new ChatMerger(senders, null)
+
+    def "overlapping versions are merged in timestamp order without duplicates"() {
+        given: 'an older and a newer export of a chat'
+        def older = chat([1L, 'Alice', 'first'], [2L, 'Bob', 'second'], [3L, 'Alice', 'third'])
+        def newer = chat([2L, 'Bob', 'second'], [3L, 'Alice', 'third'], [4L, 'Bob', 'fourth'])
+
+        when:
+        def merged = merger.merge('chat', [older, newer])
+
+        then:
+        merged.getName() == 'chat'
+        messages(merged) == [[1L, 'Alice', 'first'], [2L, 'Bob', 'second'], [3L, 'Alice', 'third'],
+                             [4L, 'Bob', 'fourth']]
+        merger.getDuplicateCount() == 2
+    }
+
+    def "messages differing in their time, sender or content are kept"() {
+        given:
+        def first = chat([1L, 'Alice', 'hello'])
+        def second = chat([2L, 'Alice', 'hello'], [1L, 'Bob', 'hello'], [1L, 'Alice', 'hello!'])
+
+        when:
+        def merged = merger.merge('chat', [first, second])
+
+        then: 'the messages of the first version come first within a second'
+        messages(merged) == [[1L, 'Alice', 'hello'], [1L, 'Bob', 'hello'], [1L, 'Alice', 'hello!'],
+                             [2L, 'Alice', 'hello']]
+        merger.getDuplicateCount() == 0
+    }
+
+    def "repeated messages are kept as often as they occur in one version"() {
+        given: 'two "ok"s sent in the same second, of which one export only contains one'
+        def first = chat([1L, 'Alice', 'ok'], [2L, 'Bob', 'later'])
+        def second = chat([1L, 'Alice', 'ok'], [1L, 'Alice', 'ok'])
+
+        when:
+        def merged = merger.merge('chat', [first, second])
+
+        then:
+        messages(merged) == [[1L, 'Alice', 'ok'], [1L, 'Alice', 'ok'], [2L, 'Bob', 'later']]
+        merger.getDuplicateCount() == 1
+    }
+
+    def "the first version is kept if it already contains all messages"() {
+        given:
+        def known = chat([1L, 'Alice', 'first'], [2L, 'Bob', 'second'])
+
+        expect:
+        merger.merge('chat', [known, chat([2L, 'Bob', 'second'])]).is(known)
+        merger.merge('chat', [known]).is(known)
+    }
+
+    @Requires({ new File('/proc/self/fd').isDirectory() })
+    def "nothing is spilled if the first version contains all messages"() {
+        given: 'a merger keeping its chats on disk, and a chat too large to be buffered'
+        def contentFile = ContentFile.createTemporary(16)
+        def lazyMerger = new ChatMerger(senders, contentFile)
+        def large = chat([1L, 'Alice', 'x' * 200000], [2L, 'Bob', 'second'])
+        def before = openSpills()
+
+        when:
+        def merged = lazyMerger.merge('chat', [large, chat([2L, 'Bob', 'second'])])
+
+        then:
+        merged.is(large)
+        openSpills() == before
+        lazyMerger.getDuplicateCount() == 1
+
+        cleanup:
+        contentFile?.close()
+    }
+
+    def "versions whose messages are not sorted are merged in timestamp order"() {
+        given:
+        def unsorted = chat([3L, 'Alice', 'third'], [1L, 'Alice', 'first'], [1L, 'Bob', 'also first'])
+
+        when:
+        def merged = merger.merge('chat', [chat([2L, 'Bob', 'second']), unsorted])
+
+        then:
+        messages(merged) == [[1L, 'Alice', 'first'], [1L, 'Bob', 'also first'], [2L, 'Bob', 'second'],
+                             [3L, 'Alice', 'third']]
+    }
+
+    def "the timestamp order of many messages is stable"() {
+        given: 'an unsorted chat with many messages sent in the same seconds'
+        def random = new Random(7)
+        def unsorted = chat(*(0..<1000).collect { [random.nextInt(50) as long, 'Alice', "message $it" as String] })
+
+        when:
+        def order = ChatMerger.timestampOrder(unsorted)
+
+        then: 'the indexes are sorted by timestamp and keep their order within a second'
+        order as List == (0..<1000).sort(false) { unsorted.getEpochSecond(it) }
+    }
+
+    def "fingerprints are equal for equal messages only"() {
+        given:
+        def hash = MessageFingerprints.contentHash(CharBuffer.wrap('xhellox'), 1, 6)
+
+        expect:
+        hash == MessageFingerprints.contentHash(CharBuffer.wrap('hello'), 0, 5)
+        hash != MessageFingerprints.contentHash(CharBuffer.wrap('hellO'), 0, 5)
+        MessageFingerprints.of(1L, 0, hash) == MessageFingerprints.of(1L, 0, hash)
+        MessageFingerprints.of(1L, 0, hash) != MessageFingerprints.of(2L, 0, hash)
+        MessageFingerprints.of(1L, 0, hash) != MessageFingerprints.of(1L, 1, hash)
+        MessageFingerprints.occurrence(5L, 0) == 5L
+        MessageFingerprints.occurrence(5L, 1) != 5L
+    }
+
+    def "the hash set of fingerprints grows and holds zero"() {
+        given:
+        def set = new LongHashSet(2)
+
+        when:
+        def added = (-1000L..1000L).collect { set.add(it * 0x100000000L) }
+
+        then:
+        added.every()
+        set.size() == 2001
+        !set.add(0L)
+        !set.add(-1000L * 0x100000000L)
+        set.contains(0L)
+        !set.contains(1L)
+    }
+
+    TelegramChat chat(List... messages) {
+        def builder = new TelegramChat.Builder('chat', senders)
+        messages.each { builder.add(it[0] as long, it[1] as String, it[2] as String) }
+        return builder.build()
+    }
+
+    static List<List> messages(TelegramChat chat) {
+        return (0..<chat.getMessageCount()).collect {
+            [chat.getEpochSecond(it), chat.getSender(chat.getSenderId(it)), chat.getContent(it)]
+        }
+    }
+
+    /**
+     * @return the number of spill files held open by this process
+     */
+    static int openSpills() {
+        return new File('/proc/self/fd').listFiles().count { descriptor ->
+            try {
+                return Files.readSymbolicLink(descriptor.toPath()).toString().contains('.spill')
+            } catch (IOException ignored) {
+                return false // the descriptor has been closed while listing
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.github.oczarnecki.messageevaluator.search
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TextIndexSpec extends Specification {
+
+    private static final long START = 1482559200L // 2016-12-24T06:00:00
+    private static final List<String> WORDS = ['apple', 'apricot', 'banana', 'Cherry', 'date', '\u00c4rger', 'x1']
+
+    def "text is split into lower case terms of letters and digits"() {
+        expect:
+        Tokenizer.terms('Hello, W\u00d6RLD! 42times\u2014caf\u00e9 \ud83d\ude00 \ud835\udc00b') ==
+                ['hello', 'w\u00f6rld', '42times', 'caf\u00e9', '\ud835\udc00b']
+    }
+
+    @Unroll
+    def "keyword queries for '#query' equal a scan of the messages"() {
+        given:
+        def contents = randomContents(2000)
+        def index = TextIndex.build(chat(contents))
+
+        expect:
+        index.keyword(query) as List == naive(contents) { it.containsAll(Tokenizer.terms(query)) }
+
+        where:
+        query << ['apple', 'CHERRY', 'apple banana', '\u00e4rger x1', 'apple missing', 'missing']
+    }
+
+    def "queries without terms match no message"() {
+        given:
+        def index = TextIndex.build(chat(['a message', '...']))
+
+        expect:
+        index.keyword(' ... ').length == 0
+        index.prefix('').length == 0
+        index.phrase('').length == 0
+    }
+
+    @Unroll
+    def "prefix queries for '#prefix' equal a scan of the messages"() {
+        given:
+        def contents = randomContents(2000)
+        def index = TextIndex.build(chat(contents))
+
+        expect:
+        index.prefix(prefix) as List == naive(contents) { terms -> terms.any { it.startsWith(prefix.toLowerCase()) } }
+
+        where:
+        prefix << ['ap', 'apple', 'B', 'z', '\u00e4']
+    }
+
+    @Unroll
+    def "phrase queries for '#phrase' equal a scan of the messages"() {
+        given:
+        def contents = randomContents(2000)
+        def index = TextIndex.build(chat(contents))
+        def phraseTerms = Tokenizer.terms(phrase)
+
+        expect:
+        index.phrase(phrase) as List == naive(contents) { terms ->
+            (0..<terms.size()).any { it + phraseTerms.size() <= terms.size() &&
+                    terms.subList(it, it + phraseTerms.size()) == phraseTerms }
+        }
+
+        where:
+        phrase << ['apple banana', 'banana, apple!', 'apple apple', 'date cherry apricot', 'x1']
+    }
+
+    def "the histogram of a query counts the matching messages"() {
+        given:
+        def builder = new TelegramChat.Builder('chat', new SenderDictionary())
+        builder.add(START, 'Sender', 'good morning')
+        builder.add(START + 3600, 'Sender', 'good night')
+        builder.add(START + 86400, 'Sender', 'morning')
+        builder.add(START + 2 * 86400, 'Sender', 'Good morning!')
+        def index = TextIndex.build(builder.build())
+
+        when:
+        def histogram = index.histogram(index.phrase('good morning'), Granularity.DAY, 1)
+
+        then:
+        (0..<histogram.getBucketCount()).collect { histogram.getCount(it) } == [1, 0, 1]
+        histogram.getFirstBucket() == Granularity.DAY.bucket(START)
+    }
+
+    def "extending the index of a chat by new messages equals building it"() {
+        given: 'a chat whose last messages, some with new terms, are appended to a known chat'
+        def contents = randomContents(2000)
+        contents[1500] = 'zebra apple'
+        contents[1999] = 'Aardvark'
+        def known = TextIndex.build(chat(contents.subList(0, 1200)))
+        def built = TextIndex.build(chat(contents))
+
+        when:
+        def index = TextIndex.extend(known, chat(contents))
+
+        then:
+        index.getTermCount() == built.getTermCount()
+        (0..<index.getTermCount()).every {
+            index.getTerm(it) == built.getTerm(it) && index.getDocumentFrequency(it) == built.getDocumentFrequency(it)
+        }
+        index.getPostings() == built.getPostings()
+        index.keyword('apple') as List == naive(contents) { it.contains('apple') }
+        index.phrase('zebra apple') == [1500] as int[]
+    }
+
+    def "indexes written to a file answer the same queries"() {
+        given:
+        def chats = [chat(randomContents(500)), chat([]), chat(['\u00fcber ' + 'x' * 70000])]
+        def indexes = chats.collect { TextIndex.build(it) }
+        def file = File.createTempFile('chats', '.snapshot.index')
+
+        when:
+        TextIndexFile.write(indexes, file)
+        def read = TextIndexFile.read(file, chats)
+
+        then:
+        read*.getChat() == chats
+        read*.getTermCount() == indexes*.getTermCount()
+        ['apple', 'banana cherry', 'date'].every { read[0].keyword(it) == indexes[0].keyword(it) }
+        read[0].phrase('apple banana') == indexes[0].phrase('apple banana')
+        read[2].prefix('\u00fc') == [0] as int[]
+
+        and: 'the postings are mapped from the file'
+        read.every { it.getPostings().isDirect() }
+        (0..<chats.size()).every { read[it].getPostings().equals(indexes[it].getPostings()) }
+
+        cleanup:
+        file.delete()
+    }
+
+    def "truncated index files are rejected"() {
+        given:
+        def file = File.createTempFile('chats', '.snapshot.index')
+        TextIndexFile.write([TextIndex.build(chat(randomContents(50)))], file)
+        file.bytes = Arrays.copyOf(file.bytes, file.bytes.length - 1)
+
+        when:
+        TextIndexFile.read(file, [chat(randomContents(50))])
+
+        then:
+        thrown(IOException)
+
+        cleanup:
+        file.delete()
+    }
+
+    def "indexes of other chats are rejected"() {
+        given:
+        def file = File.createTempFile('chats', '.snapshot.index')
+        TextIndexFile.write([TextIndex.build(chat(['one']))], file)
+
+        when:
+        TextIndexFile.read(file, [chat(['one', 'two'])])
+
+        then:
+        thrown(IOException)
+
+        cleanup:
+        file.delete()
+    }
+
+    def "indexes of chats whose messages changed are rejected"() {
+        given: 'the index of a chat with as many messages as the read chat'
+        def file = File.createTempFile('chats', '.snapshot.index')
+        TextIndexFile.write([TextIndex.build(chat(['one', 'two']))], file)
+
+        when:
+        TextIndexFile.read(file, [chat(['one', 'three'])])
+
+        then:
+        thrown(IOException)
+
+        cleanup:
+        file.delete()
+    }
+
+    static List<String> randomContents(int count) {
+        def random = new Random(42)
+        return (1..count).collect {
+            (0..random.nextInt(6)).collect { WORDS[random.nextInt(WORDS.size())] }.join(random.nextBoolean() ? ' ' : ', ')
+        }
+    }
+
+    static List<Integer> naive(List<String> contents, Closure<Boolean> matches) {
+        return (0..<contents.size()).findAll { matches(Tokenizer.terms(contents[it])) }
+    }
+
+    static TelegramChat chat(List<String> contents) {
+        def builder = new TelegramChat.Builder('chat', new SenderDictionary())
+        contents.eachWithIndex { content, index -> builder.add(START + index * 60L, 'Sender', content) }
+        return builder.build()
+    }
+}
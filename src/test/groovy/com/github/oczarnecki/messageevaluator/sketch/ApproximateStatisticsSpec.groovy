@@ -0,0 +1,65 @@
+package com.github.oczarnecki.messageevaluator.sketch
+
+import com.github.oczarnecki.messageevaluator.analysis.Granularity
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+
+class ApproximateStatisticsSpec extends Specification {
+
+    def "the statistics of a chat are collected while it is streamed"() {
+        given:
+        def sink = new SketchingSink(Granularity.DAY)
+
+        when:
+        sink.chatStarted('Chat')
+        sink.messageParsed(epochSecond('2016-12-24T06:00:00'), 'Alice', 'merry christmas')
+        sink.messageParsed(epochSecond('2016-12-24T07:00:00'), 'Bob', 'merry christmas to you')
+        sink.messageParsed(epochSecond('2016-12-26T06:00:00'), 'Alice', 'happy holidays')
+        sink.chatFinished()
+        def statistics = sink.getChats()['Chat']
+
+        then:
+        statistics.getMessageCount() == 3
+        statistics.getDistinctSenders().estimate() == 2
+        statistics.getDistinctSendersByBucket().collectEntries { start, senders -> [start, senders.estimate()] } ==
+                [(epochSecond('2016-12-24T00:00:00')): 2L, (epochSecond('2016-12-26T00:00:00')): 1L]
+        statistics.getTopSenders().getTop()[0] == new HeavyHitters.Entry('Alice', 2)
+        statistics.getTopTerms().getTop().take(2)*.key == ['christmas', 'merry']
+        statistics.getMessageLengths().getCount() == 3
+    }
+
+    def "merged statistics cover the messages of both"() {
+        given:
+        def first = new ApproximateStatistics(Granularity.MONTH)
+        def second = new ApproximateStatistics(Granularity.MONTH)
+        first.add(epochSecond('2016-11-24T06:00:00'), 'Alice', 'hello')
+        second.add(epochSecond('2016-11-25T06:00:00'), 'Bob', 'hello')
+        second.add(epochSecond('2016-12-25T06:00:00'), 'Bob', 'hello')
+
+        when:
+        first.merge(second)
+
+        then:
+        first.getMessageCount() == 3
+        first.getDistinctSenders().estimate() == 2
+        first.getDistinctSendersByBucket().values()*.estimate() == [2L, 1L]
+        first.getTopTerms().getTop() == [new HeavyHitters.Entry('hello', 3)]
+
+        and: 'the merged sketches are not shared'
+        second.getDistinctSendersByBucket().values()*.estimate() == [1L, 1L]
+    }
+
+    def "statistics of different granularities are not merged"() {
+        when:
+        new ApproximateStatistics(Granularity.DAY).merge(new ApproximateStatistics(Granularity.WEEK))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    long epochSecond(String dateTime) {
+        return LocalDateTime.parse(dateTime).toEpochSecond(ZoneOffset.UTC)
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.oczarnecki.messageevaluator.sketch
+
+import spock.lang.Specification
+
+class HeavyHittersSpec extends Specification {
+
+    def "count-min estimates are never too low and within the error bound"() {
+        given:
+        def sketch = new CountMinSketch(256, 4)
+        def random = new Random(42)
+        def counts = [:].withDefault { 0L }
+        10_000.times {
+            def key = 'key ' + random.nextInt(2000)
+            sketch.add(key, 1)
+            counts[key]++
+        }
+
+        expect:
+        sketch.getTotalCount() == 10_000
+        counts.every { key, count -> sketch.estimate(key) >= count }
+        counts.count { key, count -> sketch.estimate(key) > count + sketch.getErrorBound() } <=
+                counts.size() * (1 - sketch.getConfidence())
+        sketch.estimate('never added') <= sketch.getErrorBound()
+    }
+
+    def "the most frequent keys are found among many rare ones"() {
+        given:
+        def heavyHitters = new HeavyHitters(3, HeavyHitters.DEFAULT_WIDTH, HeavyHitters.DEFAULT_DEPTH)
+
+        when:
+        (0..<5000).each {
+            heavyHitters.add('rare ' + it)
+            if (it % 5 == 0) heavyHitters.add('frequent')
+            if (it % 10 == 0) heavyHitters.add('common')
+            if (it % 20 == 0) heavyHitters.add(buffer('usual'), 5)
+        }
+        def top = heavyHitters.getTop()
+
+        then:
+        top*.key == ['frequent', 'common', 'usual']
+        [1000, 500, 250].withIndex().every { count, index ->
+            top[index].count >= count && top[index].count <= count + heavyHitters.getErrorBound()
+        }
+    }
+
+    def "merged heavy hitters rank the candidates of both by their merged counts"() {
+        given:
+        def first = new HeavyHitters(2, 64, 2)
+        def second = new HeavyHitters(2, 64, 2)
+        10.times { first.add('a') }
+        6.times { first.add('b') }
+        8.times { second.add('c') }
+        7.times { second.add('b') }
+
+        when:
+        first.merge(second)
+
+        then:
+        first.getTop() == [new HeavyHitters.Entry('b', 13), new HeavyHitters.Entry('a', 10)]
+        first.getTotalCount() == 31
+    }
+
+    def "count-min sketches of different dimensions are not merged"() {
+        when:
+        new CountMinSketch(64, 2).merge(new CountMinSketch(64, 3))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    char[] buffer(String key) {
+        def buffer = new char[16]
+        key.getChars(0, key.length(), buffer, 0)
+        return buffer
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.oczarnecki.messageevaluator.sketch
+
+import spock.lang.Specification
+
+class HyperLogLogSpec extends Specification {
+
+    def "the distinct keys are estimated within three standard errors"() {
+        given:
+        def sketch = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION)
+
+        when:
+        (0..<count).each {
+            sketch.add('sender ' + it)
+            sketch.add('sender ' + it)
+        }
+
+        then:
+        Math.abs(sketch.estimate() - count) <= Math.max(1, 3 * sketch.getRelativeError() * count)
+
+        where:
+        count << [0, 1, 10, 1000, 100_000]
+    }
+
+    def "merged sketches estimate the union of their keys"() {
+        given:
+        def first = new HyperLogLog(12)
+        def second = new HyperLogLog(12)
+        def union = new HyperLogLog(12)
+        (0..<30_000).each {
+            first.add('key ' + it)
+            union.add('key ' + it)
+        }
+        (20_000..<50_000).each {
+            second.add('key ' + it)
+            union.add('key ' + it)
+        }
+
+        when:
+        first.merge(second)
+
+        then:
+        first.estimate() == union.estimate()
+        Math.abs(first.estimate() - 50_000) <= 3 * first.getRelativeError() * 50_000
+    }
+
+    def "copies are independent of the original"() {
+        given:
+        def original = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION)
+        original.add('a')
+        def copy = original.copy()
+
+        when:
+        copy.add('b')
+
+        then:
+        original.estimate() == 1
+        copy.estimate() == 2
+    }
+
+    def "sketches of few keys are sparse and grow up to one byte per register"() {
+        given:
+        def sketch = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION)
+        def sizes = []
+
+        when:
+        (0..<100_000).each {
+            sketch.add('sender ' + it)
+            if (it in [0, 9, 99, 99_999]) {
+                sizes << sketch.getSizeInBytes()
+            }
+        }
+
+        then: 'a few keys take a few bytes each'
+        sizes[0] <= 16
+        sizes[1] <= 64
+        sizes[2] <= 512
+
+        and: 'many keys take one byte per register'
+        sizes[3] == 2048
+    }
+
+    def "sparse and dense sketches are merged into the same estimates"() {
+        given: 'a sparse and a dense sketch'
+        def sparse = new HyperLogLog(12)
+        def dense = new HyperLogLog(12)
+        (0..<50).each { sparse.add('key ' + it) }
+        (0..<20_000).each { dense.add('key ' + (it + 25)) }
+
+        when:
+        def sparseIntoDense = dense.copy()
+        sparseIntoDense.merge(sparse)
+        def denseIntoSparse = sparse.copy()
+        denseIntoSparse.merge(dense)
+
+        then:
+        sparseIntoDense.estimate() == denseIntoSparse.estimate()
+        sparseIntoDense.getSizeInBytes() == 4096
+        Math.abs(sparseIntoDense.estimate() - 20_025) <= 3 * sparse.getRelativeError() * 20_025
+    }
+
+    def "sketches of different precisions are not merged"() {
+        when:
+        new HyperLogLog(10).merge(new HyperLogLog(11))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "precisions out of range are rejected"() {
+        when:
+        new HyperLogLog(precision)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        precision << [3, 19]
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.oczarnecki.messageevaluator.sketch
+
+import spock.lang.Specification
+
+class QuantileSketchSpec extends Specification {
+
+    def "quantiles are estimated within the relative error"() {
+        given:
+        def sketch = new QuantileSketch(QuantileSketch.DEFAULT_RELATIVE_ERROR)
+        def random = new Random(7)
+        def values = (0..<20_000).collect { (long) Math.exp(random.nextDouble() * 12) }
+        values.each { sketch.add(it) }
+        values.sort()
+
+        expect:
+        [0.0d, 0.5d, 0.9d, 0.99d, 1.0d].every { quantile ->
+            def exact = values[(int) (quantile * (values.size() - 1))]
+            Math.abs(sketch.quantile(quantile) - exact) <= sketch.getRelativeError() * exact
+        }
+        sketch.getCount() == 20_000
+    }
+
+    def "zeros and the largest values are counted"() {
+        given:
+        def sketch = new QuantileSketch(0.02)
+
+        when:
+        3.times { sketch.add(0) }
+        sketch.add(Long.MAX_VALUE)
+
+        then:
+        sketch.quantile(0.5) == 0
+        Math.abs(sketch.quantile(1) - Long.MAX_VALUE) <= 0.02 * Long.MAX_VALUE
+    }
+
+    def "merged sketches estimate the quantiles of the values of both"() {
+        given:
+        def first = new QuantileSketch(0.01)
+        def second = new QuantileSketch(0.01)
+        (1..100).each { first.add(it) }
+        (101..300).each { second.add(it) }
+
+        when:
+        first.merge(second)
+
+        then:
+        first.getCount() == 300
+        Math.abs(first.quantile(0.5) - 150) <= 1.5
+    }
+
+    def "an empty sketch estimates zero"() {
+        expect:
+        new QuantileSketch(0.01).quantile(0.9) == 0
+    }
+
+    def "invalid arguments are rejected"() {
+        when:
+        action(new QuantileSketch(0.01))
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        action << [{ it.add(-1) }, { it.quantile(1.5) }, { new QuantileSketch(1) }, { it.merge(new QuantileSketch(0.02)) }]
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.oczarnecki.messageevaluator.snapshot
+
+import com.github.oczarnecki.messageevaluator.importer.telegram.SenderDictionary
+import com.github.oczarnecki.messageevaluator.importer.telegram.TelegramChat
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class SnapshotSpec extends Specification {
+
+    File snapshotFile
+
+    def setup() {
+        snapshotFile = File.createTempFile('test', '.' + SnapshotReader.FILE_EXTENSION)
+        snapshotFile.deleteOnExit()
+    }
+
+    def cleanup() {
+        snapshotFile.delete()
+    }
+
+    def "chats are restored from a snapshot"() {
+        given: 'chats sharing a sender'
+        def senders = new SenderDictionary()
+        def chats = [
+                new TelegramChat.Builder('Chat ä', senders)
+                        .add(1514764800L, 'Alice', 'hello')
+                        .add(1514764801L, 'Bob', '')
+                        .add(1514764802L, 'Alice', 'Grüße 🙂')
+                        .build(),
+                new TelegramChat.Builder('Empty', senders).build(),
+                new TelegramChat.Builder('Other', senders).add(-5L, 'Bob', 'before the epoch').build()]
+
+        when: 'the chats are written to a snapshot and read again'
+        SnapshotWriter.write(chats, snapshotFile)
+        def restored = SnapshotReader.read(snapshotFile)
+
+        then: 'the restored chats equal the original ones'
+        restored == chats
+        restored[0].getMessages() == chats[0].getMessages()
+
+        and: 'the columns are memory mapped'
+        restored[0].getTimestampColumn().isDirect()
+        restored[0].getContentColumn().isDirect()
+
+        and: 'sender names are shared between chats'
+        restored[0].getSender(restored[0].getSenderId(1)).is(restored[2].getSender(0))
+    }
+
+    def "reading a file which is no snapshot causes an IOException"() {
+        given: 'a file with other content'
+        snapshotFile.text = 'no snapshot'
+
+        when:
+        SnapshotReader.read(snapshotFile)
+
+        then:
+        def exception = thrown(IOException)
+        exception.message == 'not a snapshot file'
+    }
+
+    def "reading a truncated snapshot causes an IOException"() {
+        given: 'a truncated snapshot'
+        SnapshotWriter.write([new TelegramChat.Builder('Chat', new SenderDictionary())
+                                      .add(0L, 'sender', 'some content').build()], snapshotFile)
+        def bytes = snapshotFile.bytes
+        snapshotFile.bytes = Arrays.copyOf(bytes, bytes.length - 4)
+
+        when:
+        SnapshotReader.read(snapshotFile)
+
+        then:
+        thrown(IOException)
+    }
+
+    @Unroll
+    def "reading a snapshot with a corrupt #field causes an IOException"() {
+        given: 'a snapshot whose field has been overwritten'
+        SnapshotWriter.write([new TelegramChat.Builder('Chat', new SenderDictionary())
+                                      .add(0L, 'sender', 'some content').build()], snapshotFile)
+        def bytes = ByteBuffer.wrap(snapshotFile.bytes).order(ByteOrder.LITTLE_ENDIAN)
+        bytes.putInt(offset, value)
+        snapshotFile.bytes = bytes.array()
+
+        when:
+        SnapshotReader.read(snapshotFile)
+
+        then:
+        thrown(IOException)
+
+        where:
+        field            | offset | value
+        'sender count'   | 8      | -1
+        'sender count'   | 8      | Integer.MAX_VALUE
+        'chat count'     | 22     | -1
+        'message count'  | 34     | -1
+        'message count'  | 34     | Integer.MAX_VALUE
+        'content length' | 38     | Integer.MAX_VALUE
+        'sender id'      | 64     | 5
+        'content offset' | 68     | 5
+    }
+}